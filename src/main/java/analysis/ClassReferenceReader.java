@@ -0,0 +1,141 @@
+package analysis;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a .class file and lists the classes it references.
+ *
+ * Only the parts of the class file format needed for that are parsed:
+ *   - constant pool: Class entries, NameAndType and MethodType descriptors
+ *   - field and method descriptors
+ *
+ * That covers everything the JVM resolves when running the class (super types,
+ * instantiations, calls, field accesses, signatures). It does not see
+ * compile-time constants that javac inlined, nor annotations; those never need
+ * the dependency at runtime.
+ *
+ * Class names are returned in internal form: com/example/auth/AuthService
+ */
+public class ClassReferenceReader {
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    /**
+     * @param classFile contents of a .class file
+     * @return internal names of all referenced classes (arrays unwrapped, primitives skipped)
+     */
+    public Set<String> readReferences(InputStream classFile) throws IOException {
+        DataInputStream in = new DataInputStream(classFile);
+
+        if (in.readInt() != CLASS_MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int poolSize = in.readUnsignedShort();
+        String[] utf8 = new String[poolSize];
+        // For each Class entry: index of the Utf8 holding its name
+        int[] classNameIndex = new int[poolSize];
+        List<Integer> descriptorIndexes = new ArrayList<>();
+
+        for (int i = 1; i < poolSize; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();                          // Utf8
+                case 3, 4 -> in.readInt();                                  // Integer, Float
+                case 5, 6 -> {                                              // Long, Double take two slots
+                    in.readLong();
+                    i++;
+                }
+                case 7 -> classNameIndex[i] = in.readUnsignedShort();      // Class
+                case 8, 16, 19, 20 -> {                                     // String, MethodType, Module, Package
+                    int index = in.readUnsignedShort();
+                    if (tag == 16) {
+                        descriptorIndexes.add(index);
+                    }
+                }
+                case 9, 10, 11, 17, 18 -> in.readInt();                     // member refs, (Invoke)Dynamic
+                case 12 -> {                                                // NameAndType
+                    in.readUnsignedShort();
+                    descriptorIndexes.add(in.readUnsignedShort());
+                }
+                case 15 -> {                                                // MethodHandle
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                }
+                default -> throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        in.readUnsignedShort(); // access flags
+        int thisClass = in.readUnsignedShort();
+        in.readUnsignedShort(); // super class (also a Class entry)
+        int interfaces = in.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            in.readUnsignedShort();
+        }
+
+        // Fields and methods: declared types live in their descriptors
+        for (int group = 0; group < 2; group++) {
+            int members = in.readUnsignedShort();
+            for (int i = 0; i < members; i++) {
+                in.readUnsignedShort(); // access flags
+                in.readUnsignedShort(); // name
+                descriptorIndexes.add(in.readUnsignedShort());
+                skipAttributes(in);
+            }
+        }
+
+        Set<String> references = new HashSet<>();
+        for (int index : classNameIndex) {
+            String name = index > 0 ? utf8[index] : null;
+            // Array classes appear as descriptors, e.g. [Lcom/x/Foo;
+            if (name != null && name.startsWith("[")) {
+                addDescriptorTypes(name, references);
+            } else if (name != null) {
+                references.add(name);
+            }
+        }
+        for (int index : descriptorIndexes) {
+            if (utf8[index] != null) {
+                addDescriptorTypes(utf8[index], references);
+            }
+        }
+
+        // A class referencing itself is not interesting
+        references.remove(utf8[classNameIndex[thisClass]]);
+        return references;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            in.readUnsignedShort(); // name
+            long length = Integer.toUnsignedLong(in.readInt());
+            in.skipNBytes(length);
+        }
+    }
+
+    /**
+     * Extract class names from a field or method descriptor, e.g.
+     * (Ljava/lang/String;[Lcom/x/Foo;)V → java/lang/String, com/x/Foo
+     */
+    private static void addDescriptorTypes(String descriptor, Set<String> references) {
+        int i = 0;
+        while ((i = descriptor.indexOf('L', i)) != -1) {
+            int end = descriptor.indexOf(';', i);
+            if (end == -1) {
+                return;
+            }
+            references.add(descriptor.substring(i + 1, end));
+            i = end + 1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * DependencyAnalyzer finds out which declared dependencies a target really uses.
+ *
+ * It reads every .class file in the target's jar, collects the classes they
+ * reference (ClassReferenceReader), and checks which dependency jars define
+ * any of those classes. Dependencies that define none are unused.
+ */
+public class DependencyAnalyzer {
+
+    private final ClassReferenceReader reader = new ClassReferenceReader();
+
+    /**
+     * @param targetName   name of the analysed target
+     * @param targetJar    the target's own jar
+     * @param dependencies declared dependency name → its jar, in manifest order
+     * @return used / unused split of the declared dependencies
+     */
+    public DependencyUsage analyze(String targetName, Path targetJar, Map<String, Path> dependencies) {
+        Set<String> referenced = referencedClasses(targetJar);
+
+        DependencyUsage usage = new DependencyUsage();
+        usage.target = targetName;
+
+        for (Map.Entry<String, Path> dep : dependencies.entrySet()) {
+            usage.declared.add(dep.getKey());
+
+            boolean used = definedClasses(dep.getValue()).stream().anyMatch(referenced::contains);
+            if (used) {
+                usage.used.add(dep.getKey());
+            } else {
+                usage.unused.add(dep.getKey());
+            }
+        }
+
+        return usage;
+    }
+
+    /**
+     * All classes referenced from the classes in a jar.
+     */
+    private Set<String> referencedClasses(Path jar) {
+        Set<String> referenced = new HashSet<>();
+
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    referenced.addAll(reader.readReferences(in));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to analyse jar: " + jar, e);
+        }
+
+        return referenced;
+    }
+
+    /**
+     * Internal names of the classes a jar defines, e.g. com/example/auth/AuthService.
+     */
+    private Set<String> definedClasses(Path jar) {
+        Set<String> defined = new HashSet<>();
+
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            jarFile.stream()
+                    .map(JarEntry::getName)
+                    .filter(name -> name.endsWith(".class"))
+                    .forEach(name -> defined.add(name.substring(0, name.length() - ".class".length())));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read jar: " + jar, e);
+        }
+
+        return defined;
+    }
+}
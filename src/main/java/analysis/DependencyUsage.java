@@ -0,0 +1,64 @@
+package analysis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which declared dependencies a target's bytecode actually references.
+ *
+ * Written by the build next to the target's jar (build/<name>/dependency-usage.json)
+ * and read back by the next build and by the runtime when pruning classpaths.
+ */
+public class DependencyUsage {
+
+    public static final String FILE_NAME = "dependency-usage.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    public String target;
+    public List<String> declared = new ArrayList<>();
+    public List<String> used = new ArrayList<>();
+    public List<String> unused = new ArrayList<>();
+
+    // True if the target was built with --prune-classpath: the runtime then
+    // puts only the `used` jars on the service's classpath
+    public boolean pruneClasspath;
+
+    /**
+     * Read the usage file from a target's output directory.
+     *
+     * @return the usage, or null if there is none (or it is unreadable)
+     */
+    public static DependencyUsage read(Path outputDir) {
+        Path file = outputDir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            return MAPPER.readValue(file.toFile(), DependencyUsage.class);
+        } catch (IOException e) {
+            System.err.println("Warning: Ignoring unreadable " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write this usage into a target's output directory.
+     */
+    public void write(Path outputDir) {
+        try {
+            Files.createDirectories(outputDir);
+            MAPPER.writeValue(outputDir.resolve(FILE_NAME).toFile(), this);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write dependency usage for " + target + ": " + e.getMessage());
+        }
+    }
+}
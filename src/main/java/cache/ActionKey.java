@@ -0,0 +1,72 @@
+package cache;
+
+import Model.BuildTarget;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Computes the cache key of a build action (compile + package one target).
+ *
+ * The key covers everything that can change the produced jar:
+ *   - target name and type
+ *   - relative path + content of every source file
+ *   - the action keys of the dependencies (not their jar digests, so a
+ *     rebuilt but identical dependency does not invalidate dependents)
+ *   - the javac feature version
+ *
+ * Because it only looks at inputs, keys for the whole graph can be computed
+ * before anything is built.
+ */
+public final class ActionKey {
+
+    private static final String VERSION = "mycoq-action-v1";
+
+    private ActionKey() {
+    }
+
+    /**
+     * @param target         target being built
+     * @param sources        its .java files
+     * @param dependencyKeys action keys of its dependencies, in manifest order
+     * @return hex SHA-256 action key
+     */
+    public static String compute(BuildTarget target, List<Path> sources, List<String> dependencyKeys) {
+        MessageDigest digest = Digests.newDigest();
+
+        update(digest, VERSION);
+        update(digest, target.getName());
+        update(digest, String.valueOf(target.getType()));
+        update(digest, String.valueOf(Runtime.version().feature()));
+
+        // Sort by relative path so the key does not depend on directory walk order
+        List<Path> sorted = sources.stream()
+                .sorted()
+                .toList();
+
+        for (Path source : sorted) {
+            update(digest, target.getSourceDir().relativize(source).toString().replace("\\", "/"));
+            try {
+                update(digest, Digests.sha256(Files.readAllBytes(source)));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read source: " + source, e);
+            }
+        }
+
+        for (String dependencyKey : dependencyKeys) {
+            update(digest, dependencyKey);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
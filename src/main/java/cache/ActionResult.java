@@ -0,0 +1,11 @@
+package cache;
+
+/**
+ * Action cache entry: maps an action key to the content digest of the jar it produced.
+ * Stored as JSON under /ac/<actionKey>; the jar itself lives under /cas/<jarDigest>.
+ */
+public class ActionResult {
+    public String targetName;
+    public String jarDigest;
+    public long jarSize;
+}
@@ -0,0 +1,152 @@
+package cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Small embedded HTTP server implementing the remote cache protocol
+ * (see RemoteCacheClient) on top of a local directory.
+ *
+ * It is a stand-in for a real shared cache so the whole flow can be tried
+ * on one offline machine:
+ *   terminal 1: mycoq cache-server
+ *   terminal 2: mycoq build --remote-cache http://localhost:8765
+ *
+ * Nothing is authenticated and action results are stored as sent, so
+ * anyone who can reach the port can point builds at a jar of theirs. The
+ * server therefore only listens on loopback unless told to (bindAll).
+ *
+ * Layout on disk:
+ *   <storageDir>/ac/<actionKey>   action results (JSON)
+ *   <storageDir>/cas/<sha256>     blobs (jars)
+ */
+public class CacheServer {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private final Path storageDir;
+    private final int port;
+
+    // Listen on all interfaces instead of loopback only
+    private final boolean bindAll;
+
+    private HttpServer server;
+    private ExecutorService workers;
+
+    public CacheServer(Path storageDir, int port) {
+        this(storageDir, port, false);
+    }
+
+    public CacheServer(Path storageDir, int port, boolean bindAll) {
+        this.storageDir = storageDir;
+        this.port = port;
+        this.bindAll = bindAll;
+    }
+
+    /**
+     * Bind the port and start serving requests on background threads.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(storageDir.resolve("ac"));
+        Files.createDirectories(storageDir.resolve("cas"));
+
+        InetSocketAddress address = bindAll
+                ? new InetSocketAddress(port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        server = HttpServer.create(address, 0);
+        server.createContext("/ac/", exchange -> handle(exchange, "ac", false));
+        server.createContext("/cas/", exchange -> handle(exchange, "cas", true));
+
+        workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    /**
+     * Stop the server and its worker threads.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Actual bound port (useful when started with port 0).
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public Path getStorageDir() {
+        return storageDir;
+    }
+
+    private void handle(HttpExchange exchange, String namespace, boolean verifyDigest) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String key = path.substring(path.lastIndexOf('/') + 1);
+
+            // Keys are always hex digests - this also rules out path traversal
+            if (!Digests.isSha256(key)) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            Path file = storageDir.resolve(namespace).resolve(key);
+
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> serveGet(exchange, file);
+                case "HEAD" -> exchange.sendResponseHeaders(Files.exists(file) ? 200 : 404, -1);
+                case "PUT" -> servePut(exchange, file, verifyDigest ? key : null);
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private void serveGet(HttpExchange exchange, Path file) throws IOException {
+        if (!Files.exists(file)) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        byte[] body = Files.readAllBytes(file);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void servePut(HttpExchange exchange, Path file, String expectedDigest) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+
+        if (expectedDigest != null && !Digests.sha256(body).equals(expectedDigest)) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        // Write to a temp file and rename, so concurrent readers never see partial blobs
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        Files.write(tmp, body);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        exchange.sendResponseHeaders(204, -1);
+    }
+}
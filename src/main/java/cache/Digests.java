@@ -0,0 +1,59 @@
+package cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 helpers used to address cache entries by content.
+ */
+public final class Digests {
+
+    private Digests() {
+    }
+
+    /**
+     * Hex SHA-256 of a file's contents.
+     */
+    public static String sha256(Path file) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to digest file: " + file, e);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hex SHA-256 of a byte array.
+     */
+    public static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    /**
+     * True if the string looks like a hex SHA-256 (64 lowercase hex chars).
+     */
+    public static boolean isSha256(String value) {
+        return value != null && value.matches("[0-9a-f]{64}");
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for the HTTP remote build cache.
+ *
+ * Protocol (served by CacheServer, or anything speaking the same paths):
+ *   GET /ac/<actionKey>   → ActionResult JSON, 404 on miss
+ *   PUT /ac/<actionKey>   ← ActionResult JSON
+ *   GET /cas/<sha256>     → blob bytes, 404 on miss
+ *   PUT /cas/<sha256>     ← blob bytes (server verifies the digest)
+ *
+ * The cache is best-effort: network or server errors are reported as
+ * warnings and treated as misses, they never fail the build.
+ */
+public class RemoteCacheClient {
+
+    private final URI baseUri;
+    private final HttpClient http;
+    private final ObjectMapper mapper;
+
+    // Uploads run here so compiling the next target is not blocked on the network
+    private final ExecutorService uploader;
+    private final List<CompletableFuture<Void>> pendingUploads;
+
+    public RemoteCacheClient(String baseUrl) {
+        this.baseUri = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.mapper = new ObjectMapper();
+        this.uploader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "remote-cache-upload");
+            t.setDaemon(true);
+            return t;
+        });
+        this.pendingUploads = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Look up an action and, on a hit, download its jar to jarPath.
+     * All HTTP calls are asynchronous, so callers can fire one lookup per
+     * target and wait for them together.
+     *
+     * @return future completing with true on a hit (jar written), false on a miss
+     */
+    public CompletableFuture<Boolean> fetch(String actionKey, Path jarPath) {
+        HttpRequest acRequest = HttpRequest.newBuilder(baseUri.resolve("ac/" + actionKey))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        return http.sendAsync(acRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenCompose(acResponse -> {
+                    if (acResponse.statusCode() != 200) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+
+                    ActionResult result;
+                    try {
+                        result = mapper.readValue(acResponse.body(), ActionResult.class);
+                    } catch (IOException e) {
+                        System.err.println("[cache] Warning: Corrupt action entry " + actionKey + ": " + e.getMessage());
+                        return CompletableFuture.completedFuture(false);
+                    }
+
+                    return fetchBlob(result, jarPath);
+                })
+                .exceptionally(e -> {
+                    System.err.println("[cache] Warning: Remote lookup failed for " + jarPath.getFileName()
+                            + ": " + e.getMessage());
+                    return false;
+                });
+    }
+
+    /**
+     * Upload a freshly built jar in the background (CAS blob first, then the
+     * action entry pointing at it, so readers never see a dangling entry).
+     */
+    public void uploadAsync(String actionKey, String targetName, Path jarPath) {
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> {
+            try {
+                byte[] jarBytes = Files.readAllBytes(jarPath);
+                String jarDigest = Digests.sha256(jarBytes);
+
+                put("cas/" + jarDigest, jarBytes);
+
+                ActionResult result = new ActionResult();
+                result.targetName = targetName;
+                result.jarDigest = jarDigest;
+                result.jarSize = jarBytes.length;
+                put("ac/" + actionKey, mapper.writeValueAsBytes(result));
+
+                System.out.println("[cache] Uploaded: " + targetName);
+            } catch (Exception e) {
+                System.err.println("[cache] Warning: Upload failed for " + targetName + ": " + e.getMessage());
+            }
+        }, uploader);
+
+        pendingUploads.add(upload);
+    }
+
+    /**
+     * Wait for background uploads to finish (called at the end of a build so
+     * the CLI does not exit with uploads in flight).
+     */
+    public void awaitUploads(Duration timeout) {
+        try {
+            CompletableFuture.allOf(pendingUploads.toArray(new CompletableFuture<?>[0]))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.err.println("[cache] Warning: Not all uploads finished: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the upload thread. Pending uploads are abandoned.
+     */
+    public void close() {
+        uploader.shutdownNow();
+    }
+
+    private CompletableFuture<Boolean> fetchBlob(ActionResult result, Path jarPath) {
+        if (!Digests.isSha256(result.jarDigest)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        HttpRequest casRequest = HttpRequest.newBuilder(baseUri.resolve("cas/" + result.jarDigest))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+
+        return http.sendAsync(casRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(casResponse -> {
+                    if (casResponse.statusCode() != 200) {
+                        return false;
+                    }
+
+                    byte[] jarBytes = casResponse.body();
+                    if (!Digests.sha256(jarBytes).equals(result.jarDigest)) {
+                        System.err.println("[cache] Warning: Digest mismatch for blob " + result.jarDigest);
+                        return false;
+                    }
+
+                    writeAtomically(jarPath, jarBytes);
+                    return true;
+                });
+    }
+
+    private void put(String path, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("PUT /" + path + " returned HTTP " + response.statusCode());
+        }
+    }
+
+    private static void writeAtomically(Path target, byte[] data) {
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write cached artifact: " + target, e);
+        }
+    }
+}
@@ -1,24 +1,57 @@
 package cli;
 
+import cache.CacheServer;
 import cli.commands.*;
+import exec.BuildOptions;
+import runtime.RuntimeOptions;
+import runtime.SamplingProfiler;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Parses command-line arguments and creates appropriate Command objects.
  */
 public class CommandParser {
 
+    // Flags that take a value, given as "--flag value" or "--flag=value"
+    private static final Set<String> VALUE_FLAGS = Set.of(
+            "--remote-cache",
+            "--jobs",
+            "--heap-budget",
+            "--workers",
+            "--worker-heap",
+            "--worker-max-requests",
+            "--port",
+            "--dir",
+            "--threshold",
+            "--threads",
+            "--metrics-port",
+            "--fork-pool",
+            "--replicas",
+            "--duration",
+            "--rate",
+            "--output",
+            "--lines",
+            "--executor-limit");
+
     private Path workspaceRoot;
     private Path manifestDir;
     private boolean verbose;
+    private final Map<String, String> options;
 
     public CommandParser(Path workspaceRoot, Path manifestDir) {
         this.workspaceRoot = workspaceRoot;
         this.manifestDir = manifestDir;
         this.verbose = false;
+        this.options = new HashMap<>();
     }
 
     /**
@@ -36,31 +69,67 @@ public class CommandParser {
         String commandName = args[0].toLowerCase();
         List<String> remainingArgs = Arrays.asList(args).subList(1, args.length);
 
-        // Parse flags from remaining args
-        parseFlags(remainingArgs);
-
-        // Remove flags from args to get positional arguments
-        List<String> positionalArgs = remainingArgs.stream()
-                .filter(arg -> !arg.startsWith("--"))
-                .toList();
+        // Parse flags from remaining args; whatever is left is positional
+        List<String> positionalArgs = parseFlags(remainingArgs);
 
         return switch (commandName) {
             case "build" -> {
                 String target = positionalArgs.isEmpty() ? null : positionalArgs.get(0);
-                yield new BuildCommand(workspaceRoot, manifestDir, target, verbose);
+                yield new BuildCommand(workspaceRoot, manifestDir, target, verbose, buildOptions());
             }
             case "clean" -> new CleanCommand(workspaceRoot, verbose);
             case "list" -> new ListCommand(workspaceRoot, manifestDir, verbose);
             case "graph" -> new GraphCommand(workspaceRoot, manifestDir, verbose);
             case "run" -> {
                 String service = positionalArgs.isEmpty() ? null : positionalArgs.get(0);
-                yield new RunCommand(workspaceRoot, manifestDir, service);
+                yield new RunCommand(workspaceRoot, manifestDir, service, runtimeOptions());
             }
-            case "status" -> new StatusCommand(workspaceRoot, manifestDir);
+            case "host" -> new HostCommand(workspaceRoot, manifestDir, runtimeOptions());
+            case "status" -> new StatusCommand(workspaceRoot, manifestDir, options.containsKey("--metrics"));
             case "stop" -> {
                 String service = positionalArgs.isEmpty() ? null : positionalArgs.get(0);
                 yield new StopCommand(workspaceRoot, manifestDir, service);
             }
+            case "scale" -> {
+                if (positionalArgs.size() != 2) {
+                    throw new IllegalArgumentException("Usage: scale <service> <replicas>");
+                }
+                yield new ScaleCommand(workspaceRoot, positionalArgs.get(0), parseCount(positionalArgs.get(1)));
+            }
+            case "logs" -> {
+                if (positionalArgs.size() != 1) {
+                    throw new IllegalArgumentException("Usage: logs <service> [--lines <n>] [--follow]");
+                }
+                yield new LogsCommand(workspaceRoot, positionalArgs.get(0),
+                        intOption("--lines", 20), options.containsKey("--follow"));
+            }
+            case "profile" -> {
+                if (positionalArgs.size() != 1) {
+                    throw new IllegalArgumentException("Usage: profile <service> [--duration 30s] [--rate 49]");
+                }
+                yield new ProfileCommand(workspaceRoot, positionalArgs.get(0),
+                        options.containsKey("--duration") ? parseDuration(options.get("--duration")) : Duration.ofSeconds(30),
+                        intOption("--rate", SamplingProfiler.DEFAULT_RATE),
+                        options.containsKey("--output") ? Path.of(options.get("--output")) : null);
+            }
+            case "stats" -> {
+                double threshold = doubleOption("--threshold", 20);
+                if (!options.containsKey("--compare")) {
+                    yield new StatsCommand(workspaceRoot, null, null, threshold);
+                }
+                if (positionalArgs.size() != 2) {
+                    throw new IllegalArgumentException("Usage: stats --compare <runA> <runB>");
+                }
+                yield new StatsCommand(workspaceRoot,
+                        parseRunId(positionalArgs.get(0)), parseRunId(positionalArgs.get(1)), threshold);
+            }
+            case "cache-server" -> {
+                Path storageDir = options.containsKey("--dir")
+                        ? Path.of(options.get("--dir"))
+                        : Paths.get(System.getProperty("user.home"), ".mycoq", "cache-server");
+                yield new CacheServerCommand(storageDir, intOption("--port", CacheServer.DEFAULT_PORT),
+                        options.containsKey("--bind-all"));
+            }
             case "help", "--help", "-h" -> new HelpCommand();
             default -> throw new IllegalArgumentException(
                     "Unknown command: " + commandName + "\nUse 'help' to see available commands.");
@@ -69,13 +138,144 @@ public class CommandParser {
 
     /**
      * Parse flags from arguments.
+     *
+     * @return the remaining positional arguments
      */
-    private void parseFlags(List<String> args) {
-        for (String arg : args) {
+    private List<String> parseFlags(List<String> args) {
+        List<String> positional = new ArrayList<>();
+
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+
             if (arg.equals("--verbose") || arg.equals("-v")) {
                 verbose = true;
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            } else if (VALUE_FLAGS.contains(arg)) {
+                if (i + 1 >= args.size()) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                options.put(arg, args.get(++i));
+            } else if (arg.startsWith("--")) {
+                options.put(arg, "true");
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        return positional;
+    }
+
+    /**
+     * Build options from parsed flags.
+     */
+    private BuildOptions buildOptions() {
+        BuildOptions buildOptions = new BuildOptions();
+        buildOptions.setRemoteCacheUrl(options.get("--remote-cache"));
+        buildOptions.setPruneClasspath(options.containsKey("--prune-classpath"));
+        buildOptions.setPackClasses(options.containsKey("--pack-classes"));
+        buildOptions.setJfr(options.containsKey("--jfr"));
+        buildOptions.setWorkers(intOption("--workers", 0));
+        buildOptions.setJobs(intOption("--jobs", 0));
+        if (options.containsKey("--heap-budget")) {
+            buildOptions.setHeapBudgetBytes(BuildOptions.parseSize(options.get("--heap-budget")));
+        }
+        buildOptions.setWorkerMaxRequests(intOption("--worker-max-requests", buildOptions.getWorkerMaxRequests()));
+        if (options.containsKey("--worker-heap")) {
+            buildOptions.setWorkerHeap(options.get("--worker-heap"));
+        }
+        return buildOptions;
+    }
+
+    /**
+     * Runtime options (run, host) from parsed flags.
+     */
+    private RuntimeOptions runtimeOptions() {
+        RuntimeOptions runtimeOptions = new RuntimeOptions();
+        runtimeOptions.setThreads(options.get("--threads"));
+        runtimeOptions.setPackedClasses(options.containsKey("--packed"));
+        runtimeOptions.setWatch(options.containsKey("--watch"));
+        runtimeOptions.setPreloadClasses(!options.containsKey("--no-preload"));
+        if (options.containsKey("--metrics-port")) {
+            runtimeOptions.setMetricsPort(intOption("--metrics-port", 0));
+        }
+        runtimeOptions.setFork(options.containsKey("--fork"));
+        runtimeOptions.setJfr(options.containsKey("--jfr"));
+        runtimeOptions.setForkPoolSize(intOption("--fork-pool", 0));
+        runtimeOptions.setExecutorLimit(intOption("--executor-limit", 0));
+        runtimeOptions.setBuild(options.containsKey("--build"));
+        runtimeOptions.setReplicas(intOption("--replicas", 0));
+        if (options.containsKey("--port")) {
+            runtimeOptions.setPort(intOption("--port", 0));
+        }
+        return runtimeOptions;
+    }
+
+    /**
+     * Integer value of a flag, or the default when it is absent.
+     */
+    private int intOption(String flag, int defaultValue) {
+        String value = options.get(flag);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + flag + ": " + value);
+        }
+    }
+
+    /**
+     * Decimal value of a flag, or the default when it is absent.
+     */
+    private double doubleOption(String flag, double defaultValue) {
+        String value = options.get(flag);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + flag + ": " + value);
+        }
+    }
+
+    private static int parseRunId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid build run id: " + value);
+        }
+    }
+
+    /**
+     * Duration like "30s", "500ms", "2m" or plain seconds.
+     */
+    private static Duration parseDuration(String value) {
+        String duration = value.trim().toLowerCase();
+        try {
+            if (duration.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(duration.substring(0, duration.length() - 2)));
+            } else if (duration.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(duration.substring(0, duration.length() - 1)));
+            } else if (duration.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(duration.substring(0, duration.length() - 1)));
             }
-            // Future: add more flags like --workspace, --manifest-dir
+            return Duration.ofSeconds(Long.parseLong(duration));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + value);
+        }
+    }
+
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid replica count: " + value);
         }
     }
 }
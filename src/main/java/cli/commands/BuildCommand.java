@@ -1,38 +1,63 @@
 package cli.commands;
 
+import exec.BuildOptions;
+import jfr.FlightRecording;
 import org.example.BuildManager;
 
 import java.nio.file.Path;
 
 /**
  * Builds all targets or a specific target.
+ * With --jfr the build is recorded with JDK Flight Recorder.
  */
 public class BuildCommand implements Command {
 
     private final Path workspaceRoot;
     private final Path manifestDir;
     private final String targetName;
+    private final BuildOptions options;
 
     public BuildCommand(Path workspaceRoot, Path manifestDir, String targetName, boolean verbose) {
+        this(workspaceRoot, manifestDir, targetName, verbose, new BuildOptions());
+    }
+
+    public BuildCommand(Path workspaceRoot, Path manifestDir, String targetName, boolean verbose,
+                        BuildOptions options) {
         this.workspaceRoot = workspaceRoot;
         this.manifestDir = manifestDir;
         this.targetName = targetName;
+        this.options = options;
     }
 
     @Override
     public void execute() throws Exception {
+        if (!options.isJfr()) {
+            build();
+            return;
+        }
+
+        FlightRecording recording = FlightRecording.start(workspaceRoot,
+                targetName == null ? "build" : "build-" + targetName);
+        try {
+            build();
+        } finally {
+            recording.close();
+        }
+    }
+
+    private void build() throws Exception {
         BuildManager manager = new BuildManager();
 
         if (targetName == null) {
             // Build all targets
             System.out.println("Building all targets...");
             System.out.println();
-            manager.build(workspaceRoot, manifestDir);
+            manager.build(workspaceRoot, manifestDir, options);
         } else {
             // Build specific target
             System.out.println("Building target: " + targetName);
             System.out.println();
-            manager.buildTarget(workspaceRoot, manifestDir, targetName);
+            manager.buildTarget(workspaceRoot, manifestDir, targetName, options);
         }
     }
 }
@@ -0,0 +1,42 @@
+package cli.commands;
+
+import cache.CacheServer;
+
+import java.nio.file.Path;
+
+/**
+ * CacheServerCommand starts the embedded remote build cache server.
+ *
+ * Usage: mycoq cache-server [--port <port>] [--dir <storage-dir>] [--bind-all]
+ * Example: mycoq cache-server --port 8765
+ *
+ * The server listens on loopback only; --bind-all makes it reachable from
+ * the network (it has no authentication, see CacheServer).
+ */
+public class CacheServerCommand implements Command {
+
+    private final Path storageDir;
+    private final int port;
+    private final boolean bindAll;
+
+    public CacheServerCommand(Path storageDir, int port, boolean bindAll) {
+        this.storageDir = storageDir;
+        this.port = port;
+        this.bindAll = bindAll;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        CacheServer server = new CacheServer(storageDir, port, bindAll);
+        server.start();
+
+        System.out.println("Remote cache server listening on http://localhost:" + server.getPort()
+                + (bindAll ? " (all interfaces, unauthenticated)" : " (loopback only)"));
+        System.out.println("Storage: " + storageDir.toAbsolutePath());
+        System.out.println("\nBuild against it with: mycoq build --remote-cache http://localhost:" + server.getPort());
+        System.out.println("\nPress Ctrl+C to stop.\n");
+
+        // Serve until the process is killed
+        Thread.currentThread().join();
+    }
+}
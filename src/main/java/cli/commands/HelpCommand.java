@@ -24,16 +24,78 @@ public class HelpCommand implements Command {
         System.out.println();
         System.out.println("  run <service>     Run a service (starts the runtime engine)");
         System.out.println("                    Example: run payment-service");
+        System.out.println("  run <bundle>      Run all services of a COMPOSITE bundle, in dependency order");
+        System.out.println("                    Example: run payments-bundle");
+        System.out.println();
+        System.out.println("  host              Start a runtime host; run, stop and status then act on it");
+        System.out.println("                    (the first run in a workspace also becomes the host)");
         System.out.println();
         System.out.println("  status            Show status of all running services");
+        System.out.println("  status --metrics  Show CPU, allocations, classes and threads per service");
         System.out.println();
         System.out.println("  stop <service>    Stop a running service");
         System.out.println("                    Example: stop payment-service");
         System.out.println();
+        System.out.println("  scale <service> <n>");
+        System.out.println("                    Change the number of replicas of a service");
+        System.out.println("                    Example: scale payment-service 5");
+        System.out.println();
+        System.out.println("  logs <service>    Show the output of a service (.mycoq/logs/<service>.log)");
+        System.out.println("                    Example: logs payment-service --follow");
+        System.out.println();
+        System.out.println("  profile <service> Sample the service's stacks into a flame graph file");
+        System.out.println("                    Example: profile payment-service --duration 30s --rate 99");
+        System.out.println();
+        System.out.println("  stats             Show build time trends, percentiles and slowest targets");
+        System.out.println("  stats --compare <runA> <runB>");
+        System.out.println("                    Compare two builds and flag regressed targets");
+        System.out.println("                    Example: stats --compare 12 15 --threshold 25");
+        System.out.println();
+        System.out.println("  cache-server      Start the embedded remote build cache server");
+        System.out.println("                    Example: cache-server --port 8765 --dir /tmp/cache");
+        System.out.println("                    Listens on loopback only; --bind-all listens on the network");
+        System.out.println();
         System.out.println("  help              Show this help message");
         System.out.println();
         System.out.println("OPTIONS:");
         System.out.println("  --verbose, -v     Enable verbose output");
+        System.out.println("  --remote-cache <url>");
+        System.out.println("                    Use an HTTP remote build cache (build)");
+        System.out.println("  --jobs <n>        Build at most n targets at once (build, default: CPUs)");
+        System.out.println("  --heap-budget <size>");
+        System.out.println("                    Heap concurrent compiles may use, e.g. 2g (build)");
+        System.out.println("  --prune-classpath Only put dependencies the bytecode uses on the");
+        System.out.println("                    javac and runtime classpath (build)");
+        System.out.println("  --pack-classes    Also write a memory-mappable class pack per service (build)");
+        System.out.println("  --packed          Load service classes from their class pack (run)");
+        System.out.println("  --watch           Reload services when their jars are rebuilt (run)");
+        System.out.println("  --build           Build first and start from the compiled classes in memory;");
+        System.out.println("                    jars are written in the background (run)");
+        System.out.println("  --no-preload      Don't record or preload startup class profiles (run)");
+        System.out.println("  --metrics-port <port>");
+        System.out.println("                    Serve Prometheus metrics at /metrics (run, host)");
+        System.out.println("  --fork            Run the service in its own pre-booted JVM (run)");
+        System.out.println("  --fork-pool <n>   Worker JVMs kept booted for --fork, default 2 (run, host)");
+        System.out.println("  --replicas <n>    Run n instances behind a load balancer (run)");
+        System.out.println("  --executor-limit <n>");
+        System.out.println("                    Tasks one service's managed executor runs at once,");
+        System.out.println("                    default 64 (run, host)");
+        System.out.println("  --port <port>     Port of the load balancer (run --replicas) or of the");
+        System.out.println("                    cache server (cache-server)");
+        System.out.println("  --workers <n>     Compile on n persistent javac worker JVMs (build)");
+        System.out.println("  --worker-heap <size>");
+        System.out.println("                    Max heap of each worker JVM, e.g. 1g (build)");
+        System.out.println("  --threads <mode>  Run services on platform or virtual threads (run);");
+        System.out.println("                    per service: --threads virtual,payment-service=platform");
+        System.out.println("  --lines <n>       Lines of output to show (logs, default: 20)");
+        System.out.println("  --follow          Keep printing new output (logs)");
+        System.out.println("  --duration <time> How long to profile, e.g. 30s, 2m (profile, default: 30s)");
+        System.out.println("  --rate <n>        Samples per second per thread (profile, default: 49)");
+        System.out.println("  --output <file>   Collapsed stacks file (profile, default: .mycoq/profiles/)");
+        System.out.println("  --jfr             Record the command with JDK Flight Recorder into");
+        System.out.println("                    .mycoq/recordings/ (build, run, host)");
+        System.out.println("  --threshold <pct> Slowdown reported as a regression (stats --compare,");
+        System.out.println("                    default: 20)");
         System.out.println();
         System.out.println("EXAMPLES:");
         System.out.println("  # Build all targets");
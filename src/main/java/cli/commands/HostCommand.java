@@ -0,0 +1,55 @@
+package cli.commands;
+
+import runtime.HostClient;
+import runtime.RuntimeOptions;
+
+import java.nio.file.Path;
+
+/**
+ * HostCommand starts a runtime host with no services yet; services are then
+ * started with mycoq run from any terminal.
+ *
+ * Usage: mycoq host [--threads <mode>] [--packed] [--watch] [--no-preload] [--metrics-port <port>]
+ *                   [--fork-pool <n>] [--jfr] [--executor-limit <n>]
+ */
+public class HostCommand implements Command {
+
+    private final Path workspaceRoot;
+    private final RunCommand runtime;
+
+    /**
+     * Options are the same as run's and apply to every service the host runs.
+     */
+    public HostCommand(Path workspaceRoot, Path manifestDir, RuntimeOptions options) {
+        this.workspaceRoot = workspaceRoot;
+        this.runtime = new RunCommand(workspaceRoot, manifestDir, null, options);
+    }
+
+    @Override
+    public void execute() throws Exception {
+        if (HostClient.forWorkspace(workspaceRoot).isHostRunning()) {
+            System.err.println("Error: A runtime host is already running in this workspace");
+            return;
+        }
+
+        runtime.startHost(runtime.createRuntime());
+
+        System.out.println("Runtime host started (PID " + ProcessHandle.current().pid() + ")");
+        System.out.println("Start services with: mycoq run <service>");
+        System.out.println("\nPress Ctrl+C to stop all services and exit.\n");
+
+        // Serve until the process is killed
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Print a host's answer: output to stdout, errors to stderr.
+     */
+    static void print(HostClient.Response response) {
+        if (response.ok()) {
+            System.out.print(response.body());
+        } else {
+            System.err.println("Error: " + response.body().trim());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package cli.commands;
+
+import runtime.ServiceOutput;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * LogsCommand shows the output of a service from its log file in
+ * .mycoq/logs/ (see runtime.ServiceOutput), optionally following it.
+ *
+ * Usage: mycoq logs <service-name> [--lines <n>] [--follow]
+ * Example: mycoq logs payment-service --follow
+ *
+ * A service run with --replicas has one log per replica; logs of the
+ * service shows all of them, each line prefixed with the replica.
+ */
+public class LogsCommand implements Command {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final Path workspaceRoot;
+    private final String serviceName;
+    private final int lines;
+    private final boolean follow;
+
+    public LogsCommand(Path workspaceRoot, String serviceName, int lines, boolean follow) {
+        this.workspaceRoot = workspaceRoot;
+        this.serviceName = serviceName;
+        this.lines = lines;
+        this.follow = follow;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        List<Path> files = logFiles();
+        if (files.isEmpty()) {
+            System.err.println("Error: No output logged for " + serviceName);
+            System.err.println("Logs are written to " + ServiceOutput.logDirFor(workspaceRoot).normalize()
+                    + " while the service runs");
+            return;
+        }
+
+        List<Tail> tails = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Tail tail = new Tail(file, files.size() > 1 ? "[" + name.substring(0, name.length() - 4) + "] " : "");
+            tail.printLast(lines);
+            tails.add(tail);
+        }
+
+        while (follow) {
+            Thread.sleep(POLL_MILLIS);
+            for (Tail tail : tails) {
+                tail.printNew();
+            }
+        }
+    }
+
+    /**
+     * <service>.log, or the logs of its replicas (<service>#1.log, ...).
+     */
+    private List<Path> logFiles() throws IOException {
+        Path dir = ServiceOutput.logDirFor(workspaceRoot);
+        Path single = dir.resolve(serviceName + ".log");
+        if (Files.exists(single)) {
+            return List.of(single);
+        }
+
+        List<Path> replicas = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, serviceName + "#*.log")) {
+                stream.forEach(replicas::add);
+            }
+        }
+        replicas.sort(null);
+        return replicas;
+    }
+
+    /**
+     * Read position in one log file.
+     */
+    private static final class Tail {
+
+        private final Path file;
+        private final String prefix;
+        private long position;
+        private String partial = "";
+
+        Tail(Path file, String prefix) {
+            this.file = file;
+            this.prefix = prefix;
+        }
+
+        void printLast(int count) throws IOException {
+            Deque<String> last = new ArrayDeque<>();
+            long size = Files.size(file);
+            // Only the end of a large log is needed
+            long start = Math.max(0, size - Math.max(count, 1) * 1024L);
+            String[] text = read(start, size).split("\n", -1);
+            for (int i = start > 0 ? 1 : 0; i < text.length; i++) { // skip a line cut off by start
+                last.addLast(text[i]);
+                if (last.size() > count + 1) {
+                    last.removeFirst();
+                }
+            }
+            partial = last.isEmpty() ? "" : last.removeLast(); // after the last newline
+            last.forEach(line -> System.out.println(prefix + line));
+            position = size;
+        }
+
+        void printNew() throws IOException {
+            if (!Files.exists(file)) {
+                return; // being rotated
+            }
+            long size = Files.size(file);
+            if (size < position) {
+                position = 0; // rotated: a new file started
+                partial = "";
+            }
+            if (size == position) {
+                return;
+            }
+
+            String[] chunk = (partial + read(position, size)).split("\n", -1);
+            for (int i = 0; i < chunk.length - 1; i++) {
+                System.out.println(prefix + chunk[i]);
+            }
+            partial = chunk[chunk.length - 1];
+            position = size;
+        }
+
+        private String read(long from, long to) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+                byte[] bytes = new byte[(int) (to - from)];
+                in.seek(from);
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cli.commands;
+
+import runtime.HostClient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * ProfileCommand samples the stacks of one running service for a while, by
+ * asking the workspace's runtime host, and writes them as collapsed stacks
+ * for flame graph tools.
+ *
+ * Usage: mycoq profile <service-name> [--duration 30s] [--rate 49] [--output <file>]
+ * Example: mycoq profile payment-service --duration 1m
+ */
+public class ProfileCommand implements Command {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path workspaceRoot;
+    private final String serviceName;
+    private final Duration duration;
+    private final int samplesPerSecond;
+    private final Path output;
+
+    /**
+     * @param output collapsed stacks file, or null for .mycoq/profiles/<service>-<timestamp>.collapsed
+     */
+    public ProfileCommand(Path workspaceRoot, String serviceName, Duration duration, int samplesPerSecond, Path output) {
+        this.workspaceRoot = workspaceRoot;
+        this.serviceName = serviceName;
+        this.duration = duration;
+        this.samplesPerSecond = samplesPerSecond;
+        this.output = output;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        HostClient host = HostClient.forWorkspace(workspaceRoot);
+        if (!host.isHostRunning()) {
+            System.err.println("Error: No runtime is running in this workspace");
+            System.err.println("Services are started with: mycoq run <service-name>");
+            return;
+        }
+
+        System.out.println("Profiling " + serviceName + " for " + duration.toSeconds() + " s ("
+                + samplesPerSecond + " samples/s)...");
+        HostClient.Response response = host.send("profile " + serviceName + " " + duration.toMillis()
+                + " " + samplesPerSecond);
+        if (!response.ok()) {
+            HostCommand.print(response);
+            return;
+        }
+
+        // First line: summary; the rest: collapsed stacks
+        String body = response.body();
+        int newline = body.indexOf('\n');
+        String stacks = newline == -1 ? "" : body.substring(newline + 1);
+
+        Path file = output != null
+                ? output
+                : workspaceRoot.resolve(".mycoq").resolve("profiles")
+                        .resolve(serviceName + "-" + LocalDateTime.now().format(TIMESTAMP) + ".collapsed");
+        file = file.toAbsolutePath().normalize();
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, stacks, StandardCharsets.UTF_8);
+
+        System.out.println(newline == -1 ? body : body.substring(0, newline));
+        System.out.println("Collapsed stacks: " + file);
+        System.out.println("Flame graph:      flamegraph.pl " + file + " > " + serviceName + ".svg");
+    }
+}
@@ -1,25 +1,68 @@
 package cli.commands;
 
+import exec.BuildOptions;
+import exec.InMemoryBuild;
+import jfr.FlightRecording;
+import org.example.BuildManager;
+import runtime.ExecutionMode;
+import runtime.HostClient;
+import runtime.MetricsServer;
+import runtime.RuntimeHost;
 import runtime.RuntimeManager;
+import runtime.RuntimeOptions;
 
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
  * RunCommand starts a service using the runtime execution engine.
+ * Given a COMPOSITE bundle, it starts all of the bundle's services.
+ *
+ * The first run in a workspace becomes the runtime host (see RuntimeHost):
+ * it keeps running the services and answers stop/status from other
+ * terminals. While a host is running, run asks the host to start the
+ * service and returns.
  * 
- * Usage: mycoq run <service-name>
- * Example: mycoq run payment-service
+ * Usage: mycoq run <service-name> [--threads <mode>] [--packed] [--watch] [--no-preload]
+ *                  [--metrics-port <port>] [--fork] [--fork-pool <n>]
+ *                  [--replicas <n> [--port <port>]] [--jfr] [--executor-limit <n>] [--build]
+ * Example: mycoq run payment-service --threads virtual
+ *
+ * --fork runs the service in a JVM of its own, taken from a pool of
+ * pre-booted workers (see RuntimeManager.forkService); --fork-pool sets how
+ * many workers are kept booted.
+ *
+ * --replicas runs n instances of the service behind a load balancer on
+ * --port (see RuntimeManager.runReplicas); mycoq scale changes n later.
+ *
+ * --jfr records the runtime with JDK Flight Recorder until it exits (see
+ * jfr.FlightRecording).
+ *
+ * --build builds the service and its dependencies first, in this JVM and
+ * into memory, and starts the service from the compiled classes; the jars
+ * are written in the background (see BuildExecutor.executeInMemory). With
+ * a runtime host already running, it builds the jars and the host runs them.
+ *
+ * --threads takes a mode for all services ("platform" or "virtual"),
+ * per-service modes ("payment-service=virtual"), or both, comma-separated:
+ *   --threads virtual,payment-service=platform
  */
 public class RunCommand implements Command {
 
     private final Path workspaceRoot;
     private final Path manifestDir;
     private final String serviceName;
+    private final RuntimeOptions options;
 
     public RunCommand(Path workspaceRoot, Path manifestDir, String serviceName) {
+        this(workspaceRoot, manifestDir, serviceName, new RuntimeOptions());
+    }
+
+    public RunCommand(Path workspaceRoot, Path manifestDir, String serviceName, RuntimeOptions options) {
         this.workspaceRoot = workspaceRoot;
         this.manifestDir = manifestDir;
         this.serviceName = serviceName;
+        this.options = options;
     }
 
     @Override
@@ -31,13 +74,133 @@ public class RunCommand implements Command {
             return;
         }
 
-        RuntimeManager runtimeManager = new RuntimeManager(workspaceRoot, manifestDir);
-        runtimeManager.runService(serviceName);
+        // A runtime already running in this workspace runs the service for us
+        HostClient host = HostClient.forWorkspace(workspaceRoot);
+        if (host.isHostRunning()) {
+            if (options.isBuild()) {
+                new BuildManager().buildTarget(workspaceRoot, manifestDir, serviceName);
+            }
+            if (options.hasRuntimeSettings()) {
+                System.out.println("Note: the runtime host keeps the options it was started with");
+            }
+            HostCommand.print(host.send(request()));
+            return;
+        }
+
+        RuntimeManager runtimeManager = createRuntime();
+        if (options.isBuild()) {
+            buildInMemory(runtimeManager);
+        }
+        try {
+            startHost(runtimeManager);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not start the runtime host (" + e.getMessage()
+                    + "); stop and status won't reach these services");
+        }
+        if (options.getReplicas() > 0) {
+            runtimeManager.runReplicas(serviceName, options.getReplicas(), frontPort());
+        } else if (options.isFork()) {
+            runtimeManager.forkService(serviceName);
+        } else {
+            runtimeManager.runService(serviceName);
+        }
 
         // Keep the main thread alive so services can run
         System.out.println("\nPress Ctrl+C to stop all services and exit.\n");
 
-        // Wait indefinitely
+        // Wait until the process is asked to exit (the shutdown hook stops the services)
         Thread.currentThread().join();
     }
+
+    /**
+     * Compile the service into memory and hand the output to the runtime.
+     * A forked service loads jars in its own JVM, so it waits for them.
+     */
+    private void buildInMemory(RuntimeManager runtimeManager) throws Exception {
+        InMemoryBuild build = new BuildManager().buildInMemory(
+                workspaceRoot, manifestDir, serviceName, new BuildOptions());
+
+        if (options.isFork()) {
+            build.getArtifacts().join();
+        } else {
+            runtimeManager.useCompiledClasses(build.getOutputByTarget(), build.getArtifacts());
+        }
+    }
+
+    /**
+     * The runtime host request that runs the service with the command's options.
+     */
+    private String request() {
+        if (options.getReplicas() > 0) {
+            return "replicas " + serviceName + " " + options.getReplicas() + " " + frontPort();
+        }
+        return (options.isFork() ? "fork " : "run ") + serviceName;
+    }
+
+    private int frontPort() {
+        if (options.isFork()) {
+            throw new IllegalArgumentException("--fork and --replicas can't be combined");
+        }
+        return options.getPort() != null ? options.getPort() : 0;
+    }
+
+    /**
+     * Create this process's runtime with the command's options.
+     */
+    RuntimeManager createRuntime() throws Exception {
+        RuntimeManager runtimeManager = new RuntimeManager(workspaceRoot, manifestDir);
+        applyThreadModes(runtimeManager);
+        runtimeManager.setUsePackedClasses(options.isPackedClasses());
+        runtimeManager.setPreloadClasses(options.isPreloadClasses());
+        runtimeManager.captureOutput();
+        if (options.getExecutorLimit() > 0) {
+            runtimeManager.setExecutorLimit(options.getExecutorLimit());
+        }
+        if (options.isWatch()) {
+            runtimeManager.enableHotReload();
+        }
+        if (options.getMetricsPort() != null) {
+            runtimeManager.getMetrics().start();
+            new MetricsServer(runtimeManager.getMetrics(), options.getMetricsPort()).start();
+        }
+        if (options.getForkPoolSize() > 0) {
+            runtimeManager.enableForking(options.getForkPoolSize());
+        }
+
+        FlightRecording recording = options.isJfr()
+                ? FlightRecording.start(workspaceRoot, serviceName != null ? "run-" + serviceName : "host")
+                : null;
+
+        // Ctrl+C or kill: stop the services in order before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            runtimeManager.shutdown();
+            if (recording != null) {
+                recording.close(); // after the services' stop events, unless JFR's own exit hook ended it first
+            }
+        }, "runtime-shutdown"));
+        return runtimeManager;
+    }
+
+    /**
+     * Make a runtime the workspace's runtime host, so other mycoq commands can reach it.
+     */
+    void startHost(RuntimeManager runtimeManager) throws IOException {
+        new RuntimeHost(runtimeManager, RuntimeHost.socketFor(workspaceRoot)).start();
+    }
+
+    private void applyThreadModes(RuntimeManager runtimeManager) {
+        if (options.getThreads() == null) {
+            return;
+        }
+
+        for (String part : options.getThreads().split(",")) {
+            int eq = part.indexOf('=');
+            if (eq == -1) {
+                runtimeManager.setExecutionMode(ExecutionMode.parse(part));
+            } else {
+                runtimeManager.setExecutionMode(part.substring(0, eq).trim(),
+                        ExecutionMode.parse(part.substring(eq + 1)));
+            }
+        }
+    }
 }
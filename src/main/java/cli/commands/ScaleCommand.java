@@ -0,0 +1,37 @@
+package cli.commands;
+
+import runtime.HostClient;
+
+import java.nio.file.Path;
+
+/**
+ * ScaleCommand changes the number of replicas of a service started with
+ * run --replicas, by asking the workspace's runtime host.
+ *
+ * Usage: mycoq scale <service-name> <replicas>
+ * Example: mycoq scale payment-service 5
+ */
+public class ScaleCommand implements Command {
+
+    private final Path workspaceRoot;
+    private final String serviceName;
+    private final int replicas;
+
+    public ScaleCommand(Path workspaceRoot, String serviceName, int replicas) {
+        this.workspaceRoot = workspaceRoot;
+        this.serviceName = serviceName;
+        this.replicas = replicas;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        HostClient host = HostClient.forWorkspace(workspaceRoot);
+        if (!host.isHostRunning()) {
+            System.err.println("Error: No runtime is running in this workspace");
+            System.err.println("Replicas are started with: mycoq run <service-name> --replicas <n>");
+            return;
+        }
+
+        HostCommand.print(host.send("scale " + serviceName + " " + replicas));
+    }
+}
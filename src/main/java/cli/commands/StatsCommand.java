@@ -0,0 +1,211 @@
+package cli.commands;
+
+import history.BuildHistory;
+import history.BuildRecord;
+import history.BuildStats;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StatsCommand reports on the build history.
+ *
+ * Usage:
+ *   mycoq stats                                  (trends, percentiles, slowest targets)
+ *   mycoq stats --compare <runA> <runB> [--threshold 20]
+ */
+public class StatsCommand implements Command {
+
+    // Runs listed individually, and the window used for the trend
+    private static final int RECENT_RUNS = 10;
+    private static final int TREND_WINDOW = 5;
+    private static final int SLOWEST_TARGETS = 5;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Path workspaceRoot;
+    private final Integer compareBefore;
+    private final Integer compareAfter;
+    private final double thresholdPercent;
+
+    public StatsCommand(Path workspaceRoot) {
+        this(workspaceRoot, null, null, 20);
+    }
+
+    /**
+     * @param compareBefore    baseline run id for --compare, or null
+     * @param compareAfter     run id to check for --compare, or null
+     * @param thresholdPercent slowdown (in %) reported as a regression
+     */
+    public StatsCommand(Path workspaceRoot, Integer compareBefore, Integer compareAfter, double thresholdPercent) {
+        this.workspaceRoot = workspaceRoot;
+        this.compareBefore = compareBefore;
+        this.compareAfter = compareAfter;
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        BuildHistory history = new BuildHistory(BuildHistory.fileFor(workspaceRoot));
+        List<BuildRecord> runs = history.loadAll();
+
+        if (runs.isEmpty()) {
+            System.out.println("No build history yet. Run a build first.");
+            return;
+        }
+
+        if (compareBefore != null) {
+            compare(runs);
+        } else {
+            summary(runs);
+        }
+    }
+
+    private void summary(List<BuildRecord> runs) {
+        System.out.println("Build history: " + runs.size() + " run(s)");
+        System.out.println();
+
+        System.out.println("Recent runs:");
+        System.out.printf("  %-5s %-19s %10s %8s %10s %10s%n", "RUN", "STARTED", "DURATION", "RESULT", "CACHE", "PEAK HEAP");
+        for (BuildRecord run : runs.subList(Math.max(0, runs.size() - RECENT_RUNS), runs.size())) {
+            System.out.printf("  %-5d %-19s %10s %8s %10s %10s%n",
+                    run.runId,
+                    run.startTime != null ? TIME_FORMAT.format(run.startTime) : "-",
+                    formatMillis(run.durationMillis),
+                    run.success ? "OK" : "FAILED",
+                    run.cacheHits() + "/" + run.targets.size(),
+                    formatBytes(run.peakHeapBytes));
+        }
+        System.out.println();
+
+        // Percentiles and trend over successful runs only; failures stop early
+        List<Long> durations = runs.stream()
+                .filter(run -> run.success)
+                .map(run -> run.durationMillis)
+                .toList();
+
+        if (!durations.isEmpty()) {
+            System.out.println("Build duration (successful runs):");
+            System.out.printf("  p50 %s   p90 %s   max %s%n",
+                    formatMillis(BuildStats.percentile(durations, 50)),
+                    formatMillis(BuildStats.percentile(durations, 90)),
+                    formatMillis(BuildStats.percentile(durations, 100)));
+
+            if (durations.size() >= 2 * TREND_WINDOW) {
+                long previous = BuildStats.percentile(
+                        durations.subList(durations.size() - 2 * TREND_WINDOW, durations.size() - TREND_WINDOW), 50);
+                long latest = BuildStats.percentile(
+                        durations.subList(durations.size() - TREND_WINDOW, durations.size()), 50);
+                System.out.printf("  Trend: median of last %d runs %s vs %s before (%s)%n",
+                        TREND_WINDOW, formatMillis(latest), formatMillis(previous),
+                        formatChange(previous > 0 ? (latest - previous) * 100.0 / previous : 0));
+            }
+            System.out.println();
+        }
+
+        // Slowest targets by median duration over all runs
+        Map<String, List<BuildRecord.TargetRecord>> byTarget = new LinkedHashMap<>();
+        for (BuildRecord run : runs) {
+            for (BuildRecord.TargetRecord target : run.targets) {
+                byTarget.computeIfAbsent(target.name, name -> new ArrayList<>()).add(target);
+            }
+        }
+
+        if (byTarget.isEmpty()) {
+            return;
+        }
+
+        System.out.println("Slowest targets (median):");
+        System.out.printf("  %-25s %10s %10s %10s %10s%n", "TARGET", "p50", "p90", "CACHE HIT", "JAR");
+        byTarget.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, List<BuildRecord.TargetRecord>> e) -> medianMillis(e.getValue())).reversed())
+                .limit(SLOWEST_TARGETS)
+                .forEach(entry -> {
+                    List<BuildRecord.TargetRecord> records = entry.getValue();
+                    List<Long> millis = records.stream().map(t -> t.durationMillis).toList();
+                    long hits = records.stream().filter(t -> t.cacheHit).count();
+                    BuildRecord.TargetRecord latest = records.get(records.size() - 1);
+
+                    System.out.printf("  %-25s %10s %10s %9d%% %10s%n",
+                            entry.getKey(),
+                            formatMillis(BuildStats.percentile(millis, 50)),
+                            formatMillis(BuildStats.percentile(millis, 90)),
+                            hits * 100 / records.size(),
+                            formatBytes(latest.jarBytes));
+                });
+    }
+
+    private void compare(List<BuildRecord> runs) {
+        BuildRecord before = findRun(runs, compareBefore);
+        BuildRecord after = findRun(runs, compareAfter);
+
+        System.out.println("Comparing run " + before.runId + " → run " + after.runId
+                + " (threshold " + (int) thresholdPercent + "%)");
+        System.out.println();
+        System.out.printf("  %-25s %10s %10s %9s%n", "TARGET", "RUN " + before.runId, "RUN " + after.runId, "CHANGE");
+
+        List<BuildStats.TargetDelta> deltas = BuildStats.compare(before, after, thresholdPercent);
+        int regressions = 0;
+        for (BuildStats.TargetDelta delta : deltas) {
+            boolean inBoth = delta.beforeMillis >= 0 && delta.afterMillis >= 0;
+            System.out.printf("  %-25s %10s %10s %9s%s%n",
+                    delta.name,
+                    delta.beforeMillis >= 0 ? formatMillis(delta.beforeMillis) : "-",
+                    delta.afterMillis >= 0 ? formatMillis(delta.afterMillis) : "-",
+                    inBoth ? formatChange(delta.changePercent) : "-",
+                    delta.regressed ? "  REGRESSED" : "");
+            if (delta.regressed) {
+                regressions++;
+            }
+        }
+
+        System.out.println();
+        System.out.printf("  Total: %s → %s (%s)%n",
+                formatMillis(before.durationMillis),
+                formatMillis(after.durationMillis),
+                formatChange(before.durationMillis > 0
+                        ? (after.durationMillis - before.durationMillis) * 100.0 / before.durationMillis : 0));
+        System.out.println();
+
+        if (regressions == 0) {
+            System.out.println("No regressions.");
+        } else {
+            System.out.println(regressions + " target(s) regressed by more than " + (int) thresholdPercent + "%");
+        }
+    }
+
+    private static BuildRecord findRun(List<BuildRecord> runs, int runId) {
+        return runs.stream()
+                .filter(run -> run.runId == runId)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No build run " + runId + " (history has runs 1-" + runs.get(runs.size() - 1).runId + ")"));
+    }
+
+    private static long medianMillis(List<BuildRecord.TargetRecord> records) {
+        return BuildStats.percentile(records.stream().map(t -> t.durationMillis).toList(), 50);
+    }
+
+    private static String formatMillis(long millis) {
+        return millis >= 1000 ? String.format("%.1fs", millis / 1000.0) : millis + "ms";
+    }
+
+    private static String formatChange(double percent) {
+        return String.format("%+.0f%%", percent);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+}
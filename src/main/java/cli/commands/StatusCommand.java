@@ -1,5 +1,6 @@
 package cli.commands;
 
+import runtime.HostClient;
 import runtime.PersistentRegistry;
 
 import java.nio.file.Path;
@@ -9,21 +10,44 @@ import java.util.Map;
 
 /**
  * StatusCommand shows the status of all running services.
+ * Asks the workspace's runtime host when one is running; otherwise lists
+ * the services in the persistent registry (any workspace).
  * 
- * Usage: mycoq status
+ * Usage: mycoq status [--metrics]
+ *
+ * --metrics shows each service's sampled CPU time, allocations, loaded
+ * classes, threads and restarts (needs a runtime host).
  */
 public class StatusCommand implements Command {
 
     private final Path workspaceRoot;
     private final Path manifestDir;
+    private final boolean metrics;
 
     public StatusCommand(Path workspaceRoot, Path manifestDir) {
+        this(workspaceRoot, manifestDir, false);
+    }
+
+    public StatusCommand(Path workspaceRoot, Path manifestDir, boolean metrics) {
         this.workspaceRoot = workspaceRoot;
         this.manifestDir = manifestDir;
+        this.metrics = metrics;
     }
 
     @Override
     public void execute() throws Exception {
+        // The workspace's runtime host knows its services' live state
+        HostClient host = HostClient.forWorkspace(workspaceRoot);
+        if (host.isHostRunning()) {
+            HostCommand.print(host.send(metrics ? "metrics" : "status"));
+            return;
+        }
+        if (metrics) {
+            System.err.println("Error: Metrics come from the runtime running the services,");
+            System.err.println("and no runtime is running in this workspace");
+            return;
+        }
+
         PersistentRegistry persistentRegistry = new PersistentRegistry();
         Map<String, PersistentRegistry.ServiceEntry> services = persistentRegistry.getAllServices();
 
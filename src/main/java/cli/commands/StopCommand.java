@@ -1,11 +1,12 @@
 package cli.commands;
 
-import runtime.RuntimeManager;
+import runtime.HostClient;
 
 import java.nio.file.Path;
 
 /**
- * StopCommand stops a running service.
+ * StopCommand stops a running service by asking the workspace's runtime
+ * host (the mycoq run process running it) to stop it.
  * 
  * Usage: mycoq stop <service-name>
  * Example: mycoq stop payment-service
@@ -31,7 +32,14 @@ public class StopCommand implements Command {
             return;
         }
 
-        RuntimeManager runtimeManager = new RuntimeManager(workspaceRoot, manifestDir);
-        runtimeManager.stopService(serviceName);
+        // Services are threads of the process that runs them; ask that process
+        HostClient host = HostClient.forWorkspace(workspaceRoot);
+        if (!host.isHostRunning()) {
+            System.err.println("Error: No runtime is running in this workspace");
+            System.err.println("Services are started with: mycoq run <service-name>");
+            return;
+        }
+
+        HostCommand.print(host.send("stop " + serviceName));
     }
 }
@@ -0,0 +1,35 @@
+package compile;
+
+/**
+ * What a single compile cost. Used by the build scheduler to learn per-target
+ * memory costs.
+ */
+public class CompileResult {
+
+    private final int sourceCount;
+    private final long durationMillis;
+    private final long heapBytes;
+
+    /**
+     * @param sourceCount    number of .java files compiled
+     * @param durationMillis wall time of the compile
+     * @param heapBytes      estimated heap the compile needed (0 if unknown)
+     */
+    public CompileResult(int sourceCount, long durationMillis, long heapBytes) {
+        this.sourceCount = sourceCount;
+        this.durationMillis = durationMillis;
+        this.heapBytes = heapBytes;
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+}
@@ -0,0 +1,203 @@
+package compile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CompileWorker is the main class of a persistent javac worker JVM.
+ *
+ * Lifecycle:
+ *   1. Listen on a Unix domain socket, <stateDir>/worker-<pid>.sock, readable
+ *      and writable by the owner only
+ *   2. Serve one client connection at a time; each line is a JSON Request,
+ *      each reply a JSON Response
+ *   3. Retire (exit) after maxRequests compiles, when heap stays high after a GC,
+ *      or after idleTimeout without a client
+ *
+ * The JVM stays alive between builds, so javac's classes are loaded and JIT-compiled
+ * once and every later compile runs warm.
+ *
+ * A request names files to read and a directory to write, so whoever can
+ * connect can make the worker read and write anything its user can. That
+ * is why there is no TCP port: only processes of the same user can open
+ * the socket file (CompileWorkerPool also keeps the state directory
+ * owner-only).
+ *
+ * Usage (spawned by CompileWorkerPool):
+ *   java -cp <mycoq classpath> compile.CompileWorker <stateDir> <maxRequests> <idleTimeoutMillis>
+ */
+public final class CompileWorker {
+
+    // Retire when more than this fraction of -Xmx is still used after a GC
+    private static final double MAX_HEAP_FRACTION = 0.75;
+
+    private CompileWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path stateDir = Path.of(args[0]);
+        int maxRequests = Integer.parseInt(args[1]);
+        int idleTimeoutMillis = Integer.parseInt(args[2]);
+
+        long pid = ProcessHandle.current().pid();
+        Path socketPath = stateDir.resolve("worker-" + pid + ".sock");
+        Path lockFile = stateDir.resolve("worker-" + pid + ".lock");
+
+        JavaCompileService compiler = new JavaCompileService();
+        ObjectMapper mapper = new ObjectMapper();
+        int served = 0;
+        boolean retiring = false;
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             Selector selector = Selector.open()) {
+            bind(server, socketPath);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (!retiring) {
+                // Unix domain server channels have no accept timeout; wait on a selector
+                selector.selectedKeys().clear();
+                if (selector.select(idleTimeoutMillis) == 0) {
+                    break; // idle for too long
+                }
+                SocketChannel client = server.accept();
+                if (client == null) {
+                    continue;
+                }
+                client.configureBlocking(true);
+
+                try (client;
+                     BufferedReader in = new BufferedReader(
+                             new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+                     BufferedWriter out = new BufferedWriter(
+                             new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8))) {
+
+                    String line;
+                    while (!retiring && (line = in.readLine()) != null) {
+                        Request request = mapper.readValue(line, Request.class);
+                        Response response = handle(compiler, request);
+
+                        served++;
+                        retiring = served >= maxRequests || heapTooHigh();
+                        response.retiring = retiring;
+
+                        out.write(mapper.writeValueAsString(response));
+                        out.newLine();
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Client went away mid-conversation; wait for the next one
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+            Files.deleteIfExists(lockFile);
+        }
+    }
+
+    private static Response handle(JavaCompileService compiler, Request request) {
+        StringWriter diagnostics = new StringWriter();
+        Response response = new Response();
+
+        // Measure the peak of this request only
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        try {
+            response.success = compiler.runJavac(
+                    request.sources.stream().map(Path::of).toList(),
+                    Path.of(request.classesDir),
+                    request.classpath.stream().map(Path::of).toList(),
+                    diagnostics);
+        } catch (RuntimeException e) {
+            response.success = false;
+            diagnostics.write(e.toString());
+        }
+
+        response.output = diagnostics.toString();
+        response.peakHeapBytes = heapPools.stream()
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        return response;
+    }
+
+    /**
+     * Check heap usage between requests; a full GC is cheap here because the
+     * worker is idle until it answers.
+     */
+    private static boolean heapTooHigh() {
+        if (heapFraction() < MAX_HEAP_FRACTION) {
+            return false;
+        }
+        System.gc();
+        return heapFraction() >= MAX_HEAP_FRACTION;
+    }
+
+    private static double heapFraction() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return (double) heap.getUsed() / max;
+    }
+
+    /**
+     * Bind the socket under a temporary name, make it owner-only, then rename
+     * it into place, so pools never see a socket others could still open.
+     */
+    private static void bind(ServerSocketChannel server, Path socketPath) throws IOException {
+        Path tmp = socketPath.resolveSibling(socketPath.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        server.bind(UnixDomainSocketAddress.of(tmp));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        }
+        Files.move(tmp, socketPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One compile request (one target).
+     */
+    public static class Request {
+        public List<String> sources = new ArrayList<>();
+        public String classesDir;
+        public List<String> classpath = new ArrayList<>();
+    }
+
+    /**
+     * Result of one compile request.
+     */
+    public static class Response {
+        public boolean success;
+        public String output;
+        // Peak heap used by the worker while compiling this request
+        public long peakHeapBytes;
+        // True if the worker exits after this reply and must not be reused
+        public boolean retiring;
+    }
+}
@@ -0,0 +1,358 @@
+package compile;
+
+import cache.Digests;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * CompileWorkerPool hands compiles to persistent javac worker JVMs (CompileWorker).
+ *
+ * Each worker listens on a Unix domain socket under ~/.mycoq/workers/<fingerprint>/,
+ * a directory only its owner can enter. A client claims a worker by taking an
+ * exclusive FileLock on its lock file,
+ * so workers are shared safely between concurrent mycoq processes and stay
+ * warm from one build to the next. New workers are spawned when none is free,
+ * up to the pool size.
+ *
+ * The fingerprint covers the JDK, the mycoq classpath and the worker heap, so
+ * a worker started by a different mycoq or JDK is never reused.
+ */
+public class CompileWorkerPool implements AutoCloseable {
+
+    private static final long SPAWN_TIMEOUT_MILLIS = 15_000;
+
+    // Workers booted for one compile before giving up (others may claim them first)
+    private static final int SPAWN_ATTEMPTS = 3;
+    private static final int IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+    private final int size;
+    private final String maxHeap;
+    private final int maxRequestsPerWorker;
+    private final Path stateDir;
+    private final ObjectMapper mapper;
+
+    // At most `size` compiles in flight from this pool
+    private final Semaphore permits;
+
+    // Workers claimed by this pool and currently not compiling
+    private final BlockingQueue<WorkerConnection> idle;
+
+    /**
+     * @param size                 max concurrent workers used by this pool
+     * @param maxHeap              -Xmx of each worker JVM (e.g. "1g")
+     * @param maxRequestsPerWorker compiles after which a worker is recycled
+     */
+    public CompileWorkerPool(int size, String maxHeap, int maxRequestsPerWorker) {
+        this(size, maxHeap, maxRequestsPerWorker, defaultStateDir(maxHeap));
+    }
+
+    /**
+     * @param stateDir where workers put their sockets and lock files
+     */
+    CompileWorkerPool(int size, String maxHeap, int maxRequestsPerWorker, Path stateDir) {
+        this.size = size;
+        this.maxHeap = maxHeap;
+        this.maxRequestsPerWorker = maxRequestsPerWorker;
+        this.mapper = new ObjectMapper();
+        this.permits = new Semaphore(size);
+        this.idle = new LinkedBlockingQueue<>();
+        this.stateDir = stateDir;
+
+        try {
+            Files.createDirectories(stateDir);
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(stateDir, PosixFilePermissions.fromString("rwx------"));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create worker directory: " + stateDir, e);
+        }
+    }
+
+    private static Path defaultStateDir(String maxHeap) {
+        String fingerprint = Digests.sha256((System.getProperty("java.home") + "|"
+                + System.getProperty("java.class.path") + "|" + maxHeap)
+                .getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return Paths.get(System.getProperty("user.home"), ".mycoq", "workers", fingerprint);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Compile on a worker JVM, blocking until it answers.
+     * A worker that dies mid-request is replaced and the request retried once.
+     *
+     * @return the worker's response (success flag, peak heap)
+     */
+    public CompileWorker.Response compile(List<Path> sources, Path classesDir, List<Path> classpathJars) {
+        CompileWorker.Request request = new CompileWorker.Request();
+        sources.forEach(p -> request.sources.add(p.toAbsolutePath().toString()));
+        request.classesDir = classesDir.toAbsolutePath().toString();
+        classpathJars.forEach(p -> request.classpath.add(p.toAbsolutePath().toString()));
+
+        permits.acquireUninterruptibly();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                WorkerConnection worker = borrow();
+                try {
+                    CompileWorker.Response response = worker.send(request);
+
+                    if (response.output != null && !response.output.isEmpty()) {
+                        System.err.print(response.output);
+                    }
+
+                    if (response.retiring) {
+                        worker.close();
+                    } else {
+                        idle.add(worker);
+                    }
+                    return response;
+                } catch (IOException e) {
+                    worker.close();
+                    if (attempt >= 2) {
+                        throw new RuntimeException("Compile worker failed for: " + classesDir, e);
+                    }
+                    System.err.println("[workers] Worker " + worker.pid + " lost, retrying: " + e.getMessage());
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Release all claimed workers. They keep running (until their idle timeout)
+     * so the next build finds them warm.
+     */
+    @Override
+    public void close() {
+        WorkerConnection worker;
+        while ((worker = idle.poll()) != null) {
+            worker.close();
+        }
+    }
+
+    private WorkerConnection borrow() {
+        WorkerConnection worker = idle.poll();
+        if (worker != null) {
+            return worker;
+        }
+
+        // Reuse a warm worker left by an earlier build, if one is free
+        worker = claimExisting();
+        if (worker != null) {
+            return worker;
+        }
+
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            worker = spawn();
+            if (worker != null) {
+                return worker;
+            }
+            // Another build claimed the worker we started; one of theirs may be free by now
+            worker = claimExisting();
+            if (worker != null) {
+                return worker;
+            }
+        }
+        throw notStarted();
+    }
+
+    private WorkerConnection claimExisting() {
+        try (Stream<Path> files = Files.list(stateDir)) {
+            for (Path socketFile : files.filter(p -> p.getFileName().toString().endsWith(".sock")).toList()) {
+                WorkerConnection worker = tryClaim(socketFile);
+                if (worker != null) {
+                    return worker;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[workers] Warning: Could not list workers: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Boot a worker and claim it.
+     *
+     * @return the worker, or null if another build claimed it first
+     */
+    private WorkerConnection spawn() {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+
+        ProcessBuilder builder = new ProcessBuilder(
+                java.toString(),
+                "-Xmx" + maxHeap,
+                "-cp", System.getProperty("java.class.path"),
+                CompileWorker.class.getName(),
+                stateDir.toString(),
+                String.valueOf(maxRequestsPerWorker),
+                String.valueOf(IDLE_TIMEOUT_MILLIS));
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(stateDir.resolve("workers.log").toFile()));
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start compile worker", e);
+        }
+
+        System.out.println("[workers] Started compile worker (PID: " + process.pid() + ")");
+
+        Path socketFile = stateDir.resolve("worker-" + process.pid() + ".sock");
+        long deadline = System.currentTimeMillis() + SPAWN_TIMEOUT_MILLIS;
+
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            if (Files.exists(socketFile)) {
+                return tryClaim(socketFile);
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        process.destroy();
+        throw notStarted();
+    }
+
+    private RuntimeException notStarted() {
+        return new RuntimeException("Compile worker did not start, see " + stateDir.resolve("workers.log"));
+    }
+
+    /**
+     * Lock and connect to the worker behind a socket file.
+     *
+     * @return the connection, or null if the worker is busy or dead
+     */
+    private WorkerConnection tryClaim(Path socketFile) {
+        String fileName = socketFile.getFileName().toString();
+        long pid;
+        try {
+            pid = Long.parseLong(fileName.substring("worker-".length(), fileName.length() - ".sock".length()));
+        } catch (RuntimeException e) {
+            return null; // not one of ours
+        }
+        Path lockFile = stateDir.resolve("worker-" + pid + ".lock");
+
+        FileChannel channel = null;
+        FileLock lock = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null; // held by another process
+            }
+
+            if (!ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                // Stale files from a worker that crashed
+                Files.deleteIfExists(socketFile);
+                Files.deleteIfExists(lockFile);
+                lock.release();
+                channel.close();
+                return null;
+            }
+
+            SocketChannel socket = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                socket.connect(UnixDomainSocketAddress.of(socketFile));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+
+            return new WorkerConnection(pid, socket, channel, lock);
+        } catch (OverlappingFileLockException e) {
+            closeQuietly(channel);
+            return null; // held by this JVM
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (lock != null) {
+                    lock.release();
+                }
+            } catch (IOException ignored) {}
+            closeQuietly(channel);
+            return null; // worker retiring or socket file vanished
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * A claimed worker: the socket to it plus the lock that keeps others away.
+     */
+    private class WorkerConnection {
+        private final long pid;
+        private final SocketChannel socket;
+        private final FileChannel lockChannel;
+        private final FileLock lock;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        WorkerConnection(long pid, SocketChannel socket, FileChannel lockChannel, FileLock lock) {
+            this.pid = pid;
+            this.socket = socket;
+            this.lockChannel = lockChannel;
+            this.lock = lock;
+            this.in = new BufferedReader(new InputStreamReader(Channels.newInputStream(socket), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(socket), StandardCharsets.UTF_8));
+        }
+
+        CompileWorker.Response send(CompileWorker.Request request) throws IOException {
+            out.write(mapper.writeValueAsString(request));
+            out.newLine();
+            out.flush();
+
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Worker closed the connection");
+            }
+            return mapper.readValue(line, CompileWorker.Response.class);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+            try {
+                lock.release();
+            } catch (IOException ignored) {}
+            closeQuietly(lockChannel);
+        }
+    }
+}
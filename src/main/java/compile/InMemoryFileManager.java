@@ -0,0 +1,179 @@
+package compile;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A file manager that keeps javac's output in memory.
+ *
+ * Sources are still read from disk by the standard file manager. Class
+ * files javac writes, and resources annotation processors write next to
+ * them, go into byte arrays instead of the output directory. Classes
+ * compiled the same way earlier (the dependencies') are listed on the
+ * classpath next to the real classpath.
+ *
+ * Output is keyed by jar entry name (com/x/Foo.class, META-INF/services/...),
+ * the way it would be laid out in classes/ and in the jar.
+ */
+class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    // Package name → dependency classes in it
+    private final Map<String, List<ClassInput>> classpathByPackage = new HashMap<>();
+
+    // Files written by this compile, by entry name
+    private final Map<String, Output> output = new LinkedHashMap<>();
+
+    /**
+     * @param fileManager the standard file manager (for sources and the JDK)
+     * @param classpath   output of the dependencies, by entry name (only
+     *                    class files are put on the classpath)
+     */
+    InMemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classpath) {
+        super(fileManager);
+        classpath.forEach((entry, bytes) -> {
+            if (entry.endsWith(JavaFileObject.Kind.CLASS.extension)) {
+                String name = entry.substring(0, entry.length() - JavaFileObject.Kind.CLASS.extension.length())
+                        .replace('/', '.');
+                classpathByPackage.computeIfAbsent(packageOf(name), pkg -> new ArrayList<>())
+                        .add(new ClassInput(entry, name, bytes));
+            }
+        });
+    }
+
+    /**
+     * Files written so far, by entry name.
+     */
+    Map<String, byte[]> getOutput() {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        output.forEach((entry, file) -> files.put(entry, file.bytes.toByteArray()));
+        return files;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                               JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+
+        return output(className.replace('.', '/') + kind.extension, kind);
+    }
+
+    /**
+     * Resources annotation processors write to the class output.
+     */
+    @Override
+    public FileObject getFileForOutput(Location location, String packageName,
+                                       String relativeName, FileObject sibling) throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT) {
+            return super.getFileForOutput(location, packageName, relativeName, sibling);
+        }
+
+        String dir = packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+        return output(dir + relativeName, JavaFileObject.Kind.OTHER);
+    }
+
+    private Output output(String entry, JavaFileObject.Kind kind) {
+        Output file = new Output(entry, kind);
+        output.put(entry, file);
+        return file;
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName,
+                                         Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+        Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+        if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)
+                || classpathByPackage.isEmpty()) {
+            return listed;
+        }
+
+        List<JavaFileObject> files = new ArrayList<>();
+        listed.forEach(files::add);
+        classpathByPackage.forEach((pkg, classes) -> {
+            if (pkg.equals(packageName) || (recurse && pkg.startsWith(packageName + "."))) {
+                files.addAll(classes);
+            }
+        });
+        return files;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof ClassInput input) {
+            return input.binaryName;
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof SimpleJavaFileObject || b instanceof SimpleJavaFileObject) {
+            return a.equals(b);
+        }
+        return super.isSameFile(a, b);
+    }
+
+    private static String packageOf(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        return dot == -1 ? "" : binaryName.substring(0, dot);
+    }
+
+    private static URI uriOf(String entry) {
+        return URI.create("mem:///" + entry);
+    }
+
+    /**
+     * A dependency class, read by javac from memory.
+     */
+    private static final class ClassInput extends SimpleJavaFileObject {
+
+        private final String binaryName;
+        private final byte[] bytes;
+
+        ClassInput(String entry, String binaryName, byte[] bytes) {
+            super(uriOf(entry), Kind.CLASS);
+            this.binaryName = binaryName;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    /**
+     * A class file or resource javac writes.
+     */
+    private static final class Output extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Output(String entry, Kind kind) {
+            super(uriOf(entry), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            bytes.reset();
+            return bytes;
+        }
+    }
+}
@@ -1,18 +1,38 @@
 package exec;
 
 import Model.BuildTarget;
+import analysis.DependencyAnalyzer;
+import analysis.DependencyUsage;
+import cache.ActionKey;
+import cache.RemoteCacheClient;
 import com.myboq.manifest.graph.DependencyGraph;
 import com.myboq.manifest.model.Node;
 import com.myboq.manifest.model.NodeType;
+import compile.CompileResult;
 import compile.JavaCompileService;
 import fs.SourceScanner;
+import history.BuildHistory;
+import history.BuildRecord;
+import jar.ClassPack;
 import jar.JarPackager;
+import jfr.BuildEvents;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -20,22 +40,41 @@ import java.util.stream.Collectors;
  * It:
  *   - loads dependency graph
  *   - computes topological order
- *   - compiles sources
+ *   - checks the remote cache (if configured)
+ *   - compiles sources (in parallel, within CPU and heap budgets; optionally on worker JVMs)
  *   - packages jar
+ *   - records which dependencies each jar really uses
+ *   - uploads new jars to the remote cache
+ *   - appends the run to the build history
+ *   - emits a Flight Recorder event per target and stage (see jfr.BuildEvents)
  *   - stores jar paths for dependent targets
+ *
+ * executeInMemory is the variant for `run --build`: classes stay in memory
+ * for the runtime, and jars are written in the background.
  */
 public class BuildExecutor {
 
     private final JavaCompileService compiler;
     private final SourceScanner scanner;
     private final JarPackager packager;
+    private final BuildOptions options;
+    private final DependencyAnalyzer dependencyAnalyzer;
 
     public BuildExecutor(JavaCompileService compiler,
                          SourceScanner scanner,
                          JarPackager packager) {
+        this(compiler, scanner, packager, new BuildOptions());
+    }
+
+    public BuildExecutor(JavaCompileService compiler,
+                         SourceScanner scanner,
+                         JarPackager packager,
+                         BuildOptions options) {
         this.compiler = compiler;
         this.scanner = scanner;
         this.packager = packager;
+        this.options = options;
+        this.dependencyAnalyzer = new DependencyAnalyzer();
     }
 
     /**
@@ -49,6 +88,11 @@ public class BuildExecutor {
                         Map<String, BuildTarget> targetsByName,
                         Path outputRoot) throws Exception {
 
+        // Every run is appended to the build history, successful or not
+        BuildRecord record = new BuildRecord();
+        record.startTime = Instant.now();
+        long startNanos = System.nanoTime();
+
         System.out.println("\n=== STAGE 1: BUILD GRAPH ===");
 
         // 1. Graph creation
@@ -61,53 +105,492 @@ public class BuildExecutor {
 
         System.out.println("Build order: " + order);
 
-        System.out.println("\n=== STAGE 2: BUILD TARGETS ===");
+        RemoteCacheClient remoteCache = options.isRemoteCacheEnabled()
+                ? new RemoteCacheClient(options.getRemoteCacheUrl())
+                : null;
+        HeapPeakSampler heap = new HeapPeakSampler();
 
-        // Tracks jar output of each node for classpath usage
-        Map<String, Path> jarByNode = new HashMap<>();
+        try {
+            // Sources of each node, scanned once up front
+            Map<String, List<Path>> sourcesByNode = new HashMap<>();
+            for (String nodeName : order) {
+                BuildTarget target = targetsByName.get(nodeName);
+                if (target.getType() != NodeType.COMPOSITE) {
+                    BuildEvents.Scan scan = new BuildEvents.Scan();
+                    scan.begin();
+                    List<Path> sources = scanner.findJavaSources(target.getSourceDir());
+                    sourcesByNode.put(nodeName, sources);
 
-        // 3. Build in graph order
-        for (String nodeName : order) {
+                    scan.target = nodeName;
+                    scan.sources = sources.size();
+                    scan.commit();
+                }
+            }
 
-            BuildTarget target = targetsByName.get(nodeName);
-            Node node = target.getNode();
+            // Action keys only depend on inputs, so every target can be looked up at once
+            Map<String, String> actionKeyByNode = new HashMap<>();
+            Map<String, CompletableFuture<Boolean>> remoteHits = new HashMap<>();
+
+            if (remoteCache != null) {
+                System.out.println("\n=== STAGE 2: REMOTE CACHE LOOKUP ===");
+                System.out.println("Remote cache: " + options.getRemoteCacheUrl());
+
+                for (String nodeName : order) {
+                    BuildTarget target = targetsByName.get(nodeName);
+                    if (target.getType() == NodeType.COMPOSITE) {
+                        continue;
+                    }
+
+                    List<String> depKeys = target.getDependencyNames().stream()
+                            .map(actionKeyByNode::get)
+                            .filter(Objects::nonNull)
+                            .toList();
+
+                    String actionKey = ActionKey.compute(target, sourcesByNode.get(nodeName), depKeys);
+                    actionKeyByNode.put(nodeName, actionKey);
+
+                    Path jarPath = target.getOutputDir().resolve(target.getName() + ".jar");
+                    BuildEvents.CacheLookup lookup = new BuildEvents.CacheLookup();
+                    lookup.begin();
+                    remoteHits.put(nodeName, remoteCache.fetch(actionKey, jarPath).whenComplete((hit, e) -> {
+                        lookup.target = nodeName;
+                        lookup.hit = Boolean.TRUE.equals(hit);
+                        lookup.commit();
+                    }));
+                }
+            }
+
+            System.out.println("\n=== STAGE 3: BUILD TARGETS ===");
+
+            // Heap cost per target, learned from earlier runs
+            Path workspaceRoot = outputRoot.toAbsolutePath().getParent();
+            TargetCostModel costModel = new TargetCostModel(
+                    workspaceRoot.resolve(".mycoq").resolve("target-costs.json"));
+
+            ResourceScheduler scheduler = new ResourceScheduler(maxJobs(), heapBudgetBytes());
+            System.out.println("Scheduler: up to " + scheduler.getMaxJobs() + " jobs, heap budget "
+                    + scheduler.getHeapBudgetBytes() / (1024 * 1024) + " MB");
+
+            // Tracks jar output of each node for classpath usage (written from build threads)
+            Map<String, Path> jarByNode = new ConcurrentHashMap<>();
 
-            System.out.println("\n-- Building: " + nodeName + " (" + node.getType() + ")");
+            // 3. Build in graph order: each target becomes ready as soon as its dependencies
+            //    are done, and the scheduler starts it once CPU and heap budget allow
+            Map<String, CompletableFuture<Void>> doneByNode = new HashMap<>();
 
-            // COMPOSITE has no build output
-            if (node.getType() == NodeType.COMPOSITE) {
-                System.out.println("   [skip] COMPOSITE node (no jar)");
+            try {
+                for (String nodeName : order) {
+                    BuildTarget target = targetsByName.get(nodeName);
+                    List<Path> sources = sourcesByNode.getOrDefault(nodeName, List.of());
+                    CompletableFuture<Boolean> remoteHit = remoteHits.get(nodeName);
+
+                    // Topological order guarantees dependency futures already exist
+                    CompletableFuture<?>[] deps = target.getDependencyNames().stream()
+                            .map(doneByNode::get)
+                            .filter(Objects::nonNull)
+                            .toArray(CompletableFuture[]::new);
+
+                    doneByNode.put(nodeName, CompletableFuture.allOf(deps).thenCompose(ready -> {
+                        // Nothing to compile for bundles and (already downloaded) cache hits
+                        boolean cheap = target.getType() == NodeType.COMPOSITE
+                                || (remoteHit != null && remoteHit.getNow(false));
+                        long estimate = cheap ? 0 : costModel.estimateBytes(
+                                nodeName, sources.size(), target.getDependencyNames().size());
+
+                        return scheduler.submit(estimate, () -> {
+                            long targetStart = System.nanoTime();
+                            CompileResult result = buildTarget(target, sources, jarByNode,
+                                    remoteHit, actionKeyByNode.get(nodeName), remoteCache);
+                            if (result != null) {
+                                costModel.record(nodeName, result.getHeapBytes());
+                            }
+                            if (options.isPackClasses() && target.getType() == NodeType.EXECUTABLE) {
+                                packClasses(target, jarByNode, targetsByName);
+                            }
+                            if (target.getType() != NodeType.COMPOSITE) {
+                                recordTarget(record, target, result, remoteHit,
+                                        (System.nanoTime() - targetStart) / 1_000_000);
+                            }
+                        });
+                    }));
+                }
+
+                CompletableFuture.allOf(doneByNode.values().toArray(new CompletableFuture<?>[0])).join();
+                record.success = true;
+            } catch (CompletionException e) {
+                // Surface the original build failure, not the wrapper
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            } finally {
+                scheduler.close();
+                costModel.save();
+
+                record.durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                record.peakHeapBytes = heap.getPeakBytes();
+                new BuildHistory(BuildHistory.fileFor(workspaceRoot)).append(record);
+            }
+
+            if (remoteCache != null) {
+                remoteCache.awaitUploads(Duration.ofSeconds(60));
+            }
+        } finally {
+            heap.close();
+            if (remoteCache != null) {
+                remoteCache.close();
+            }
+        }
+
+        System.out.println("\n=== BUILD COMPLETE ===");
+        System.out.println("Output directory: " + outputRoot.toAbsolutePath());
+    }
+
+    /**
+     * Compile the given nodes into memory, one after another in graph order,
+     * each against the classes of its dependencies. Nothing is written before
+     * this returns; classes/, jars, dependency usage and class packs are then
+     * written on a background thread. The remote cache, scheduler and build
+     * history are not used.
+     *
+     * @param nodes         nodes loaded from manifest
+     * @param targetsByName map of BuildTarget by name
+     * @return the output of every target, and when their artifacts are written
+     */
+    public InMemoryBuild executeInMemory(List<Node> nodes,
+                                         Map<String, BuildTarget> targetsByName) {
+        DependencyGraph graph = new DependencyGraph();
+        nodes.forEach(graph::addNode);
+        nodes.forEach(graph::addEdgesFor);
+        List<String> order = graph.topologicalOrder();
+
+        System.out.println("Build order: " + order + " (in memory)");
+
+        Map<String, Map<String, byte[]>> outputByTarget = new LinkedHashMap<>();
+        for (String nodeName : order) {
+            BuildTarget target = targetsByName.get(nodeName);
+            if (target.getType() == NodeType.COMPOSITE) {
                 continue;
             }
 
-            // 3.1 dependency jars for classpath
-            List<Path> depJars = target.getDependencyNames().stream()
-                    .map(jarByNode::get)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            BuildEvents.Scan scan = new BuildEvents.Scan();
+            scan.begin();
+            List<Path> sources = scanner.findJavaSources(target.getSourceDir());
+            scan.target = nodeName;
+            scan.sources = sources.size();
+            scan.commit();
+
+            // Output of all transitive dependencies (built before this target)
+            Set<String> deps = new LinkedHashSet<>();
+            collectTransitive(nodeName, targetsByName, deps);
+            deps.remove(nodeName);
+            Map<String, byte[]> classpath = new HashMap<>();
+            for (String dep : deps) {
+                classpath.putAll(outputByTarget.getOrDefault(dep, Map.of()));
+            }
+
+            BuildEvents.Compile compileEvent = new BuildEvents.Compile();
+            compileEvent.target = nodeName;
+            compileEvent.sources = sources.size();
+            compileEvent.begin();
+            try {
+                outputByTarget.put(nodeName, compiler.compileInMemory(nodeName, sources, classpath));
+                compileEvent.succeeded = true;
+            } finally {
+                compileEvent.commit();
+            }
+        }
+
+        CompletableFuture<Void> artifacts = CompletableFuture.runAsync(
+                () -> writeArtifacts(order, targetsByName, outputByTarget),
+                task -> Thread.ofPlatform().name("artifact-writer").daemon(true).start(task));
 
-            // 3.2 scan sources
-            var sources = scanner.findJavaSources(target.getSourceDir());
-            System.out.println("   Sources found: " + sources.size());
+        return new InMemoryBuild(outputByTarget, artifacts);
+    }
+
+    /**
+     * Write what execute() would have: classes/, jar, dependency usage and
+     * (with --pack-classes) the class pack of every target.
+     */
+    private void writeArtifacts(List<String> order,
+                                Map<String, BuildTarget> targetsByName,
+                                Map<String, Map<String, byte[]>> outputByTarget) {
+        Map<String, Path> jarByNode = new HashMap<>();
+
+        for (String nodeName : order) {
+            BuildTarget target = targetsByName.get(nodeName);
+            if (target.getType() == NodeType.COMPOSITE) {
+                continue;
+            }
 
-            // 3.3 compile → classes/
             Path classesDir = target.getOutputDir().resolve("classes");
-            compiler.compile(sources, classesDir, depJars);
+            try {
+                Files.createDirectories(classesDir);
+                for (Map.Entry<String, byte[]> entry : outputByTarget.get(nodeName).entrySet()) {
+                    Path file = classesDir.resolve(entry.getKey());
+                    Files.createDirectories(file.getParent());
+                    Files.write(file, entry.getValue());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write classes: " + classesDir, e);
+            }
 
-            // 3.4 package jar
             Path jarPath = target.getOutputDir().resolve(target.getName() + ".jar");
+            BuildEvents.Package packageEvent = new BuildEvents.Package();
+            packageEvent.begin();
+            packager.createJar(classesDir, jarPath, null);
+            packageEvent.target = nodeName;
+            packageEvent.jarBytes = jarPath.toFile().length();
+            packageEvent.commit();
+
+            jarByNode.put(nodeName, jarPath);
+            recordDependencyUsage(target, jarPath, jarByNode);
+
+            if (options.isPackClasses() && target.getType() == NodeType.EXECUTABLE) {
+                packClasses(target, jarByNode, targetsByName);
+            }
+        }
+
+        System.out.println("[build] Artifacts written: " + jarByNode.size() + " jar(s)");
+    }
 
-            String mainClass = null;  // future: read from manifest
+    /**
+     * Build a single target: restore it from the remote cache or compile and package it.
+     *
+     * @param sources     the target's .java files (scanned up front)
+     * @param jarByNode   jars built so far, used for the classpath
+     * @param remoteHit   pending remote cache lookup (null if the cache is off)
+     * @param actionKey   cache key of this target (null if the cache is off)
+     * @param remoteCache remote cache client (null if the cache is off)
+     * @return cost of the compile, or null if nothing was compiled
+     */
+    private CompileResult buildTarget(BuildTarget target,
+                                      List<Path> sources,
+                                      Map<String, Path> jarByNode,
+                                      CompletableFuture<Boolean> remoteHit,
+                                      String actionKey,
+                                      RemoteCacheClient remoteCache) {
+        String nodeName = target.getName();
+
+        System.out.println("\n-- Building: " + nodeName + " (" + target.getType() + ")");
+
+        // COMPOSITE has no build output
+        if (target.getType() == NodeType.COMPOSITE) {
+            System.out.println("   [skip] COMPOSITE node (no jar)");
+            return null;
+        }
 
-            packager.createJar(classesDir, jarPath, mainClass);
+        Path jarPath = target.getOutputDir().resolve(target.getName() + ".jar");
 
-            // 3.5 record jar for dependents to use
+        // 3.1 remote cache hit → jar already downloaded, nothing to compile
+        if (remoteHit != null && remoteHit.join()) {
             jarByNode.put(nodeName, jarPath);
+            System.out.println("   [cache] HIT: " + jarPath.toAbsolutePath());
+            recordDependencyUsage(target, jarPath, jarByNode);
+            return null;
+        }
+
+        // 3.2 dependency jars for classpath
+        List<Path> depJars = target.getDependencyNames().stream()
+                .map(jarByNode::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-            System.out.println("   JAR: " + jarPath.toAbsolutePath());
+        // 3.3 sources (scanned up front)
+        System.out.println("   Sources found: " + sources.size());
+
+        // 3.4 compile → classes/
+        Path classesDir = target.getOutputDir().resolve("classes");
+        BuildEvents.Compile compileEvent = new BuildEvents.Compile();
+        compileEvent.target = nodeName;
+        compileEvent.sources = sources.size();
+        compileEvent.classpathJars = depJars.size();
+        compileEvent.begin();
+        CompileResult result;
+        try {
+            result = compile(target, sources, classesDir, depJars, jarByNode);
+            compileEvent.heapBytes = result.getHeapBytes();
+            compileEvent.succeeded = true;
+        } finally {
+            compileEvent.commit();
         }
 
-        System.out.println("\n=== BUILD COMPLETE ===");
-        System.out.println("Output directory: " + outputRoot.toAbsolutePath());
+        // 3.5 package jar
+        String mainClass = null;  // future: read from manifest
+
+        BuildEvents.Package packageEvent = new BuildEvents.Package();
+        packageEvent.begin();
+        packager.createJar(classesDir, jarPath, mainClass);
+        packageEvent.target = nodeName;
+        packageEvent.jarBytes = jarPath.toFile().length();
+        packageEvent.commit();
+
+        // 3.6 record jar for dependents to use
+        jarByNode.put(nodeName, jarPath);
+
+        System.out.println("   JAR: " + jarPath.toAbsolutePath());
+
+        // 3.7 find out which dependencies the bytecode really uses
+        recordDependencyUsage(target, jarPath, jarByNode);
+
+        // 3.8 share the result (runs in the background)
+        if (remoteCache != null) {
+            remoteCache.uploadAsync(actionKey, nodeName, jarPath);
+        }
+
+        return result;
+    }
+
+    /**
+     * Write <name>.classpack: the classes of an executable and all its
+     * transitive dependencies, for fast loading by `run --packed`.
+     */
+    private void packClasses(BuildTarget target,
+                             Map<String, Path> jarByNode,
+                             Map<String, BuildTarget> targetsByName) {
+        // Service jar first, then dependencies depth-first in declaration order
+        Set<String> names = new LinkedHashSet<>();
+        collectTransitive(target.getName(), targetsByName, names);
+
+        List<Path> jars = names.stream()
+                .map(jarByNode::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        Path packPath = target.getOutputDir().resolve(target.getName() + ClassPack.EXTENSION);
+        try {
+            int classes = ClassPack.write(jars, packPath);
+            System.out.println("   [pack] " + classes + " classes from " + jars.size() + " jar(s): "
+                    + packPath.toAbsolutePath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write class pack: " + packPath, e);
+        }
+    }
+
+    private static void collectTransitive(String name, Map<String, BuildTarget> targetsByName, Set<String> names) {
+        BuildTarget target = targetsByName.get(name);
+        if (target == null || !names.add(name)) {
+            return;
+        }
+        for (String dep : target.getDependencyNames()) {
+            collectTransitive(dep, targetsByName, names);
+        }
+    }
+
+    /**
+     * Add a built target's numbers to the run's history record (called from build threads).
+     */
+    private void recordTarget(BuildRecord record,
+                              BuildTarget target,
+                              CompileResult result,
+                              CompletableFuture<Boolean> remoteHit,
+                              long durationMillis) {
+        BuildRecord.TargetRecord targetRecord = new BuildRecord.TargetRecord();
+        targetRecord.name = target.getName();
+        targetRecord.durationMillis = durationMillis;
+        targetRecord.cacheHit = remoteHit != null && remoteHit.getNow(false);
+        targetRecord.sourcesCompiled = result != null ? result.getSourceCount() : 0;
+        targetRecord.heapBytes = result != null ? result.getHeapBytes() : 0;
+
+        Path jarPath = target.getOutputDir().resolve(target.getName() + ".jar");
+        try {
+            targetRecord.jarBytes = Files.exists(jarPath) ? Files.size(jarPath) : 0;
+        } catch (IOException e) {
+            targetRecord.jarBytes = 0;
+        }
+
+        synchronized (record) {
+            record.targets.add(targetRecord);
+        }
+    }
+
+    /**
+     * Compile a target. With --prune-classpath, only the dependencies the previous
+     * build found in use are passed to javac; if that fails (the sources started
+     * using another dependency) the compile is retried with the full classpath.
+     */
+    private CompileResult compile(BuildTarget target,
+                                  List<Path> sources,
+                                  Path classesDir,
+                                  List<Path> depJars,
+                                  Map<String, Path> jarByNode) {
+        DependencyUsage previous = options.isPruneClasspath()
+                ? DependencyUsage.read(target.getOutputDir())
+                : null;
+
+        if (previous != null && !previous.unused.isEmpty()) {
+            List<Path> usedJars = previous.used.stream()
+                    .map(jarByNode::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            System.out.println("   [deps] Pruned classpath: " + usedJars.size() + " of " + depJars.size() + " jars");
+            try {
+                return compiler.compile(sources, classesDir, usedJars);
+            } catch (RuntimeException e) {
+                System.out.println("   [deps] Pruned compile failed, retrying with all dependencies");
+            }
+        }
+
+        return compiler.compile(sources, classesDir, depJars);
+    }
+
+    /**
+     * Analyse the target's bytecode, warn about unused declared dependencies and
+     * save the result for the next build and the runtime.
+     */
+    private void recordDependencyUsage(BuildTarget target, Path jarPath, Map<String, Path> jarByNode) {
+        Map<String, Path> declared = new LinkedHashMap<>();
+        for (String depName : target.getDependencyNames()) {
+            Path depJar = jarByNode.get(depName);
+            if (depJar != null) {
+                declared.put(depName, depJar);
+            }
+        }
+
+        if (declared.isEmpty()) {
+            return;
+        }
+
+        DependencyUsage usage = dependencyAnalyzer.analyze(target.getName(), jarPath, declared);
+        usage.pruneClasspath = options.isPruneClasspath();
+        usage.write(target.getOutputDir());
+
+        for (String unused : usage.unused) {
+            System.out.println("   [deps] Warning: " + target.getName()
+                    + " declares unused dependency: " + unused);
+        }
+    }
+
+    /**
+     * Upper bound on concurrent targets: --jobs, else one per worker JVM, else one per CPU.
+     */
+    private int maxJobs() {
+        if (options.getJobs() > 0) {
+            return options.getJobs();
+        }
+        if (options.getWorkers() > 0) {
+            return options.getWorkers();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Heap that concurrent compiles may use: --heap-budget, else 75% of this JVM's
+     * -Xmx, or with worker JVMs their combined -Xmx capped at 80% of free RAM.
+     */
+    private long heapBudgetBytes() {
+        if (options.getHeapBudgetBytes() > 0) {
+            return options.getHeapBudgetBytes();
+        }
+
+        if (options.getWorkers() > 0) {
+            long workersHeap = options.getWorkers() * BuildOptions.parseSize(options.getWorkerHeap());
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            return Math.min(workersHeap, (long) (os.getFreeMemorySize() * 0.8));
+        }
+
+        return (long) (Runtime.getRuntime().maxMemory() * 0.75);
     }
 }
@@ -0,0 +1,140 @@
+package exec;
+
+/**
+ * Options for a single build run.
+ *
+ * Filled in by the CLI from command-line flags and handed to BuildExecutor.
+ * The defaults give a local build with javac in this JVM, no remote cache,
+ * and parallelism chosen by ResourceScheduler from CPU, GC and heap budget.
+ */
+public class BuildOptions {
+
+    // Base URL of an HTTP remote cache, e.g. http://localhost:8765 (null = disabled)
+    private String remoteCacheUrl;
+
+    // Max targets built at the same time (0 = number of CPUs)
+    private int jobs = 0;
+
+    // Heap that concurrently building targets may use in total (0 = derive from -Xmx / free memory)
+    private long heapBudgetBytes = 0;
+
+    // Give javac (and the runtime) only the dependency jars the bytecode uses
+    private boolean pruneClasspath = false;
+
+    // Also write a packed class archive (<name>.classpack) for each EXECUTABLE target
+    private boolean packClasses = false;
+
+    // Persistent javac worker JVMs (0 = compile in this JVM)
+    private int workers = 0;
+
+    // -Xmx of each worker JVM
+    private String workerHeap = "1g";
+
+    // Compiles after which a worker JVM is recycled
+    private int workerMaxRequests = 50;
+
+    // Record the build with JDK Flight Recorder (see jfr.FlightRecording)
+    private boolean jfr = false;
+
+    public String getRemoteCacheUrl() {
+        return remoteCacheUrl;
+    }
+
+    public void setRemoteCacheUrl(String remoteCacheUrl) {
+        this.remoteCacheUrl = remoteCacheUrl;
+    }
+
+    public boolean isRemoteCacheEnabled() {
+        return remoteCacheUrl != null && !remoteCacheUrl.isEmpty();
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+
+    public void setHeapBudgetBytes(long heapBudgetBytes) {
+        this.heapBudgetBytes = heapBudgetBytes;
+    }
+
+    public boolean isPruneClasspath() {
+        return pruneClasspath;
+    }
+
+    public void setPruneClasspath(boolean pruneClasspath) {
+        this.pruneClasspath = pruneClasspath;
+    }
+
+    public boolean isPackClasses() {
+        return packClasses;
+    }
+
+    public void setPackClasses(boolean packClasses) {
+        this.packClasses = packClasses;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public String getWorkerHeap() {
+        return workerHeap;
+    }
+
+    public void setWorkerHeap(String workerHeap) {
+        this.workerHeap = workerHeap;
+    }
+
+    public int getWorkerMaxRequests() {
+        return workerMaxRequests;
+    }
+
+    public void setWorkerMaxRequests(int workerMaxRequests) {
+        this.workerMaxRequests = workerMaxRequests;
+    }
+
+    public boolean isJfr() {
+        return jfr;
+    }
+
+    public void setJfr(boolean jfr) {
+        this.jfr = jfr;
+    }
+
+    /**
+     * Parse a JVM-style size such as "512m", "2g" or "1048576" into bytes.
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long multiplier = 1;
+
+        if (value.endsWith("k")) {
+            multiplier = 1024L;
+        } else if (value.endsWith("m")) {
+            multiplier = 1024L * 1024;
+        } else if (value.endsWith("g")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        try {
+            return Long.parseLong(value) * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package exec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HeapPeakSampler records the highest total heap in use while it runs.
+ *
+ * The peak usage of each heap pool is reached at a different moment (eden
+ * fills before every young GC, old gen grows later), so adding up the pool
+ * peaks overstates the heap a build needed. Instead the total used heap is
+ * sampled every SAMPLE_MILLIS; a peak shorter than that can be missed.
+ */
+final class HeapPeakSampler implements AutoCloseable {
+
+    private static final long SAMPLE_MILLIS = 20;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final ScheduledExecutorService sampler;
+
+    HeapPeakSampler() {
+        sample();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "build-heap-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Highest total heap used seen so far, in bytes.
+     */
+    long getPeakBytes() {
+        sample();
+        return peakBytes.get();
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void sample() {
+        peakBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+}
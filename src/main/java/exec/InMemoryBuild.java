@@ -0,0 +1,30 @@
+package exec;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Result of BuildExecutor.executeInMemory: the compiled output of each
+ * target, and the background write of their classes/ and jars.
+ */
+public class InMemoryBuild {
+
+    // Target name → its class files and resources by entry name, in build order
+    private final Map<String, Map<String, byte[]>> outputByTarget;
+
+    // Completes when every target's artifacts are on disk
+    private final CompletableFuture<Void> artifacts;
+
+    public InMemoryBuild(Map<String, Map<String, byte[]>> outputByTarget, CompletableFuture<Void> artifacts) {
+        this.outputByTarget = outputByTarget;
+        this.artifacts = artifacts;
+    }
+
+    public Map<String, Map<String, byte[]>> getOutputByTarget() {
+        return outputByTarget;
+    }
+
+    public CompletableFuture<Void> getArtifacts() {
+        return artifacts;
+    }
+}
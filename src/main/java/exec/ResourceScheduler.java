@@ -0,0 +1,211 @@
+package exec;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResourceScheduler decides when a ready build task may start.
+ *
+ * A task is admitted only if
+ *   - fewer than `limit` tasks are running, and
+ *   - its estimated heap fits in what is left of the heap budget
+ *     (a task is always admitted when nothing else runs, so a target larger
+ *     than the whole budget still builds - alone).
+ *
+ * `limit` adapts between 1 and maxJobs, sampled every SAMPLE_MILLIS from the
+ * platform MXBeans:
+ *   - GC time above GC_HIGH of wall time → halve (memory pressure)
+ *   - system CPU above CPU_HIGH          → one less
+ *   - CPU and GC both low, work waiting  → one more
+ */
+public class ResourceScheduler implements AutoCloseable {
+
+    private static final long SAMPLE_MILLIS = 500;
+    private static final double CPU_HIGH = 0.95;
+    private static final double CPU_LOW = 0.80;
+    private static final double GC_HIGH = 0.20;
+    private static final double GC_LOW = 0.05;
+
+    private final int maxJobs;
+    private final long heapBudgetBytes;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService monitor;
+    private final com.sun.management.OperatingSystemMXBean os;
+    private final List<GarbageCollectorMXBean> collectors;
+
+    // Guarded by `this`
+    private final List<Task> pending = new ArrayList<>();
+    private int running;
+    private long reservedBytes;
+    private int limit;
+
+    private long lastGcMillis;
+    private long lastSampleNanos;
+
+    /**
+     * @param maxJobs         upper bound on concurrent tasks
+     * @param heapBudgetBytes total estimated heap allowed in flight
+     */
+    public ResourceScheduler(int maxJobs, long heapBudgetBytes) {
+        this.maxJobs = Math.max(1, maxJobs);
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.limit = this.maxJobs;
+
+        this.workers = Executors.newFixedThreadPool(this.maxJobs, r -> {
+            Thread t = new Thread(r, "build-job");
+            t.setDaemon(true);
+            return t;
+        });
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "build-scheduler-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        this.lastGcMillis = totalGcMillis();
+        this.lastSampleNanos = System.nanoTime();
+
+        monitor.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a task; it starts once resources allow.
+     *
+     * @param estimatedBytes heap the task is expected to need
+     * @param work           the task
+     * @return future completing when the task has run
+     */
+    public CompletableFuture<Void> submit(long estimatedBytes, Runnable work) {
+        Task task = new Task(estimatedBytes, work);
+        synchronized (this) {
+            pending.add(task);
+        }
+        dispatch();
+        return task.done;
+    }
+
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        workers.shutdown();
+    }
+
+    /**
+     * Start every pending task that fits, in submission order.
+     * Smaller tasks may start ahead of a big one that does not fit yet.
+     */
+    private void dispatch() {
+        List<Task> toStart = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<Task> it = pending.iterator();
+            while (it.hasNext() && running < limit) {
+                Task task = it.next();
+                boolean fits = reservedBytes + task.estimatedBytes <= heapBudgetBytes;
+
+                if (fits || running == 0) {
+                    it.remove();
+                    running++;
+                    reservedBytes += task.estimatedBytes;
+                    toStart.add(task);
+                }
+            }
+        }
+
+        for (Task task : toStart) {
+            workers.execute(() -> run(task));
+        }
+    }
+
+    private void run(Task task) {
+        try {
+            task.work.run();
+            task.done.complete(null);
+        } catch (Throwable e) {
+            task.done.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running--;
+                reservedBytes -= task.estimatedBytes;
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Adjust the concurrency limit from measured CPU load and GC time.
+     */
+    private void sample() {
+        long now = System.nanoTime();
+        long gcMillis = totalGcMillis();
+        double wallMillis = (now - lastSampleNanos) / 1_000_000.0;
+        double gcFraction = wallMillis > 0 ? (gcMillis - lastGcMillis) / wallMillis : 0;
+        lastGcMillis = gcMillis;
+        lastSampleNanos = now;
+
+        double cpu = os.getCpuLoad(); // negative when not available
+
+        int oldLimit;
+        int newLimit;
+        synchronized (this) {
+            oldLimit = limit;
+
+            if (gcFraction > GC_HIGH) {
+                limit = Math.max(1, limit / 2);
+            } else if (cpu > CPU_HIGH) {
+                limit = Math.max(1, limit - 1);
+            } else if (cpu >= 0 && cpu < CPU_LOW && gcFraction < GC_LOW && !pending.isEmpty()) {
+                limit = Math.min(maxJobs, limit + 1);
+            }
+
+            newLimit = limit;
+        }
+
+        if (newLimit != oldLimit) {
+            System.out.printf("[scheduler] Concurrency %d → %d (CPU %.0f%%, GC %.0f%%)%n",
+                    oldLimit, newLimit, Math.max(cpu, 0) * 100, gcFraction * 100);
+        }
+
+        if (newLimit > oldLimit) {
+            dispatch();
+        }
+    }
+
+    private long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static class Task {
+        final long estimatedBytes;
+        final Runnable work;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Task(long estimatedBytes, Runnable work) {
+            this.estimatedBytes = estimatedBytes;
+            this.work = work;
+        }
+    }
+}
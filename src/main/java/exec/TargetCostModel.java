@@ -0,0 +1,93 @@
+package exec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates how much heap building a target needs.
+ *
+ * Until a target has been built once, the estimate comes from its size
+ * (source files and classpath jars). After that, the heap measured on
+ * earlier runs is used, smoothed over runs so one outlier does not dominate.
+ *
+ * Measurements are kept in <workspace>/.mycoq/target-costs.json.
+ */
+public class TargetCostModel {
+
+    private static final long MB = 1024 * 1024;
+
+    // Size-based guess, used until a target has been measured
+    private static final long BASE_BYTES = 64 * MB;
+    private static final long PER_SOURCE_BYTES = 2 * MB;
+    private static final long PER_CLASSPATH_JAR_BYTES = 8 * MB;
+
+    // Weight of the newest measurement in the moving average
+    private static final double SMOOTHING = 0.5;
+
+    private final Path file;
+    private final ObjectMapper mapper;
+    private final Map<String, Long> measuredBytes;
+
+    public TargetCostModel(Path file) {
+        this.file = file;
+        this.mapper = new ObjectMapper();
+        this.measuredBytes = new ConcurrentHashMap<>(load());
+    }
+
+    /**
+     * Estimated heap needed to build a target.
+     *
+     * @param targetName    target name
+     * @param sourceCount   number of .java files
+     * @param classpathJars number of jars on its classpath
+     */
+    public long estimateBytes(String targetName, int sourceCount, int classpathJars) {
+        Long measured = measuredBytes.get(targetName);
+        if (measured != null) {
+            return measured;
+        }
+        return BASE_BYTES + sourceCount * PER_SOURCE_BYTES + classpathJars * PER_CLASSPATH_JAR_BYTES;
+    }
+
+    /**
+     * Record the heap a target actually used on this run.
+     */
+    public void record(String targetName, long observedBytes) {
+        if (observedBytes <= 0) {
+            return;
+        }
+        measuredBytes.merge(targetName, observedBytes,
+                (previous, latest) -> (long) (previous * (1 - SMOOTHING) + latest * SMOOTHING));
+    }
+
+    /**
+     * Persist measurements for the next build.
+     */
+    public void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            mapper.writeValue(file.toFile(), measuredBytes);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not save target costs: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Long> load() {
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+
+        try {
+            return mapper.readValue(file.toFile(),
+                    mapper.getTypeFactory().constructMapType(Map.class, String.class, Long.class));
+        } catch (IOException e) {
+            System.err.println("Warning: Ignoring unreadable target costs: " + e.getMessage());
+            return Map.of();
+        }
+    }
+}
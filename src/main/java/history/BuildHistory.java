@@ -0,0 +1,92 @@
+package history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BuildHistory is an append-only log of build runs.
+ *
+ * Stored at <workspace>/.mycoq/history.jsonl, one compact JSON record per line.
+ * A run's id is its line number, so ids are stable and need no counter.
+ * Appends take a file lock so concurrent builds don't interleave lines.
+ */
+public class BuildHistory {
+
+    private final Path file;
+    private final ObjectMapper mapper;
+
+    public BuildHistory(Path file) {
+        this.file = file;
+        this.mapper = new ObjectMapper();
+        this.mapper.registerModule(new JavaTimeModule());
+        this.mapper.disable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * History file of a workspace.
+     */
+    public static Path fileFor(Path workspaceRoot) {
+        return workspaceRoot.resolve(".mycoq").resolve("history.jsonl");
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Append a run to the history.
+     */
+    public void append(BuildRecord record) {
+        try {
+            Files.createDirectories(file.getParent());
+            byte[] line = (mapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.lock(); // held until the channel is closed
+                channel.write(ByteBuffer.wrap(line));
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not record build history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load all runs, oldest first, with runId set.
+     * Unreadable lines (e.g. from a crash mid-write) are skipped but keep their id.
+     */
+    public List<BuildRecord> loadAll() throws IOException {
+        List<BuildRecord> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return records;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                BuildRecord record = mapper.readValue(line, BuildRecord.class);
+                record.runId = i + 1;
+                records.add(record);
+            } catch (IOException e) {
+                System.err.println("Warning: Skipping unreadable history line " + (i + 1));
+            }
+        }
+
+        return records;
+    }
+}
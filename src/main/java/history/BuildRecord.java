@@ -0,0 +1,46 @@
+package history;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One build run as stored in the build history (one JSON line per run).
+ */
+public class BuildRecord {
+
+    // 1-based position in the history file; assigned when loaded, not stored
+    @JsonIgnore
+    public int runId;
+
+    public Instant startTime;
+    public long durationMillis;
+    public boolean success;
+    public long peakHeapBytes;
+    public List<TargetRecord> targets = new ArrayList<>();
+
+    public int cacheHits() {
+        return (int) targets.stream().filter(t -> t.cacheHit).count();
+    }
+
+    public TargetRecord target(String name) {
+        return targets.stream()
+                .filter(t -> t.name.equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Per-target part of a build run.
+     */
+    public static class TargetRecord {
+        public String name;
+        public long durationMillis;
+        public boolean cacheHit;
+        public int sourcesCompiled;
+        public long jarBytes;
+        public long heapBytes;
+    }
+}
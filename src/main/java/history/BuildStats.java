@@ -0,0 +1,82 @@
+package history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Calculations over the build history used by `mycoq stats`.
+ */
+public final class BuildStats {
+
+    // Changes smaller than this are noise, whatever the percentage
+    private static final long MIN_REGRESSION_MILLIS = 100;
+
+    private BuildStats() {
+    }
+
+    /**
+     * Nearest-rank percentile.
+     *
+     * @param values     samples (need not be sorted)
+     * @param percentile 0-100
+     * @return the percentile, or 0 for no samples
+     */
+    public static long percentile(List<Long> values, double percentile) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> sorted = values.stream().sorted().toList();
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    /**
+     * Compare per-target durations of two runs.
+     *
+     * @param before           baseline run
+     * @param after            run to check
+     * @param thresholdPercent slowdown (in %) above which a target counts as regressed
+     * @return one delta per target present in either run, sorted by name
+     */
+    public static List<TargetDelta> compare(BuildRecord before, BuildRecord after, double thresholdPercent) {
+        Set<String> names = new TreeSet<>();
+        before.targets.forEach(t -> names.add(t.name));
+        after.targets.forEach(t -> names.add(t.name));
+
+        List<TargetDelta> deltas = new ArrayList<>();
+        for (String name : names) {
+            BuildRecord.TargetRecord a = before.target(name);
+            BuildRecord.TargetRecord b = after.target(name);
+
+            TargetDelta delta = new TargetDelta();
+            delta.name = name;
+            delta.beforeMillis = a != null ? a.durationMillis : -1;
+            delta.afterMillis = b != null ? b.durationMillis : -1;
+
+            if (a != null && b != null) {
+                long change = b.durationMillis - a.durationMillis;
+                delta.changePercent = a.durationMillis > 0 ? change * 100.0 / a.durationMillis : 0;
+                delta.regressed = change >= MIN_REGRESSION_MILLIS && delta.changePercent > thresholdPercent;
+            }
+
+            deltas.add(delta);
+        }
+
+        return deltas;
+    }
+
+    /**
+     * Duration change of one target between two runs.
+     * A duration of -1 means the target was not in that run.
+     */
+    public static class TargetDelta {
+        public String name;
+        public long beforeMillis;
+        public long afterMillis;
+        public double changePercent;
+        public boolean regressed;
+    }
+}
@@ -0,0 +1,80 @@
+package jar;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Index of the classes and resources in a jar, stored in the jar itself.
+ *
+ * Written by JarPackager as META-INF/mycoq/class-index, one entry name per line
+ * (com/example/payment/PaymentApp.class). Lets class loaders answer "is this
+ * class in this jar?" with a set lookup instead of searching the jar.
+ */
+public final class ClassIndex {
+
+    public static final String ENTRY_NAME = "META-INF/mycoq/class-index";
+
+    private ClassIndex() {
+    }
+
+    /**
+     * Write the index for the given entry names.
+     */
+    public static void write(OutputStream out, Collection<String> entryNames) throws IOException {
+        StringBuilder index = new StringBuilder();
+        for (String name : new TreeSet<>(entryNames)) {
+            index.append(name).append('\n');
+        }
+        out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a jar's index. Jars built without one are indexed by listing their entries.
+     *
+     * @return entry names of all classes and resources in the jar
+     */
+    public static Set<String> read(Path jarPath) throws IOException {
+        try (JarFile jar = new JarFile(jarPath.toFile())) {
+            JarEntry indexEntry = jar.getJarEntry(ENTRY_NAME);
+            Set<String> entries = new HashSet<>();
+
+            if (indexEntry != null) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(jar.getInputStream(indexEntry), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            entries.add(line);
+                        }
+                    }
+                }
+                return entries;
+            }
+
+            jar.stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .map(JarEntry::getName)
+                    .filter(name -> !name.equals(JarFile.MANIFEST_NAME))
+                    .forEach(entries::add);
+            return entries;
+        }
+    }
+
+    /**
+     * Package part of an entry name: com/example/payment/PaymentApp.class → com/example/payment
+     */
+    public static String packageOf(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        return slash == -1 ? "" : entryName.substring(0, slash);
+    }
+}
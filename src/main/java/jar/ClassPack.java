@@ -0,0 +1,177 @@
+package jar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Packed class archive: every class of a service and its dependencies in one
+ * uncompressed file, meant to be memory-mapped.
+ *
+ * Layout (big-endian):
+ *   header  magic "MCQP", version, entry count, data offset   (4 ints)
+ *   table   per entry: name length (short), name (UTF-8), offset (long), length (int)
+ *   data    class bytes, each starting at an ALIGNMENT boundary
+ *
+ * Written at build time next to the service jar as <name>.classpack.
+ */
+public final class ClassPack implements AutoCloseable {
+
+    public static final String EXTENSION = ".classpack";
+
+    private static final int MAGIC = 0x4D435150; // "MCQP"
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final Map<String, long[]> entries; // class name → {offset, length}
+
+    private ClassPack(FileChannel channel, MappedByteBuffer data, Map<String, long[]> entries) {
+        this.channel = channel;
+        this.data = data;
+        this.entries = entries;
+    }
+
+    /**
+     * Write a pack of all classes in the given jars. When jars contain the same
+     * class, the first jar wins (same as a classpath).
+     *
+     * @return number of classes packed
+     */
+    public static int write(List<Path> jars, Path packPath) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+
+        for (Path jarPath : jars) {
+            try (JarFile jar = new JarFile(jarPath.toFile())) {
+                for (JarEntry entry : Collections.list(jar.entries())) {
+                    String name = entry.getName();
+                    if (!name.endsWith(".class") || classes.containsKey(name)) {
+                        continue;
+                    }
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        classes.put(name, in.readAllBytes());
+                    }
+                }
+            }
+        }
+
+        // Table size decides where data starts
+        int tableBytes = 0;
+        for (String name : classes.keySet()) {
+            tableBytes += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+        }
+        long dataOffset = align(16 + tableBytes);
+
+        Files.createDirectories(packPath.getParent());
+        Path tmp = Files.createTempFile(packPath.getParent(), "pack", ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(classes.size());
+            out.writeInt((int) dataOffset);
+
+            long offset = dataOffset;
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(offset);
+                out.writeInt(entry.getValue().length);
+                offset = align(offset + entry.getValue().length);
+            }
+
+            long position = 16 + tableBytes;
+            for (byte[] bytes : classes.values()) {
+                out.write(new byte[(int) (align(position) - position)]);
+                out.write(bytes);
+                position = align(position) + bytes.length;
+            }
+        }
+
+        Files.move(tmp, packPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return classes.size();
+    }
+
+    /**
+     * Memory-map a pack and read its table.
+     */
+    public static ClassPack open(Path packPath) throws IOException {
+        FileChannel channel = FileChannel.open(packPath);
+        try {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.BIG_ENDIAN);
+
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Not a class pack (or wrong version): " + packPath);
+            }
+
+            int count = data.getInt(8);
+            ByteBuffer table = data.duplicate().position(16);
+            Map<String, long[]> entries = new HashMap<>(count * 2);
+
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[table.getShort() & 0xFFFF];
+                table.get(name);
+                long offset = table.getLong();
+                int length = table.getInt();
+
+                String entryName = new String(name, StandardCharsets.UTF_8);
+                String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+                entries.put(className, new long[] {offset, length});
+            }
+
+            return new ClassPack(channel, data, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Bytes of a class as a read-only view into the mapped file, or null.
+     *
+     * @param className binary name, e.g. com.example.payment.PaymentApp
+     */
+    public ByteBuffer classBytes(String className) {
+        long[] entry = entries.get(className);
+        if (entry == null) {
+            return null;
+        }
+        return data.slice((int) entry[0], (int) entry[1]).asReadOnlyBuffer();
+    }
+
+    public boolean contains(String className) {
+        return entries.containsKey(className);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        channel.close();
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
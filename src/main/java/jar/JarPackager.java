@@ -4,15 +4,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 public class JarPackager {
+
+    // Fixed entry timestamp: the same classes always give a byte-identical jar,
+    // so digests (cache keys, shared layers, hot reload) only change with content
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0);
+
     /**
      * Packages compiled .class files from classesDir into jarPath.
-     * Adds a MANIFEST.MF with optional Main-Class.
+     * Adds a MANIFEST.MF with optional Main-Class, and a class index
+     * (see ClassIndex) listing every entry.
      */
     public Path createJar(Path classesDir, Path jarPath, String mainClassOrNull) {
 
@@ -20,50 +30,77 @@ public class JarPackager {
             // ensure parent directory exists
             Files.createDirectories(jarPath.getParent());
 
-            // create jar output stream
-            try (FileOutputStream fos = new FileOutputStream(jarPath.toFile());
-                 JarOutputStream jos = new JarOutputStream(fos)) {
+            // Write to a temp file and move it into place, so a running service
+            // reading the old jar never sees a half-written one
+            Path tmpPath = Files.createTempFile(jarPath.getParent(), jarPath.getFileName().toString(), ".tmp");
+
+            try {
+                // create jar output stream
+                try (FileOutputStream fos = new FileOutputStream(tmpPath.toFile());
+                     JarOutputStream jos = new JarOutputStream(fos)) {
+
+                    // 1. Manifest
+                    Manifest manifest = new Manifest();
+                    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+                    if (mainClassOrNull != null) {
+                        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClassOrNull);
+                    }
+
+                    // Add manifest entry first
+                    JarEntry mfEntry = new JarEntry("META-INF/MANIFEST.MF");
+                    mfEntry.setTimeLocal(ENTRY_TIME);
+                    jos.putNextEntry(mfEntry);
+                    manifest.write(jos);
+                    jos.closeEntry();
 
-                // 1. Manifest
-                Manifest manifest = new Manifest();
-                manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+                    // 2. Add all compiled classes
+                    List<String> entryNames = new ArrayList<>();
+                    Files.walk(classesDir)
+                            .filter(Files::isRegularFile)
+                            .sorted()
+                            .forEach(path -> {
 
-                if (mainClassOrNull != null) {
-                    manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClassOrNull);
+                                // Get path relative to classesDir → com/x/Service.class
+                                String entryName = classesDir
+                                        .relativize(path)
+                                        .toString()
+                                        .replace("\\", "/"); // Windows fix
+
+                                try {
+                                    JarEntry entry = new JarEntry(entryName);
+                                    entry.setTimeLocal(ENTRY_TIME);
+                                    jos.putNextEntry(entry);
+
+                                    Files.copy(path, jos);
+
+                                    jos.closeEntry();
+                                    entryNames.add(entryName);
+                                } catch (IOException e) {
+                                    throw new RuntimeException("Error writing entry: " + entryName, e);
+                                }
+                            });
+
+                    // 3. Class index, so loaders can look classes up without searching
+                    JarEntry indexEntry = new JarEntry(ClassIndex.ENTRY_NAME);
+                    indexEntry.setTimeLocal(ENTRY_TIME);
+                    jos.putNextEntry(indexEntry);
+                    ClassIndex.write(jos, entryNames);
+                    jos.closeEntry();
                 }
 
-                // Add manifest entry first
-                JarEntry mfEntry = new JarEntry("META-INF/MANIFEST.MF");
-                jos.putNextEntry(mfEntry);
-                manifest.write(jos);
-                jos.closeEntry();
-
-                // 2. Add all compiled classes
-                Files.walk(classesDir)
-                        .filter(Files::isRegularFile)
-                        .forEach(path -> {
-
-                            // Get path relative to classesDir → com/x/Service.class
-                            String entryName = classesDir
-                                    .relativize(path)
-                                    .toString()
-                                    .replace("\\", "/"); // Windows fix
-
-                            try {
-                                JarEntry entry = new JarEntry(entryName);
-                                jos.putNextEntry(entry);
-
-                                Files.copy(path, jos);
-
-                                jos.closeEntry();
-                            } catch (IOException e) {
-                                throw new RuntimeException("Error writing entry: " + entryName, e);
-                            }
-                        });
+                Files.move(tmpPath, jarPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return jarPath;
+            } catch (IOException | RuntimeException e) {
+                // Don't leave a <name>.jar*.tmp behind for every failed package
+                try {
+                    Files.deleteIfExists(tmpPath);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
             }
 
-            return jarPath;
-
         } catch (IOException e) {
             throw new RuntimeException("Error creating jar: " + jarPath, e);
         }
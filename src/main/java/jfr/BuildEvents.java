@@ -0,0 +1,93 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of a build, one per stage of each target.
+ *
+ * In a recording they line up with the JVM's own events (GC pauses, JIT
+ * compilations, contended locks) on the same timeline, so a slow compile
+ * can be matched with what the JVM did meanwhile. While no recording is
+ * running, begin() and commit() cost next to nothing.
+ *
+ * Usage:
+ *   BuildEvents.Compile event = new BuildEvents.Compile();
+ *   event.begin();
+ *   ... compile ...
+ *   event.target = name;
+ *   event.commit();
+ */
+public final class BuildEvents {
+
+    private BuildEvents() {
+    }
+
+    @Name("mycoq.TargetScan")
+    @Label("Target Source Scan")
+    @Category({"mycoq", "Build"})
+    @Description("Finding the .java files of a target")
+    @StackTrace(false)
+    public static class Scan extends Event {
+        @Label("Target")
+        public String target;
+
+        @Label("Sources")
+        public int sources;
+    }
+
+    @Name("mycoq.TargetCacheLookup")
+    @Label("Target Remote Cache Lookup")
+    @Category({"mycoq", "Build"})
+    @Description("Looking a target up in the remote cache (and downloading it on a hit)")
+    @StackTrace(false)
+    public static class CacheLookup extends Event {
+        @Label("Target")
+        public String target;
+
+        @Label("Hit")
+        public boolean hit;
+    }
+
+    @Name("mycoq.TargetCompile")
+    @Label("Target Compile")
+    @Category({"mycoq", "Build"})
+    @Description("Compiling the sources of a target with javac")
+    @StackTrace(false)
+    public static class Compile extends Event {
+        @Label("Target")
+        public String target;
+
+        @Label("Sources")
+        public int sources;
+
+        @Label("Classpath Jars")
+        public int classpathJars;
+
+        @Label("Heap Used")
+        @DataAmount
+        public long heapBytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("mycoq.TargetPackage")
+    @Label("Target Package")
+    @Category({"mycoq", "Build"})
+    @Description("Writing the jar of a target")
+    @StackTrace(false)
+    public static class Package extends Event {
+        @Label("Target")
+        public String target;
+
+        @Label("Jar Size")
+        @DataAmount
+        public long jarBytes;
+    }
+}
@@ -0,0 +1,80 @@
+package jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A JDK Flight Recorder recording for the duration of one mycoq command
+ * (--jfr on build and run).
+ *
+ * The recording uses the JDK's "default" settings (GC, JIT, lock and I/O
+ * events at low overhead) plus the mycoq events (BuildEvents,
+ * ServiceEvents), and is written to
+ * <workspace>/.mycoq/recordings/<command>-<timestamp>.jfr, for JDK Mission
+ * Control or `jfr print --events mycoq.* <file>`.
+ */
+public final class FlightRecording implements AutoCloseable {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Recording recording;
+    private final Path file;
+
+    private FlightRecording(Recording recording, Path file) {
+        this.recording = recording;
+        this.file = file;
+    }
+
+    /**
+     * Start recording.
+     *
+     * @param command name used in the file name, e.g. "build" or "run-payment-service"
+     */
+    public static FlightRecording start(Path workspaceRoot, String command) throws IOException {
+        Path dir = workspaceRoot.resolve(".mycoq").resolve("recordings");
+        Files.createDirectories(dir);
+        Path file = dir.resolve(command + "-" + LocalDateTime.now().format(TIMESTAMP) + ".jfr")
+                .toAbsolutePath().normalize();
+
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Could not read the JFR default settings: " + e.getMessage(), e);
+        }
+        recording.setName("mycoq " + command);
+        recording.setDestination(file);
+        // No setDumpOnExit: the JDK's exit hook would race a runtime's shutdown
+        // hook and cut the recording before the services' stop events
+        recording.start();
+
+        System.out.println("[JFR] Recording to " + file);
+        return new FlightRecording(recording, file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Stop recording and write the file.
+     */
+    @Override
+    public void close() {
+        try {
+            recording.stop(); // writes to the destination
+            System.out.println("[JFR] Recording written: " + file);
+        } catch (IllegalStateException e) {
+            // Already stopped
+        } finally {
+            recording.close();
+        }
+    }
+}
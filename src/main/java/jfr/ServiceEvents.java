@@ -0,0 +1,98 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the service lifecycle in a runtime.
+ *
+ * Start and Running bracket a service's startup (Running lasts from the
+ * start until main() is about to run), Stop lasts from the stop request
+ * until the service ended or gave up, and Failure marks a service whose
+ * main() threw. ClassLoaderCreated records each service ClassLoader and
+ * shared layer, to match against class loading and metaspace events.
+ */
+public final class ServiceEvents {
+
+    private ServiceEvents() {
+    }
+
+    @Name("mycoq.ServiceStart")
+    @Label("Service Start")
+    @Category({"mycoq", "Runtime"})
+    @Description("A service is being started")
+    @StackTrace(false)
+    public static class Start extends Event {
+        @Label("Service")
+        public String service;
+
+        @Label("Thread Mode")
+        public String mode;
+    }
+
+    @Name("mycoq.ServiceRunning")
+    @Label("Service Running")
+    @Category({"mycoq", "Runtime"})
+    @Description("A service reached RUNNING; the duration is its time from start")
+    @StackTrace(false)
+    public static class Running extends Event {
+        @Label("Service")
+        public String service;
+    }
+
+    @Name("mycoq.ServiceStop")
+    @Label("Service Stop")
+    @Category({"mycoq", "Runtime"})
+    @Description("Draining and interrupting a service until it ended")
+    @StackTrace(false)
+    public static class Stop extends Event {
+        @Label("Service")
+        public String service;
+
+        @Label("Drain Callbacks")
+        public int drainCallbacks;
+
+        @Label("Stopped")
+        @Description("False if the service was still running at the deadline")
+        public boolean stopped;
+    }
+
+    @Name("mycoq.ServiceFailure")
+    @Label("Service Failure")
+    @Category({"mycoq", "Runtime"})
+    @Description("A service's main() failed")
+    @StackTrace(false)
+    public static class Failure extends Event {
+        @Label("Service")
+        public String service;
+
+        @Label("Exception")
+        public String exception;
+
+        @Label("Message")
+        public String message;
+    }
+
+    @Name("mycoq.ClassLoaderCreated")
+    @Label("ClassLoader Created")
+    @Category({"mycoq", "Runtime"})
+    @Description("A service ClassLoader or shared layer was created")
+    @StackTrace(false)
+    public static class ClassLoaderCreated extends Event {
+        @Label("Loader")
+        public String loader;
+
+        @Label("Jars")
+        public int jars;
+
+        @Label("Shared Layers")
+        public int layers;
+
+        @Label("Packed")
+        public boolean packed;
+    }
+}
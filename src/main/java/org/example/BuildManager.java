@@ -4,16 +4,24 @@ import Model.BuildTarget;
 import Model.BuildTargetFactory;
 import com.myboq.manifest.model.Node;
 import com.myboq.manifest.model.NodeFactory;
+import com.myboq.manifest.model.NodeType;
 import com.myboq.manifest.parser.ManifestParser;
+import compile.CompileWorkerPool;
 import compile.JavaCompileService;
 import exec.BuildExecutor;
+import exec.BuildOptions;
+import exec.InMemoryBuild;
 import fs.SourceScanner;
 import jar.JarPackager;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +39,17 @@ public class BuildManager {
      * @param manifestDir   workspaceRoot/manifests
      */
     public void build(Path workspaceRoot, Path manifestDir) throws Exception {
+        build(workspaceRoot, manifestDir, new BuildOptions());
+    }
+
+    /**
+     * Build entire workspace with the given options.
+     *
+     * @param workspaceRoot /absolute/path/to/workspace
+     * @param manifestDir   workspaceRoot/manifests
+     * @param options       build options (remote cache, ...)
+     */
+    public void build(Path workspaceRoot, Path manifestDir, BuildOptions options) throws Exception {
 
         ManifestParser parser = new ManifestParser();
 
@@ -57,14 +76,8 @@ public class BuildManager {
 
         System.out.println("\n=== STARTING BUILD ===");
 
-        // 3. Create helpers
-        JavaCompileService compiler = new JavaCompileService();
-        SourceScanner scanner = new SourceScanner();
-        JarPackager packager = new JarPackager();
-
-        // 4. Execute build
-        BuildExecutor executor = new BuildExecutor(compiler, scanner, packager);
-        executor.execute(nodes, targetsByName, workspaceRoot.resolve("build"));
+        // 3-4. Create helpers and execute build
+        runExecutor(nodes, targetsByName, workspaceRoot, options);
 
         System.out.println("\n=== BUILD DONE SUCCESSFULLY ===");
     }
@@ -77,6 +90,88 @@ public class BuildManager {
      * @param targetName    name of the target to build
      */
     public void buildTarget(Path workspaceRoot, Path manifestDir, String targetName) throws Exception {
+        buildTarget(workspaceRoot, manifestDir, targetName, new BuildOptions());
+    }
+
+    /**
+     * Build a specific target and its dependencies with the given options.
+     *
+     * @param workspaceRoot /absolute/path/to/workspace
+     * @param manifestDir   workspaceRoot/manifests
+     * @param targetName    name of the target to build
+     * @param options       build options (remote cache, ...)
+     */
+    public void buildTarget(Path workspaceRoot, Path manifestDir, String targetName,
+                            BuildOptions options) throws Exception {
+        List<Node> nodesToBuild = loadTargetNodes(manifestDir, targetName);
+
+        // 6. Node → BuildTarget
+        BuildTargetFactory targetFactory = new BuildTargetFactory(workspaceRoot);
+        Map<String, BuildTarget> targetsByName = nodesToBuild.stream()
+                .map(targetFactory::fromNode)
+                .collect(Collectors.toMap(BuildTarget::getName, t -> t));
+
+        System.out.println("\n=== STARTING BUILD ===");
+
+        // 7-8. Create helpers and execute build
+        runExecutor(nodesToBuild, targetsByName, workspaceRoot, options);
+
+        System.out.println("\n=== BUILD DONE SUCCESSFULLY ===");
+    }
+
+    /**
+     * Build a target and its dependencies in memory, for `run --build`:
+     * returns as soon as everything is compiled, while the jars are written
+     * in the background (see BuildExecutor.executeInMemory).
+     *
+     * @param workspaceRoot /absolute/path/to/workspace
+     * @param manifestDir   workspaceRoot/manifests
+     * @param targetName    name of the target to build
+     * @param options       build options (--pack-classes, ...)
+     * @return the compiled output of each target and the pending artifacts
+     */
+    public InMemoryBuild buildInMemory(Path workspaceRoot, Path manifestDir, String targetName,
+                                       BuildOptions options) throws Exception {
+        List<Node> nodesToBuild = loadTargetNodes(manifestDir, targetName);
+
+        BuildTargetFactory targetFactory = new BuildTargetFactory(workspaceRoot);
+        Map<String, BuildTarget> targetsByName = nodesToBuild.stream()
+                .map(targetFactory::fromNode)
+                .collect(Collectors.toMap(BuildTarget::getName, t -> t));
+
+        // A service only needs its own dependencies. A bundle's includes are not
+        // dependencies, so a bundle builds everything before it, as buildTarget does.
+        if (targetsByName.get(targetName).getType() != NodeType.COMPOSITE) {
+            Set<String> needed = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>(List.of(targetName));
+            while (!pending.isEmpty()) {
+                String name = pending.pop();
+                if (needed.add(name) && targetsByName.containsKey(name)) {
+                    pending.addAll(targetsByName.get(name).getDependencyNames());
+                }
+            }
+            nodesToBuild = nodesToBuild.stream()
+                    .filter(n -> needed.contains(n.getName()))
+                    .collect(Collectors.toList());
+            targetsByName.keySet().retainAll(needed);
+        }
+
+        System.out.println("\n=== STARTING BUILD (IN MEMORY) ===");
+
+        BuildExecutor executor = new BuildExecutor(
+                new JavaCompileService(), new SourceScanner(), new JarPackager(), options);
+        InMemoryBuild build = executor.executeInMemory(nodesToBuild, targetsByName);
+
+        System.out.println("\n=== BUILD DONE (jars are written in the background) ===");
+        return build;
+    }
+
+    /**
+     * Load the manifests and pick a target and its dependencies.
+     *
+     * @return nodes of the target and everything it depends on
+     */
+    private List<Node> loadTargetNodes(Path manifestDir, String targetName) throws Exception {
         ManifestParser parser = new ManifestParser();
 
         System.out.println("=== LOADING MANIFESTS ===");
@@ -112,27 +207,34 @@ public class BuildManager {
         System.out.println("Building target and dependencies: " + requiredNodes);
 
         // 5. Filter nodes to only those required
-        List<Node> nodesToBuild = allNodes.stream()
+        return allNodes.stream()
                 .filter(n -> requiredNodes.contains(n.getName()))
                 .collect(Collectors.toList());
+    }
 
-        // 6. Node → BuildTarget
-        BuildTargetFactory targetFactory = new BuildTargetFactory(workspaceRoot);
-        Map<String, BuildTarget> targetsByName = nodesToBuild.stream()
-                .map(targetFactory::fromNode)
-                .collect(Collectors.toMap(BuildTarget::getName, t -> t));
-
-        System.out.println("\n=== STARTING BUILD ===");
-
-        // 7. Create helpers
-        JavaCompileService compiler = new JavaCompileService();
-        SourceScanner scanner = new SourceScanner();
-        JarPackager packager = new JarPackager();
-
-        // 8. Execute build
-        BuildExecutor executor = new BuildExecutor(compiler, scanner, packager);
-        executor.execute(nodesToBuild, targetsByName, workspaceRoot.resolve("build"));
-
-        System.out.println("\n=== BUILD DONE SUCCESSFULLY ===");
+    /**
+     * Create helpers and run BuildExecutor.
+     * Worker JVMs (if enabled) are released afterwards but keep running, warm for the next build.
+     */
+    private void runExecutor(List<Node> nodes,
+                             Map<String, BuildTarget> targetsByName,
+                             Path workspaceRoot,
+                             BuildOptions options) throws Exception {
+        CompileWorkerPool workerPool = options.getWorkers() > 0
+                ? new CompileWorkerPool(options.getWorkers(), options.getWorkerHeap(), options.getWorkerMaxRequests())
+                : null;
+
+        try {
+            JavaCompileService compiler = new JavaCompileService(workerPool);
+            SourceScanner scanner = new SourceScanner();
+            JarPackager packager = new JarPackager();
+
+            BuildExecutor executor = new BuildExecutor(compiler, scanner, packager, options);
+            executor.execute(nodes, targetsByName, workspaceRoot.resolve("build"));
+        } finally {
+            if (workerPool != null) {
+                workerPool.close();
+            }
+        }
     }
 }
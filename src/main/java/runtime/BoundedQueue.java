@@ -0,0 +1,104 @@
+package runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and consumers.
+ *
+ * CONCEPT: Sequence Numbers per Slot
+ * ----------------------------------
+ * The queue is a ring of `capacity` slots (a power of two). Producers claim
+ * the next tail position with a CAS, consumers the next head position. Each
+ * slot carries a sequence number saying whose turn it is:
+ *
+ *   sequence == position        slot is free, a producer may write it
+ *   sequence == position + 1    slot is full, a consumer may read it
+ *
+ * After reading, a consumer sets the sequence to position + capacity: free
+ * for the producer one lap later. No thread ever waits for a lock; a full
+ * queue makes offer() return false and an empty one makes poll() return
+ * null, so callers decide how to wait (see MessageBus).
+ */
+final class BoundedQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    BoundedQueue(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Queue capacity must be at least 2: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1; // next power of two
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an item.
+     *
+     * @return false if the queue is full
+     */
+    boolean offer(E item) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.set(slot, item);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // the slot still holds an item from the last lap
+            }
+            // else another producer took this position; retry
+        }
+    }
+
+    /**
+     * Remove the oldest item.
+     *
+     * @return the item, or null if the queue is empty
+     */
+    E poll() {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E item = items.get(slot);
+                    items.set(slot, null);
+                    sequences.set(slot, position + mask + 1);
+                    return item;
+                }
+            } else if (difference < 0) {
+                return null; // nothing written here yet
+            }
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of items (a snapshot; exact only when no one is adding or removing).
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,383 @@
+package runtime;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ClassLoaderLeakDetector checks that the ClassLoaders of stopped and
+ * reloaded services are garbage collected.
+ *
+ * CONCEPT: ClassLoader Leaks
+ * --------------------------
+ * A ClassLoader and every class it defined (their metaspace, their static
+ * fields) stay in memory as long as anything reachable points at one of
+ * them. After a service stops, typical culprits are:
+ *
+ *   - a thread the service started and never stopped, or a thread whose
+ *     context ClassLoader is still the service's loader
+ *   - a ThreadLocal value of a pooled thread holding one of its objects
+ *   - a static cache in a shared layer (a dependency loaded once for all
+ *     services) that still holds one of its objects
+ *
+ * One such reference is enough to keep the whole loader alive, so every
+ * stop/start or reload leaks another copy of the service's classes until
+ * the runtime runs out of metaspace.
+ *
+ * HOW LEAKS ARE FOUND:
+ * --------------------
+ * Each retired loader is tracked with a PhantomReference: the JVM queues it
+ * once the loader is really gone. GRACE_PERIOD after retiring, a loader
+ * whose reference was not queued (even after asking for a GC) is reported
+ * as leaked, with the likely roots found by scanning live threads, their
+ * ThreadLocals and the static fields of shared layer classes for anything
+ * defined by the loader. A leaked loader that is collected later drops off
+ * the report.
+ *
+ * Only platform threads are scanned (virtual threads can't be listed), and
+ * ThreadLocals only if java.lang is open to the runtime
+ * (--add-opens java.base/java.lang=ALL-UNNAMED).
+ */
+public class ClassLoaderLeakDetector implements AutoCloseable {
+
+    // How long a retired loader has to be collected before it is reported
+    public static final Duration GRACE_PERIOD = Duration.ofSeconds(10);
+
+    // Elements of a static collection looked at for references
+    private static final int SCAN_LIMIT = 1000;
+
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+
+    // Phantom reference → loader it tracks, until the loader is collected
+    private final Map<Reference<?>, Retired> retired = new ConcurrentHashMap<>();
+
+    // Loaders whose static fields may hold a service's objects
+    private final Supplier<List<ServiceClassLoader>> sharedLoaders;
+
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = Thread.ofPlatform().name("classloader-leaks").daemon(true).unstarted(task);
+        // Not inherited from whichever (service) thread schedules the first check
+        thread.setContextClassLoader(ClassLoaderLeakDetector.class.getClassLoader());
+        return thread;
+    });
+
+    public ClassLoaderLeakDetector(Supplier<List<ServiceClassLoader>> sharedLoaders) {
+        this.sharedLoaders = sharedLoaders;
+    }
+
+    /**
+     * A loader that was not collected after its grace period.
+     *
+     * @param metaspaceBytes estimated from the runtime's average metaspace per class
+     * @param roots          likely references keeping it alive
+     */
+    public record Leak(String serviceName, String loaderName, int classes, long metaspaceBytes,
+                       Instant retiredAt, List<String> roots) {
+    }
+
+    /**
+     * Watch a loader the runtime no longer uses; report it if it is still
+     * alive after GRACE_PERIOD.
+     */
+    public void track(String serviceName, ServiceClassLoader loader) {
+        Retired entry = new Retired(serviceName, loader, queue);
+        retired.put(entry.phantom, entry);
+        checker.schedule(() -> check(entry), GRACE_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loaders reported as leaked and still not collected.
+     */
+    public List<Leak> getLeaks() {
+        expunge();
+        return retired.values().stream()
+                .filter(entry -> entry.leak != null)
+                .map(entry -> entry.leak)
+                .sorted(Comparator.comparing(Leak::retiredAt))
+                .toList();
+    }
+
+    /**
+     * Number of retired loaders waiting to be collected (leaked or not yet checked).
+     */
+    public int getPendingCount() {
+        expunge();
+        return retired.size();
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    private void check(Retired entry) {
+        expunge();
+        if (!retired.containsKey(entry.phantom)) {
+            return;
+        }
+
+        // Unreachable loaders are only queued once a GC ran
+        System.gc();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (retired.containsKey(entry.phantom) && System.nanoTime() < deadline) {
+                Reference<?> reference = queue.remove(100);
+                if (reference != null) {
+                    retired.remove(reference);
+                }
+            }
+        } catch (InterruptedException e) {
+            return; // closing
+        }
+        if (!retired.containsKey(entry.phantom)) {
+            return;
+        }
+
+        ClassLoader loader = entry.weak.get();
+        if (loader == null) {
+            return; // unreachable, about to be collected
+        }
+
+        List<String> roots = findRoots(loader);
+        entry.leak = new Leak(entry.serviceName, entry.loaderName, entry.classes,
+                entry.classes * metaspacePerClass(), entry.retiredAt, roots);
+
+        System.err.println("[Leaks] ClassLoader of " + entry.serviceName + " (" + entry.classes
+                + " classes) is still alive " + GRACE_PERIOD.toSeconds() + "s after it was retired");
+        if (roots.isEmpty()) {
+            System.err.println("[Leaks]   no thread, ThreadLocal or shared static field found holding it");
+        }
+        for (String root : roots) {
+            System.err.println("[Leaks]   held by " + root);
+        }
+    }
+
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            retired.remove(reference);
+        }
+    }
+
+    /**
+     * Live threads, ThreadLocals and shared static fields that reference
+     * something the loader defined.
+     */
+    List<String> findRoots(ClassLoader loader) {
+        List<String> roots = new ArrayList<>();
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getContextClassLoader() == loader) {
+                roots.add("thread \"" + thread.getName() + "\" (its context ClassLoader)");
+            } else if (thread.getClass().getClassLoader() == loader) {
+                roots.add("thread \"" + thread.getName() + "\" (a " + thread.getClass().getName() + ")");
+            }
+            roots.addAll(threadLocalRoots(thread, loader));
+        }
+
+        for (ServiceClassLoader shared : sharedLoaders.get()) {
+            for (Class<?> type : shared.getDefinedClasses()) {
+                roots.addAll(staticRoots(type, shared, loader));
+            }
+        }
+        return roots;
+    }
+
+    private static List<String> staticRoots(Class<?> type, ServiceClassLoader shared, ClassLoader loader) {
+        List<String> roots = new ArrayList<>();
+        Field[] fields;
+        try {
+            fields = type.getDeclaredFields();
+        } catch (LinkageError e) {
+            return roots;
+        }
+
+        for (Field field : fields) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                Object held = holds(field.get(null), loader);
+                if (held != null) {
+                    roots.add("static field " + type.getName() + "." + field.getName()
+                            + " (" + shared.getServiceName() + ") holding a " + held.getClass().getName());
+                }
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                // Not readable; skip
+            }
+        }
+        return roots;
+    }
+
+    private static List<String> threadLocalRoots(Thread thread, ClassLoader loader) {
+        List<String> roots = new ArrayList<>();
+        Object[] table = ThreadLocals.table(thread);
+        if (table == null) {
+            return roots;
+        }
+
+        for (Object entry : table) {
+            if (entry == null) {
+                continue;
+            }
+            Object key = ((Reference<?>) entry).get();
+            Object held = holds(ThreadLocals.value(entry), loader);
+            if (held == null && key != null && key.getClass().getClassLoader() == loader) {
+                held = key;
+            }
+            if (held != null) {
+                roots.add("ThreadLocal of thread \"" + thread.getName() + "\" holding a "
+                        + held.getClass().getName());
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * The object (or an element of the collection, map or array) defined
+     * by the loader, or null.
+     */
+    private static Object holds(Object value, ClassLoader loader) {
+        if (value == null) {
+            return null;
+        }
+        if (definedBy(value, loader)) {
+            return value;
+        }
+
+        Collection<?> elements = switch (value) {
+            case Collection<?> collection -> collection;
+            case Map<?, ?> map -> {
+                List<Object> both = new ArrayList<>(map.keySet());
+                both.addAll(map.values());
+                yield both;
+            }
+            case Object[] array -> List.of(array);
+            default -> List.of();
+        };
+
+        int scanned = 0;
+        try {
+            for (Object element : elements) {
+                if (element != null && definedBy(element, loader)) {
+                    return element;
+                }
+                if (++scanned == SCAN_LIMIT) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Modified while scanning
+        }
+        return null;
+    }
+
+    private static boolean definedBy(Object value, ClassLoader loader) {
+        return value == loader
+                || value.getClass().getClassLoader() == loader
+                || (value instanceof Class<?> type && type.getClassLoader() == loader);
+    }
+
+    /**
+     * Metaspace in use divided by the classes loaded (an estimate; the JVM
+     * doesn't report metaspace per loader).
+     */
+    private static long metaspacePerClass() {
+        long classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace") && classes > 0) {
+                return pool.getUsage().getUsed() / classes;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A loader the runtime retired. Only the references are kept, never the
+     * loader itself.
+     */
+    private static final class Retired {
+        final String serviceName;
+        final String loaderName;
+        final int classes;
+        final Instant retiredAt = Instant.now();
+        final PhantomReference<ClassLoader> phantom;
+        final WeakReference<ClassLoader> weak; // to inspect a loader that leaked
+        volatile Leak leak;
+
+        Retired(String serviceName, ServiceClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+            this.serviceName = serviceName;
+            this.loaderName = loader.toString();
+            this.classes = loader.getLoadedClassCount();
+            this.phantom = new PhantomReference<>(loader, queue);
+            this.weak = new WeakReference<>(loader);
+        }
+    }
+
+    /**
+     * Reads Thread.threadLocals by reflection, if java.lang is open to us.
+     */
+    private static final class ThreadLocals {
+        private static final Field MAP;
+        private static final Field TABLE;
+        private static final Field VALUE;
+
+        static {
+            Field map = null;
+            Field table = null;
+            Field value = null;
+            try {
+                map = Thread.class.getDeclaredField("threadLocals");
+                map.setAccessible(true);
+                Class<?> mapType = Class.forName("java.lang.ThreadLocal$ThreadLocalMap");
+                table = mapType.getDeclaredField("table");
+                table.setAccessible(true);
+                value = Class.forName("java.lang.ThreadLocal$ThreadLocalMap$Entry").getDeclaredField("value");
+                value.setAccessible(true);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                map = null; // not opened: ThreadLocals are not scanned
+            }
+            MAP = map;
+            TABLE = table;
+            VALUE = value;
+        }
+
+        static Object[] table(Thread thread) {
+            if (MAP == null) {
+                return null;
+            }
+            try {
+                Object map = MAP.get(thread);
+                return map != null ? ((Object[]) TABLE.get(map)).clone() : null;
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        static Object value(Object entry) {
+            try {
+                return VALUE.get(entry);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package runtime;
+
+/**
+ * How a service's threads are created.
+ *
+ * PLATFORM - one OS thread per service and per task (the classic model).
+ *            Each thread reserves its own stack, typically ~1 MB.
+ * VIRTUAL  - lightweight virtual threads scheduled by the JVM onto a few
+ *            carrier threads. An idle virtual thread costs a few hundred
+ *            bytes to a few KB of heap, so hundreds of small services fit
+ *            in one runtime host.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    /**
+     * Parse a mode name as given on the command line ("virtual", "platform").
+     */
+    public static ExecutionMode parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Unknown thread mode: " + value + " (expected 'platform' or 'virtual')");
+        }
+    }
+
+    /**
+     * Create an unstarted thread of this kind.
+     */
+    public Thread newThread(String name, Runnable task) {
+        return switch (this) {
+            case PLATFORM -> Thread.ofPlatform().name(name).unstarted(task);
+            case VIRTUAL -> Thread.ofVirtual().name(name).unstarted(task);
+        };
+    }
+}
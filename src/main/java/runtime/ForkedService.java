@@ -0,0 +1,92 @@
+package runtime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service running in its own JVM (a ServiceWorker), as seen by the runtime
+ * that forked it: the worker process plus the control connection to it.
+ *
+ * The worker stops its service when it reads "stop" or when the connection
+ * closes, so a host that exits takes its forked services with it.
+ */
+public class ForkedService {
+
+    // How long a worker may take to stop its service before it is killed
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final Process process;
+    private final SocketChannel control;
+    private final Path logFile;
+
+    ForkedService(Process process, SocketChannel control, Path logFile) {
+        this.process = process;
+        this.control = control;
+        this.logFile = logFile;
+    }
+
+    public long getPid() {
+        return process.pid();
+    }
+
+    /**
+     * File the service's output goes to.
+     */
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Completes with the worker's exit code when its JVM exits.
+     */
+    public CompletableFuture<Integer> onExit() {
+        return process.onExit().thenApply(Process::exitValue);
+    }
+
+    /**
+     * Ask the worker to stop its service; kill the JVM if it takes too long.
+     *
+     * @return true if the worker exited on its own
+     */
+    public boolean stop() {
+        return stop(STOP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Ask the worker to stop its service; kill the JVM if it takes longer
+     * than timeoutMillis.
+     *
+     * @return true if the worker exited on its own
+     */
+    public boolean stop(long timeoutMillis) {
+        try {
+            control.write(ByteBuffer.wrap("stop\n".getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            // Worker already gone or going
+        }
+
+        try {
+            if (process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                control.close();
+            } catch (IOException ignored) {}
+        }
+
+        process.destroyForcibly();
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Client side of the RuntimeHost control socket: sends one request and
+ * returns the host's answer.
+ */
+public class HostClient {
+
+    private final Path socketPath;
+
+    public HostClient(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Client for a workspace's runtime host.
+     */
+    public static HostClient forWorkspace(Path workspaceRoot) {
+        return new HostClient(RuntimeHost.socketFor(workspaceRoot));
+    }
+
+    /**
+     * True if a host is listening (the socket file may outlive a killed host).
+     */
+    public boolean isHostRunning() {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            return channel.isConnected();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send a request line, e.g. "stop payment-service".
+     */
+    public Response send(String request) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+            channel.write(ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            InputStream in = Channels.newInputStream(channel);
+            String reply = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+
+            int newline = reply.indexOf('\n');
+            String status = newline == -1 ? reply : reply.substring(0, newline);
+            String body = newline == -1 ? "" : reply.substring(newline + 1);
+            return new Response(status.equals("OK"), body);
+        }
+    }
+
+    /**
+     * The host's answer: whether the request succeeded, and its output or error message.
+     */
+    public record Response(boolean ok, String body) {
+    }
+}
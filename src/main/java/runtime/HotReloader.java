@@ -0,0 +1,189 @@
+package runtime;
+
+import cache.Digests;
+import jar.ClassIndex;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HotReloader watches service jars and triggers a reload when one is rebuilt.
+ *
+ * CONCEPT: WatchService
+ * ---------------------
+ * The OS can tell a program when files in a directory change (inotify on
+ * Linux, FSEvents on macOS). Java exposes this as a WatchService: register a
+ * directory, then block on take() until something in it changes. No polling
+ * loop re-reading every jar.
+ *
+ * WHEN IS A JAR "CHANGED"?
+ * ------------------------
+ * A build touches a jar several times, and a rebuild may produce the same
+ * bytes. So after an event the reloader:
+ *   1. waits until no event arrived for QUIET_MILLIS (the build is done writing)
+ *   2. checks the jar is readable (a complete zip with its class index)
+ *   3. compares its SHA-256 with the jar the service was started from
+ * and only reloads when the content really differs.
+ */
+public class HotReloader implements AutoCloseable {
+
+    // How long a jar must stay untouched before it is considered written
+    private static final long QUIET_MILLIS = 300;
+
+    // How often to look for service directories that were deleted and re-created
+    private static final long RESCAN_MILLIS = 2000;
+
+    /**
+     * What to do when a service's jar changed.
+     */
+    public interface ReloadAction {
+        void reload(String serviceName) throws Exception;
+    }
+
+    private final ReloadAction action;
+    private final WatchService watcher;
+
+    // Build directory → service whose jar lives there
+    private final Map<Path, String> serviceByDir = new ConcurrentHashMap<>();
+    // Directories currently registered with the watcher
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+    // Service → digest of the jar its running instance was loaded from
+    private final Map<String, String> digestByService = new ConcurrentHashMap<>();
+    private final Map<String, Path> jarByService = new ConcurrentHashMap<>();
+
+    private Thread thread;
+
+    public HotReloader(ReloadAction action) throws IOException {
+        this.action = action;
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Start the watcher thread.
+     */
+    public void start() {
+        thread = Thread.ofPlatform().name("hot-reloader").daemon(true).start(this::watchLoop);
+        System.out.println("[Reload] Watching service jars for changes");
+    }
+
+    /**
+     * Watch a service's jar (called whenever a service starts).
+     */
+    public void watch(String serviceName, Path jarPath) {
+        jarByService.put(serviceName, jarPath);
+        digestByService.put(serviceName, Digests.sha256(jarPath));
+
+        Path dir = jarPath.toAbsolutePath().getParent();
+        serviceByDir.put(dir, serviceName);
+        register(dir);
+    }
+
+    private boolean register(Path dir) {
+        if (watchedDirs.contains(dir)) {
+            return false;
+        }
+        try {
+            dir.register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.add(dir);
+            return true;
+        } catch (IOException e) {
+            return false; // e.g. removed by clean; retried by rescan()
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                // Wait until something changes, then collect events until it's quiet
+                Set<String> changed = ConcurrentHashMap.newKeySet();
+                WatchKey key = watcher.poll(RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    rescan(changed);
+                }
+
+                while (key != null) {
+                    collect(key, changed);
+                    key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (String serviceName : changed) {
+                    reloadIfChanged(serviceName);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        Path dir = (Path) key.watchable();
+        String serviceName = serviceByDir.get(dir);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (serviceName != null && context instanceof Path file
+                    && file.getFileName().toString().equals(serviceName + ".jar")) {
+                changed.add(serviceName);
+            }
+        }
+
+        // An invalid key means the directory is gone (clean); rescan() re-registers it
+        if (!key.reset()) {
+            watchedDirs.remove(dir);
+        }
+    }
+
+    /**
+     * Re-register service directories that were deleted and re-created
+     * (mycoq clean, then build). Their jars are checked as if changed.
+     */
+    private void rescan(Set<String> changed) {
+        serviceByDir.forEach((dir, serviceName) -> {
+            if (!watchedDirs.contains(dir) && Files.isDirectory(dir) && register(dir)) {
+                changed.add(serviceName);
+            }
+        });
+    }
+
+    private void reloadIfChanged(String serviceName) {
+        Path jarPath = jarByService.get(serviceName);
+
+        try {
+            if (!Files.exists(jarPath)) {
+                return; // deleted by clean; keep the running version
+            }
+            ClassIndex.read(jarPath); // fails if the jar is incomplete
+
+            String digest = Digests.sha256(jarPath);
+            if (digest.equals(digestByService.get(serviceName))) {
+                return; // rebuilt, but the same bytes
+            }
+
+            action.reload(serviceName);
+            digestByService.put(serviceName, digest);
+        } catch (Exception e) {
+            System.err.println("[Reload] ✗ Reload of " + serviceName + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package runtime;
+
+import jar.ClassIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * InMemoryClassLoader defines classes from bytes javac produced in this
+ * process (`mycoq run --build`), without any jar.
+ *
+ * CONCEPT: Skipping the Disk
+ * --------------------------
+ * A normal start goes source → .class files → jar → ServiceClassLoader,
+ * which opens the jar and reads every class back out of it. When the build
+ * runs in the same JVM as the service, javac's output is already a byte[]
+ * per file, which is exactly what defineClass() takes. This loader is
+ * handed those arrays, keyed by the entry names they would have in the jar
+ * (com/x/Foo.class, META-INF/services/...), so the service starts as soon
+ * as javac is done; the jars are written in the background for the next run.
+ *
+ * Everything a jar would hold is here, resources included: getResource()
+ * answers with memory: URLs that read the same bytes.
+ *
+ * Like a jar-based service, a service compiled in memory holds only its own
+ * output; each dependency compiled with it becomes a shared layer of its
+ * own (an InMemoryClassLoader too, see SharedLayers), so services started
+ * from the same build see the same dependency classes and can exchange
+ * them over the MessageBus.
+ */
+public class InMemoryClassLoader extends ServiceClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    // Entry name (com/x/Foo.class) → file content
+    private final Map<String, byte[]> files;
+
+    // Opens the memory: URLs of this loader's resources
+    private final URLStreamHandler handler = new MemoryHandler();
+
+    /**
+     * @param serviceName Name of the service (for debugging)
+     * @param files       Class files and resources, by entry name
+     * @param parent      Parent classloader (usually the system classloader)
+     */
+    public InMemoryClassLoader(String serviceName, Map<String, byte[]> files, ClassLoader parent) {
+        this(serviceName, files, parent, List.of());
+    }
+
+    /**
+     * @param serviceName Name of the service (for debugging)
+     * @param files       Class files and resources, by entry name
+     * @param parent      Parent classloader (usually the system classloader)
+     * @param layers      Loaders of the dependencies
+     */
+    public InMemoryClassLoader(String serviceName, Map<String, byte[]> files, ClassLoader parent,
+                               List<ServiceClassLoader> layers) {
+        super(serviceName, List.of(), parent, layers, Set.copyOf(files.keySet()));
+        this.files = Map.copyOf(files);
+    }
+
+    /**
+     * Define a class from its bytes.
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = files.get(name.replace('.', '/') + ".class");
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (!files.containsKey(name)) {
+            return null;
+        }
+        try {
+            URI uri = new URI("memory", null, "/" + getServiceName() + "/" + name, null);
+            return URL.of(uri, handler);
+        } catch (URISyntaxException | IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) {
+        URL url = findResource(name);
+        return url == null ? Collections.emptyEnumeration() : Collections.enumeration(List.of(url));
+    }
+
+    /**
+     * Number of classes available from memory.
+     */
+    public int getCompiledClassCount() {
+        return (int) files.keySet().stream().filter(entry -> entry.endsWith(".class")).count();
+    }
+
+    /**
+     * True if a jar holds exactly this loader's files, byte for byte (apart
+     * from its manifest and class index).
+     */
+    public boolean hasSameFilesAs(Path jarPath) throws IOException {
+        try (JarFile jar = new JarFile(jarPath.toFile())) {
+            int matched = 0;
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.equals(JarFile.MANIFEST_NAME) || name.equals(ClassIndex.ENTRY_NAME)) {
+                    continue;
+                }
+
+                byte[] bytes = files.get(name);
+                try (InputStream in = jar.getInputStream(entry)) {
+                    if (bytes == null || !Arrays.equals(bytes, in.readAllBytes())) {
+                        return false;
+                    }
+                }
+                matched++;
+            }
+            return matched == files.size();
+        }
+    }
+
+    /**
+     * Serves memory:/<loader>/<entry> URLs from this loader's files.
+     */
+    private final class MemoryHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            String path;
+            try {
+                path = url.toURI().getPath();
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            String prefix = "/" + getServiceName() + "/";
+            byte[] bytes = path.startsWith(prefix) ? files.get(path.substring(prefix.length())) : null;
+            if (bytes == null) {
+                throw new FileNotFoundException(url.toString());
+            }
+
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(bytes);
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return bytes.length;
+                }
+            };
+        }
+
+        // The default resolves the host name; these URLs have none
+        @Override
+        protected boolean equals(URL a, URL b) {
+            return a.toExternalForm().equals(b.toExternalForm());
+        }
+
+        @Override
+        protected int hashCode(URL url) {
+            return url.toExternalForm().hashCode();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package runtime;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadBalancer is the TCP front end of a service's replicas.
+ *
+ * CONCEPT: One Thread, Many Connections
+ * -------------------------------------
+ * A proxy with a thread per connection spends most of its threads blocked
+ * in read(). With non-blocking channels, one thread asks a Selector "which
+ * sockets are ready?" and only touches those, so thousands of connections
+ * cost one thread:
+ *
+ *   client ──→ [front port] ──→ replica #1 (port 41231)
+ *                           └─→ replica #2 (port 41232)
+ *
+ * Each accepted client gets a connection to one replica, and bytes are
+ * copied both ways through two small buffers. When a side can't take more
+ * (its buffer is not drained), the balancer stops reading from the other
+ * side until it can: backpressure instead of growing buffers.
+ *
+ * CONCEPT: Least Connections
+ * --------------------------
+ * Round robin assumes every connection costs the same. A new client goes to
+ * the healthy replica with the fewest open connections instead, so a
+ * replica stuck with slow clients gets fewer new ones.
+ *
+ * A replica is healthy while it is RUNNING. A replica that refuses a
+ * connection (not listening yet, or overloaded) is skipped for
+ * RETRY_DOWN_MILLIS, and the client is tried on the next one.
+ */
+public class LoadBalancer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final long RETRY_DOWN_MILLIS = 2000;
+
+    private final String serviceName;
+    private final int port;
+    private final List<Backend> backends = new CopyOnWriteArrayList<>();
+    private final AtomicLong totalConnections = new AtomicLong();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+
+    public LoadBalancer(String serviceName, int port) {
+        this.serviceName = serviceName;
+        this.port = port;
+    }
+
+    /**
+     * Bind the front port and start proxying on a background thread.
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        Thread.ofPlatform().name("load-balancer-" + serviceName).daemon(true).start(this::selectLoop);
+        System.out.println("[Balancer] " + serviceName + " listening on port " + getPort());
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // Closing anyway
+        }
+    }
+
+    /**
+     * Actual bound front port (useful when started with port 0).
+     */
+    public int getPort() {
+        try {
+            return server != null ? ((InetSocketAddress) server.getLocalAddress()).getPort() : port;
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    /**
+     * Send new connections to a replica listening on a loopback port as well.
+     */
+    public void addBackend(String instanceName, int backendPort, ServiceInfo info) {
+        backends.add(new Backend(instanceName, backendPort, info));
+    }
+
+    /**
+     * Send no new connections to a replica (open ones continue until it stops).
+     */
+    public void removeBackend(String instanceName) {
+        backends.removeIf(backend -> backend.instanceName.equals(instanceName));
+    }
+
+    /**
+     * Current state of each replica, for status output.
+     */
+    public List<BackendStatus> getBackends() {
+        return backends.stream()
+                .map(backend -> new BackendStatus(backend.instanceName, backend.port,
+                        backend.active.get(), backend.isHealthy()))
+                .toList();
+    }
+
+    public long getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    private void selectLoop() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                var ready = selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+                    SelectionKey key = ready.next();
+                    ready.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // Closed
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        Side side = (Side) key.attachment();
+        Connection connection = side.connection;
+        try {
+            if (key.isConnectable()) {
+                connection.connected();
+                return;
+            }
+            if (key.isReadable()) {
+                side.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                side.flush();
+            }
+        } catch (IOException e) {
+            if (side == connection.upstream && !connection.upstreamConnected) {
+                connection.retry(); // the replica refused the connection
+            } else {
+                connection.close();
+            }
+        } catch (CancelledKeyException e) {
+            connection.close(); // the connection was closed meanwhile
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel client = server.accept();
+            if (client == null) {
+                return;
+            }
+            client.configureBlocking(false);
+            totalConnections.incrementAndGet();
+            new Connection(client).connectNext();
+        } catch (IOException e) {
+            System.err.println("[Balancer] " + serviceName + ": accept failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Healthy replica with the fewest open connections, or null.
+     */
+    private Backend leastConnections() {
+        return backends.stream()
+                .filter(Backend::isHealthy)
+                .min(Comparator.comparingInt(backend -> backend.active.get()))
+                .orElse(null);
+    }
+
+    /**
+     * A replica behind the balancer.
+     */
+    private static final class Backend {
+        final String instanceName;
+        final int port;
+        final ServiceInfo info;
+        final AtomicInteger active = new AtomicInteger();
+        volatile long downUntil;
+
+        Backend(String instanceName, int port, ServiceInfo info) {
+            this.instanceName = instanceName;
+            this.port = port;
+            this.info = info;
+        }
+
+        boolean isHealthy() {
+            return info.isRunning() && System.currentTimeMillis() >= downUntil;
+        }
+    }
+
+    /**
+     * One client and its connection to a replica.
+     */
+    private final class Connection {
+        final Side client;
+        final Side upstream;
+        Backend backend;
+        boolean upstreamConnected;
+
+        // Replicas tried for this client (each at most once)
+        int attempts;
+
+        Connection(SocketChannel clientChannel) throws IOException {
+            this.client = new Side(this, clientChannel);
+            this.upstream = new Side(this, null);
+            // Read the client from the start, so one that leaves before its replica is connected is noticed
+            client.key = clientChannel.register(selector, SelectionKey.OP_READ, client);
+        }
+
+        Side other(Side side) {
+            return side == client ? upstream : client;
+        }
+
+        /**
+         * Start connecting to the next replica, or drop the client if none is left.
+         */
+        void connectNext() throws IOException {
+            backend = attempts++ < backends.size() ? leastConnections() : null;
+            if (backend == null) {
+                System.err.println("[Balancer] " + serviceName + ": no healthy replica; dropping connection");
+                close();
+                return;
+            }
+            backend.active.incrementAndGet();
+
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            upstream.channel = channel;
+            upstream.key = channel.register(selector, SelectionKey.OP_CONNECT, upstream);
+            if (channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), backend.port))) {
+                connected();
+            }
+        }
+
+        void connected() throws IOException {
+            upstream.channel.finishConnect();
+            upstreamConnected = true;
+            upstream.key.interestOps(SelectionKey.OP_READ);
+            upstream.flush(); // what the client sent meanwhile; resumes reading the client
+        }
+
+        /**
+         * The replica refused the connection: skip it for a while, try another.
+         */
+        void retry() {
+            backend.downUntil = System.currentTimeMillis() + RETRY_DOWN_MILLIS;
+            backend.active.decrementAndGet();
+            backend = null;
+            closeQuietly(upstream);
+
+            try {
+                connectNext();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Close once both ends have closed and everything was passed on.
+         */
+        void closeIfDone() {
+            if (client.eof && upstream.eof
+                    && client.pending.position() == 0 && upstream.pending.position() == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            if (backend != null) {
+                backend.active.decrementAndGet();
+                backend = null;
+            }
+            closeQuietly(client);
+            closeQuietly(upstream);
+        }
+
+        private void closeQuietly(Side side) {
+            if (side.channel != null) {
+                try {
+                    side.channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * One end of a connection, and the buffer of bytes read from it that
+     * still have to be written to the other end.
+     */
+    private static final class Side {
+        final Connection connection;
+        final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+        SocketChannel channel;
+        SelectionKey key;
+        boolean eof;
+
+        Side(Connection connection, SocketChannel channel) {
+            this.connection = connection;
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(pending) == -1) {
+                eof = true;
+            }
+
+            if (!connection.upstreamConnected) {
+                // The client, before its replica is connected: hold up to one buffer
+                if (eof && pending.position() == 0) {
+                    connection.close(); // left without sending anything
+                } else if (eof || !pending.hasRemaining()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                return;
+            }
+            connection.other(this).flush();
+        }
+
+        /**
+         * Write what the other side has read to this side.
+         */
+        void flush() throws IOException {
+            Side source = connection.other(this);
+
+            source.pending.flip();
+            channel.write(source.pending);
+            source.pending.compact();
+
+            boolean drained = source.pending.position() == 0;
+            key.interestOps(drained ? key.interestOps() & ~SelectionKey.OP_WRITE
+                                    : key.interestOps() | SelectionKey.OP_WRITE);
+
+            if (!drained) {
+                // Stop reading the source until this side catches up
+                source.key.interestOps(source.key.interestOps() & ~SelectionKey.OP_READ);
+            } else if (source.eof) {
+                channel.shutdownOutput(); // pass the half-close on
+                source.key.interestOps(source.key.interestOps() & ~SelectionKey.OP_READ);
+                connection.closeIfDone();
+            } else {
+                source.key.interestOps(source.key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * A replica as shown by status.
+     */
+    public record BackendStatus(String instanceName, int port, int activeConnections, boolean healthy) {
+    }
+}
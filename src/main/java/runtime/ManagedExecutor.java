@@ -0,0 +1,426 @@
+package runtime;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ManagedExecutor is the executor the runtime gives each service, instead
+ * of the service building thread pools of its own.
+ *
+ *   ScheduledExecutorService timers = RuntimeContext.current().getScheduledExecutor();
+ *   timers.scheduleAtFixedRate(this::flushMetrics, 0, 10, TimeUnit.SECONDS);
+ *   RuntimeContext.current().getVirtualExecutor().submit(() -> handle(request));
+ *
+ * CONCEPT: Shared Threads, Bounded per Service
+ * --------------------------------------------
+ * If each of 50 services creates a pool of 20 platform threads, the host
+ * has 1000 threads competing for a few CPUs, each with its own stack. Here
+ * no service owns a thread:
+ *   - every task runs on a virtual thread; virtual threads all run on the
+ *     JVM's one carrier pool (a ForkJoinPool with a thread per CPU)
+ *   - delays and periods are kept by one timer thread for the whole runtime
+ *     (newTimer()), which only hands due tasks to their service's executor
+ * So the runtime's thread count doesn't grow with the number of services.
+ *
+ * Virtual threads are cheap, but a service submitting a million tasks would
+ * still crowd out the others. Each executor therefore runs at most
+ * `maxConcurrency` tasks at once; the rest wait in its queue, in order.
+ *
+ * LIFECYCLE:
+ * ----------
+ * Tasks are tasks of the service's ServiceScope: they count in its task
+ * numbers, and stopping the service interrupts them. terminate() (called
+ * when the service ends or is stopped) cancels queued and scheduled tasks.
+ * The service itself can't shut the executor down: shutdown(), shutdownNow()
+ * and close() throw IllegalStateException. While tasks are queued or
+ * scheduled the service counts as busy, the way a main() that returned
+ * keeps running while its tasks do (see ServiceExecutor).
+ *
+ * METRICS:
+ * --------
+ * Queue depth and latency (from the moment a task was due until it
+ * started) are reported through ServiceInfo and `mycoq status`.
+ */
+public class ManagedExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    private final String serviceName;
+    private final ScheduledExecutorService timer;
+    private final int maxConcurrency;
+
+    // Tasks waiting for one of the maxConcurrency slots
+    private final Queue<Queued> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    // Submitted or scheduled tasks that have not finished (0 = idle)
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Object idleMonitor = new Object();
+
+    private final Set<ScheduledTask<?>> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong started = new AtomicLong();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private volatile ServiceScope scope;
+    private volatile boolean terminated;
+
+    /**
+     * @param timer          the runtime's timer (see newTimer())
+     * @param maxConcurrency tasks of this service running at once
+     */
+    public ManagedExecutor(String serviceName, ScheduledExecutorService timer, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new RuntimeException("Executor concurrency must be at least 1: " + maxConcurrency);
+        }
+        this.serviceName = serviceName;
+        this.timer = timer;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * The timer thread shared by the executors of a runtime.
+     */
+    public static ScheduledExecutorService newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("managed-executor-timer").daemon(true).factory());
+        timer.setRemoveOnCancelPolicy(true); // cancelled periodic tasks don't pile up
+        return timer;
+    }
+
+    /**
+     * Attach to the service's scope once the service starts; tasks run in it.
+     */
+    void bind(ServiceScope scope) {
+        this.scope = scope;
+        dispatch(); // anything submitted before the service started
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (terminated) {
+            throw new RejectedExecutionException("Service is stopping: " + serviceName);
+        }
+        outstanding.incrementAndGet();
+        enqueue(command, System.nanoTime(), true);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return arm(new ScheduledTask<Void>(command, null, triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return arm(new ScheduledTask<>(callable, triggerTime(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return arm(new ScheduledTask<Void>(command, null, triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive: " + delay);
+        }
+        return arm(new ScheduledTask<Void>(command, null, triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    private <V> ScheduledTask<V> arm(ScheduledTask<V> task) {
+        if (terminated) {
+            throw new RejectedExecutionException("Service is stopping: " + serviceName);
+        }
+        outstanding.incrementAndGet();
+        scheduled.add(task);
+        task.arm();
+        return task;
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+    }
+
+    /**
+     * Queue a task and start as many queued tasks as the limit allows.
+     *
+     * @param dueNanos   when the task was due (for latency)
+     * @param standalone true for execute()d tasks, which end their outstanding count when done
+     */
+    private void enqueue(Runnable task, long dueNanos, boolean standalone) {
+        queue.add(new Queued(task, dueNanos, standalone));
+        queued.incrementAndGet();
+        dispatch();
+    }
+
+    private void dispatch() {
+        ServiceScope current = scope;
+        while (current != null && !queue.isEmpty()) {
+            int slots = running.get();
+            if (slots >= maxConcurrency) {
+                return; // a finishing task dispatches again
+            }
+            if (!running.compareAndSet(slots, slots + 1)) {
+                continue;
+            }
+
+            Queued next = queue.poll();
+            if (next == null) {
+                running.decrementAndGet(); // another thread took it
+                continue;
+            }
+            queued.decrementAndGet();
+            start(current, next);
+        }
+    }
+
+    private void start(ServiceScope current, Queued next) {
+        long latency = System.nanoTime() - next.dueNanos;
+        started.incrementAndGet();
+        latencyNanos.add(Math.max(latency, 0));
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+
+        ClassLoader classLoader = current.getContext() != null ? current.getContext().getClassLoader() : null;
+        try {
+            current.fork(() -> {
+                // Dispatched from whatever thread freed the slot; run as the service
+                Thread.currentThread().setContextClassLoader(classLoader);
+                try {
+                    next.task.run();
+                } finally {
+                    running.decrementAndGet();
+                    if (next.standalone) {
+                        finished();
+                    }
+                    dispatch();
+                }
+                return null;
+            }, ExecutionMode.VIRTUAL);
+        } catch (IllegalStateException e) {
+            // The scope closed: the service is stopping
+            running.decrementAndGet();
+            if (next.standalone) {
+                finished();
+            }
+        }
+    }
+
+    private void finished() {
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until no task is queued, running or scheduled.
+     *
+     * @return false if it was already idle
+     */
+    boolean awaitIdle() throws InterruptedException {
+        if (outstanding.get() == 0 || terminated) {
+            return false;
+        }
+        synchronized (idleMonitor) {
+            while (outstanding.get() > 0 && !terminated) {
+                idleMonitor.wait();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancel queued and scheduled tasks and accept no more (running tasks
+     * are interrupted with the service's scope).
+     */
+    void terminate() {
+        terminated = true;
+        for (ScheduledTask<?> task : scheduled) {
+            task.cancel(false);
+        }
+        while (queue.poll() != null) {
+            queued.decrementAndGet();
+        }
+        synchronized (idleMonitor) {
+            idleMonitor.notifyAll();
+        }
+    }
+
+    // Metrics
+
+    public int getQueuedTasks() {
+        return queued.get();
+    }
+
+    public int getRunningTasks() {
+        return running.get();
+    }
+
+    public int getScheduledTasks() {
+        return scheduled.size();
+    }
+
+    public long getStartedTasks() {
+        return started.get();
+    }
+
+    /**
+     * Average time from due to started, over all tasks so far.
+     */
+    public Duration getAverageLatency() {
+        long count = started.get();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(latencyNanos.sum() / count);
+    }
+
+    public Duration getMaxLatency() {
+        return Duration.ofNanos(maxLatencyNanos.get());
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    // The runtime owns the lifecycle
+
+    @Override
+    public void shutdown() {
+        throw new IllegalStateException("The runtime manages this executor; it shuts down with " + serviceName);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        throw new IllegalStateException("The runtime manages this executor; it shuts down with " + serviceName);
+    }
+
+    @Override
+    public void close() {
+        throw new IllegalStateException("The runtime manages this executor; it shuts down with " + serviceName);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return terminated;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated && running.get() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private record Queued(Runnable task, long dueNanos, boolean standalone) {
+    }
+
+    /**
+     * A delayed or periodic task. The timer only waits for it; when due it
+     * is queued like any other task of the service.
+     *
+     * period > 0: fixed rate, period < 0: fixed delay, 0: once.
+     */
+    private final class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private final long period;
+        private volatile long time;
+        private volatile ScheduledFuture<?> timerFuture;
+
+        ScheduledTask(Runnable command, V result, long time, long period) {
+            super(command, result);
+            this.time = time;
+            this.period = period;
+        }
+
+        ScheduledTask(Callable<V> callable, long time) {
+            super(callable);
+            this.time = time;
+            this.period = 0;
+        }
+
+        void arm() {
+            try {
+                timerFuture = timer.schedule(() -> enqueue(this, time, false),
+                        time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                cancel(false); // the runtime is shutting down
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset() && !terminated) {
+                // Fixed rate counts from the last due time, fixed delay from now
+                time = period > 0 ? time + period : System.nanoTime() - period;
+                arm();
+            }
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> armed = timerFuture;
+            if (armed != null) {
+                armed.cancel(false);
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected void done() {
+            // Completed, failed or cancelled: no more runs
+            if (scheduled.remove(this)) {
+                finished();
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package runtime;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * MessageBus lets services in the same runtime talk to each other without
+ * sockets or serialization.
+ *
+ * CONCEPT: Passing References
+ * ---------------------------
+ * Services of one runtime share a heap, so a message doesn't need to be
+ * encoded, copied and decoded: the bus hands the receiver the very object the
+ * sender passed. A direct ByteBuffer is handed over the same way, so large
+ * payloads can live off-heap and are never copied.
+ *
+ * Each endpoint (and each subscription) owns a BoundedQueue. Senders add to
+ * it without locks, and one task of the receiving service takes messages
+ * off it, so a handler runs on the receiver's own thread, with the
+ * receiver's ClassLoader, and stops with the receiver. The receiving task
+ * spins briefly before parking, so a busy endpoint picks up the next message
+ * without a wake-up.
+ *
+ * When the receiver stops, its mailbox is closed: requests still queued, and
+ * requests a sender enqueues while it closes, fail with "Endpoint closed"
+ * instead of waiting for a reply that never comes. A sender re-checks the
+ * mailbox after enqueuing, so a request can't slip in behind the final drain.
+ *
+ * BACKPRESSURE:
+ * -------------
+ * Queues are bounded. When an endpoint's queue is full, request() waits
+ * (spinning, then parking briefly) until the receiver catches up, and fails
+ * after SEND_TIMEOUT. A slow receiver slows its senders down instead of
+ * letting the queue eat the heap.
+ *
+ * CLASSLOADER BOUNDARIES:
+ * -----------------------
+ * Every service has its own ClassLoader, so two services can each have a
+ * class com.example.Order - and they are different classes. Passing one
+ * service's Order to another would fail later with a ClassCastException.
+ * The bus therefore only delivers objects whose class the receiver resolves
+ * to the same Class: JDK types, and classes of dependencies both services
+ * load from the same shared layer. Anything else is rejected when sent.
+ * Replies are checked the same way against the requester.
+ *
+ * HOW A SERVICE USES IT:
+ * ----------------------
+ *   MessageBus bus = RuntimeContext.current().getMessageBus();
+ *
+ *   // auth-core
+ *   bus.bind("auth.check", token -> tokens.contains(token));
+ *
+ *   // payment-service
+ *   boolean ok = (Boolean) bus.call("auth.check", token);
+ *   bus.publish("payments", receipt);
+ *
+ *   // logging-core
+ *   bus.subscribe("payments", receipt -> log(receipt));
+ *
+ * bind() and subscribe() must be called from a service (they start a task in
+ * its ServiceScope). A forked service has a bus of its own JVM only.
+ */
+public class MessageBus {
+
+    // Queue size of endpoints and subscriptions without an explicit capacity
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // How long a sender waits for room in a full queue
+    static final Duration SEND_TIMEOUT = Duration.ofSeconds(5);
+
+    // Empty polls before the receiving task parks
+    private static final int SPINS = 200;
+
+    // Address → endpoint
+    private final Map<String, Mailbox> endpoints = new ConcurrentHashMap<>();
+
+    // Topic → subscriptions
+    private final Map<String, List<Mailbox>> topics = new ConcurrentHashMap<>();
+
+    /**
+     * Handles requests sent to an endpoint.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @return the reply (may be null)
+         */
+        Object handle(Object message) throws Exception;
+    }
+
+    /**
+     * Serve requests to an address, with the default queue capacity.
+     */
+    public void bind(String address, Handler handler) {
+        bind(address, DEFAULT_CAPACITY, handler);
+    }
+
+    /**
+     * Serve requests to an address until the calling service stops.
+     *
+     * @param capacity requests that may wait before senders are held back
+     * @throws RuntimeException if another endpoint is bound to the address
+     */
+    public void bind(String address, int capacity, Handler handler) {
+        ServiceScope scope = ServiceScope.current();
+        Mailbox mailbox = new Mailbox(scope.getServiceName(), capacity, item -> ((Envelope) item).reply
+                .completeExceptionally(new RuntimeException("Endpoint closed: " + address)));
+
+        if (endpoints.putIfAbsent(address, mailbox) != null) {
+            throw new RuntimeException("Address already bound: " + address
+                    + " (by " + endpoints.get(address).owner + ")");
+        }
+
+        try {
+            scope.fork(() -> serve(address, mailbox, handler));
+        } catch (RuntimeException e) {
+            endpoints.remove(address, mailbox);
+            mailbox.close();
+            throw e;
+        }
+    }
+
+    private void serve(String address, Mailbox mailbox, Handler handler) {
+        try {
+            mailbox.serve(item -> {
+                Envelope envelope = (Envelope) item;
+                try {
+                    Object reply = handler.handle(envelope.message);
+                    if (reply != null && !canCross(reply.getClass(), envelope.requester)) {
+                        throw new IllegalArgumentException("Reply type " + reply.getClass().getName()
+                                + " from " + address + " is not visible to the requester");
+                    }
+                    envelope.reply.complete(reply);
+                } catch (Exception e) {
+                    envelope.reply.completeExceptionally(e);
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt(); // the service is stopping
+                    }
+                }
+            });
+        } finally {
+            endpoints.remove(address, mailbox);
+            mailbox.close();
+        }
+    }
+
+    /**
+     * Send a request; the returned future completes with the reply, or
+     * fails if the endpoint closes first. Waits while the endpoint's queue
+     * is full.
+     *
+     * @throws RuntimeException if nothing is bound to the address, the
+     *                          message can't cross to the receiver, or the
+     *                          queue stays full for SEND_TIMEOUT
+     */
+    public CompletableFuture<Object> request(String address, Object message) {
+        Mailbox mailbox = endpoints.get(address);
+        if (mailbox == null) {
+            throw new RuntimeException("No endpoint bound to: " + address);
+        }
+        mailbox.checkVisible(message, address);
+
+        Envelope envelope = new Envelope(message, Thread.currentThread().getContextClassLoader());
+        mailbox.send(envelope, address);
+        return envelope.reply;
+    }
+
+    /**
+     * Send a request and wait for the reply.
+     */
+    public Object call(String address, Object message) throws Exception {
+        try {
+            return request(address, message).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (TimeoutException e) {
+            throw new RuntimeException("No reply from " + address + " within " + SEND_TIMEOUT.toSeconds() + "s");
+        }
+    }
+
+    /**
+     * Receive the messages published to a topic, with the default queue capacity.
+     */
+    public void subscribe(String topic, Consumer<Object> listener) {
+        subscribe(topic, DEFAULT_CAPACITY, listener);
+    }
+
+    /**
+     * Receive the messages published to a topic until the calling service stops.
+     *
+     * @param capacity messages that may wait before publishers are held back
+     */
+    public void subscribe(String topic, int capacity, Consumer<Object> listener) {
+        ServiceScope scope = ServiceScope.current();
+        Mailbox mailbox = new Mailbox(scope.getServiceName(), capacity, message -> {});
+        List<Mailbox> subscribers = topics.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>());
+        subscribers.add(mailbox);
+
+        scope.fork(() -> {
+            try {
+                mailbox.serve(message -> {
+                    try {
+                        listener.accept(message);
+                    } catch (RuntimeException e) {
+                        System.err.println("[Bus] Subscriber of " + topic + " in " + mailbox.owner
+                                + " failed: " + e);
+                    }
+                });
+            } finally {
+                subscribers.remove(mailbox);
+                mailbox.close();
+            }
+        });
+    }
+
+    /**
+     * Deliver a message to every subscriber of a topic. Waits while a
+     * subscriber's queue is full.
+     *
+     * @return number of subscribers the message was delivered to
+     * @throws RuntimeException if a subscriber can't see the message's class
+     */
+    public int publish(String topic, Object message) {
+        List<Mailbox> subscribers = topics.getOrDefault(topic, List.of());
+        for (Mailbox mailbox : subscribers) {
+            mailbox.checkVisible(message, topic);
+        }
+        for (Mailbox mailbox : subscribers) {
+            mailbox.send(message, topic);
+        }
+        return subscribers.size();
+    }
+
+    /**
+     * Addresses with a bound endpoint.
+     */
+    public List<String> getAddresses() {
+        return endpoints.keySet().stream().sorted().toList();
+    }
+
+    // Receiver ClassLoader → which classes resolve to the same Class from it
+    private static final Map<ClassLoader, Visibility> VISIBILITY =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * True if the target loader resolves the type's name to the type itself.
+     */
+    static boolean canCross(Class<?> type, ClassLoader target) {
+        ClassLoader defining = type.getClassLoader();
+        if (defining == null || defining == target) {
+            return true; // JDK class, or the receiver's own
+        }
+        if (target == null) {
+            return false;
+        }
+        return VISIBILITY.computeIfAbsent(target, Visibility::new).get(type);
+    }
+
+    /**
+     * Per-loader cache of canCross, stored on each Class (so it never keeps
+     * a service's classes or loader alive).
+     */
+    private static final class Visibility extends ClassValue<Boolean> {
+        private final WeakReference<ClassLoader> loader;
+
+        Visibility(ClassLoader loader) {
+            this.loader = new WeakReference<>(loader);
+        }
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            ClassLoader target = loader.get();
+            if (target == null) {
+                return false;
+            }
+            try {
+                return Class.forName(type.getName(), false, target) == type;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A request and where its reply goes.
+     */
+    private static final class Envelope {
+        final Object message;
+        final ClassLoader requester;
+        final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+        Envelope(Object message, ClassLoader requester) {
+            this.message = message;
+            this.requester = requester;
+        }
+    }
+
+    /**
+     * The queue of one endpoint or subscription, and the task receiving from it.
+     */
+    private static final class Mailbox {
+        final String owner;
+        final ClassLoader loader;
+        final BoundedQueue<Object> queue;
+
+        // Gets what is sent after the receiver stopped
+        final Consumer<Object> dropped;
+
+        volatile Thread receiver;
+        volatile boolean parked;
+        volatile boolean closed;
+
+        Mailbox(String owner, int capacity, Consumer<Object> dropped) {
+            this.owner = owner;
+            this.loader = Thread.currentThread().getContextClassLoader();
+            this.queue = new BoundedQueue<>(capacity);
+            this.dropped = dropped;
+        }
+
+        void checkVisible(Object message, String address) {
+            if (message != null && !canCross(message.getClass(), loader)) {
+                throw new IllegalArgumentException("Can't send " + message.getClass().getName()
+                        + " to " + address + ": " + owner + " doesn't load that class from a shared"
+                        + " layer (only JDK and shared dependency classes cross services)");
+            }
+        }
+
+        void send(Object item, String address) {
+            long deadline = 0;
+            for (int attempt = 0; !queue.offer(item); attempt++) {
+                if (closed) {
+                    dropped.accept(item); // nobody will make room
+                    return;
+                }
+                if (attempt < SPINS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + SEND_TIMEOUT.toNanos();
+                } else if (System.nanoTime() > deadline) {
+                    throw new RuntimeException("Queue of " + address + " is full ("
+                            + queue.capacity() + " messages); " + owner + " is not keeping up");
+                }
+                LockSupport.parkNanos(50_000);
+            }
+
+            // Closed while we enqueued: the receiver's drain may have run already
+            if (closed) {
+                drain(dropped);
+            } else if (parked) {
+                LockSupport.unpark(receiver);
+            }
+        }
+
+        /**
+         * Take messages and pass them on until the task is interrupted.
+         */
+        void serve(Consumer<Object> consumer) {
+            receiver = Thread.currentThread();
+
+            // Interrupted = the service is stopping
+            while (!Thread.currentThread().isInterrupted()) {
+                Object item = queue.poll();
+                for (int spin = 0; item == null && spin < SPINS; spin++) {
+                    Thread.onSpinWait();
+                    item = queue.poll();
+                }
+
+                if (item == null) {
+                    parked = true;
+                    item = queue.poll(); // a sender may have missed the flag
+                    if (item == null) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    if (item == null) {
+                        continue;
+                    }
+                }
+
+                consumer.accept(item);
+            }
+        }
+
+        /**
+         * Stop accepting messages and hand the queued ones to `dropped`.
+         * Called once the receiving task has ended.
+         */
+        void close() {
+            closed = true;
+            drain(dropped);
+        }
+
+        void drain(Consumer<Object> consumer) {
+            Object item;
+            while ((item = queue.poll()) != null) {
+                consumer.accept(item);
+            }
+        }
+    }
+}
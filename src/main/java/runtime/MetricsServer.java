@@ -0,0 +1,73 @@
+package runtime;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves ServiceMetrics at http://localhost:<port>/metrics in the Prometheus
+ * text format, using the JDK's built-in HTTP server.
+ *
+ * Scrapes read the latest sample; they never trigger sampling themselves.
+ * Bound to the loopback address only.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ServiceMetrics metrics;
+    private final int port;
+
+    private HttpServer server;
+
+    public MetricsServer(ServiceMetrics metrics, int port) {
+        this.metrics = metrics;
+        this.port = port;
+    }
+
+    /**
+     * Bind the port and start serving (one request thread is plenty for scrapes).
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+
+        System.out.println("[Metrics] Serving http://localhost:" + getPort() + "/metrics");
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Actual bound port (useful when started with port 0).
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
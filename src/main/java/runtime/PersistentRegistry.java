@@ -1,39 +1,86 @@
 package runtime;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * PersistentRegistry saves service information to disk so it can be
  * shared across different JVM processes.
- * 
+ *
  * This allows:
  * - Terminal 1: ./mycoq run payment-service
  * - Terminal 2: ./mycoq status (can see the running service)
- * 
- * Registry is stored at: ~/.mycoq/registry.json
+ *
+ * Registry is stored at: ~/.mycoq/registry.dat
+ *
+ * CONCEPT: Fixed-Size Records
+ * ---------------------------
+ * Rewriting a whole JSON file on every change is slow with many services,
+ * and two processes doing it at once lose each other's updates. Instead the
+ * file is a header followed by slots of RECORD_SIZE bytes:
+ *
+ *   header  magic "MCQR", version, record size, reserved   (16 bytes)
+ *   slot    used flag, status, PID, process start, service start, name
+ *
+ * Registering a service writes one slot (the service's old one, a free one,
+ * or a new one at the end); unregistering clears one flag byte. Nothing else
+ * in the file is touched.
+ *
+ * LOCKING:
+ * --------
+ * Every access holds an exclusive FileChannel lock, so CLI processes running
+ * at the same time never interleave writes (reading clears dead entries, so
+ * it writes too). The slots are read in one go. FileLocks are held per JVM,
+ * so threads of one JVM are serialized with a monitor first.
+ *
+ * LIVENESS:
+ * ---------
+ * A service is alive if its process is: ProcessHandle.of(pid) asks the OS
+ * directly, no "kill -0" process per entry. PIDs get reused, though, so each
+ * slot also stores the process's start time; a live process with a different
+ * start time is someone else, and the entry is treated as dead.
  */
 public class PersistentRegistry {
 
     private static final Path REGISTRY_DIR = Paths.get(System.getProperty("user.home"), ".mycoq");
-    private static final Path REGISTRY_FILE = REGISTRY_DIR.resolve("registry.json");
+    private static final Path REGISTRY_FILE = REGISTRY_DIR.resolve("registry.dat");
 
-    private final ObjectMapper mapper;
+    private static final int MAGIC = 0x4D435152; // "MCQR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
 
-    public PersistentRegistry() {
-        this.mapper = new ObjectMapper();
-        this.mapper.registerModule(new JavaTimeModule());
-        this.mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    // Slot layout
+    static final int RECORD_SIZE = 256;
+    private static final int USED = 0;             // byte: 1 = in use
+    private static final int STATUS = 1;           // 16 bytes, ASCII, zero-padded
+    private static final int STATUS_BYTES = 16;
+    private static final int PID = 17;             // long
+    private static final int PROCESS_START = 25;   // long, epoch millis (-1 = unknown)
+    private static final int START_TIME = 33;      // long, epoch millis
+    private static final int NAME_LENGTH = 41;     // short
+    private static final int NAME = 43;            // UTF-8
+    static final int MAX_NAME_BYTES = RECORD_SIZE - NAME;
+
+    // Process start times may be derived from clock ticks; allow for rounding
+    private static final long START_TIME_TOLERANCE_MILLIS = 1000;
 
+    // FileLocks don't exclude threads of the same JVM
+    private static final Object LOCK = new Object();
+
+    public PersistentRegistry() {
         // Create registry directory if it doesn't exist
         try {
             Files.createDirectories(REGISTRY_DIR);
@@ -46,47 +93,99 @@ public class PersistentRegistry {
      * Register a service (save to disk).
      */
     public void register(String serviceName, int processId) {
-        try {
-            Map<String, ServiceEntry> registry = loadRegistry();
+        register(serviceName, processId, processStartTime(processId));
+    }
 
-            ServiceEntry entry = new ServiceEntry();
-            entry.serviceName = serviceName;
-            entry.processId = processId;
-            entry.startTime = Instant.now();
-            entry.status = "RUNNING";
+    /**
+     * Register a service run by a process that started at processStartTime
+     * (null if unknown).
+     */
+    void register(String serviceName, int processId, Instant processStartTime) {
+        byte[] name = serviceName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new RuntimeException("Service name too long for the registry (max "
+                    + MAX_NAME_BYTES + " bytes): " + serviceName);
+        }
 
-            registry.put(serviceName, entry);
-            saveRegistry(registry);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(USED, (byte) 1);
+        record.put(STATUS, ascii("RUNNING"));
+        record.putLong(PID, processId);
+        record.putLong(PROCESS_START, processStartTime == null ? -1 : processStartTime.toEpochMilli());
+        record.putLong(START_TIME, Instant.now().toEpochMilli());
+        record.putShort(NAME_LENGTH, (short) name.length);
+        record.put(NAME, name);
 
-            System.out.println("[Registry] Registered service: " + serviceName + " (PID: " + processId + ")");
-        } catch (IOException e) {
-            System.err.println("Warning: Could not save registry: " + e.getMessage());
+        synchronized (LOCK) {
+            try (FileChannel channel = FileChannel.open(REGISTRY_FILE,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock(); // held until the channel is closed
+                ByteBuffer file = readValid(channel);
+                if (file == null) {
+                    channel.truncate(0);
+                    channel.write(header(), 0);
+                    file = ByteBuffer.allocate(0);
+                }
+
+                int slot = find(file, name);
+                if (slot == -1) {
+                    slot = freeSlot(file);
+                }
+                channel.write(record, position(slot));
+
+                System.out.println("[Registry] Registered service: " + serviceName + " (PID: " + processId + ")");
+            } catch (IOException e) {
+                System.err.println("Warning: Could not save registry: " + e.getMessage());
+            }
         }
     }
 
     /**
-     * Get all registered services.
+     * Get all registered services whose process is still alive.
+     * Entries of dead processes are cleared from the file.
      */
     public Map<String, ServiceEntry> getAllServices() {
-        try {
-            Map<String, ServiceEntry> registry = loadRegistry();
+        synchronized (LOCK) {
+            if (!Files.exists(REGISTRY_FILE)) {
+                return new HashMap<>();
+            }
+
+            Map<String, ServiceEntry> alive = new LinkedHashMap<>();
+            Map<ProcessKey, Boolean> liveness = new HashMap<>(); // many entries share a process
 
-            // Filter out dead processes
-            Map<String, ServiceEntry> alive = new HashMap<>();
-            for (Map.Entry<String, ServiceEntry> entry : registry.entrySet()) {
-                if (isProcessAlive(entry.getValue().processId)) {
-                    alive.put(entry.getKey(), entry.getValue());
+            try (FileChannel channel = FileChannel.open(REGISTRY_FILE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                ByteBuffer file = readValid(channel);
+                if (file == null) {
+                    return alive;
                 }
-            }
 
-            // Save cleaned registry
-            if (alive.size() != registry.size()) {
-                saveRegistry(alive);
+                int slots = file.limit() / RECORD_SIZE;
+                for (int slot = 0; slot < slots; slot++) {
+                    int base = slot * RECORD_SIZE;
+                    if (file.get(base + USED) == 0) {
+                        continue;
+                    }
+
+                    ServiceEntry entry = decode(file, base);
+                    long startMillis = file.getLong(base + PROCESS_START);
+                    boolean isAlive = liveness.computeIfAbsent(
+                            new ProcessKey(entry.processId, startMillis),
+                            key -> isProcessAlive(entry.processId, startMillis));
+
+                    if (isAlive) {
+                        alive.put(entry.serviceName, entry);
+                    } else {
+                        // Clean dead entries
+                        channel.write(ByteBuffer.wrap(new byte[] { 0 }), position(slot) + USED);
+                    }
+                }
+            } catch (IOException e) {
+                return new HashMap<>();
             }
 
             return alive;
-        } catch (IOException e) {
-            return new HashMap<>();
         }
     }
 
@@ -94,47 +193,189 @@ public class PersistentRegistry {
      * Unregister a service.
      */
     public void unregister(String serviceName) {
-        try {
-            Map<String, ServiceEntry> registry = loadRegistry();
-            registry.remove(serviceName);
-            saveRegistry(registry);
-            System.out.println("[Registry] Unregistered service: " + serviceName);
-        } catch (IOException e) {
-            System.err.println("Warning: Could not update registry: " + e.getMessage());
+        synchronized (LOCK) {
+            if (!Files.exists(REGISTRY_FILE)) {
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(REGISTRY_FILE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                ByteBuffer file = readValid(channel);
+                int slot = file == null ? -1 : find(file, serviceName.getBytes(StandardCharsets.UTF_8));
+
+                if (slot != -1) {
+                    channel.write(ByteBuffer.wrap(new byte[] { 0 }), position(slot) + USED);
+                }
+                System.out.println("[Registry] Unregistered service: " + serviceName);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not update registry: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unregister several services with one lock and one read of the file
+     * (used when a runtime shuts down).
+     */
+    public void unregisterAll(Collection<String> serviceNames) {
+        if (serviceNames.isEmpty()) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            if (!Files.exists(REGISTRY_FILE)) {
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(REGISTRY_FILE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                ByteBuffer file = readValid(channel);
+                if (file == null) {
+                    return;
+                }
+
+                for (String serviceName : serviceNames) {
+                    int slot = find(file, serviceName.getBytes(StandardCharsets.UTF_8));
+                    if (slot != -1) {
+                        file.put(slot * RECORD_SIZE + USED, (byte) 0); // find() must skip it from now on
+                        channel.write(ByteBuffer.wrap(new byte[] { 0 }), position(slot) + USED);
+                    }
+                }
+                System.out.println("[Registry] Unregistered " + serviceNames.size() + " service(s)");
+            } catch (IOException e) {
+                System.err.println("Warning: Could not update registry: " + e.getMessage());
+            }
         }
     }
 
     /**
-     * Load registry from disk.
+     * Read all slots (without the header) in one read, or null if the file
+     * is empty or not a registry of this version.
      */
-    private Map<String, ServiceEntry> loadRegistry() throws IOException {
-        if (!Files.exists(REGISTRY_FILE)) {
-            return new HashMap<>();
+    private static ByteBuffer readValid(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+            return null;
         }
 
-        return mapper.readValue(
-                REGISTRY_FILE.toFile(),
-                mapper.getTypeFactory().constructMapType(HashMap.class, String.class, ServiceEntry.class));
+        int slots = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+        ByteBuffer file = ByteBuffer.allocate(slots * RECORD_SIZE);
+        while (file.hasRemaining()) {
+            if (channel.read(file, HEADER_SIZE + file.position()) == -1) {
+                break;
+            }
+        }
+        return file.flip();
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(RECORD_SIZE)
+                .putInt(0)
+                .flip();
     }
 
     /**
-     * Save registry to disk.
+     * Slot of the used record with this name, or -1.
      */
-    private void saveRegistry(Map<String, ServiceEntry> registry) throws IOException {
-        mapper.writeValue(REGISTRY_FILE.toFile(), registry);
+    private static int find(ByteBuffer file, byte[] name) {
+        int slots = file.limit() / RECORD_SIZE;
+        for (int slot = 0; slot < slots; slot++) {
+            int base = slot * RECORD_SIZE;
+            if (file.get(base + USED) != 0
+                    && file.getShort(base + NAME_LENGTH) == name.length
+                    && file.slice(base + NAME, name.length).equals(ByteBuffer.wrap(name))) {
+                return slot;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Check if a process is still alive.
+     * First unused slot, or the slot after the last one.
      */
-    private boolean isProcessAlive(int pid) {
-        try {
-            // On Unix/Mac: kill -0 checks if process exists without killing it
-            Process process = Runtime.getRuntime().exec(new String[] { "kill", "-0", String.valueOf(pid) });
-            return process.waitFor() == 0;
-        } catch (Exception e) {
+    private static int freeSlot(ByteBuffer file) {
+        int slots = file.limit() / RECORD_SIZE;
+        for (int slot = 0; slot < slots; slot++) {
+            if (file.get(slot * RECORD_SIZE + USED) == 0) {
+                return slot;
+            }
+        }
+        return slots;
+    }
+
+    private static long position(int slot) {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+
+    private static ServiceEntry decode(ByteBuffer file, int base) {
+        byte[] name = new byte[file.getShort(base + NAME_LENGTH)];
+        file.get(base + NAME, name);
+        int statusLength = 0;
+        while (statusLength < STATUS_BYTES && file.get(base + STATUS + statusLength) != 0) {
+            statusLength++;
+        }
+        byte[] status = new byte[statusLength];
+        file.get(base + STATUS, status);
+
+        ServiceEntry entry = new ServiceEntry();
+        entry.serviceName = new String(name, StandardCharsets.UTF_8);
+        entry.processId = (int) file.getLong(base + PID);
+        entry.startTime = Instant.ofEpochMilli(file.getLong(base + START_TIME));
+        entry.status = new String(status, StandardCharsets.US_ASCII);
+
+        long processStart = file.getLong(base + PROCESS_START);
+        entry.processStartTime = processStart == -1 ? null : Instant.ofEpochMilli(processStart);
+        return entry;
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[STATUS_BYTES];
+        byte[] chars = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(chars, 0, bytes, 0, Math.min(chars.length, STATUS_BYTES));
+        return bytes;
+    }
+
+    /**
+     * When a process started, or null if it isn't running or the OS won't say.
+     */
+    private static Instant processStartTime(long pid) {
+        return ProcessHandle.of(pid)
+                .flatMap(handle -> handle.info().startInstant())
+                .orElse(null);
+    }
+
+    /**
+     * Check if a process is still alive, and is the process that registered
+     * (not a new one that got the same PID).
+     *
+     * @param startMillis the process's start time when it registered (-1 = unknown)
+     */
+    private static boolean isProcessAlive(long pid, long startMillis) {
+        Optional<ProcessHandle> handle = ProcessHandle.of(pid); // empty unless the process exists
+        if (handle.isEmpty()) {
             return false;
         }
+        if (startMillis == -1) {
+            return true;
+        }
+
+        return handle.get().info().startInstant()
+                .map(start -> Math.abs(start.toEpochMilli() - startMillis) <= START_TIME_TOLERANCE_MILLIS)
+                .orElse(true);
+    }
+
+    private record ProcessKey(long pid, long startMillis) {
     }
 
     /**
@@ -145,5 +386,7 @@ public class PersistentRegistry {
         public int processId;
         public Instant startTime;
         public String status;
+        // When the service's process started (null if unknown)
+        public Instant processStartTime;
     }
 }
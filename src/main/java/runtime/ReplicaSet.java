@@ -0,0 +1,85 @@
+package runtime;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The replicas of one service and the LoadBalancer in front of them.
+ *
+ * Replica n of payment-service runs as the service instance
+ * "payment-service#n": its own ServiceClassLoader (so its static state is its
+ * own), its own registry entry and its own port, which it reads with
+ * RuntimeContext.current().getConfigValue("port"). The balancer listens on
+ * the service's port and spreads connections over the replicas.
+ *
+ * Scaling is done by RuntimeManager.scaleService().
+ */
+public class ReplicaSet {
+
+    // Separates service name and replica number in instance names
+    public static final String SEPARATOR = "#";
+
+    private final String serviceName;
+    private final LoadBalancer balancer;
+
+    // Replica number → instance name, lowest numbers first
+    private final TreeMap<Integer, String> replicas = new TreeMap<>();
+
+    ReplicaSet(String serviceName, LoadBalancer balancer) {
+        this.serviceName = serviceName;
+        this.balancer = balancer;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public LoadBalancer getBalancer() {
+        return balancer;
+    }
+
+    public synchronized int size() {
+        return replicas.size();
+    }
+
+    /**
+     * Instance names of the replicas, by replica number.
+     */
+    public synchronized List<String> getInstanceNames() {
+        return List.copyOf(replicas.values());
+    }
+
+    /**
+     * Lowest replica number not in use.
+     */
+    synchronized int nextNumber() {
+        int number = 1;
+        while (replicas.containsKey(number)) {
+            number++;
+        }
+        return number;
+    }
+
+    synchronized void add(int number, String instanceName) {
+        replicas.put(number, instanceName);
+    }
+
+    synchronized void remove(String instanceName) {
+        replicas.values().remove(instanceName);
+    }
+
+    /**
+     * Remove the replica with the highest number.
+     *
+     * @return its instance name
+     */
+    synchronized String removeLast() {
+        Map.Entry<Integer, String> last = replicas.pollLastEntry();
+        return last != null ? last.getValue() : null;
+    }
+
+    static String instanceName(String serviceName, int number) {
+        return serviceName + SEPARATOR + number;
+    }
+}
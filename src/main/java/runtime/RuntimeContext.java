@@ -5,6 +5,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * RuntimeContext holds all the metadata and configuration needed to run a
@@ -16,8 +19,13 @@ import java.util.Map;
  * - Where its dependency JARs are located
  * - Runtime configuration (like ports, environment variables)
  * - The ClassLoader that will load its classes
+ * - Whether it runs on platform or virtual threads
+ * - The MessageBus it shares with the other services of its runtime
+ * - Drain callbacks to run before the service is stopped
+ * - The executor the runtime manages for it (see ManagedExecutor)
  * 
- * This context is passed through all runtime stages.
+ * This context is passed through all runtime stages. A running service
+ * reaches its own context with RuntimeContext.current().
  */
 public class RuntimeContext {
 
@@ -37,6 +45,18 @@ public class RuntimeContext {
     // The ClassLoader that will load this service's classes
     private ClassLoader classLoader;
 
+    // Kind of threads the service and its tasks run on
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    // In-process messaging with the runtime's other services
+    private MessageBus messageBus;
+
+    // Run before the service is interrupted (see onDrain)
+    private final List<Runnable> drainCallbacks = new CopyOnWriteArrayList<>();
+
+    // Runs the service's scheduled and background tasks on shared threads
+    private ManagedExecutor managedExecutor;
+
     /**
      * Create a new RuntimeContext for a service.
      * 
@@ -50,6 +70,20 @@ public class RuntimeContext {
         this.config = new HashMap<>();
     }
 
+    /**
+     * The context of the service running on this thread.
+     *
+     * @throws IllegalStateException if called outside a service
+     */
+    public static RuntimeContext current() {
+        RuntimeContext context = ServiceScope.current().getContext();
+        if (context == null) {
+            throw new IllegalStateException("Service has no runtime context: "
+                    + ServiceScope.current().getServiceName());
+        }
+        return context;
+    }
+
     // Getters
 
     public String getServiceName() {
@@ -76,6 +110,52 @@ public class RuntimeContext {
         return classLoader;
     }
 
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public MessageBus getMessageBus() {
+        return messageBus;
+    }
+
+    public List<Runnable> getDrainCallbacks() {
+        return List.copyOf(drainCallbacks);
+    }
+
+    /**
+     * Executor for delayed and periodic tasks, managed by the runtime: use it
+     * instead of Executors.newScheduledThreadPool(). It shuts down with the
+     * service.
+     *
+     * @throws IllegalStateException if the runtime gave the service none
+     */
+    public ScheduledExecutorService getScheduledExecutor() {
+        return requireManagedExecutor();
+    }
+
+    /**
+     * Executor running each task on a virtual thread, managed by the
+     * runtime: use it instead of a thread pool of the service's own. At
+     * most ManagedExecutor.getMaxConcurrency() tasks run at once; the rest
+     * are queued. It shuts down with the service.
+     *
+     * @throws IllegalStateException if the runtime gave the service none
+     */
+    public ExecutorService getVirtualExecutor() {
+        return requireManagedExecutor();
+    }
+
+    ManagedExecutor getManagedExecutor() {
+        return managedExecutor;
+    }
+
+    private ManagedExecutor requireManagedExecutor() {
+        if (managedExecutor == null) {
+            throw new IllegalStateException("No managed executor for service: " + serviceName);
+        }
+        return managedExecutor;
+    }
+
     // Setters and utility methods
 
     public void setMainClass(String mainClass) {
@@ -86,6 +166,33 @@ public class RuntimeContext {
         this.classLoader = classLoader;
     }
 
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public void setMessageBus(MessageBus messageBus) {
+        this.messageBus = messageBus;
+    }
+
+    public void setManagedExecutor(ManagedExecutor managedExecutor) {
+        this.managedExecutor = managedExecutor;
+    }
+
+    /**
+     * Run a callback when the service is about to be stopped, before its
+     * threads are interrupted: stop accepting work, finish or hand off what
+     * is in flight, flush buffers.
+     *
+     *   RuntimeContext.current().onDrain(() -> server.close());
+     *
+     * Callbacks run as a task of the service, in the order they were added,
+     * and share the stop's deadline; a callback still running when it
+     * passes is interrupted with the rest of the service.
+     */
+    public void onDrain(Runnable callback) {
+        drainCallbacks.add(callback);
+    }
+
     /**
      * Add a dependency JAR to this service's runtime classpath.
      */
@@ -114,6 +221,7 @@ public class RuntimeContext {
                 ", serviceJar=" + serviceJar +
                 ", dependencyJars=" + dependencyJars.size() +
                 ", mainClass='" + mainClass + '\'' +
+                ", executionMode=" + executionMode +
                 '}';
     }
 }
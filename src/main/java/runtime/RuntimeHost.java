@@ -0,0 +1,474 @@
+package runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RuntimeHost makes a running runtime controllable from other mycoq processes.
+ *
+ * CONCEPT: Who Owns the Services?
+ * -------------------------------
+ * Services are threads, so they live inside the JVM that started them. A
+ * second `mycoq stop` process has its own, empty RuntimeRegistry and can't
+ * reach them. The process running the services (the "host") therefore
+ * listens on a control socket, and other mycoq commands send it requests:
+ *
+ *   terminal 1: mycoq run payment-service      (becomes the host)
+ *   terminal 2: mycoq run order-service        (asks the host to run it)
+ *   terminal 2: mycoq status / stop ...        (answered by the host)
+ *
+ * CONCEPT: Unix Domain Sockets
+ * ----------------------------
+ * A Unix domain socket is a socket with a file path instead of a port. It
+ * never touches the network stack, so a request/response takes microseconds,
+ * and only users who can access the file can connect. One host per workspace:
+ * the socket is <workspace>/.mycoq/runtime.sock.
+ *
+ * Whoever can connect can run code as this user (`run` loads the jar of the
+ * service it names), so the socket is owner-only (rw-------) before it
+ * appears under its name, and .mycoq/ is rwx------. Service names with `/`
+ * or `..` are rejected, so a request can't reach manifests or jars outside
+ * the workspace.
+ *
+ * PROTOCOL:
+ * ---------
+ * One connection per request. The client sends one line:
+ *   run <service>  |  fork <service>  |  stop <service>  |  status  |  list  |  metrics
+ *   replicas <service> <count> <port>  |  scale <service> <count>
+ *   profile <service> <millis> <samples-per-second>
+ * (fork runs the service in a JVM of its own, see RuntimeManager.forkService;
+ * replicas and scale manage replicas behind a LoadBalancer, see runReplicas;
+ * profile answers after <millis> with a summary line and collapsed stacks,
+ * see SamplingProfiler)
+ * The host answers "OK" or "ERROR" on the first line, then the message or
+ * output, and closes the connection. See HostClient.
+ */
+public class RuntimeHost implements AutoCloseable {
+
+    private final RuntimeManager runtimeManager;
+    private final Path socketPath;
+
+    // run and stop change the runtime; one at a time
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+
+    private ServerSocketChannel server;
+
+    public RuntimeHost(RuntimeManager runtimeManager, Path socketPath) {
+        this.runtimeManager = runtimeManager;
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Control socket of a workspace.
+     */
+    public static Path socketFor(Path workspaceRoot) {
+        return workspaceRoot.resolve(".mycoq").resolve("runtime.sock");
+    }
+
+    /**
+     * Bind the control socket and serve requests on background threads.
+     */
+    public void start() throws IOException {
+        createOwnerOnlyDirectories(socketPath.getParent());
+
+        if (Files.exists(socketPath)) {
+            if (new HostClient(socketPath).isHostRunning()) {
+                throw new IOException("A runtime host is already running: " + socketPath);
+            }
+            Files.delete(socketPath); // left behind by a host that was killed
+        }
+
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        bindOwnerOnly(server, socketPath);
+
+        runtimeManager.getMetrics().start();
+        Thread.ofPlatform().name("runtime-host").daemon(true).start(this::acceptLoop);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+
+        System.out.println("[Host] Listening on " + socketPath);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            System.err.println("[Host] Could not remove " + socketPath + ": " + e.getMessage());
+        }
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel client = server.accept();
+                // Requests are short and mostly wait on I/O or locks
+                Thread.ofVirtual().name("runtime-host-request").start(() -> serve(client));
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    System.err.println("[Host] Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (client) {
+            String request = readLine(client);
+            if (request.isBlank()) {
+                return; // HostClient.isHostRunning() probing
+            }
+            String response;
+
+            try {
+                response = "OK\n" + handle(request);
+            } catch (Exception e) {
+                response = "ERROR\n" + (e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+
+            client.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            System.err.println("[Host] Request failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Execute one request line.
+     *
+     * @return output for the client
+     */
+    String handle(String request) throws Exception {
+        String[] parts = request.trim().split("\\s+");
+
+        return switch (parts[0]) {
+            case "run" -> run(argument(parts), false);
+            case "fork" -> run(argument(parts), true);
+            case "stop" -> stop(argument(parts));
+            case "replicas" -> replicas(argument(parts), number(parts, 2), number(parts, 3));
+            case "scale" -> scale(argument(parts), number(parts, 2));
+            case "status" -> status();
+            case "list" -> list();
+            case "metrics" -> metrics();
+            case "profile" -> profile(argument(parts), number(parts, 2), number(parts, 3));
+            default -> throw new RuntimeException("Unknown request: " + request.trim());
+        };
+    }
+
+    private String run(String serviceName, boolean fork) throws Exception {
+        long startNanos = System.nanoTime();
+
+        lifecycleLock.lock();
+        try {
+            ServiceInfo existing = runtimeManager.getRegistry().getService(serviceName);
+            if (existing != null && existing.isAlive()) {
+                throw new RuntimeException("Service already running: " + serviceName);
+            }
+            if (fork) {
+                runtimeManager.forkService(serviceName);
+            } else {
+                runtimeManager.runService(serviceName);
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+
+        ServiceInfo info = runtimeManager.getRegistry().getService(serviceName);
+        String where = info != null && info.getForked() != null
+                ? "worker PID " + info.getForked().getPid()
+                : "runtime host PID " + ProcessHandle.current().pid();
+        return "Started " + serviceName + " in " + (System.nanoTime() - startNanos) / 1_000_000 + " ms"
+                + " (" + where + ")\n";
+    }
+
+    private String replicas(String serviceName, int replicas, int port) throws Exception {
+        lifecycleLock.lock();
+        try {
+            ServiceInfo existing = runtimeManager.getRegistry().getService(serviceName);
+            if (existing != null && existing.isAlive()) {
+                throw new RuntimeException("Service already running without replicas: " + serviceName);
+            }
+            runtimeManager.runReplicas(serviceName, replicas, port);
+        } finally {
+            lifecycleLock.unlock();
+        }
+        return "Started " + replicas + " replica(s) of " + serviceName + " behind port "
+                + replicaSet(serviceName).getBalancer().getPort() + "\n";
+    }
+
+    private String scale(String serviceName, int replicas) throws Exception {
+        lifecycleLock.lock();
+        try {
+            runtimeManager.scaleService(serviceName, replicas);
+        } finally {
+            lifecycleLock.unlock();
+        }
+        return "Scaled " + serviceName + " to " + replicas + " replica(s)\n";
+    }
+
+    private String stop(String serviceName) {
+        lifecycleLock.lock();
+        try {
+            if (replicaSet(serviceName) != null) {
+                runtimeManager.stopService(serviceName);
+                return "Stopped all replicas of " + serviceName + "\n";
+            }
+
+            ServiceInfo info = runtimeManager.getRegistry().getService(serviceName);
+            if (info == null) {
+                throw new RuntimeException("Service not found: " + serviceName);
+            }
+            if (!info.isAlive()) {
+                throw new RuntimeException("Service not running: " + serviceName + " (" + info.getStatus() + ")");
+            }
+
+            runtimeManager.stopService(serviceName);
+
+            if (info.isAlive()) {
+                throw new RuntimeException("Service did not stop within "
+                        + ServiceExecutor.STOP_TIMEOUT.toSeconds() + " seconds: " + serviceName);
+            }
+            return "Stopped " + serviceName + "\n";
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private String status() {
+        List<ServiceInfo> services = sortedServices();
+        List<ClassLoaderLeakDetector.Leak> leaks = runtimeManager.getLeakDetector().getLeaks();
+        if (services.isEmpty() && leaks.isEmpty()) {
+            return "No services running.\n";
+        }
+
+        StringBuilder out = new StringBuilder("Services (runtime host PID " + ProcessHandle.current().pid() + "):\n\n");
+        for (ServiceInfo info : services) {
+            out.append("  ").append(info.getName()).append('\n');
+            out.append("    Status: ").append(info.getStatus()).append('\n');
+            if (info.getPort() != null) {
+                out.append("    Port: ").append(info.getPort()).append('\n');
+            }
+            if (info.getForked() != null) {
+                out.append("    Forked: worker PID ").append(info.getForked().getPid())
+                        .append(", output in ").append(info.getForked().getLogFile()).append('\n');
+            } else if (info.getExecutionMode() != null) {
+                out.append("    Threads: ").append(info.getExecutionMode().name().toLowerCase()).append('\n');
+            }
+            ServiceOutput output = runtimeManager.getServiceOutput();
+            if (info.getForked() == null && output != null) {
+                long dropped = output.getDroppedWrites(info.getName());
+                out.append("    Output: ").append(output.logFile(info.getName()))
+                        .append(dropped > 0 ? " (" + dropped + " writes dropped)" : "").append('\n');
+            }
+            out.append("    Tasks: ").append(info.getActiveTasks()).append(" active, ")
+                    .append(info.getCompletedTasks()).append(" completed, ")
+                    .append(info.getFailedTasks()).append(" failed\n");
+            ManagedExecutor executor = info.getExecutor();
+            if (executor != null && (executor.getStartedTasks() > 0 || executor.getScheduledTasks() > 0)) {
+                out.append(String.format(Locale.ROOT,
+                        "    Executor: %d running (max %d), %d queued, %d scheduled, latency avg %.1f ms, max %.1f ms%n",
+                        executor.getRunningTasks(), executor.getMaxConcurrency(), info.getQueuedTasks(),
+                        executor.getScheduledTasks(), info.getTaskLatency().toNanos() / 1e6,
+                        executor.getMaxLatency().toNanos() / 1e6));
+            }
+            if (info.getStartTime() != null) {
+                out.append("    Uptime: ")
+                        .append(Duration.between(info.getStartTime(), Instant.now()).toSeconds()).append("s\n");
+            }
+            if (info.getError() != null) {
+                out.append("    Error: ").append(info.getError()).append('\n');
+            }
+            out.append('\n');
+        }
+
+        for (ReplicaSet replicaSet : runtimeManager.getReplicaSets()) {
+            LoadBalancer balancer = replicaSet.getBalancer();
+            out.append("  ").append(replicaSet.getServiceName()).append(" (load balancer)\n");
+            out.append("    Port: ").append(balancer.getPort()).append(", ")
+                    .append(balancer.getTotalConnections()).append(" connection(s) so far\n");
+            for (LoadBalancer.BackendStatus backend : balancer.getBackends()) {
+                out.append("    ").append(backend.instanceName()).append(": ")
+                        .append(backend.healthy() ? "healthy" : "unhealthy").append(", ")
+                        .append(backend.activeConnections()).append(" open connection(s)\n");
+            }
+            out.append('\n');
+        }
+
+        if (!leaks.isEmpty()) {
+            long metaspace = leaks.stream().mapToLong(ClassLoaderLeakDetector.Leak::metaspaceBytes).sum();
+            out.append("  Leaked ClassLoaders: ").append(leaks.size())
+                    .append(" (~").append(megabytes(metaspace)).append(" MB metaspace)\n");
+            for (ClassLoaderLeakDetector.Leak leak : leaks) {
+                out.append("    ").append(leak.serviceName()).append(": ").append(leak.classes())
+                        .append(" classes (~").append(megabytes(leak.metaspaceBytes())).append(" MB), retired ")
+                        .append(Duration.between(leak.retiredAt(), Instant.now()).toSeconds()).append("s ago\n");
+                for (String root : leak.roots()) {
+                    out.append("      held by ").append(root).append('\n');
+                }
+            }
+            out.append('\n');
+        }
+
+        out.append("Total: ").append(runtimeManager.getRegistry().getRunningCount())
+                .append(" service(s) running\n");
+        return out.toString();
+    }
+
+    private String metrics() {
+        List<ServiceMetrics.Snapshot> snapshots = runtimeManager.getMetrics().getSnapshots();
+        if (snapshots.isEmpty()) {
+            return "No services running (metrics are sampled every "
+                    + ServiceMetrics.SAMPLE_INTERVAL.toSeconds() + "s).\n";
+        }
+
+        StringBuilder out = new StringBuilder(String.format("%-24s %-8s %9s %11s %8s %8s %6s %8s %9s%n",
+                "SERVICE", "STATUS", "CPU (s)", "ALLOC (MB)", "CLASSES", "THREADS", "TASKS", "UPTIME", "RESTARTS"));
+        for (ServiceMetrics.Snapshot s : snapshots) {
+            out.append(String.format(Locale.ROOT, "%-24s %-8s %9.2f %11.1f %8d %8d %6d %7ds %9d%n",
+                    s.service, s.running ? "UP" : "DOWN", s.cpuNanos / 1e9, s.allocatedBytes / (1024.0 * 1024.0),
+                    s.loadedClasses, s.threads, s.activeTasks, s.uptimeSeconds, s.restarts));
+        }
+        out.append("\nSampled every ").append(ServiceMetrics.SAMPLE_INTERVAL.toSeconds())
+                .append("s; CPU and allocations are not measured for virtual threads.\n");
+        return out.toString();
+    }
+
+    private String list() {
+        StringBuilder out = new StringBuilder();
+        for (ServiceInfo info : sortedServices()) {
+            out.append(info.getName()).append(' ').append(info.getStatus()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    private String profile(String serviceName, int millis, int samplesPerSecond) throws InterruptedException {
+        // A replicated service is profiled across all its replicas
+        List<ServiceInfo> instances = runtimeManager.getRegistry().getAllServices().stream()
+                .filter(info -> info.getName().equals(serviceName)
+                        || info.getName().startsWith(serviceName + ReplicaSet.SEPARATOR))
+                .toList();
+        if (instances.isEmpty()) {
+            throw new RuntimeException("Service not found: " + serviceName);
+        }
+        for (ServiceInfo info : instances) {
+            if (info.getForked() != null) {
+                throw new RuntimeException("Service runs in its own JVM (PID " + info.getForked().getPid()
+                        + "); profile that JVM, e.g. with jcmd " + info.getForked().getPid() + " JFR.start");
+            }
+        }
+        if (instances.stream().noneMatch(ServiceInfo::isAlive)) {
+            throw new RuntimeException("Service not running: " + serviceName);
+        }
+
+        SamplingProfiler profiler = new SamplingProfiler(() -> instances.stream()
+                .filter(ServiceInfo::isAlive)
+                .flatMap(info -> SamplingProfiler.threadsOf(info).stream())
+                .toList(), samplesPerSecond);
+        SamplingProfiler.Profile profile = profiler.profile(Duration.ofMillis(millis));
+
+        return String.format(Locale.ROOT, "Profiled %s: %d samples of %d thread(s) in %.1f s, sampler overhead %.2f%% of one CPU%n",
+                serviceName, profile.samples(), profile.threads(),
+                profile.elapsed().toMillis() / 1000.0, profile.overheadPercent())
+                + profile.toCollapsed();
+    }
+
+    private List<ServiceInfo> sortedServices() {
+        return runtimeManager.getRegistry().getAllServices().stream()
+                .sorted(Comparator.comparing(ServiceInfo::getName))
+                .toList();
+    }
+
+    private static String argument(String[] parts) {
+        if (parts.length < 2) {
+            throw new RuntimeException("Missing service name: " + parts[0] + " <service>");
+        }
+        String serviceName = parts[1];
+        if (serviceName.contains("/") || serviceName.contains("\\") || serviceName.contains("..")) {
+            throw new RuntimeException("Invalid service name: " + serviceName);
+        }
+        return serviceName;
+    }
+
+    private ReplicaSet replicaSet(String serviceName) {
+        return runtimeManager.getReplicaSets().stream()
+                .filter(replicaSet -> replicaSet.getServiceName().equals(serviceName))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static int number(String[] parts, int index) {
+        if (parts.length <= index) {
+            throw new RuntimeException("Missing number: " + String.join(" ", parts));
+        }
+        try {
+            return Integer.parseInt(parts[index]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid number: " + parts[index]);
+        }
+    }
+
+    /**
+     * Create a directory (and its parents) and make it owner-only.
+     */
+    static void createOwnerOnlyDirectories(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    /**
+     * Bind a socket under a temporary name, make it owner-only, then rename
+     * it into place, so nobody sees a socket others could still open (as
+     * CompileWorker does).
+     */
+    static void bindOwnerOnly(ServerSocketChannel server, Path socketPath) throws IOException {
+        Path tmp = socketPath.resolveSibling(socketPath.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        Files.deleteIfExists(tmp);
+        server.bind(UnixDomainSocketAddress.of(tmp));
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            }
+            Files.move(tmp, socketPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private static String readLine(SocketChannel client) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        InputStream in = Channels.newInputStream(client);
+
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -1,15 +1,44 @@
 package runtime;
 
+import analysis.DependencyUsage;
 import com.myboq.manifest.model.Dependency;
 import com.myboq.manifest.model.Node;
 import com.myboq.manifest.model.NodeFactory;
+import com.myboq.manifest.model.NodeType;
 import com.myboq.manifest.parser.ManifestParser;
+import jar.ClassPack;
+import jfr.ServiceEvents;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * RuntimeManager is the main orchestrator for the runtime execution engine.
@@ -17,14 +46,38 @@ import java.util.List;
  * It ties together all the components:
  * - RuntimeContext (service metadata)
  * - ServiceClassLoader (dynamic loading)
+ * - InMemoryClassLoader (services built in this process by `run --build`)
+ * - SharedLayers (one loader per dependency, shared by services)
+ * - StartupProfiles (preloading the classes a service needs to start)
  * - EntryPointResolver (finding main())
  * - ServiceExecutor (running services)
  * - RuntimeRegistry (tracking services)
+ * - ServiceMetrics (CPU, allocation and class counts per service)
+ * - MessageBus (in-process messaging between services)
+ * - ServiceWorkerPool (pre-booted JVMs for forked services)
+ * - ReplicaSet and LoadBalancer (replicas of a service behind one port)
+ * - ShutdownCoordinator (stopping all services when the runtime exits)
+ * - ClassLoaderLeakDetector (checking that stopped services' classes are collected)
  * 
  * This is the high-level API that CLI commands will use.
  */
 public class RuntimeManager {
 
+    // How long a bundle may take until all its services are RUNNING
+    private static final Duration BUNDLE_STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+    // How long a replica may take to accept connections on its port
+    private static final Duration REPLICA_STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    // Ports tried for a replica whose port was taken before it could bind it
+    private static final int REPLICA_PORT_ATTEMPTS = 3;
+
+    // How long a reloaded service's new version may take to get RUNNING
+    private static final Duration RELOAD_STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    // How long after RUNNING a reloaded service's main() failing still counts as a failed start
+    private static final Duration RELOAD_SETTLE = Duration.ofSeconds(1);
+
     private final Path workspaceRoot;
     private final Path manifestDir;
     private final Path buildDir;
@@ -33,6 +86,51 @@ public class RuntimeManager {
     private final PersistentRegistry persistentRegistry;
     private final EntryPointResolver entryPointResolver;
     private final ServiceExecutor serviceExecutor;
+    private final SharedLayers sharedLayers;
+    private final StartupProfiles startupProfiles;
+    private final ServiceMetrics metrics;
+    private final MessageBus messageBus;
+    private final ClassLoaderLeakDetector leakDetector;
+
+    // Thread kind for services without an override
+    private ExecutionMode defaultExecutionMode = ExecutionMode.PLATFORM;
+    private final Map<String, ExecutionMode> executionModes = new HashMap<>();
+
+    // Load classes from <name>.classpack when it is up to date
+    private boolean usePackedClasses;
+
+    // Record startup profiles and preload from them
+    private boolean preloadClasses = true;
+
+    // Timer thread shared by all services' managed executors (created with the first service)
+    private ScheduledExecutorService executorTimer;
+
+    // Tasks of one service its managed executor runs at once
+    private int executorLimit = ManagedExecutor.DEFAULT_MAX_CONCURRENCY;
+
+    // Watches service jars and reloads services on rebuild (null = off)
+    private HotReloader hotReloader;
+
+    // Idle JVMs for forked services (created by the first fork, or by enableForking)
+    private ServiceWorkerPool workerPool;
+
+    // Per-service log files for in-process services (null = output goes to the console)
+    private ServiceOutput serviceOutput;
+
+    // Target name → its output compiled in this process, until their jars are written
+    private volatile Map<String, Map<String, byte[]>> compiledOutput = Map.of();
+
+    // Completes when the jars of the compiled output are on disk
+    private volatile CompletableFuture<?> compiledArtifacts = CompletableFuture.completedFuture(null);
+
+    // Dependency name → its layer built from compiled output, to share with its jar once written
+    private final Map<String, ServiceClassLoader> compiledLayers = new ConcurrentHashMap<>();
+
+    // Service name → its replicas, for services started with replicas
+    private final Map<String, ReplicaSet> replicaSets = new ConcurrentHashMap<>();
+
+    // Ports given to replicas (a replica may not have bound its port yet)
+    private final Set<Integer> replicaPorts = ConcurrentHashMap.newKeySet();
 
     public RuntimeManager(Path workspaceRoot, Path manifestDir) {
         this.workspaceRoot = workspaceRoot;
@@ -43,10 +141,15 @@ public class RuntimeManager {
         this.persistentRegistry = new PersistentRegistry();
         this.entryPointResolver = new EntryPointResolver();
         this.serviceExecutor = new ServiceExecutor();
+        this.sharedLayers = new SharedLayers(this::layerDropped);
+        this.startupProfiles = new StartupProfiles(workspaceRoot);
+        this.metrics = new ServiceMetrics(registry);
+        this.messageBus = new MessageBus();
+        this.leakDetector = new ClassLoaderLeakDetector(sharedLayers::getLoaders);
     }
 
     /**
-     * Run a service.
+     * Run a service, or every service of a COMPOSITE bundle.
      * 
      * Complete flow:
      * 1. Load manifest to get service info
@@ -56,62 +159,932 @@ public class RuntimeManager {
      * 5. Resolve main method
      * 6. Execute service
      * 
-     * @param serviceName Name of the service to run
+     * @param serviceName Name of the service (or bundle) to run
      */
     public void runService(String serviceName) throws Exception {
-        System.out.println("\n=== STARTING SERVICE: " + serviceName + " ===\n");
-
         // Step 1: Load manifest
         Node serviceNode = loadManifest(serviceName);
 
+        if (serviceNode.getType() == NodeType.COMPOSITE) {
+            runBundle(serviceNode);
+            return;
+        }
+
+        System.out.println("\n=== STARTING SERVICE: " + serviceName + " ===\n");
+        startService(serviceNode);
+        System.out.println("\n=== SERVICE STARTED: " + serviceName + " ===\n");
+    }
+
+    /**
+     * Start one service (steps 2-6 of runService's flow).
+     *
+     * @return the service's registry entry
+     */
+    private ServiceInfo startService(Node serviceNode) throws Exception {
+        // An earlier run that ended on its own is replaced; let its classes go
+        ServiceInfo previous = registry.getService(serviceNode.getName());
+        if (previous != null && !previous.isAlive()) {
+            releaseClassLoader(previous);
+        }
+
+        PreparedService prepared = prepareService(serviceNode);
+
+        // Step 7: Execute service
+        serviceExecutor.execute(prepared.context, prepared.mainMethod, registry, persistentRegistry);
+
+        if (hotReloader != null) {
+            // A jar `run --build` is still writing is watched once it is written
+            String serviceName = serviceNode.getName();
+            Path serviceJar = prepared.context.getServiceJar();
+            compiledArtifacts.thenRun(() -> hotReloader.watch(serviceName, serviceJar));
+        }
+        return registry.getService(serviceNode.getName());
+    }
+
+    /**
+     * Steps 2-6: everything up to running main(). Nothing here affects a
+     * running instance of the same service, so a new version can be prepared
+     * while the old one keeps serving.
+     */
+    private PreparedService prepareService(Node serviceNode) throws Exception {
+        return prepareService(serviceNode, serviceNode.getName());
+    }
+
+    /**
+     * Prepare an instance of a service under its own name (a replica's
+     * "<service>#<n>"): its own context, ClassLoader and registry entry.
+     */
+    private PreparedService prepareService(Node serviceNode, String instanceName) throws Exception {
+        String serviceName = serviceNode.getName();
+
         // Step 2: Create RuntimeContext
         Path serviceJar = buildDir.resolve(serviceName).resolve(serviceName + ".jar");
+        Map<String, Map<String, byte[]>> outputByTarget = compiledOutput;
+        boolean compiled = outputByTarget.containsKey(serviceName);
 
-        if (!Files.exists(serviceJar)) {
+        if (!compiled && !Files.exists(serviceJar)) {
             throw new RuntimeException(
                     "Service JAR not found: " + serviceJar +
                             "\nPlease build the service first: mycoq build " + serviceName);
         }
 
-        RuntimeContext context = new RuntimeContext(serviceName, serviceJar);
+        RuntimeContext context = new RuntimeContext(instanceName, serviceJar);
 
-        // Step 3: Load dependency JARs
-        loadDependencies(context, serviceNode);
+        // Step 3: Load dependency JARs (compiled output comes with its dependencies')
+        List<String> dependencyNames = compiled ? List.of() : loadDependencies(context, serviceNode);
 
         // Step 4: Determine main class
         String mainClass = determineMainClass(serviceName);
         context.setMainClass(mainClass);
 
-        System.out.println("[Runtime] Service JAR: " + serviceJar);
+        System.out.println("[Runtime] Service JAR: " + serviceJar + (compiled ? " (not used, compiled in memory)" : ""));
         System.out.println("[Runtime] Dependencies: " + context.getDependencyJars().size());
         System.out.println("[Runtime] Main class: " + mainClass);
 
         // Step 5: Create ServiceClassLoader
-        List<Path> allJars = new ArrayList<>();
-        allJars.add(serviceJar);
-        allJars.addAll(context.getDependencyJars());
+        ServiceEvents.ClassLoaderCreated loaderEvent = new ServiceEvents.ClassLoaderCreated();
+        loaderEvent.loader = instanceName;
+        loaderEvent.jars = compiled ? 0 : 1;
 
-        ServiceClassLoader classLoader = new ServiceClassLoader(
-                serviceName,
-                allJars,
-                ClassLoader.getSystemClassLoader());
+        ServiceClassLoader classLoader = null;
+        if (compiled) {
+            // Its own output only; dependencies compiled with it are shared layers
+            List<ServiceClassLoader> layers = new ArrayList<>();
+            for (Dependency dep : serviceNode.getDependencyList()) {
+                if (outputByTarget.containsKey(dep.getName())) {
+                    layers.add(compiledLayer(dep.getName(), outputByTarget));
+                }
+            }
+
+            InMemoryClassLoader loader = new InMemoryClassLoader(instanceName, outputByTarget.get(serviceName),
+                    ClassLoader.getSystemClassLoader(), layers);
+            System.out.println("[Runtime] Compiled classes: " + loader.getCompiledClassCount() + " (in memory)");
+            classLoader = loader;
+            loaderEvent.layers = layers.size();
+        } else if (usePackedClasses) {
+            classLoader = packedClassLoader(serviceNode, serviceJar);
+            loaderEvent.packed = classLoader != null;
+        }
+
+        if (classLoader == null) {
+            // It holds only the service jar; dependencies come from shared layers
+            List<ServiceClassLoader> layers = new ArrayList<>();
+            for (String depName : dependencyNames) {
+                layers.add(sharedLayer(depName));
+            }
+
+            classLoader = new ServiceClassLoader(
+                    instanceName,
+                    List.of(serviceJar),
+                    ClassLoader.getSystemClassLoader(),
+                    layers);
+            loaderEvent.layers = layers.size();
+        }
+        loaderEvent.commit();
+
+        // Preload the classes the last start of this jar needed, while main() runs
+        if (preloadClasses && !compiled) {
+            startupProfiles.apply(serviceName, serviceJar, classLoader);
+        }
 
         context.setClassLoader(classLoader);
+        context.setExecutionMode(executionModes.getOrDefault(serviceName, defaultExecutionMode));
+        context.setMessageBus(messageBus);
+        context.setManagedExecutor(new ManagedExecutor(instanceName, executorTimer(), executorLimit));
+        if (serviceOutput != null) {
+            System.out.println("[Runtime] Output of " + instanceName + ": " + serviceOutput.logFile(instanceName));
+        }
 
         // Step 6: Resolve main method
-        Method mainMethod = entryPointResolver.resolveMainMethod(context);
+        Method mainMethod;
+        try {
+            mainMethod = entryPointResolver.resolveMainMethod(context);
+        } catch (Exception e) {
+            // Never started, so never released: give the layers back here
+            classLoader.close();
+            sharedLayers.release(classLoader.getLayers());
+            throw e;
+        }
 
-        // Step 7: Execute service
-        serviceExecutor.execute(context, mainMethod, registry, persistentRegistry);
+        return new PreparedService(context, mainMethod);
+    }
 
-        System.out.println("\n=== SERVICE STARTED: " + serviceName + " ===\n");
+    /**
+     * Replace a running service with the current build of its jar.
+     *
+     * CONCEPT: Hot Reload
+     * -------------------
+     * A class, once loaded, can't be changed - but a whole ClassLoader can be
+     * thrown away. Reloading a service means:
+     *   1. Load the new jar in a fresh ServiceClassLoader and resolve main()
+     *      (the old instance keeps running meanwhile)
+     *   2. Start the new one; registering it replaces the registry entry in
+     *      one atomic put, so lookups see either the old or the new instance
+     *   3. Once the new one has started (see FAILURES), stop the old one
+     *   4. Close the old ServiceClassLoader; once nothing references its
+     *      classes, the GC unloads them
+     *
+     * The shared dependency layers are reused as they are (unless a dependency
+     * jar changed too), so the new version starts with warm, JIT-compiled
+     * dependencies and only the service's own classes are loaded again.
+     *
+     * FAILURES:
+     * ---------
+     * The new version counts as started once it is RUNNING and main() has not
+     * failed within RELOAD_SETTLE (a service that can't start - bad config,
+     * port taken - fails in main() right away). Some services can't run
+     * twice at once (a fixed port, a lock file), so a new version that fails
+     * next to the old one gets a second try alone: the old instance is
+     * stopped and the new version started once more. If that fails too, the
+     * old version is started again.
+     */
+    public void reloadService(String serviceName) throws Exception {
+        long startNanos = System.nanoTime();
+        System.out.println("\n[Reload] Reloading service: " + serviceName);
+
+        ServiceInfo old = registry.getService(serviceName);
+        Node serviceNode = loadManifest(serviceName);
+        PreparedService next = prepareService(serviceNode);
+
+        if (old == null || !old.isAlive()) {
+            serviceExecutor.execute(next.context, next.mainMethod, registry, persistentRegistry);
+            if (old != null) {
+                releaseClassLoader(old);
+            }
+            System.out.println("[Reload] ✓ Started " + serviceName + " (it was not running)");
+            return;
+        }
+
+        // 2. New version first; the old one keeps serving meanwhile
+        serviceExecutor.execute(next.context, next.mainMethod, registry, persistentRegistry);
+        ServiceInfo started = registry.getService(serviceName);
+        boolean ok = awaitStarted(started);
+
+        // 3. Stop the old instance
+        if (!ok) {
+            System.out.println("[Reload] New version of " + serviceName
+                    + " did not start next to the old one; retrying without it");
+            stopInstance(started);
+        }
+        stopInstance(old);
+
+        if (!ok) {
+            releaseClassLoader(started);
+            ServiceInfo retried = startService(serviceNode);
+
+            if (!awaitStarted(retried)) {
+                System.err.println("[Reload] ✗ New version of " + serviceName
+                        + " failed; restarting the previous version");
+                stopInstance(retried);
+                releaseClassLoader(retried);
+
+                RuntimeContext oldContext = old.getScope().getContext();
+                oldContext.setManagedExecutor(new ManagedExecutor(serviceName, executorTimer(), executorLimit));
+                serviceExecutor.execute(oldContext, entryPointResolver.resolveMainMethod(oldContext),
+                        registry, persistentRegistry);
+                return;
+            }
+        }
+
+        // 4. The old version is not coming back
+        releaseClassLoader(old);
+
+        System.out.println("[Reload] ✓ Reloaded " + serviceName + " in "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Wait until a just started instance is RUNNING and has not failed within RELOAD_SETTLE.
+     *
+     * @return false if it failed or stopped first, or took too long
+     */
+    private static boolean awaitStarted(ServiceInfo info) {
+        try {
+            info.whenRunning().get(RELOAD_STARTUP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            info.getThread().join(RELOAD_SETTLE.toMillis());
+            return info.getStatus() != ServiceStatus.FAILED;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void stopInstance(ServiceInfo info) {
+        if (info.isAlive()) {
+            serviceExecutor.stop(info, System.nanoTime() + ServiceExecutor.STOP_TIMEOUT.toNanos());
+        }
+    }
+
+    /**
+     * Close a stopped service's own ClassLoader (never a shared layer), drop
+     * the runtime's references to it, and have the leak detector check that
+     * it gets collected.
+     */
+    private void releaseClassLoader(ServiceInfo info) {
+        if (info.getThread() != null && info.getThread().isAlive()) {
+            System.err.println("[Runtime] Old instance of " + info.getName()
+                    + " is still running; keeping its ClassLoader");
+            return;
+        }
+
+        if (info.getClassLoader() instanceof ServiceClassLoader loader) {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                System.err.println("[Runtime] Could not close ClassLoader of " + info.getName()
+                        + ": " + e.getMessage());
+            }
+
+            sharedLayers.release(loader.getLayers());
+
+            // A stopped service's registry entry must not keep its classes alive
+            info.setClassLoader(null);
+            if (info.getScope() != null && info.getScope().getContext() != null) {
+                info.getScope().getContext().setClassLoader(null);
+            }
+            leakDetector.track(info.getName(), loader);
+        }
+    }
+
+    /**
+     * Watch the jars of services started from now on, and reload a service
+     * when its jar is rebuilt.
+     */
+    public void enableHotReload() throws IOException {
+        if (hotReloader == null) {
+            hotReloader = new HotReloader(this::reloadService);
+            hotReloader.start();
+        }
+    }
+
+    /**
+     * Run replicas of a service behind a load balancer on the given port.
+     *
+     * CONCEPT: Replicas
+     * -----------------
+     * A service that is busy on one thread can't use the other cores. Run
+     * several copies of it instead, each listening on a port of its own, and
+     * put a LoadBalancer on the service's port in front of them:
+     *
+     *   mycoq run payment-service --replicas 3 --port 8080
+     *
+     * Each replica is a full service instance (see ReplicaSet), so one
+     * replica failing or being stopped leaves the others serving. The
+     * number of replicas can be changed while they run (scaleService).
+     *
+     * @param port front port of the load balancer (0 = any free port)
+     */
+    public void runReplicas(String serviceName, int replicas, int port) throws Exception {
+        Node serviceNode = loadManifest(serviceName);
+        if (serviceNode.getType() != NodeType.EXECUTABLE) {
+            throw new RuntimeException("Only EXECUTABLE services can have replicas: " + serviceName);
+        }
+        if (replicas < 1) {
+            throw new RuntimeException("Replicas must be at least 1: " + replicas);
+        }
+
+        LoadBalancer balancer = new LoadBalancer(serviceName, port);
+        ReplicaSet replicaSet = new ReplicaSet(serviceName, balancer);
+        if (replicaSets.putIfAbsent(serviceName, replicaSet) != null) {
+            throw new RuntimeException("Service already has replicas (use scale): " + serviceName);
+        }
+
+        try {
+            balancer.start();
+            scaleService(serviceName, replicas);
+        } catch (Exception e) {
+            stopService(serviceName);
+            throw e;
+        }
+    }
+
+    /**
+     * Change the number of replicas of a service. New replicas start before
+     * this returns; removed ones (the highest numbers) first get no new
+     * connections, then stop. Replicas that ended are replaced.
+     */
+    public synchronized void scaleService(String serviceName, int replicas) throws Exception {
+        ReplicaSet replicaSet = replicaSets.get(serviceName);
+        if (replicaSet == null) {
+            throw new RuntimeException("Service has no replicas (run it with --replicas): " + serviceName);
+        }
+        if (replicas < 1) {
+            throw new RuntimeException("Replicas must be at least 1 (stop the service instead): " + replicas);
+        }
+
+        for (String instanceName : replicaSet.getInstanceNames()) {
+            ServiceInfo info = registry.getService(instanceName);
+            if (info == null || !info.isAlive()) {
+                replicaSet.remove(instanceName);
+                replicaSet.getBalancer().removeBackend(instanceName);
+                registry.unregister(instanceName);
+                if (info != null && info.getPort() != null) {
+                    replicaPorts.remove(info.getPort());
+                }
+            }
+        }
+
+        Node serviceNode = loadManifest(serviceName);
+        while (replicaSet.size() < replicas) {
+            startReplica(serviceNode, replicaSet);
+        }
+        while (replicaSet.size() > replicas) {
+            stopReplica(replicaSet, replicaSet.removeLast());
+        }
+
+        System.out.println("[Replicas] " + serviceName + ": " + replicaSet.size() + " replica(s) behind port "
+                + replicaSet.getBalancer().getPort());
+    }
+
+    /**
+     * Start a replica on a free port and wait until it accepts connections.
+     * The port is free when picked, but another process may bind it before
+     * the replica does; a replica that fails to bind is started again on
+     * another port.
+     */
+    private void startReplica(Node serviceNode, ReplicaSet replicaSet) throws Exception {
+        int number = replicaSet.nextNumber();
+        String instanceName = ReplicaSet.instanceName(serviceNode.getName(), number);
+
+        for (int attempt = 1; ; attempt++) {
+            int port = freePort();
+
+            PreparedService prepared = prepareService(serviceNode, instanceName);
+            prepared.context.addConfig("port", String.valueOf(port));
+            prepared.context.addConfig("replica", String.valueOf(number));
+
+            serviceExecutor.execute(prepared.context, prepared.mainMethod, registry, persistentRegistry);
+
+            ServiceInfo info = registry.getService(instanceName);
+            info.setPort(port);
+
+            if (!awaitListening(info, port) && info.getFailure() instanceof BindException
+                    && attempt < REPLICA_PORT_ATTEMPTS) {
+                System.out.println("[Replicas] " + instanceName + " could not bind port " + port
+                        + "; trying another port");
+                replicaPorts.remove(port);
+                releaseClassLoader(info);
+                continue;
+            }
+
+            replicaSet.add(number, instanceName);
+            replicaSet.getBalancer().addBackend(instanceName, port, info);
+            return;
+        }
+    }
+
+    /**
+     * Wait until a replica accepts connections on its port (a TCP readiness
+     * check: connect and close), or ends.
+     *
+     * @return true if it is listening; false if it ended or took too long
+     */
+    private static boolean awaitListening(ServiceInfo info, int port) throws InterruptedException {
+        long deadline = System.nanoTime() + REPLICA_STARTUP_TIMEOUT.toNanos();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        while (info.isAlive() && System.nanoTime() < deadline) {
+            try (Socket probe = new Socket()) {
+                probe.connect(address, 1000);
+                return true;
+            } catch (IOException e) {
+                Thread.sleep(10); // not listening yet
+            }
+        }
+        return false;
+    }
+
+    private void stopReplica(ReplicaSet replicaSet, String instanceName) {
+        replicaSet.getBalancer().removeBackend(instanceName);
+        serviceExecutor.stop(instanceName, registry, persistentRegistry);
+
+        ServiceInfo info = registry.getService(instanceName);
+        if (info != null && !info.isAlive()) {
+            registry.unregister(instanceName);
+            releaseClassLoader(info);
+            if (info.getPort() != null) {
+                replicaPorts.remove(info.getPort());
+            }
+        }
+    }
+
+    /**
+     * A port nobody listens on right now and no other replica was given,
+     * for a replica to bind.
+     */
+    private int freePort() throws IOException {
+        while (true) {
+            try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+                if (replicaPorts.add(socket.getLocalPort())) {
+                    return socket.getLocalPort();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the replica sets of this runtime (services started with replicas).
+     */
+    public List<ReplicaSet> getReplicaSets() {
+        return replicaSets.values().stream()
+                .sorted(Comparator.comparing(ReplicaSet::getServiceName))
+                .toList();
+    }
+
+    /**
+     * Run a service in its own JVM, taken from the worker pool.
+     *
+     * CONCEPT: Forked Services
+     * ------------------------
+     * In-process services share the host's heap: one service leaking memory
+     * or calling System.exit() takes the others down. A forked service gets
+     * a JVM of its own, at the price of that JVM's startup - which the
+     * ServiceWorkerPool pays in advance, so a fork starts about as fast as
+     * an in-process service.
+     *
+     * The worker loads the service jar and its transitive dependencies into
+     * one ServiceClassLoader (shared layers can't be shared across
+     * processes), runs main() with the same ServiceExecutor, and writes the
+     * service's output to <workspace>/.mycoq/logs/<service>.log. The service
+     * is registered here with the worker JVM in place of a thread, so status
+     * and stop treat it like any other service.
+     *
+     * Bundles are not forked: their startup ordering relies on watching
+     * each service's status in this JVM.
+     */
+    public void forkService(String serviceName) throws Exception {
+        long startNanos = System.nanoTime();
+        Node serviceNode = loadManifest(serviceName);
+
+        if (serviceNode.getType() == NodeType.COMPOSITE) {
+            throw new RuntimeException("Bundles can't be forked, run them without --fork: " + serviceName);
+        }
+
+        Path serviceJar = buildDir.resolve(serviceName).resolve(serviceName + ".jar");
+        if (!Files.exists(serviceJar)) {
+            throw new RuntimeException(
+                    "Service JAR not found: " + serviceJar +
+                            "\nPlease build the service first: mycoq build " + serviceName);
+        }
+
+        ServiceWorker.Request request = new ServiceWorker.Request();
+        request.serviceName = serviceName;
+        request.serviceJar = serviceJar.toAbsolutePath().normalize().toString();
+        request.mainClass = determineMainClass(serviceName);
+        request.executionMode = executionModes.getOrDefault(serviceName, defaultExecutionMode).name();
+        request.executorLimit = executorLimit;
+        request.logFile = ServiceOutput.logDirFor(workspaceRoot)
+                .resolve(serviceName + ".log").toAbsolutePath().normalize().toString();
+        if (preloadClasses) {
+            request.profilesWorkspace = workspaceRoot.toAbsolutePath().normalize().toString();
+        }
+
+        Set<String> dependencyNames = new LinkedHashSet<>();
+        collectTransitive(serviceNode, dependencyNames);
+        for (String depName : dependencyNames) {
+            Path depJar = buildDir.resolve(depName).resolve(depName + ".jar");
+            if (Files.exists(depJar)) {
+                request.dependencyJars.add(depJar.toAbsolutePath().normalize().toString());
+            }
+        }
+
+        ForkedService forked = workerPool().fork(request);
+
+        ServiceInfo info = new ServiceInfo(serviceName);
+        info.setStartTime(Instant.now());
+        info.setForked(forked);
+        registry.register(serviceName, info);
+        info.setStatus(ServiceStatus.RUNNING);
+
+        forked.onExit().thenAccept(exitCode -> {
+            if (info.getStatus() != ServiceStatus.RUNNING) {
+                return;
+            }
+            if (exitCode == 0 || info.isStopRequested()) {
+                info.setStatus(ServiceStatus.STOPPED);
+            } else {
+                info.setError("Worker exited with code " + exitCode + ", see " + forked.getLogFile());
+                info.setStatus(ServiceStatus.FAILED);
+            }
+        });
+
+        System.out.println("[Fork] ✓ " + serviceName + " running in worker PID " + forked.getPid()
+                + " (" + (System.nanoTime() - startNanos) / 1_000_000 + " ms, output: "
+                + forked.getLogFile() + ")");
+    }
+
+    /**
+     * Keep poolSize JVMs booted for forked services, starting now.
+     */
+    public synchronized void enableForking(int poolSize) {
+        if (workerPool == null) {
+            workerPool = new ServiceWorkerPool(workspaceRoot, poolSize);
+            workerPool.fill();
+        }
+    }
+
+    /**
+     * Write each in-process service's System.out and System.err to its own
+     * log file instead of the console, from now on (see ServiceOutput).
+     */
+    public synchronized void captureOutput() throws IOException {
+        if (serviceOutput == null) {
+            serviceOutput = ServiceOutput.install(ServiceOutput.logDirFor(workspaceRoot));
+        }
+    }
+
+    private synchronized ServiceWorkerPool workerPool() {
+        enableForking(ServiceWorkerPool.DEFAULT_SIZE);
+        return workerPool;
+    }
+
+    /**
+     * Run all services of a COMPOSITE bundle.
+     *
+     * CONCEPT: Dependency-Ordered Parallel Startup
+     * --------------------------------------------
+     * Starting services one after another takes the sum of their startup
+     * times. But a service only needs the services it depends on to be up:
+     *
+     *   logging ──┐
+     *             ├──→ payment
+     *   auth ─────┘
+     *   metrics            (independent)
+     *
+     * Here logging, auth and metrics start at the same time, and payment starts
+     * as soon as both logging and auth report RUNNING. Bringing the bundle up
+     * takes as long as the longest chain (the "critical path"), not the sum.
+     *
+     * A readiness barrier then waits until every service is RUNNING. If one
+     * fails, services depending on it are not started, and the services that
+     * did start are stopped again.
+     *
+     * SHARED libraries in the bundle are not started; they are loaded by the
+     * services that depend on them.
+     */
+    private void runBundle(Node bundle) throws Exception {
+        String bundleName = bundle.getName();
+        System.out.println("\n=== STARTING BUNDLE: " + bundleName + " ===\n");
+
+        // Collect the bundle's services (nested bundles are expanded)
+        Map<String, Node> services = new LinkedHashMap<>();
+        collectServices(bundle, services, new HashSet<>(), new HashSet<>());
+
+        if (services.isEmpty()) {
+            throw new RuntimeException("Bundle has no EXECUTABLE services: " + bundleName);
+        }
+
+        System.out.println("[Runtime] Bundle services: " + String.join(", ", services.keySet()));
+
+        // Milliseconds after startNanos at which each service reported RUNNING
+        long startNanos = System.nanoTime();
+        Map<String, CompletableFuture<Long>> runningAt = new HashMap<>();
+        ExecutorService starter = Executors.newVirtualThreadPerTaskExecutor();
+
+        try {
+            for (String name : services.keySet()) {
+                scheduleStart(name, services, runningAt, starter, startNanos, new HashSet<>());
+            }
+
+            // Readiness barrier: every service RUNNING, or give up
+            try {
+                CompletableFuture.allOf(runningAt.values().toArray(new CompletableFuture<?>[0]))
+                        .get(BUNDLE_STARTUP_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                starter.shutdown(); // nothing more gets started
+                reportBundleFailure(bundleName, services, runningAt);
+                throw new RuntimeException("Bundle failed to start: " + bundleName);
+            }
+        } finally {
+            starter.shutdown();
+        }
+
+        long totalMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        System.out.println("\n[Runtime] Startup times:");
+        for (String name : services.keySet()) {
+            System.out.printf("[Runtime]   %-25s RUNNING after %d ms%n", name, runningAt.get(name).join());
+        }
+        System.out.println("[Runtime] Critical path: "
+                + String.join(" → ", criticalPath(services, runningAt)));
+        sharedLayers.printSummary();
+
+        System.out.println("\n=== BUNDLE STARTED: " + bundleName + " ("
+                + services.size() + " services in " + totalMillis + " ms) ===\n");
+    }
+
+    /**
+     * Create (once) the future of a service's startup: wait for the bundle
+     * services it depends on, then start it and wait until it is RUNNING.
+     */
+    private CompletableFuture<Long> scheduleStart(String name,
+                                                  Map<String, Node> services,
+                                                  Map<String, CompletableFuture<Long>> runningAt,
+                                                  ExecutorService starter,
+                                                  long startNanos,
+                                                  Set<String> visiting) {
+        CompletableFuture<Long> existing = runningAt.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (!visiting.add(name)) {
+            throw new RuntimeException("Dependency cycle in bundle involving: " + name);
+        }
+
+        Node node = services.get(name);
+        List<CompletableFuture<Long>> dependencies = new ArrayList<>();
+        for (String dep : bundleDependencies(node, services)) {
+            dependencies.add(scheduleStart(dep, services, runningAt, starter, startNanos, visiting));
+        }
+        visiting.remove(name);
+
+        CompletableFuture<Long> future = CompletableFuture
+                .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                .thenComposeAsync(ignored -> {
+                    try {
+                        return startService(node).whenRunning();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, starter)
+                .thenApply(ignored -> (System.nanoTime() - startNanos) / 1_000_000);
+
+        runningAt.put(name, future);
+        return future;
+    }
+
+    /**
+     * Report which services of a bundle failed, and stop the ones that started.
+     */
+    private void reportBundleFailure(String bundleName,
+                                     Map<String, Node> services,
+                                     Map<String, CompletableFuture<Long>> runningAt) {
+        System.err.println("\n[Runtime] ✗ Bundle failed to start: " + bundleName);
+
+        for (String name : services.keySet()) {
+            CompletableFuture<Long> future = runningAt.get(name);
+            ServiceInfo info = registry.getService(name);
+
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                System.err.println("[Runtime]   " + name + ": RUNNING (stopping)");
+            } else if (info != null) {
+                System.err.println("[Runtime]   " + name + ": " + info.getStatus()
+                        + (info.getError() != null ? " - " + info.getError() : ""));
+            } else if (future.isCompletedExceptionally()) {
+                System.err.println("[Runtime]   " + name + ": not started - "
+                        + future.handle((value, e) -> rootCause(e).getMessage()).join());
+            } else {
+                System.err.println("[Runtime]   " + name + ": not started (waiting for dependencies)");
+            }
+        }
+
+        for (String name : services.keySet()) {
+            ServiceInfo info = registry.getService(name);
+            if (info != null && info.getThread() != null && info.getThread().isAlive()) {
+                stopService(name);
+            }
+        }
+    }
+
+    /**
+     * Longest chain of dependencies, ending at the service that came up last.
+     */
+    private List<String> criticalPath(Map<String, Node> services, Map<String, CompletableFuture<Long>> runningAt) {
+        String last = services.keySet().stream()
+                .max(Comparator.comparingLong(name -> runningAt.get(name).join()))
+                .orElseThrow();
+
+        List<String> path = new ArrayList<>();
+        for (String name = last; name != null; ) {
+            path.add(0, name);
+            name = bundleDependencies(services.get(name), services).stream()
+                    .max(Comparator.comparingLong(dep -> runningAt.get(dep).join()))
+                    .orElse(null);
+        }
+        return path;
+    }
+
+    /**
+     * Dependencies of a service that are themselves services of the bundle.
+     */
+    private static List<String> bundleDependencies(Node node, Map<String, Node> services) {
+        return node.getDependencyList().stream()
+                .map(Dependency::getName)
+                .filter(services::containsKey)
+                .toList();
+    }
+
+    /**
+     * Collect the EXECUTABLE services of a bundle, expanding nested bundles.
+     * A bundle included by several others (a diamond) is expanded once.
+     *
+     * @param path bundles being expanded, from the outermost one
+     * @param done bundles already expanded
+     */
+    private void collectServices(Node bundle, Map<String, Node> services, Set<String> path, Set<String> done)
+            throws Exception {
+        if (done.contains(bundle.getName())) {
+            return;
+        }
+        if (!path.add(bundle.getName())) {
+            throw new RuntimeException("Bundle includes itself: " + bundle.getName());
+        }
+
+        for (String included : readIncludes(bundle.getName())) {
+            Node node = loadManifest(included);
+
+            switch (node.getType()) {
+                case COMPOSITE -> collectServices(node, services, path, done);
+                case EXECUTABLE -> services.put(node.getName(), node);
+                default -> System.out.println("[Runtime] Library included: " + node.getName()
+                        + " (loaded by the services that use it)");
+            }
+        }
+
+        path.remove(bundle.getName());
+        done.add(bundle.getName());
+    }
+
+    /**
+     * Read the includes: list of a COMPOSITE manifest.
+     *
+     * The manifest model only exposes dependencies, so the (flat) YAML list
+     * is read directly:
+     *   includes:
+     *     - payment-service@1.0.0
+     */
+    private List<String> readIncludes(String bundleName) throws Exception {
+        List<String> includes = new ArrayList<>();
+        boolean inIncludes = false;
+
+        for (String line : Files.readAllLines(findManifest(bundleName))) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            if (!Character.isWhitespace(line.charAt(0)) && !trimmed.startsWith("-")) {
+                // A new top-level key
+                inIncludes = trimmed.equals("includes:");
+            } else if (inIncludes && trimmed.startsWith("-")) {
+                String item = trimmed.substring(1).strip().replace("\"", "").replace("'", "");
+                int at = item.indexOf('@');
+                includes.add(at == -1 ? item : item.substring(0, at));
+            }
+        }
+
+        return includes;
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * Set the kind of threads services run on, unless overridden per service.
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        this.defaultExecutionMode = mode;
+    }
+
+    /**
+     * Set the kind of threads one service runs on.
+     */
+    public void setExecutionMode(String serviceName, ExecutionMode mode) {
+        executionModes.put(serviceName, mode);
     }
 
     /**
      * Stop a running service.
      */
     public void stopService(String serviceName) {
+        ReplicaSet replicaSet = replicaSets.remove(serviceName);
+        if (replicaSet != null) {
+            replicaSet.getBalancer().close();
+            for (String instanceName; (instanceName = replicaSet.removeLast()) != null; ) {
+                stopReplica(replicaSet, instanceName);
+            }
+            return;
+        }
+
+        ServiceInfo info = registry.getService(serviceName);
+
+        if (info != null && info.getForked() != null) {
+            info.setStopRequested(true);
+            if (info.getForked().stop()) {
+                System.out.println("[Fork] ✓ Service stopped: " + serviceName);
+            } else {
+                // Killed: its registry entry goes when its PID is seen dead
+                System.err.println("[Fork] Worker of " + serviceName + " did not stop in time; killed it");
+            }
+            info.setStatus(ServiceStatus.STOPPED);
+            return;
+        }
+
         serviceExecutor.stop(serviceName, registry, persistentRegistry);
+        if (info != null && !info.isAlive()) {
+            releaseClassLoader(info);
+        }
+    }
+
+    /**
+     * Stop every service of this runtime, dependents before the services
+     * they depend on, within ShutdownCoordinator.DEFAULT_TIMEOUT. Run when
+     * the process exits (see RunCommand).
+     *
+     * Load balancers close first so no new connections come in, and the
+     * hot reloader first so nothing is restarted while stopping.
+     *
+     * @return names of the services that did not stop in time
+     */
+    public List<String> shutdown() {
+        if (hotReloader != null) {
+            try {
+                hotReloader.close();
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }
+        for (ReplicaSet replicaSet : replicaSets.values()) {
+            replicaSet.getBalancer().close();
+        }
+
+        Map<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+        List<String> notStopped = new ShutdownCoordinator(registry, persistentRegistry, serviceExecutor,
+                name -> dependencies.computeIfAbsent(name, this::transitiveDependencies))
+                .shutdown(ShutdownCoordinator.DEFAULT_TIMEOUT);
+
+        synchronized (this) {
+            if (workerPool != null) {
+                workerPool.close();
+            }
+            if (executorTimer != null) {
+                executorTimer.shutdownNow();
+            }
+            if (serviceOutput != null) {
+                serviceOutput.close(); // after the services' last words
+            }
+        }
+        return notStopped;
+    }
+
+    /**
+     * Names a service depends on, directly or not (empty if its manifest
+     * can't be read).
+     */
+    private Set<String> transitiveDependencies(String serviceName) {
+        Set<String> names = new LinkedHashSet<>();
+        try {
+            collectTransitive(loadManifest(serviceName), names);
+        } catch (Exception e) {
+            System.err.println("[Shutdown] Stopping " + serviceName + " without ordering: " + e.getMessage());
+        }
+        return names;
     }
 
     /**
@@ -121,37 +1094,275 @@ public class RuntimeManager {
         return registry;
     }
 
+    /**
+     * Get the per-service metrics (sampled once started).
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the detector of ClassLoaders that outlive their service.
+     */
+    public ClassLoaderLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    /**
+     * Per-service output capture (null unless captureOutput() was called).
+     */
+    public synchronized ServiceOutput getServiceOutput() {
+        return serviceOutput;
+    }
+
+    /**
+     * Get the bus the services of this runtime message each other on.
+     */
+    public MessageBus getMessageBus() {
+        return messageBus;
+    }
+
     /**
      * Load manifest for a service.
      */
     private Node loadManifest(String serviceName) throws Exception {
-        Path manifestPath = manifestDir.resolve(serviceName + ".yaml");
+        ManifestParser parser = new ManifestParser();
+        return NodeFactory.fromManifest(parser.parse(findManifest(serviceName)));
+    }
 
-        if (!Files.exists(manifestPath)) {
-            throw new RuntimeException("Manifest not found: " + manifestPath);
+    /**
+     * Find the manifest of a node: <name>.yaml, or else the manifest whose
+     * name: field matches (e.g. payments-bundle in payment-bundle.yaml).
+     */
+    private Path findManifest(String name) throws Exception {
+        Path manifestPath = manifestDir.resolve(name + ".yaml");
+        if (Files.exists(manifestPath)) {
+            return manifestPath;
         }
 
-        ManifestParser parser = new ManifestParser();
-        return NodeFactory.fromManifest(parser.parse(manifestPath));
+        if (Files.isDirectory(manifestDir)) {
+            ManifestParser parser = new ManifestParser();
+            try (var files = Files.list(manifestDir)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".yaml")).sorted().toList()) {
+                    if (NodeFactory.fromManifest(parser.parse(file)).getName().equals(name)) {
+                        return file;
+                    }
+                }
+            }
+        }
+
+        throw new RuntimeException("Manifest not found: " + manifestPath);
+    }
+
+    /**
+     * Create a loader backed by the service's class pack, or return null
+     * if there is no pack or it is older than one of its jars.
+     */
+    private ServiceClassLoader packedClassLoader(Node serviceNode, Path serviceJar) throws Exception {
+        String serviceName = serviceNode.getName();
+        Path packPath = buildDir.resolve(serviceName).resolve(serviceName + ClassPack.EXTENSION);
+
+        if (!Files.exists(packPath)) {
+            System.out.println("[Runtime] No class pack (build with --pack-classes); loading from jars");
+            return null;
+        }
+
+        // The pack holds transitive dependencies too, so its loader needs all their jars
+        Set<String> names = new LinkedHashSet<>();
+        collectTransitive(serviceNode, names);
+        List<Path> jars = new ArrayList<>();
+        jars.add(serviceJar);
+        for (String name : names) {
+            Path jar = buildDir.resolve(name).resolve(name + ".jar");
+            if (Files.exists(jar)) {
+                jars.add(jar);
+            }
+        }
+
+        FileTime packTime = Files.getLastModifiedTime(packPath);
+        for (Path jar : jars) {
+            if (Files.getLastModifiedTime(jar).compareTo(packTime) > 0) {
+                System.out.println("[Runtime] Class pack is older than " + jar.getFileName() + "; loading from jars");
+                return null;
+            }
+        }
+
+        PackedClassLoader loader = new PackedClassLoader(serviceName, jars, packPath,
+                ClassLoader.getSystemClassLoader());
+        System.out.println("[Runtime] Class pack: " + loader.getPackedClassCount() + " classes (memory-mapped)");
+        return loader;
+    }
+
+    /**
+     * Names of all transitive dependencies of a node, depth-first.
+     */
+    private void collectTransitive(Node node, Set<String> names) throws Exception {
+        for (Dependency dep : node.getDependencyList()) {
+            if (names.add(dep.getName())) {
+                collectTransitive(loadManifest(dep.getName()), names);
+            }
+        }
+    }
+
+    /**
+     * Tasks of one service its managed executor may run at once (see ManagedExecutor).
+     */
+    public void setExecutorLimit(int executorLimit) {
+        this.executorLimit = executorLimit;
+    }
+
+    private synchronized ScheduledExecutorService executorTimer() {
+        if (executorTimer == null) {
+            executorTimer = ManagedExecutor.newTimer();
+        }
+        return executorTimer;
+    }
+
+    /**
+     * Turn startup profiles (recording and preloading) on or off.
+     */
+    public void setPreloadClasses(boolean preloadClasses) {
+        this.preloadClasses = preloadClasses;
+    }
+
+    /**
+     * Load classes from class packs (written by build --pack-classes) when available.
+     */
+    public void setUsePackedClasses(boolean usePackedClasses) {
+        this.usePackedClasses = usePackedClasses;
+    }
+
+    /**
+     * Start services from classes compiled in this process (`run --build`)
+     * instead of their jars, until the jars are written. Starts after that
+     * (restarts, hot reload) load the jars as usual, and share the layers of
+     * dependencies that were built from memory.
+     *
+     * @param outputByTarget target name → its class files and resources, by entry name
+     * @param artifacts      completes when the targets' jars are on disk
+     */
+    public void useCompiledClasses(Map<String, Map<String, byte[]>> outputByTarget,
+                                   CompletableFuture<?> artifacts) {
+        compiledOutput = Map.copyOf(outputByTarget);
+        compiledArtifacts = artifacts;
+
+        artifacts.whenComplete((done, e) -> {
+            if (e == null) {
+                shareCompiledLayers();
+            } else {
+                System.err.println("[Runtime] Writing the jars of the compiled classes failed: " + e.getMessage());
+            }
+            compiledOutput = Map.of();
+            compiledLayers.clear();
+        });
+    }
+
+    /**
+     * Get the layer of a dependency compiled in this process, creating the
+     * layers of its own dependencies first. The caller owns one reference to
+     * it, as with sharedLayer.
+     */
+    private ServiceClassLoader compiledLayer(String depName,
+                                             Map<String, Map<String, byte[]>> outputByTarget) throws Exception {
+        Node depNode = loadManifest(depName);
+
+        List<ServiceClassLoader> dependencies = new ArrayList<>();
+        for (Dependency dep : depNode.getDependencyList()) {
+            if (outputByTarget.containsKey(dep.getName())) {
+                dependencies.add(compiledLayer(dep.getName(), outputByTarget));
+            }
+        }
+
+        ServiceClassLoader layer = sharedLayers.layerFor(depName, outputByTarget.get(depName), dependencies);
+        compiledLayers.put(depName, layer);
+        return layer;
+    }
+
+    /**
+     * Register each layer built from memory under the jar written from the
+     * same files, so services started from the jars share its classes.
+     */
+    private void shareCompiledLayers() {
+        compiledLayers.forEach((depName, layer) -> {
+            Path jar = buildDir.resolve(depName).resolve(depName + ".jar");
+            try {
+                if (layer instanceof InMemoryClassLoader loader && loader.hasSameFilesAs(jar)) {
+                    sharedLayers.addJar(layer, jar);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[Runtime] Could not compare " + jar + " with its compiled classes: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Get the shared layer of a dependency, creating the layers of its own
+     * dependencies first. The caller owns one reference to it (see
+     * SharedLayers.release).
+     */
+    private ServiceClassLoader sharedLayer(String depName) throws Exception {
+        Node depNode = loadManifest(depName);
+
+        List<ServiceClassLoader> dependencies = new ArrayList<>();
+        for (Dependency dep : depNode.getDependencyList()) {
+            Path jar = buildDir.resolve(dep.getName()).resolve(dep.getName() + ".jar");
+            if (Files.exists(jar)) {
+                dependencies.add(sharedLayer(dep.getName()));
+            }
+        }
+
+        Path depJar = buildDir.resolve(depName).resolve(depName + ".jar");
+        return sharedLayers.layerFor(depName, depJar, dependencies);
+    }
+
+    /**
+     * A dropped layer should be collected like a stopped service's loader.
+     */
+    private void layerDropped(ServiceClassLoader layer) {
+        leakDetector.track(layer.getServiceName(), layer);
+    }
+
+    /**
+     * Get the shared classloader layers of this runtime.
+     */
+    public SharedLayers getSharedLayers() {
+        return sharedLayers;
     }
 
     /**
      * Load dependency JARs into the context.
+     *
+     * If the service was built with --prune-classpath, dependencies its bytecode
+     * never references are left off the classpath.
+     *
+     * @return names of the dependencies that were loaded
      */
-    private void loadDependencies(RuntimeContext context, Node serviceNode) {
+    private List<String> loadDependencies(RuntimeContext context, Node serviceNode) {
         List<Dependency> dependencies = serviceNode.getDependencyList();
+        DependencyUsage usage = DependencyUsage.read(buildDir.resolve(serviceNode.getName()));
+        boolean prune = usage != null && usage.pruneClasspath;
+        List<String> loaded = new ArrayList<>();
 
         for (Dependency dep : dependencies) {
             String depName = dep.getName();
+
+            if (prune && usage.unused.contains(depName)) {
+                System.out.println("[Runtime] Skipped unused dependency: " + depName);
+                continue;
+            }
+
             Path depJar = buildDir.resolve(depName).resolve(depName + ".jar");
 
             if (Files.exists(depJar)) {
                 context.addDependencyJar(depJar);
+                loaded.add(depName);
                 System.out.println("[Runtime] Loaded dependency: " + depName);
             } else {
                 System.err.println("[Runtime] Warning: Dependency JAR not found: " + depJar);
             }
         }
+
+        return loaded;
     }
 
     /**
@@ -166,4 +1377,17 @@ public class RuntimeManager {
         // Use convention for now
         return EntryPointResolver.getConventionalMainClass(serviceName);
     }
+
+    /**
+     * A service ready to run: ClassLoader created, main() resolved.
+     */
+    private static class PreparedService {
+        final RuntimeContext context;
+        final Method mainMethod;
+
+        PreparedService(RuntimeContext context, Method mainMethod) {
+            this.context = context;
+            this.mainMethod = mainMethod;
+        }
+    }
 }
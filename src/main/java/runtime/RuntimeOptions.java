@@ -0,0 +1,152 @@
+package runtime;
+
+/**
+ * Options for running services.
+ *
+ * Filled in by the CLI from command-line flags (run, host). Most of them
+ * configure the runtime that hosts the services, so they only apply when
+ * a command starts a new runtime, not when it hands a service to a running
+ * runtime host.
+ */
+public class RuntimeOptions {
+
+    // Thread modes, e.g. "virtual,payment-service=platform" (null = platform threads)
+    private String threads;
+
+    // Load classes from <name>.classpack when it is up to date
+    private boolean packedClasses = false;
+
+    // Reload services when their jars are rebuilt
+    private boolean watch = false;
+
+    // Record startup class profiles and preload from them
+    private boolean preloadClasses = true;
+
+    // Port to serve Prometheus metrics on (null = not served)
+    private Integer metricsPort;
+
+    // Run the service in its own JVM, taken from the worker pool
+    private boolean fork = false;
+
+    // Pre-booted JVMs kept idle for forked services (0 = ServiceWorkerPool.DEFAULT_SIZE, booted at the first fork)
+    private int forkPoolSize = 0;
+
+    // Run this many replicas behind a load balancer (0 = one instance, no balancer)
+    private int replicas = 0;
+
+    // Load balancer port for replicas (null = any free port)
+    private Integer port;
+
+    // Record the runtime with JDK Flight Recorder until it exits (see jfr.FlightRecording)
+    private boolean jfr = false;
+
+    // Tasks of one service its managed executor runs at once (0 = ManagedExecutor.DEFAULT_MAX_CONCURRENCY)
+    private int executorLimit = 0;
+
+    // Build the service first and start it from the compiled classes (jars are written in the background)
+    private boolean build = false;
+
+    public String getThreads() {
+        return threads;
+    }
+
+    public void setThreads(String threads) {
+        this.threads = threads;
+    }
+
+    public boolean isPackedClasses() {
+        return packedClasses;
+    }
+
+    public void setPackedClasses(boolean packedClasses) {
+        this.packedClasses = packedClasses;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public boolean isPreloadClasses() {
+        return preloadClasses;
+    }
+
+    public void setPreloadClasses(boolean preloadClasses) {
+        this.preloadClasses = preloadClasses;
+    }
+
+    public Integer getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(Integer metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public boolean isFork() {
+        return fork;
+    }
+
+    public void setFork(boolean fork) {
+        this.fork = fork;
+    }
+
+    public int getForkPoolSize() {
+        return forkPoolSize;
+    }
+
+    public void setForkPoolSize(int forkPoolSize) {
+        this.forkPoolSize = forkPoolSize;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    public boolean isJfr() {
+        return jfr;
+    }
+
+    public void setJfr(boolean jfr) {
+        this.jfr = jfr;
+    }
+
+    public int getExecutorLimit() {
+        return executorLimit;
+    }
+
+    public void setExecutorLimit(int executorLimit) {
+        this.executorLimit = executorLimit;
+    }
+
+    public boolean isBuild() {
+        return build;
+    }
+
+    public void setBuild(boolean build) {
+        this.build = build;
+    }
+
+    /**
+     * True if any option configuring the runtime differs from its default.
+     */
+    public boolean hasRuntimeSettings() {
+        return threads != null || packedClasses || watch || !preloadClasses
+                || metricsPort != null || forkPoolSize > 0 || jfr || executorLimit > 0;
+    }
+}
@@ -3,6 +3,7 @@ package runtime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RuntimeRegistry is an in-memory database of all services.
@@ -37,6 +38,9 @@ public class RuntimeRegistry {
     // Thread-safe map of service name → service info
     private final ConcurrentHashMap<String, ServiceInfo> services;
 
+    // Service name → how often it was started (survives unregister)
+    private final ConcurrentHashMap<String, AtomicInteger> starts = new ConcurrentHashMap<>();
+
     public RuntimeRegistry() {
         this.services = new ConcurrentHashMap<>();
     }
@@ -49,6 +53,7 @@ public class RuntimeRegistry {
      */
     public void register(String name, ServiceInfo info) {
         services.put(name, info);
+        starts.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
         System.out.println("[Registry] Registered service: " + name);
     }
 
@@ -110,6 +115,15 @@ public class RuntimeRegistry {
         return services.containsKey(name);
     }
 
+    /**
+     * How often a service was started again after its first start
+     * (hot reloads, or run after stop).
+     */
+    public int getRestartCount(String name) {
+        AtomicInteger count = starts.get(name);
+        return count == null ? 0 : Math.max(0, count.get() - 1);
+    }
+
     /**
      * Get count of registered services.
      */
@@ -134,7 +148,11 @@ public class RuntimeRegistry {
         System.out.println();
 
         for (ServiceInfo info : services.values()) {
-            System.out.println("  " + info.getName() + " - " + info.getStatus());
+            System.out.println("  " + info.getName() + " - " + info.getStatus()
+                    + " (" + info.getExecutionMode() + " threads, tasks: "
+                    + info.getActiveTasks() + " active, "
+                    + info.getCompletedTasks() + " completed, "
+                    + info.getFailedTasks() + " failed)");
         }
 
         System.out.println("========================\n");
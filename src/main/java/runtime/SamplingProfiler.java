@@ -0,0 +1,212 @@
+package runtime;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * SamplingProfiler finds where one service spends its time, inside a JVM
+ * shared with other services.
+ *
+ * CONCEPT: Sampling Profilers
+ * ---------------------------
+ * Instead of timing every method call (which slows everything down), a
+ * sampling profiler looks at what a thread is doing at regular intervals
+ * and counts the stacks it sees. A method that shows up in 30% of the
+ * samples is where 30% of the time goes. The cost depends only on the
+ * sampling rate, not on how much the service does.
+ *
+ * An external profiler sees the whole JVM: every service's threads mixed
+ * together. Here we know which threads belong to a service, so we only
+ * sample those:
+ *   - its main thread (ServiceInfo.getThread())
+ *   - the threads of its ServiceScope tasks
+ *   - threads it started itself (new Thread(...)); they inherit the
+ *     service's ClassLoader as their context ClassLoader
+ * Threads come and go, so the set is looked up again every THREAD_REFRESH.
+ *
+ * OVERHEAD:
+ * ---------
+ * Thread.getStackTrace() on another thread pauses only that thread, briefly
+ * (a handshake, not a stop-the-world safepoint). Only RUNNABLE threads are
+ * sampled: a thread parked in a queue or sleeping costs nothing and would
+ * only bury the busy stacks. At the default DEFAULT_RATE of 49 samples per
+ * second (not 50, so we don't run in lockstep with timers that fire every
+ * 10 or 20 ms), the cost grows with rate × running threads. profile()
+ * measures the time the sampler actually spent, and `mycoq profile` shows
+ * it, so the overhead on a production host is never a guess.
+ *
+ * OUTPUT:
+ * -------
+ * Profile.toCollapsed() writes the "collapsed stacks" format read by
+ * flamegraph.pl, speedscope and most flame graph tools: one line per
+ * distinct stack, frames from the thread's root to the leaf, then the count.
+ *
+ *   java.lang.Thread.run;com.example.Server.handle;com.example.Json.parse 212
+ */
+public class SamplingProfiler {
+
+    public static final int DEFAULT_RATE = 49;
+    static final Duration THREAD_REFRESH = Duration.ofSeconds(1);
+
+    private final Supplier<Collection<Thread>> threads;
+    private final int samplesPerSecond;
+
+    /**
+     * @param threads          threads to sample (called again every THREAD_REFRESH)
+     * @param samplesPerSecond sampling rate per thread
+     */
+    public SamplingProfiler(Supplier<Collection<Thread>> threads, int samplesPerSecond) {
+        if (samplesPerSecond < 1 || samplesPerSecond > 1000) {
+            throw new RuntimeException("Sampling rate must be between 1 and 1000 per second: " + samplesPerSecond);
+        }
+        this.threads = threads;
+        this.samplesPerSecond = samplesPerSecond;
+    }
+
+    /**
+     * Threads of a service instance: main thread, scope tasks, and live
+     * platform threads whose context ClassLoader is the service's.
+     */
+    static Set<Thread> threadsOf(ServiceInfo info) {
+        Set<Thread> result = new LinkedHashSet<>();
+        if (info.getThread() != null && info.getThread().isAlive()) {
+            result.add(info.getThread());
+        }
+        if (info.getScope() != null) {
+            result.addAll(info.getScope().getThreads());
+        }
+
+        ClassLoader loader = info.getClassLoader();
+        if (loader != null) {
+            for (Thread thread : platformThreads()) {
+                if (thread.getContextClassLoader() == loader) {
+                    result.add(thread);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sample the threads for a while, on the calling thread.
+     */
+    public Profile profile(Duration duration) throws InterruptedException {
+        Map<String, Long> stacks = new HashMap<>();
+        Set<Long> seen = new HashSet<>();
+        long samples = 0;
+        long samplingNanos = 0;
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / samplesPerSecond;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long nextRefresh = start;
+        Collection<Thread> current = List.of();
+
+        for (long next = start; next < end; next += intervalNanos) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Profiling interrupted");
+            }
+
+            long sampleStart = System.nanoTime();
+            if (sampleStart >= nextRefresh) {
+                current = new ArrayList<>(threads.get());
+                nextRefresh = sampleStart + THREAD_REFRESH.toNanos();
+            }
+
+            for (Thread thread : current) {
+                if (thread.getState() != Thread.State.RUNNABLE) {
+                    continue;
+                }
+                StackTraceElement[] frames = thread.getStackTrace();
+                if (frames.length == 0) {
+                    continue; // ended, or not mounted on a carrier
+                }
+                stacks.merge(collapse(frames), 1L, Long::sum);
+                seen.add(thread.threadId());
+                samples++;
+            }
+            samplingNanos += System.nanoTime() - sampleStart;
+        }
+
+        return new Profile(stacks, samples, seen.size(),
+                Duration.ofNanos(System.nanoTime() - start), Duration.ofNanos(samplingNanos));
+    }
+
+    /**
+     * One line of the collapsed format, root frame first.
+     */
+    static String collapse(StackTraceElement[] frames) {
+        StringBuilder line = new StringBuilder();
+        for (int i = frames.length - 1; i >= 0; i--) {
+            if (line.length() > 0) {
+                line.append(';');
+            }
+            // ';' separates frames and ' ' the count; neither may appear in a frame
+            line.append(frames[i].getClassName().replace(';', '_').replace(' ', '_'))
+                    .append('.')
+                    .append(frames[i].getMethodName().replace(';', '_').replace(' ', '_'));
+        }
+        return line.toString();
+    }
+
+    private static List<Thread> platformThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+
+        // enumerate() fills at most the array's length; retry until it fits
+        Thread[] all = new Thread[root.activeCount() + 16];
+        int count;
+        while ((count = root.enumerate(all, true)) == all.length) {
+            all = new Thread[all.length * 2];
+        }
+        return List.of(Arrays.copyOf(all, count));
+    }
+
+    /**
+     * Result of profile(): sample counts per collapsed stack.
+     *
+     * @param stacks   collapsed stack → number of samples
+     * @param samples  total samples taken
+     * @param threads  distinct threads seen running
+     * @param elapsed  wall time profiled
+     * @param sampling time the sampler itself spent taking samples
+     */
+    public record Profile(Map<String, Long> stacks, long samples, int threads,
+                          Duration elapsed, Duration sampling) {
+
+        /**
+         * Stacks in the collapsed format, most sampled first.
+         */
+        public String toCollapsed() {
+            StringBuilder out = new StringBuilder();
+            stacks.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .forEach(entry -> out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n'));
+            return out.toString();
+        }
+
+        /**
+         * Share of one CPU the sampler used, in percent.
+         */
+        public double overheadPercent() {
+            return elapsed.isZero() ? 0 : 100.0 * sampling.toNanos() / elapsed.toNanos();
+        }
+    }
+}
@@ -1,10 +1,25 @@
 package runtime;
 
+import jar.ClassIndex;
+
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ServiceClassLoader is responsible for loading service and module JARs
@@ -27,17 +42,68 @@ import java.util.List;
  * 
  * HIERARCHY:
  * ----------
- * ServiceClassLoader
+ * ServiceClassLoader (service jar only)
+ * ↓ (layers)
+ * Shared layers - one ServiceClassLoader per dependency jar, shared by all
+ * services that use it (see SharedLayers)
  * ↓ (parent)
  * System ClassLoader (loads Java standard library)
  * 
  * This means services can use Java's standard library (String, List, etc.)
- * but are isolated from each other.
+ * and their dependencies' classes, but are isolated from each other.
+ *
+ * DELEGATION ORDER:
+ * -----------------
+ * Every jar carries a class index (written at build time, see jar.ClassIndex),
+ * so a loader knows exactly which classes it and its layers hold:
+ *   1. Classes in our own jars → defined here
+ *   2. Packages a layer holds → asked of that layer directly
+ *   3. Anything else (java.*, the runtime itself) → the parent
+ * Each step is a hash lookup, so finding a class does not depend on how many
+ * jars or layers there are. Names nobody has are remembered, so repeated
+ * lookups of missing classes (Class.forName probing) fail immediately.
+ *
+ * PARALLEL LOADING:
+ * -----------------
+ * The loader is registered as parallel capable: it locks per class name, not
+ * the whole loader, so service threads can load different classes at the
+ * same time.
+ *
+ * STARTUP PROFILES:
+ * -----------------
+ * A loader can record the names of the classes it loads (startRecording) and
+ * preload a recorded list on background threads (preload). See
+ * StartupProfiles for how the runtime uses this.
  */
 public class ServiceClassLoader extends URLClassLoader {
 
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final String serviceName;
 
+    // Loaders of shared dependency jars
+    private final List<ServiceClassLoader> layers;
+
+    // Entries (com/x/Foo.class, resources) in our own jars, from their class indexes
+    private final Set<String> entries;
+
+    // Package (com/x) → layers holding classes in it, directly or through their layers
+    private final Map<String, List<ServiceClassLoader>> layersByPackage;
+
+    // Packages held here or in any layer
+    private final Set<String> packages;
+
+    // Class names no loader could find
+    private final Set<String> notFound = ConcurrentHashMap.newKeySet();
+
+    // Classes defined by this loader (from its own jars or pack)
+    private final AtomicInteger definedClasses = new AtomicInteger();
+
+    // Names of classes loaded while recording, in load order (null = not recording)
+    private volatile Queue<String> recorded;
+
     /**
      * Create a ClassLoader for a service.
      * 
@@ -46,8 +112,154 @@ public class ServiceClassLoader extends URLClassLoader {
      * @param parent      Parent classloader (usually the system classloader)
      */
     public ServiceClassLoader(String serviceName, List<Path> jarPaths, ClassLoader parent) {
+        this(serviceName, jarPaths, parent, List.of());
+    }
+
+    /**
+     * Create a ClassLoader on top of shared layers.
+     *
+     * @param serviceName Name of the service or layer (for debugging)
+     * @param jarPaths    JAR files private to this loader
+     * @param parent      Parent classloader (usually the system classloader)
+     * @param layers      Loaders of the dependency jars
+     */
+    public ServiceClassLoader(String serviceName, List<Path> jarPaths, ClassLoader parent,
+            List<ServiceClassLoader> layers) {
+        this(serviceName, jarPaths, parent, layers, readIndexes(jarPaths));
+    }
+
+    /**
+     * Create a ClassLoader whose own entries are given instead of read from
+     * the jars' class indexes, for subclasses that define classes from
+     * elsewhere (see InMemoryClassLoader).
+     *
+     * @param entries Entries (com/x/Foo.class) this loader defines itself
+     */
+    protected ServiceClassLoader(String serviceName, List<Path> jarPaths, ClassLoader parent,
+            List<ServiceClassLoader> layers, Set<String> entries) {
         super(convertToURLs(jarPaths), parent);
         this.serviceName = serviceName;
+        this.layers = List.copyOf(layers);
+        this.entries = entries;
+
+        this.layersByPackage = new HashMap<>();
+        for (ServiceClassLoader layer : this.layers) {
+            for (String pkg : layer.packages) {
+                layersByPackage.computeIfAbsent(pkg, key -> new ArrayList<>()).add(layer);
+            }
+        }
+
+        this.packages = new HashSet<>(layersByPackage.keySet());
+        for (String entry : entries) {
+            packages.add(ClassIndex.packageOf(entry));
+        }
+    }
+
+    /**
+     * Load a class: our jars, then the layer holding it, then the parent.
+     */
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+
+            if (clazz == null) {
+                clazz = loadNew(name);
+
+                Queue<String> recording = recorded;
+                if (recording != null) {
+                    recording.add(name);
+                }
+            }
+
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    /**
+     * Find a class not loaded through this loader yet.
+     */
+    private Class<?> loadNew(String name) throws ClassNotFoundException {
+        String entry = name.replace('.', '/') + ".class";
+        ServiceClassLoader owner = owner(entry);
+
+        if (owner == this) {
+            Class<?> clazz = findClass(name);
+            definedClasses.incrementAndGet();
+            return clazz;
+        } else if (owner != null) {
+            return owner.loadClass(name);
+        } else if (notFound.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+
+        try {
+            return getParent().loadClass(name);
+        } catch (ClassNotFoundException e) {
+            notFound.add(name);
+            throw e;
+        }
+    }
+
+    /**
+     * The loader (this one or a layer) whose jars contain an entry, or null.
+     */
+    private ServiceClassLoader owner(String entry) {
+        if (entries.contains(entry)) {
+            return this;
+        }
+
+        List<ServiceClassLoader> candidates = layersByPackage.get(ClassIndex.packageOf(entry));
+        if (candidates != null) {
+            for (ServiceClassLoader layer : candidates) {
+                if (layer.owner(entry) != null) {
+                    return layer;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a resource the same way classes are found.
+     */
+    @Override
+    public URL getResource(String name) {
+        ServiceClassLoader owner = owner(name);
+
+        if (owner == this) {
+            return findResource(name);
+        } else if (owner != null) {
+            return owner.getResource(name);
+        }
+        return getParent().getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        Set<URL> urls = new LinkedHashSet<>(Collections.list(getParent().getResources(name)));
+        for (ClassLoader layer : layers) {
+            urls.addAll(Collections.list(layer.getResources(name)));
+        }
+        urls.addAll(Collections.list(findResources(name)));
+        return Collections.enumeration(urls);
+    }
+
+    private static Set<String> readIndexes(List<Path> jarPaths) {
+        Set<String> entries = new HashSet<>();
+
+        for (Path jarPath : jarPaths) {
+            try {
+                entries.addAll(ClassIndex.read(jarPath));
+            } catch (IOException e) {
+                System.err.println("Failed to read class index: " + jarPath + " (" + e.getMessage() + ")");
+            }
+        }
+
+        return entries;
     }
 
     /**
@@ -83,4 +295,83 @@ public class ServiceClassLoader extends URLClassLoader {
     public String getServiceName() {
         return serviceName;
     }
+
+    /**
+     * Start recording the names of classes loaded through this loader.
+     */
+    public void startRecording() {
+        recorded = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return names of the classes loaded since startRecording(), in load order
+     */
+    public List<String> stopRecording() {
+        Queue<String> recording = recorded;
+        recorded = null;
+        return recording == null ? List.of() : new ArrayList<>(recording);
+    }
+
+    /**
+     * Load and link classes on background threads, without initializing them
+     * (static initializers still run when the service first uses a class).
+     * Thread i takes names i, i + threads, ..., so all threads work through
+     * the list in about the order the service will need the classes.
+     *
+     * @param classNames binary class names, e.g. from a startup profile
+     * @param threads    number of preload threads
+     * @return completes with the number of classes loaded
+     */
+    public CompletableFuture<Integer> preload(List<String> classNames, int threads) {
+        AtomicInteger loaded = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[threads];
+
+        for (int i = 0; i < threads; i++) {
+            int first = i;
+            workers[i] = CompletableFuture.runAsync(() -> {
+                for (int j = first; j < classNames.size(); j += threads) {
+                    try {
+                        loadClass(classNames.get(j), true);
+                        loaded.incrementAndGet();
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        // Not in this build of the service; it is loaded (or fails) on use
+                    }
+                }
+            }, task -> Thread.ofPlatform().name("preload-" + serviceName + "-" + first).daemon(true).start(task));
+        }
+
+        return CompletableFuture.allOf(workers).thenApply(done -> loaded.get());
+    }
+
+    /**
+     * Number of classes this loader defined (not counting layers and the parent).
+     */
+    public int getLoadedClassCount() {
+        return definedClasses.get();
+    }
+
+    /**
+     * Classes this loader has defined so far (none are loaded by asking).
+     */
+    public List<Class<?>> getDefinedClasses() {
+        List<Class<?>> classes = new ArrayList<>();
+        for (String entry : entries) {
+            if (entry.endsWith(".class")) {
+                Class<?> type = findLoadedClass(entry.substring(0, entry.length() - 6).replace('/', '.'));
+                if (type != null && type.getClassLoader() == this) {
+                    classes.add(type);
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Get the shared layers this loader delegates to.
+     */
+    public List<ServiceClassLoader> getLayers() {
+        return layers;
+    }
 }
@@ -1,7 +1,15 @@
 package runtime;
 
+import jfr.ServiceEvents;
+
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * ServiceExecutor runs a service in a controlled environment.
@@ -25,6 +33,29 @@ import java.time.Instant;
  * 3. Thread executes (service runs)
  * 4. Thread completes or is interrupted
  * 
+ * PLATFORM VS VIRTUAL THREADS:
+ * ----------------------------
+ * A platform thread is an OS thread with its own stack (about 1 MB reserved).
+ * A virtual thread is scheduled by the JVM on a few shared carrier threads and
+ * only keeps its (small) stack on the heap while it is blocked. A service that
+ * mostly waits costs kilobytes instead of megabytes, so one runtime can host
+ * hundreds of them. RuntimeContext.getExecutionMode() picks the kind.
+ *
+ * SERVICE SCOPE:
+ * --------------
+ * Every service gets a ServiceScope. Tasks it starts with
+ * ServiceScope.current().fork(...) run on the same kind of thread, are counted
+ * in ServiceInfo, and are interrupted together when the service stops.
+ *
+ * STOPPING:
+ * ---------
+ * stop() first runs the drain callbacks the service registered with
+ * RuntimeContext.onDrain(), then interrupts the service and its tasks, and
+ * waits for them - all within one deadline.
+ *
+ * Start, RUNNING, stop and failure are also recorded as Flight Recorder
+ * events (see jfr.ServiceEvents).
+ *
  * CONTEXT CLASSLOADER:
  * --------------------
  * Each thread has a "context classloader" - the classloader it uses
@@ -33,11 +64,14 @@ import java.time.Instant;
  */
 public class ServiceExecutor {
 
+    // How long stop() gives a service to drain and end
+    static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
     /**
      * Execute a service's main method in a new thread.
      * 
      * Process:
-     * 1. Create a new thread for the service
+     * 1. Create the service's scope and a new (platform or virtual) thread
      * 2. Set the thread's context classloader
      * 3. Invoke the main method
      * 4. Handle errors and completion
@@ -54,20 +88,39 @@ public class ServiceExecutor {
 
         System.out.println("[Executor] Starting service: " + serviceName);
 
+        ServiceEvents.Start startEvent = new ServiceEvents.Start();
+        startEvent.service = serviceName;
+        startEvent.mode = context.getExecutionMode().name().toLowerCase();
+        startEvent.commit();
+        ServiceEvents.Running runningEvent = new ServiceEvents.Running();
+        runningEvent.begin();
+
         // Create service info and register it as STARTING
         ServiceInfo info = new ServiceInfo(serviceName);
         info.setStatus(ServiceStatus.STARTING);
         info.setStartTime(Instant.now());
         registry.register(serviceName, info);
 
+        // All tasks the service starts belong to this scope
+        ServiceScope scope = new ServiceScope(serviceName, context.getExecutionMode());
+        scope.setContext(context);
+        info.setScope(scope);
+        ManagedExecutor managedExecutor = context.getManagedExecutor();
+        if (managedExecutor != null) {
+            managedExecutor.bind(scope);
+        }
+        info.setClassLoader(context.getClassLoader());
+
         // Also register in persistent registry with current process ID
         int pid = (int) ProcessHandle.current().pid();
         persistentRegistry.register(serviceName, pid);
 
         // Create a new thread for this service
-        Thread serviceThread = new Thread(() -> {
+        Thread serviceThread = context.getExecutionMode().newThread("service-" + serviceName, () -> {
             try {
-                System.out.println("[Executor] Service thread started: " + serviceName);
+                System.out.println("[Executor] Service thread started: " + serviceName
+                        + " (" + context.getExecutionMode().name().toLowerCase() + ")");
+                scope.enter();
 
                 // IMPORTANT: Set the context classloader for this thread
                 // This ensures the service uses its own classloader
@@ -76,29 +129,57 @@ public class ServiceExecutor {
                 // Update status to RUNNING
                 info.setStatus(ServiceStatus.RUNNING);
                 System.out.println("[Executor] ✓ Service RUNNING: " + serviceName);
+                runningEvent.service = serviceName;
+                runningEvent.commit();
 
                 // Invoke the main method
                 // The (Object) cast is needed because main() takes String[] args
-                // We pass an empty array for now
-                mainMethod.invoke(null, (Object) new String[] {});
+                // The service's config becomes --key=value arguments (e.g. a replica's --port)
+                mainMethod.invoke(null, (Object) arguments(context));
+
+                // main() may return while its tasks keep serving;
+                // the service runs until the last of them ends,
+                // including tasks queued or scheduled on its managed executor
+                do {
+                    scope.awaitTasks();
+                } while (managedExecutor != null && managedExecutor.awaitIdle());
 
                 // If we reach here, the service completed normally
                 System.out.println("[Executor] Service completed: " + serviceName);
+                terminate(managedExecutor);
                 info.setStatus(ServiceStatus.STOPPED);
 
             } catch (Exception e) {
+                // Interrupted because stop() asked it to: a normal end
+                if (info.isStopRequested() && isInterruption(e)) {
+                    System.out.println("[Executor] Service interrupted for stop: " + serviceName);
+                    terminate(managedExecutor);
+                    scope.shutdown(5000);
+                    info.setStatus(ServiceStatus.STOPPED);
+                    return;
+                }
+
                 // Service failed
                 System.err.println("[Executor] ✗ Service FAILED: " + serviceName);
                 e.printStackTrace();
 
+                Throwable cause = e.getCause() != null ? e.getCause() : e; // main() threw: unwrap
+                ServiceEvents.Failure failureEvent = new ServiceEvents.Failure();
+                failureEvent.service = serviceName;
+                failureEvent.exception = cause.getClass().getName();
+                failureEvent.message = cause.getMessage();
+                failureEvent.commit();
+
+                // Don't leave its tasks running without it
+                terminate(managedExecutor);
+                scope.shutdown(5000);
+
+                info.setFailure(cause);
                 info.setStatus(ServiceStatus.FAILED);
                 info.setError(e.getMessage());
             }
         });
 
-        // Set thread name for debugging
-        serviceThread.setName("service-" + serviceName);
-
         // Store the thread in service info
         info.setThread(serviceThread);
 
@@ -132,23 +213,141 @@ public class ServiceExecutor {
 
         System.out.println("[Executor] Stopping service: " + serviceName);
 
+        if (stop(info, System.nanoTime() + STOP_TIMEOUT.toNanos())) {
+            persistentRegistry.unregister(serviceName);
+        }
+    }
+
+    /**
+     * Drain a service, then interrupt it and its tasks and wait for them,
+     * all before one deadline. The persistent registry is left to the
+     * caller (ShutdownCoordinator clears it for all services at once).
+     *
+     * @param deadlineNanos System.nanoTime() by which the service should have ended
+     * @return true if the service ended
+     */
+    boolean stop(ServiceInfo info, long deadlineNanos) {
+        ServiceEvents.Stop event = new ServiceEvents.Stop();
+        event.begin();
+        event.service = info.getName();
+        event.drainCallbacks = info.getScope() != null && info.getScope().getContext() != null
+                ? info.getScope().getContext().getDrainCallbacks().size() : 0;
+
+        event.stopped = stopNow(info, deadlineNanos);
+        event.commit();
+        return event.stopped;
+    }
+
+    private boolean stopNow(ServiceInfo info, long deadlineNanos) {
+        String serviceName = info.getName();
+        Thread thread = info.getThread();
+
+        drain(info, deadlineNanos);
+
         // Interrupt the thread (signals it to stop)
+        info.setStopRequested(true);
         thread.interrupt();
 
-        // Wait for thread to finish (with timeout)
+        // Interrupt the service's own tasks too, and wait for them
+        terminate(info.getExecutor());
+        ServiceScope scope = info.getScope();
+        if (scope != null) {
+            int leftOver = scope.shutdown(remainingMillis(deadlineNanos));
+            if (leftOver > 0) {
+                System.err.println("[Executor] " + leftOver + " task(s) of " + serviceName
+                        + " did not stop in time");
+            }
+        }
+
+        // Wait for thread to finish (until the deadline)
         try {
-            thread.join(5000); // Wait up to 5 seconds
+            long remaining = remainingMillis(deadlineNanos);
+            if (remaining > 0) {
+                thread.join(remaining);
+            }
 
             if (thread.isAlive()) {
                 System.err.println("[Executor] Service did not stop gracefully: " + serviceName);
                 // In production, you might force-kill here
-            } else {
-                System.out.println("[Executor] ✓ Service stopped: " + serviceName);
-                info.setStatus(ServiceStatus.STOPPED);
-                persistentRegistry.unregister(serviceName);
+                return false;
             }
+            System.out.println("[Executor] ✓ Service stopped: " + serviceName);
+            info.setStatus(ServiceStatus.STOPPED);
+            return true;
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             System.err.println("[Executor] Interrupted while stopping service: " + serviceName);
+            return false;
+        }
+    }
+
+    /**
+     * Run the service's drain callbacks (RuntimeContext.onDrain) as a task of
+     * the service, and wait for them until the deadline.
+     */
+    private void drain(ServiceInfo info, long deadlineNanos) {
+        ServiceScope scope = info.getScope();
+        RuntimeContext context = scope != null ? scope.getContext() : null;
+        if (context == null || context.getDrainCallbacks().isEmpty()) {
+            return;
+        }
+
+        String serviceName = info.getName();
+        try {
+            CompletableFuture<Void> drained = scope.fork(() -> {
+                Thread.currentThread().setContextClassLoader(context.getClassLoader());
+                for (Runnable callback : context.getDrainCallbacks()) {
+                    try {
+                        callback.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("[Executor] Drain callback of " + serviceName + " failed: " + e);
+                    }
+                }
+            });
+            drained.get(remainingMillis(deadlineNanos), TimeUnit.MILLISECONDS);
+            System.out.println("[Executor] Drained: " + serviceName);
+        } catch (TimeoutException e) {
+            System.err.println("[Executor] " + serviceName + " did not drain in time; interrupting it");
+        } catch (ExecutionException | IllegalStateException e) {
+            // A callback threw an Error, or the service is already stopping
+            System.err.println("[Executor] Could not drain " + serviceName + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cancel the queued and scheduled tasks of a service's managed executor.
+     */
+    private static void terminate(ManagedExecutor managedExecutor) {
+        if (managedExecutor != null) {
+            managedExecutor.terminate();
+        }
+    }
+
+    private static long remainingMillis(long deadlineNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Command-line arguments for a service's main(): its config, sorted by key.
+     */
+    static String[] arguments(RuntimeContext context) {
+        return context.getConfig().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * True if a service's main() ended because its thread was interrupted.
+     */
+    private static boolean isInterruption(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -1,8 +1,10 @@
 package runtime;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * ServiceInfo holds metadata about a running (or stopped) service.
@@ -14,6 +16,9 @@ import java.util.List;
  * - What port it's using (if applicable)
  * - What dependencies it has
  * - The thread it's running in
+ * - The ClassLoader holding its classes
+ * - The scope holding the tasks it started (and their counts)
+ * - The worker JVM it runs in, if it was forked
  * - Any error message if it failed
  */
 public class ServiceInfo {
@@ -24,8 +29,22 @@ public class ServiceInfo {
     private Integer port;
     private List<String> dependencies;
     private Thread thread;
+    private ServiceScope scope;
+    private ClassLoader classLoader;
     private String error;
 
+    // What main() threw, if the service failed
+    private volatile Throwable failure;
+
+    // Set instead of thread when the service runs in its own JVM
+    private ForkedService forked;
+
+    // Set by stop() before it interrupts the service
+    private volatile boolean stopRequested;
+
+    // Completes when the service first reports RUNNING; fails if it never does
+    private final CompletableFuture<Void> running = new CompletableFuture<>();
+
     public ServiceInfo(String name) {
         this.name = name;
         this.status = ServiceStatus.STARTING;
@@ -58,14 +77,85 @@ public class ServiceInfo {
         return thread;
     }
 
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public ServiceScope getScope() {
+        return scope;
+    }
+
     public String getError() {
         return error;
     }
 
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public ForkedService getForked() {
+        return forked;
+    }
+
+    /**
+     * Kind of threads the service runs on, or null before it started.
+     */
+    public ExecutionMode getExecutionMode() {
+        return scope != null ? scope.getMode() : null;
+    }
+
+    // Task counts (all zero before the service started)
+
+    public int getActiveTasks() {
+        return scope != null ? scope.getActiveTasks() : 0;
+    }
+
+    public long getStartedTasks() {
+        return scope != null ? scope.getStartedTasks() : 0;
+    }
+
+    public long getCompletedTasks() {
+        return scope != null ? scope.getCompletedTasks() : 0;
+    }
+
+    public long getFailedTasks() {
+        return scope != null ? scope.getFailedTasks() : 0;
+    }
+
+    /**
+     * The service's managed executor, or null before it started (or if it has none).
+     */
+    public ManagedExecutor getExecutor() {
+        return scope != null && scope.getContext() != null ? scope.getContext().getManagedExecutor() : null;
+    }
+
+    /**
+     * Tasks waiting in the managed executor's queue.
+     */
+    public int getQueuedTasks() {
+        ManagedExecutor executor = getExecutor();
+        return executor != null ? executor.getQueuedTasks() : 0;
+    }
+
+    /**
+     * Average time managed executor tasks waited between due and started.
+     */
+    public Duration getTaskLatency() {
+        ManagedExecutor executor = getExecutor();
+        return executor != null ? executor.getAverageLatency() : Duration.ZERO;
+    }
+
     // Setters
 
     public void setStatus(ServiceStatus status) {
         this.status = status;
+
+        if (status == ServiceStatus.RUNNING) {
+            running.complete(null);
+        } else if (status == ServiceStatus.FAILED || status == ServiceStatus.STOPPED) {
+            running.completeExceptionally(new IllegalStateException(
+                    "Service " + name + " " + status + " before it was running"));
+        }
     }
 
     public void setStartTime(Instant startTime) {
@@ -84,17 +174,57 @@ public class ServiceInfo {
         this.thread = thread;
     }
 
+    public void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public void setScope(ServiceScope scope) {
+        this.scope = scope;
+    }
+
     public void setError(String error) {
         this.error = error;
     }
 
+    public void setFailure(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public void setForked(ForkedService forked) {
+        this.forked = forked;
+    }
+
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    public void setStopRequested(boolean stopRequested) {
+        this.stopRequested = stopRequested;
+    }
+
+    /**
+     * Future that completes once the service reports RUNNING, or fails if it
+     * stops or fails first.
+     */
+    public CompletableFuture<Void> whenRunning() {
+        return running;
+    }
+
+    /**
+     * Check if the service's thread (or forked JVM) is still alive,
+     * whatever its status says.
+     */
+    public boolean isAlive() {
+        return forked != null
+                ? forked.isAlive()
+                : thread != null && thread.isAlive();
+    }
+
     /**
      * Check if the service is currently running.
      */
     public boolean isRunning() {
-        return status == ServiceStatus.RUNNING &&
-                thread != null &&
-                thread.isAlive();
+        return status == ServiceStatus.RUNNING && isAlive();
     }
 
     @Override
@@ -106,6 +236,10 @@ public class ServiceInfo {
                 ", port=" + port +
                 ", dependencies=" + dependencies +
                 ", running=" + isRunning() +
+                ", mode=" + getExecutionMode() +
+                ", activeTasks=" + getActiveTasks() +
+                ", completedTasks=" + getCompletedTasks() +
+                ", failedTasks=" + getFailedTasks() +
                 '}';
     }
 }
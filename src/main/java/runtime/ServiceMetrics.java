@@ -0,0 +1,268 @@
+package runtime;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ServiceMetrics measures how much CPU and memory each service uses.
+ *
+ * CONCEPT: Per-Thread Accounting
+ * ------------------------------
+ * All services share one JVM, so process-wide numbers (top, heap usage)
+ * can't say which service is busy. But the JVM counts CPU time and allocated
+ * bytes per thread (ThreadMXBean), and we know which threads belong to which
+ * service: its main thread plus the threads of its ServiceScope tasks. A
+ * service's usage is the sum over its threads.
+ *
+ * Threads come and go (tasks end), so totals are kept per service: when a
+ * thread disappears, the last value sampled for it is added to the service's
+ * "retired" total. Usage between a thread's last sample and its end is not
+ * counted.
+ *
+ * CONCEPT: Sampling
+ * -----------------
+ * Reading the counters costs a system call per thread. Instead of doing that
+ * on every request, a background thread samples all services every
+ * SAMPLE_INTERVAL and keeps the latest numbers; scrapes and status calls read
+ * those. The overhead is fixed, no matter how often metrics are read.
+ *
+ * Virtual threads: the JVM has no per-thread CPU or allocation counters for
+ * them, so services running on virtual threads report thread and task counts
+ * but no CPU time or allocated bytes.
+ *
+ * EXPOSITION:
+ * -----------
+ * toPrometheus() renders the Prometheus text format, served by MetricsServer
+ * at /metrics and shown by `mycoq status --metrics`.
+ */
+public class ServiceMetrics implements AutoCloseable {
+
+    static final Duration SAMPLE_INTERVAL = Duration.ofSeconds(5);
+
+    private final RuntimeRegistry registry;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocations;
+
+    // Service name → accumulated usage of its current instance
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Snapshot> latest = Map.of();
+    private volatile Thread sampler;
+
+    public ServiceMetrics(RuntimeRegistry registry) {
+        this.registry = registry;
+        this.allocations = threads instanceof com.sun.management.ThreadMXBean sun ? sun : null;
+    }
+
+    /**
+     * Start sampling in the background (idempotent).
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+
+        sampler = Thread.ofPlatform().name("service-metrics").daemon(true).start(() -> {
+            try {
+                while (true) {
+                    sample();
+                    Thread.sleep(SAMPLE_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                // Closed
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Read the counters of every service's threads once.
+     */
+    public synchronized void sample() {
+        Map<String, Snapshot> snapshots = new HashMap<>();
+
+        for (ServiceInfo info : registry.getAllServices()) {
+            Usage serviceUsage = usage.compute(info.getName(),
+                    (name, old) -> old != null && old.info == info ? old : new Usage(info));
+            serviceUsage.update(liveThreads(info));
+            snapshots.put(info.getName(), snapshot(info, serviceUsage));
+        }
+
+        latest = snapshots;
+    }
+
+    /**
+     * Latest sampled metrics of every service, sorted by name.
+     */
+    public List<Snapshot> getSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>(latest.values());
+        snapshots.sort(Comparator.comparing(snapshot -> snapshot.service));
+        return snapshots;
+    }
+
+    /**
+     * Latest metrics in the Prometheus text exposition format.
+     */
+    public String toPrometheus() {
+        List<Snapshot> snapshots = getSnapshots();
+        StringBuilder out = new StringBuilder();
+
+        metric(out, snapshots, "mycoq_service_up", "gauge",
+                "1 if the service is running", s -> s.running ? 1 : 0);
+        metric(out, snapshots, "mycoq_service_cpu_seconds_total", "counter",
+                "CPU time used by the service's platform threads", s -> s.cpuNanos / 1e9);
+        metric(out, snapshots, "mycoq_service_allocated_bytes_total", "counter",
+                "Heap bytes allocated by the service's platform threads", s -> s.allocatedBytes);
+        metric(out, snapshots, "mycoq_service_loaded_classes", "gauge",
+                "Classes defined by the service's own ClassLoader", s -> s.loadedClasses);
+        metric(out, snapshots, "mycoq_service_threads", "gauge",
+                "Live threads of the service (main thread and tasks)", s -> s.threads);
+        metric(out, snapshots, "mycoq_service_tasks_active", "gauge",
+                "Tasks the service started that are still running", s -> s.activeTasks);
+        metric(out, snapshots, "mycoq_service_tasks_completed_total", "counter",
+                "Tasks of the service that finished", s -> s.completedTasks);
+        metric(out, snapshots, "mycoq_service_tasks_failed_total", "counter",
+                "Tasks of the service that failed", s -> s.failedTasks);
+        metric(out, snapshots, "mycoq_service_uptime_seconds", "gauge",
+                "Seconds since the service (instance) started", s -> s.uptimeSeconds);
+        metric(out, snapshots, "mycoq_service_restarts_total", "counter",
+                "Times the service was started again (reloads, run after stop)", s -> s.restarts);
+
+        return out.toString();
+    }
+
+    private interface Value {
+        double of(Snapshot snapshot);
+    }
+
+    private static void metric(StringBuilder out, List<Snapshot> snapshots, String name, String type,
+                               String help, Value value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+
+        for (Snapshot snapshot : snapshots) {
+            double v = value.of(snapshot);
+            out.append(name).append("{service=\"").append(escape(snapshot.service)).append("\"} ")
+                    .append(v == Math.rint(v) ? Long.toString((long) v) : String.format(Locale.ROOT, "%.6f", v))
+                    .append('\n');
+        }
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static List<Thread> liveThreads(ServiceInfo info) {
+        List<Thread> live = new ArrayList<>();
+        if (info.getThread() != null && info.getThread().isAlive()) {
+            live.add(info.getThread());
+        }
+        if (info.getScope() != null) {
+            live.addAll(info.getScope().getThreads());
+        }
+        return live;
+    }
+
+    private Snapshot snapshot(ServiceInfo info, Usage serviceUsage) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.service = info.getName();
+        snapshot.running = info.isRunning();
+        snapshot.cpuNanos = serviceUsage.cpuNanos();
+        snapshot.allocatedBytes = serviceUsage.allocatedBytes();
+        snapshot.threads = serviceUsage.liveThreads;
+        snapshot.activeTasks = info.getActiveTasks();
+        snapshot.completedTasks = info.getCompletedTasks();
+        snapshot.failedTasks = info.getFailedTasks();
+        snapshot.restarts = registry.getRestartCount(info.getName());
+        snapshot.uptimeSeconds = info.getStartTime() == null
+                ? 0 : Duration.between(info.getStartTime(), Instant.now()).toSeconds();
+        snapshot.loadedClasses = info.getClassLoader() instanceof ServiceClassLoader loader
+                ? loader.getLoadedClassCount() : 0;
+        return snapshot;
+    }
+
+    /**
+     * Counters of one service instance's threads.
+     */
+    private class Usage {
+        final ServiceInfo info;
+
+        // Thread id → {cpu nanos, allocated bytes} at the last sample
+        Map<Long, long[]> lastByThread = new HashMap<>();
+        long retiredCpuNanos;
+        long retiredAllocatedBytes;
+        int liveThreads;
+
+        Usage(ServiceInfo info) {
+            this.info = info;
+        }
+
+        void update(List<Thread> live) {
+            Map<Long, long[]> current = new HashMap<>();
+
+            for (Thread thread : live) {
+                if (thread.isVirtual()) {
+                    continue; // no per-thread counters
+                }
+                long id = thread.threadId();
+                long cpu = threads.getThreadCpuTime(id);
+                long allocated = allocations != null ? allocations.getThreadAllocatedBytes(id) : -1;
+                if (cpu >= 0 || allocated >= 0) {
+                    current.put(id, new long[] {Math.max(cpu, 0), Math.max(allocated, 0)});
+                }
+            }
+
+            // Threads gone since the last sample keep what they used
+            lastByThread.forEach((id, values) -> {
+                if (!current.containsKey(id)) {
+                    retiredCpuNanos += values[0];
+                    retiredAllocatedBytes += values[1];
+                }
+            });
+
+            lastByThread = current;
+            liveThreads = live.size();
+        }
+
+        long cpuNanos() {
+            return retiredCpuNanos + lastByThread.values().stream().mapToLong(values -> values[0]).sum();
+        }
+
+        long allocatedBytes() {
+            return retiredAllocatedBytes + lastByThread.values().stream().mapToLong(values -> values[1]).sum();
+        }
+    }
+
+    /**
+     * One service's metrics at the last sample.
+     */
+    public static class Snapshot {
+        public String service;
+        public boolean running;
+        public long cpuNanos;
+        public long allocatedBytes;
+        public int loadedClasses;
+        public int threads;
+        public int activeTasks;
+        public long completedTasks;
+        public long failedTasks;
+        public long uptimeSeconds;
+        public int restarts;
+    }
+}
@@ -0,0 +1,329 @@
+package runtime;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ServiceOutput gives every in-process service its own log file.
+ *
+ * CONCEPT: One stdout, Many Services
+ * ----------------------------------
+ * System.out is one object for the whole JVM. With ten services printing to
+ * it, their lines come out mixed together, and every println() takes the
+ * stream's lock and waits for the terminal (or a full pipe): one chatty
+ * service slows all the others down.
+ *
+ * install() replaces System.out and System.err with streams that look at
+ * who is writing. A thread belongs to a service if its context ClassLoader
+ * is the service's ServiceClassLoader (the executor sets it on the main
+ * thread and scope tasks, and threads a service starts inherit it). Output
+ * of other threads - the runtime's own log lines - still goes to the console.
+ *
+ * CONCEPT: Never Block the Service
+ * --------------------------------
+ * A service's output is not written to its file by the service's thread.
+ * Each write is copied into a chunk and offered to the service's ring
+ * buffer (a lock-free BoundedQueue of RING_CAPACITY chunks); one appender
+ * thread drains all rings into the files. A slow disk only delays the
+ * appender. If a ring is full, the write is dropped and counted, and the
+ * log gets a "[mycoq] N writes dropped" line: losing output is better than
+ * stalling the service that produced it.
+ *
+ * println(String) is one chunk, so a line is never split by other threads
+ * of the same service. Writes made piecewise (print, then println) can be.
+ *
+ * FILES:
+ * ------
+ * <workspace>/.mycoq/logs/<service>.log, the same file a forked service
+ * writes (see ServiceWorker). When it reaches MAX_FILE_BYTES it is renamed to
+ * <service>.log.1 (and .1 to .2, and so on, up to MAX_BACKUPS) and a new
+ * one is started. `mycoq logs <service> --follow` tails it.
+ */
+public class ServiceOutput implements AutoCloseable {
+
+    static final int RING_CAPACITY = 4096;
+    static final long MAX_FILE_BYTES = 10L * 1024 * 1024;
+    static final int MAX_BACKUPS = 3;
+
+    // How long the appender sleeps when all rings are empty
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path logDir;
+    private final PrintStream consoleOut;
+    private final PrintStream consoleErr;
+
+    // Service instance name → its ring and file
+    private final Map<String, Sink> sinks = new ConcurrentHashMap<>();
+
+    private final Thread appender;
+    private volatile boolean closed;
+
+    private ServiceOutput(Path logDir) {
+        this.logDir = logDir;
+        this.consoleOut = System.out;
+        this.consoleErr = System.err;
+        this.appender = Thread.ofPlatform().name("service-output-appender").daemon(true).unstarted(this::appendLoop);
+    }
+
+    /**
+     * Capture service output into files in logDir, from now on.
+     */
+    public static ServiceOutput install(Path logDir) throws IOException {
+        Files.createDirectories(logDir);
+
+        ServiceOutput output = new ServiceOutput(logDir);
+        output.appender.start();
+        System.setOut(output.new CapturingStream(output.consoleOut));
+        System.setErr(output.new CapturingStream(output.consoleErr));
+        return output;
+    }
+
+    /**
+     * Log directory of a workspace.
+     */
+    public static Path logDirFor(Path workspaceRoot) {
+        return workspaceRoot.resolve(".mycoq").resolve("logs");
+    }
+
+    /**
+     * Log file of a service instance.
+     */
+    public Path logFile(String serviceName) {
+        return logDir.resolve(serviceName + ".log").toAbsolutePath().normalize();
+    }
+
+    /**
+     * Writes a service's ring has dropped so far (0 if it never wrote).
+     */
+    public long getDroppedWrites(String serviceName) {
+        Sink sink = sinks.get(serviceName);
+        return sink != null ? sink.droppedTotal.get() : 0;
+    }
+
+    /**
+     * Restore the console streams, write what is still buffered and close the files.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        System.setOut(consoleOut);
+        System.setErr(consoleErr);
+
+        closed = true;
+        LockSupport.unpark(appender);
+        try {
+            appender.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The sink of the service running on a thread, or null for runtime threads.
+     */
+    private Sink sinkFor(Thread thread) {
+        if (closed || !(thread.getContextClassLoader() instanceof ServiceClassLoader loader)) {
+            return null;
+        }
+        return sinks.computeIfAbsent(loader.getServiceName(), name -> new Sink(logFile(name)));
+    }
+
+    private void appendLoop() {
+        while (true) {
+            boolean stopping = closed; // read before draining, so the last drain sees every write
+            boolean wrote = false;
+            for (Sink sink : sinks.values()) {
+                try {
+                    wrote |= sink.drain();
+                } catch (IOException e) {
+                    consoleErr.println("[Output] Could not write " + sink.file + ": " + e.getMessage());
+                }
+            }
+
+            if (stopping) {
+                sinks.values().forEach(Sink::closeFile);
+                return;
+            }
+            if (!wrote) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * One service's ring buffer and log file. The ring is written by the
+     * service's threads; everything else only by the appender.
+     */
+    private static final class Sink {
+
+        private final Path file;
+        private final BoundedQueue<byte[]> ring = new BoundedQueue<>(RING_CAPACITY);
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong droppedTotal = new AtomicLong();
+
+        private OutputStream out;
+        private long size;
+
+        Sink(Path file) {
+            this.file = file;
+        }
+
+        void offer(byte[] chunk) {
+            if (!ring.offer(chunk)) {
+                dropped.incrementAndGet();
+                droppedTotal.incrementAndGet();
+            }
+        }
+
+        /**
+         * Write everything in the ring to the file.
+         *
+         * @return true if anything was written
+         */
+        boolean drain() throws IOException {
+            byte[] chunk = ring.poll();
+            long lost = dropped.getAndSet(0);
+            if (chunk == null && lost == 0) {
+                return false;
+            }
+
+            if (out == null) {
+                open();
+            }
+            if (lost > 0) {
+                write(("[mycoq] " + lost + " writes dropped: the log could not keep up"
+                        + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+            // At most one ring's worth per pass, so a chatty service can't starve the others
+            for (int i = 0; chunk != null; chunk = ++i < RING_CAPACITY ? ring.poll() : null) {
+                write(chunk);
+            }
+            out.flush();
+            return true;
+        }
+
+        private void write(byte[] chunk) throws IOException {
+            if (size >= MAX_FILE_BYTES) {
+                rotate();
+            }
+            out.write(chunk);
+            size += chunk.length;
+        }
+
+        private void open() throws IOException {
+            out = new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 64 * 1024);
+            size = Files.size(file);
+        }
+
+        /**
+         * service.log → service.log.1 → ... → service.log.MAX_BACKUPS (deleted).
+         */
+        private void rotate() throws IOException {
+            out.close();
+            for (int i = MAX_BACKUPS; i >= 1; i--) {
+                Path from = i == 1 ? file : backup(i - 1);
+                if (Files.exists(from)) {
+                    Files.move(from, backup(i), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            open();
+        }
+
+        private Path backup(int number) {
+            return file.resolveSibling(file.getFileName() + "." + number);
+        }
+
+        void closeFile() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }
+    }
+
+    /**
+     * System.out / System.err replacement: service threads go to their
+     * ring, everyone else to the console stream.
+     *
+     * The common methods are overridden so service threads never take
+     * PrintStream's lock; the rest (printf, print(int), ...) end up in
+     * write(byte[], int, int) through PrintStream's own encoder.
+     */
+    private final class CapturingStream extends PrintStream {
+
+        private final PrintStream console;
+
+        CapturingStream(PrintStream console) {
+            super(console, true, console.charset());
+            this.console = console;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            Sink sink = sinkFor(Thread.currentThread());
+            if (sink == null) {
+                console.write(buf, off, len);
+            } else if (len > 0) {
+                sink.offer(Arrays.copyOfRange(buf, off, off + len));
+            }
+        }
+
+        @Override
+        public void print(String s) {
+            Sink sink = sinkFor(Thread.currentThread());
+            if (sink == null) {
+                console.print(s);
+            } else {
+                sink.offer(String.valueOf(s).getBytes(charset()));
+            }
+        }
+
+        @Override
+        public void print(Object obj) {
+            print(String.valueOf(obj));
+        }
+
+        @Override
+        public void println() {
+            print(System.lineSeparator());
+        }
+
+        @Override
+        public void println(String x) {
+            print(x + System.lineSeparator());
+        }
+
+        @Override
+        public void println(Object x) {
+            println(String.valueOf(x));
+        }
+
+        @Override
+        public void flush() {
+            console.flush();
+        }
+    }
+}
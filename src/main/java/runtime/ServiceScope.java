@@ -0,0 +1,232 @@
+package runtime;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ServiceScope owns every task a service starts.
+ *
+ * CONCEPT: Structured Concurrency
+ * -------------------------------
+ * A task started by a service belongs to that service. When the service
+ * stops, its tasks must stop too - otherwise they keep running (and keep
+ * the service's ClassLoader alive) after the service is "gone".
+ *
+ * The scope is the parent of all those tasks:
+ *   - fork() starts a task in the scope, on the service's kind of thread
+ *   - close() interrupts every task still running and waits for them
+ *
+ * HOW A SERVICE USES IT:
+ * ----------------------
+ * Services run on threads the executor created, so they can find their scope
+ * without any wiring:
+ *
+ *   ServiceScope.current().fork(() -> handle(request));
+ *
+ * Tasks forked from a task belong to the same scope.
+ *
+ * COUNTERS:
+ * ---------
+ * The scope counts tasks started, running, completed and failed, so the
+ * runtime can report what each service is doing.
+ */
+public class ServiceScope implements AutoCloseable {
+
+    // Scope of the service (or task) running on the current thread
+    private static final ThreadLocal<ServiceScope> CURRENT = new ThreadLocal<>();
+
+    private final String serviceName;
+    private final ExecutionMode mode;
+
+    // Threads of tasks that have not finished yet
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong taskIds = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // Context of the service, for RuntimeContext.current() (null outside the runtime)
+    private volatile RuntimeContext context;
+
+    public ServiceScope(String serviceName, ExecutionMode mode) {
+        this.serviceName = serviceName;
+        this.mode = mode;
+    }
+
+    /**
+     * The scope of the service running on this thread.
+     *
+     * @throws IllegalStateException if called outside a service
+     */
+    public static ServiceScope current() {
+        ServiceScope scope = CURRENT.get();
+        if (scope == null) {
+            throw new IllegalStateException("Not running inside a service");
+        }
+        return scope;
+    }
+
+    /**
+     * Start a task in this scope.
+     *
+     * @return future with the task's result (fails if stopping the service interrupts it)
+     */
+    public <T> CompletableFuture<T> fork(Callable<T> task) {
+        return fork(task, mode);
+    }
+
+    /**
+     * Start a task in this scope on a given kind of thread (ManagedExecutor
+     * runs its tasks on virtual threads whatever the service's mode).
+     */
+    <T> CompletableFuture<T> fork(Callable<T> task, ExecutionMode threadMode) {
+        if (closed) {
+            throw new IllegalStateException("Service is stopping: " + serviceName);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        String name = "service-" + serviceName + "-task-" + taskIds.incrementAndGet();
+
+        Thread thread = threadMode.newThread(name, () -> {
+            CURRENT.set(this);
+            Thread.currentThread().setContextClassLoader(classLoader);
+            try {
+                result.complete(task.call());
+                completed.incrementAndGet();
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                if (closed && e instanceof InterruptedException) {
+                    completed.incrementAndGet(); // cancelled by stop, not a failure
+                } else {
+                    failed.incrementAndGet();
+                }
+            } finally {
+                running.remove(Thread.currentThread());
+            }
+        });
+
+        started.incrementAndGet();
+        running.add(thread);
+        thread.start();
+
+        // Closing may have raced with this fork; make sure the task is interrupted
+        if (closed) {
+            thread.interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Start a task that returns nothing.
+     */
+    public CompletableFuture<Void> fork(Runnable task) {
+        return fork(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Bind the calling thread (the service's main thread) to this scope.
+     */
+    void enter() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Wait until every task in the scope has ended, including tasks forked
+     * while waiting.
+     */
+    public void awaitTasks() throws InterruptedException {
+        while (!running.isEmpty()) {
+            for (Thread thread : running) {
+                thread.join();
+            }
+        }
+    }
+
+    /**
+     * Interrupt all running tasks and wait for them to end.
+     *
+     * @param timeoutMillis total time to wait
+     * @return number of tasks still running after the timeout
+     */
+    public int shutdown(long timeoutMillis) {
+        closed = true;
+        running.forEach(Thread::interrupt);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread thread : running) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                thread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return running.size();
+    }
+
+    @Override
+    public void close() {
+        shutdown(5000);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public RuntimeContext getContext() {
+        return context;
+    }
+
+    void setContext(RuntimeContext context) {
+        this.context = context;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Task counters
+
+    public long getStartedTasks() {
+        return started.get();
+    }
+
+    public int getActiveTasks() {
+        return running.size();
+    }
+
+    public long getCompletedTasks() {
+        return completed.get();
+    }
+
+    public long getFailedTasks() {
+        return failed.get();
+    }
+
+    /**
+     * Threads of the tasks running right now (for metrics sampling).
+     */
+    List<Thread> getThreads() {
+        return List.copyOf(running);
+    }
+}
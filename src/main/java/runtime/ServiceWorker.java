@@ -0,0 +1,236 @@
+package runtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ServiceWorker is the main class of a pre-booted JVM that will run one
+ * forked service.
+ *
+ * CONCEPT: Paying JVM Startup in Advance
+ * --------------------------------------
+ * A service in its own JVM is isolated from the others (its own heap, its own
+ * crash), but starting a JVM, loading the runtime's classes and warming them
+ * up takes hundreds of milliseconds before main() even runs. A worker does
+ * all of that ahead of time, then waits:
+ *
+ *   1. Boot, load and exercise the runtime classes it will need (warmUp)
+ *   2. Listen on <stateDir>/worker-<pid>.sock (the socket file is the
+ *      "ready" signal for ServiceWorkerPool)
+ *   3. Accept exactly one assignment: a JSON Request line with the service's
+ *      jars and main class; answer with a JSON Response line
+ *   4. Run the service like the in-process runtime does (ServiceClassLoader,
+ *      ServiceExecutor), with its output in the request's log file
+ *   5. Exit when the service ends, when the host sends "stop", or when the
+ *      host's connection closes (the host went away)
+ *
+ * An idle worker exits after its idle timeout, or as soon as the runtime that
+ * started it is gone.
+ *
+ * Usage (spawned by ServiceWorkerPool):
+ *   java -cp <mycoq classpath> runtime.ServiceWorker <stateDir> <idleTimeoutMillis>
+ */
+public final class ServiceWorker {
+
+    private static volatile boolean assigned;
+
+    private ServiceWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path stateDir = Path.of(args[0]);
+        long idleTimeoutMillis = Long.parseLong(args[1]);
+
+        long pid = ProcessHandle.current().pid();
+        Path socketPath = stateDir.resolve("worker-" + pid + ".sock");
+        ObjectMapper mapper = new ObjectMapper();
+
+        warmUp(mapper);
+        watchIdle(socketPath, idleTimeoutMillis);
+
+        SocketChannel control;
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            RuntimeHost.bindOwnerOnly(server, socketPath); // the socket appearing means "ready"
+            control = server.accept();
+            assigned = true;
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(control), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(control), StandardCharsets.UTF_8));
+
+        Request request = mapper.readValue(in.readLine(), Request.class);
+        Response response = new Response();
+        response.pid = pid;
+
+        RuntimeRegistry registry = new RuntimeRegistry();
+        PersistentRegistry persistentRegistry = new PersistentRegistry();
+        ServiceExecutor executor = new ServiceExecutor();
+        Thread serviceThread = null;
+
+        try {
+            redirectOutput(Path.of(request.logFile));
+            RuntimeContext context = context(request);
+            Method mainMethod = new EntryPointResolver().resolveMainMethod(context);
+
+            serviceThread = executor.execute(context, mainMethod, registry, persistentRegistry);
+            response.started = true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            response.error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+
+        out.write(mapper.writeValueAsString(response));
+        out.newLine();
+        out.flush();
+
+        if (serviceThread == null) {
+            System.exit(1);
+        }
+
+        // "stop" from the host, or the host is gone: stop the service and exit
+        String serviceName = request.serviceName;
+        Thread.ofPlatform().name("worker-control").daemon(true).start(() -> {
+            try {
+                String line;
+                while ((line = in.readLine()) != null && !line.equals("stop")) {
+                    // only "stop" is understood
+                }
+            } catch (IOException e) {
+                // Connection lost: same as the host going away
+            }
+            executor.stop(serviceName, registry, persistentRegistry);
+            System.exit(0);
+        });
+
+        // The service ended on its own
+        serviceThread.join();
+        persistentRegistry.unregister(serviceName);
+        ServiceInfo info = registry.getService(serviceName);
+        System.exit(info != null && info.getStatus() == ServiceStatus.FAILED ? 1 : 0);
+    }
+
+    /**
+     * Load and exercise what running a service needs, so the assignment
+     * finds these classes loaded and their hot paths interpreted at least
+     * once: the runtime classes, Jackson for the request, jar reading.
+     */
+    private static void warmUp(ObjectMapper mapper) throws Exception {
+        Request sample = new Request();
+        sample.serviceName = "warm-up";
+        sample.dependencyJars.add("warm-up.jar");
+        mapper.readValue(mapper.writeValueAsString(sample), Request.class);
+        mapper.writeValueAsString(new Response());
+
+        for (Class<?> type : List.of(ServiceClassLoader.class, ServiceExecutor.class, ServiceScope.class,
+                EntryPointResolver.class, RuntimeContext.class, RuntimeRegistry.class, ServiceInfo.class,
+                PersistentRegistry.class, ExecutionMode.class, jar.ClassIndex.class,
+                java.util.jar.JarFile.class, java.net.URLClassLoader.class)) {
+            Class.forName(type.getName(), true, ServiceWorker.class.getClassLoader());
+        }
+
+        try (ServiceClassLoader loader = new ServiceClassLoader("warm-up", List.of(), ClassLoader.getSystemClassLoader())) {
+            loader.loadClass(String.class.getName());
+        }
+    }
+
+    /**
+     * Exit if no assignment arrives in time, or once the process that started
+     * this worker is gone.
+     */
+    private static void watchIdle(Path socketPath, long idleTimeoutMillis) {
+        Optional<ProcessHandle> parent = ProcessHandle.current().parent();
+        long deadline = System.currentTimeMillis() + idleTimeoutMillis;
+
+        Thread.ofPlatform().name("worker-idle").daemon(true).start(() -> {
+            while (!assigned) {
+                boolean parentGone = parent.isPresent() && !parent.get().isAlive();
+                if (parentGone || System.currentTimeMillis() > deadline) {
+                    try {
+                        Files.deleteIfExists(socketPath);
+                    } catch (IOException ignored) {}
+                    System.exit(0);
+                }
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    private static RuntimeContext context(Request request) {
+        RuntimeContext context = new RuntimeContext(request.serviceName, Path.of(request.serviceJar));
+        request.dependencyJars.forEach(jar -> context.addDependencyJar(Path.of(jar)));
+        context.setMainClass(request.mainClass);
+        context.setExecutionMode(ExecutionMode.parse(request.executionMode));
+        context.setMessageBus(new MessageBus()); // only this JVM's services
+        context.setManagedExecutor(new ManagedExecutor(request.serviceName, ManagedExecutor.newTimer(),
+                request.executorLimit));
+
+        List<Path> jars = new ArrayList<>();
+        jars.add(context.getServiceJar());
+        jars.addAll(context.getDependencyJars());
+        // One flat loader: the shared layers of the host live in another process
+        ServiceClassLoader classLoader = new ServiceClassLoader(request.serviceName, jars,
+                ClassLoader.getSystemClassLoader());
+        if (request.profilesWorkspace != null) {
+            new StartupProfiles(Path.of(request.profilesWorkspace))
+                    .apply(request.serviceName, context.getServiceJar(), classLoader);
+        }
+        context.setClassLoader(classLoader);
+        return context;
+    }
+
+    private static void redirectOutput(Path logFile) throws IOException {
+        Files.createDirectories(logFile.getParent());
+        PrintStream log = new PrintStream(new FileOutputStream(logFile.toFile(), true), true, StandardCharsets.UTF_8);
+        System.setOut(log);
+        System.setErr(log);
+    }
+
+    /**
+     * Assignment of a service to a worker.
+     */
+    public static class Request {
+        public String serviceName;
+        public String serviceJar;
+        // The service's transitive dependencies
+        public List<String> dependencyJars = new ArrayList<>();
+        public String mainClass;
+        public String executionMode = "platform";
+        public int executorLimit = ManagedExecutor.DEFAULT_MAX_CONCURRENCY;
+        public String logFile;
+        // Workspace whose startup profiles to use (null = no preloading)
+        public String profilesWorkspace;
+    }
+
+    /**
+     * The worker's answer to an assignment.
+     */
+    public static class Response {
+        public boolean started;
+        public long pid;
+        public String error;
+    }
+}
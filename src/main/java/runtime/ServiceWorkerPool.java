@@ -0,0 +1,197 @@
+package runtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ServiceWorkerPool keeps pre-booted JVMs (ServiceWorker) idle, so a forked
+ * service starts in the time it takes to load its own classes.
+ *
+ * CONCEPT: A Warm Pool
+ * --------------------
+ * Forking a service on demand would put a full JVM boot on every start. The
+ * pool boots `size` workers in advance; fork() takes an idle one, hands it
+ * the service over its Unix domain socket, and boots a replacement in the
+ * background. Only when the pool is empty (forks faster than workers boot)
+ * does a fork wait for a new JVM.
+ *
+ * Workers are children of this runtime: they exit when it does, idle or not
+ * (see ServiceWorker). Their sockets and the output of idle workers are
+ * under <workspace>/.mycoq/fork/.
+ */
+public class ServiceWorkerPool implements AutoCloseable {
+
+    // Idle workers kept when no size is configured
+    public static final int DEFAULT_SIZE = 2;
+
+    private static final long SPAWN_TIMEOUT_MILLIS = 15_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 60 * 60 * 1000;
+
+    private final int size;
+    private final Path stateDir;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Booted workers waiting for a service
+    private final BlockingQueue<IdleWorker> idle = new LinkedBlockingQueue<>();
+
+    // Workers idle or booting, so refills don't overshoot the size
+    private final AtomicInteger available = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    public ServiceWorkerPool(Path workspaceRoot, int size) {
+        this.size = size;
+        this.stateDir = workspaceRoot.resolve(".mycoq").resolve("fork");
+
+        try {
+            RuntimeHost.createOwnerOnlyDirectories(stateDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create worker directory: " + stateDir, e);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Boot workers in the background until the pool is full.
+     */
+    public void fill() {
+        while (!closed && available.get() < size) {
+            available.incrementAndGet();
+            Thread.ofVirtual().name("service-worker-boot").start(() -> {
+                try {
+                    idle.add(spawn());
+                } catch (RuntimeException e) {
+                    available.decrementAndGet();
+                    System.err.println("[Fork] " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Run a service in an idle worker (booting one if none is idle).
+     *
+     * @return the running service
+     */
+    public ForkedService fork(ServiceWorker.Request request) {
+        IdleWorker worker;
+        while ((worker = idle.poll()) != null) {
+            available.decrementAndGet();
+            if (worker.process().isAlive()) {
+                break; // else it timed out idle
+            }
+        }
+        if (worker == null) {
+            System.out.println("[Fork] No idle worker; booting one");
+            worker = spawn();
+        }
+        fill(); // replace the worker we took
+
+        try {
+            SocketChannel control = SocketChannel.open(StandardProtocolFamily.UNIX);
+            control.connect(UnixDomainSocketAddress.of(worker.socket()));
+            control.write(ByteBuffer.wrap((mapper.writeValueAsString(request) + "\n")
+                    .getBytes(StandardCharsets.UTF_8)));
+
+            String line = readLine(control);
+            if (line.isEmpty()) {
+                throw new IOException("Worker " + worker.process().pid() + " exited");
+            }
+
+            ServiceWorker.Response response = mapper.readValue(line, ServiceWorker.Response.class);
+            if (!response.started) {
+                throw new RuntimeException("Forked service failed to start: " + request.serviceName
+                        + " - " + response.error + " (see " + request.logFile + ")");
+            }
+            return new ForkedService(worker.process(), control, Path.of(request.logFile));
+        } catch (IOException e) {
+            worker.process().destroyForcibly();
+            throw new RuntimeException("Could not hand " + request.serviceName + " to a worker: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop the idle workers. Forked services are stopped by their owner.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        IdleWorker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.process().destroy();
+        }
+    }
+
+    private IdleWorker spawn() {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+
+        ProcessBuilder builder = new ProcessBuilder(
+                java.toString(),
+                "-Duser.home=" + System.getProperty("user.home"), // same persistent registry
+                "-cp", System.getProperty("java.class.path"),
+                ServiceWorker.class.getName(),
+                stateDir.toString(),
+                String.valueOf(IDLE_TIMEOUT_MILLIS));
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(stateDir.resolve("workers.log").toFile()));
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start service worker", e);
+        }
+
+        // The worker binds its socket once it is warmed up
+        Path socket = stateDir.resolve("worker-" + process.pid() + ".sock");
+        long deadline = System.currentTimeMillis() + SPAWN_TIMEOUT_MILLIS;
+
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            if (Files.exists(socket)) {
+                return new IdleWorker(process, socket);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        process.destroy();
+        throw new RuntimeException("Service worker did not start, see " + stateDir.resolve("workers.log"));
+    }
+
+    private static String readLine(SocketChannel channel) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        InputStream in = Channels.newInputStream(channel);
+
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private record IdleWorker(Process process, Path socket) {
+    }
+}
@@ -0,0 +1,231 @@
+package runtime;
+
+import cache.Digests;
+import jfr.ServiceEvents;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * SharedLayers keeps one ClassLoader per dependency jar for the whole runtime.
+ *
+ * CONCEPT: Layered ClassLoaders
+ * -----------------------------
+ * If every service loader held its own copy of logging-core.jar, ten services
+ * would load ten copies of logging-core's classes: ten times the metaspace,
+ * and ten times the JIT warmup, because the JIT treats each copy as a
+ * different class.
+ *
+ * Instead each dependency jar gets one loader (a "layer"), and every service
+ * using that jar delegates to the same layer:
+ *
+ *   payment-service   order-service      (service jars only)
+ *          \           /
+ *           logging-core                 (one layer, shared)
+ *
+ * A layer's own layers are the layers of its jar's dependencies, so the
+ * graph mirrors the dependency graph.
+ *
+ * KEYED BY DIGEST:
+ * ----------------
+ * Layers are looked up by the SHA-256 of the jar, not its name. Two services
+ * only share a layer if they use exactly the same bytes; after a rebuild that
+ * changes the jar, new services get a new layer while running ones keep the old.
+ * A dependency compiled in memory by `run --build` is keyed by the digest of
+ * its files, and once its jar is written, by the jar's digest as well.
+ *
+ * REFERENCE COUNTING:
+ * -------------------
+ * Every rebuild of a dependency adds a layer, so layers must also go away.
+ * Each layer counts its users: the service loaders delegating to it, and
+ * the layers built on top of it. layerFor() hands the caller one reference,
+ * release() gives it back, and the last release closes the layer and
+ * releases the layers below it. A layer that is gone is rebuilt from its
+ * jar the next time a service needs it.
+ */
+public class SharedLayers {
+
+    // Jar (or compiled files) digest → layer loading that jar
+    private final Map<String, Layer> layers = new HashMap<>();
+
+    // Loader → its layer, to find the layer again on release
+    private final Map<ServiceClassLoader, Layer> layersByLoader = new IdentityHashMap<>();
+
+    // Told about each layer that was closed (e.g. to watch it being collected)
+    private final Consumer<ServiceClassLoader> onDropped;
+
+    public SharedLayers() {
+        this(loader -> {});
+    }
+
+    /**
+     * @param onDropped called with each layer closed by its last release
+     */
+    public SharedLayers(Consumer<ServiceClassLoader> onDropped) {
+        this.onDropped = onDropped;
+    }
+
+    /**
+     * Get the layer for a jar, creating it on first use.
+     *
+     * The caller gets one reference to the returned layer (see release), and
+     * gives up the references it holds to `dependencies`: a new layer keeps
+     * them, an existing one already holds its own.
+     *
+     * @param name         dependency name (for debugging)
+     * @param jar          the dependency jar
+     * @param dependencies layers of the jar's own dependencies
+     */
+    public ServiceClassLoader layerFor(String name, Path jar, List<ServiceClassLoader> dependencies) {
+        return acquire(name, Digests.sha256(jar), 1, dependencies, () -> new ServiceClassLoader(
+                "layer:" + name,
+                List.of(jar),
+                ClassLoader.getSystemClassLoader(),
+                dependencies));
+    }
+
+    /**
+     * Get the layer for a dependency compiled in this process (`run --build`),
+     * creating it on first use. References work as for a jar's layer.
+     *
+     * @param name         dependency name (for debugging)
+     * @param files        the dependency's class files and resources, by entry name
+     * @param dependencies layers of the dependency's own dependencies
+     */
+    public ServiceClassLoader layerFor(String name, Map<String, byte[]> files, List<ServiceClassLoader> dependencies) {
+        return acquire(name, digestOf(files), 0, dependencies, () -> new InMemoryClassLoader(
+                "layer:" + name,
+                files,
+                ClassLoader.getSystemClassLoader(),
+                dependencies));
+    }
+
+    /**
+     * Also use a layer compiled in memory for the jar that was written from
+     * it, so services started from the jar later share the layer with the
+     * services already running from memory.
+     */
+    public void addJar(ServiceClassLoader loader, Path jar) {
+        String digest = Digests.sha256(jar);
+
+        synchronized (this) {
+            Layer layer = layersByLoader.get(loader);
+            if (layer != null && !layers.containsKey(digest)) {
+                layers.put(digest, layer);
+                layer.digests.add(digest);
+            }
+        }
+    }
+
+    private synchronized ServiceClassLoader acquire(String name, String digest, int jars,
+                                                    List<ServiceClassLoader> dependencies,
+                                                    Supplier<ServiceClassLoader> create) {
+        Layer layer = layers.get(digest);
+        if (layer == null) {
+            System.out.println("[Layers] Created shared layer: " + name + " (" + digest.substring(0, 12) + ")");
+            ServiceEvents.ClassLoaderCreated event = new ServiceEvents.ClassLoaderCreated();
+            event.loader = "layer:" + name;
+            event.jars = jars;
+            event.layers = dependencies.size();
+            event.commit();
+            layer = new Layer(digest, create.get());
+            layers.put(digest, layer);
+            layersByLoader.put(layer.loader, layer);
+        } else {
+            release(dependencies);
+        }
+
+        layer.users++;
+        return layer.loader;
+    }
+
+    /**
+     * Digest of a dependency's compiled files: names and contents, in name order.
+     */
+    private static String digestOf(Map<String, byte[]> files) {
+        StringBuilder listing = new StringBuilder();
+        new TreeMap<>(files).forEach((entry, bytes) ->
+                listing.append(entry).append(' ').append(Digests.sha256(bytes)).append('\n'));
+        return Digests.sha256(listing.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Give back one reference to each of the layers (a service loader's
+     * layers, when the service is done with them). Layers left without
+     * users are closed.
+     */
+    public synchronized void release(List<ServiceClassLoader> loaders) {
+        for (ServiceClassLoader loader : loaders) {
+            Layer layer = layersByLoader.get(loader);
+            if (layer == null || --layer.users > 0) {
+                continue;
+            }
+
+            layer.digests.forEach(layers::remove);
+            layersByLoader.remove(loader);
+            System.out.println("[Layers] Dropped shared layer: " + loader.getServiceName().substring("layer:".length())
+                    + " (" + layer.digests.get(0).substring(0, 12) + ")");
+            try {
+                loader.close();
+            } catch (IOException e) {
+                System.err.println("[Layers] Could not close " + loader.getServiceName() + ": " + e.getMessage());
+            }
+            onDropped.accept(loader);
+
+            release(loader.getLayers());
+        }
+    }
+
+    /**
+     * Number of distinct layers (jars loaded once each).
+     */
+    public synchronized int size() {
+        return layersByLoader.size();
+    }
+
+    /**
+     * Loaders of all layers.
+     */
+    public synchronized List<ServiceClassLoader> getLoaders() {
+        return List.copyOf(layersByLoader.keySet());
+    }
+
+    /**
+     * Users of a layer (services and layers on top of it), or 0 if it was dropped.
+     */
+    public synchronized int getUsers(ServiceClassLoader loader) {
+        Layer layer = layersByLoader.get(loader);
+        return layer == null ? 0 : layer.users;
+    }
+
+    /**
+     * Print each layer and how many users it has.
+     */
+    public synchronized void printSummary() {
+        System.out.println("[Layers] " + layersByLoader.size() + " shared layer(s)");
+        layersByLoader.values().forEach(layer -> System.out.println("[Layers]   "
+                + layer.loader.getServiceName() + " - " + layer.users + " user(s)"));
+    }
+
+    private static class Layer {
+        // Keys of this layer in `layers`: its digest, and its jar's once written (see addJar)
+        final List<String> digests = new ArrayList<>();
+        final ServiceClassLoader loader;
+        // Guarded by SharedLayers.this
+        int users;
+
+        Layer(String digest, ServiceClassLoader loader) {
+            this.digests.add(digest);
+            this.loader = loader;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package runtime;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * ShutdownCoordinator stops every service of a runtime when it exits.
+ *
+ * CONCEPT: Reverse Dependency Order
+ * ---------------------------------
+ * Services start after the services they depend on (see RuntimeManager's
+ * bundle startup). They must stop the other way round: payment still
+ * talks to auth while it drains its last requests, so auth stops only
+ * once payment has stopped.
+ *
+ *   payment ──┐
+ *             ├──→ stop auth, stop logging
+ *   metrics   │    (metrics stops right away, in parallel)
+ *
+ * Stopping one service after another, each allowed seconds to end, takes
+ * minutes with many services. Here every service stops as soon as the
+ * services depending on it have stopped, all in parallel, under one
+ * deadline for the whole runtime. A service that still waits for its
+ * dependents when the deadline passes is stopped anyway.
+ *
+ * Each stop drains the service first (RuntimeContext.onDrain callbacks),
+ * then interrupts it (see ServiceExecutor.stop). Forked services are asked
+ * to stop and killed at the deadline.
+ *
+ * REGISTRY:
+ * ---------
+ * The persistent registry is cleared for all services in one locked write
+ * at the end, instead of once per service - and also for services that did
+ * not stop in time, since the process is about to exit.
+ */
+public class ShutdownCoordinator {
+
+    // Time all services of a runtime get to stop
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final RuntimeRegistry registry;
+    private final PersistentRegistry persistentRegistry;
+    private final ServiceExecutor serviceExecutor;
+
+    // Service name → names of the services it depends on (transitively)
+    private final Function<String, Set<String>> dependenciesOf;
+
+    public ShutdownCoordinator(RuntimeRegistry registry,
+                               PersistentRegistry persistentRegistry,
+                               ServiceExecutor serviceExecutor,
+                               Function<String, Set<String>> dependenciesOf) {
+        this.registry = registry;
+        this.persistentRegistry = persistentRegistry;
+        this.serviceExecutor = serviceExecutor;
+        this.dependenciesOf = dependenciesOf;
+    }
+
+    /**
+     * Stop all running services, dependents first, within the timeout.
+     *
+     * @return names of the services that did not stop in time
+     */
+    public List<String> shutdown(Duration timeout) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + timeout.toNanos();
+
+        Map<String, ServiceInfo> running = new HashMap<>();
+        for (ServiceInfo info : registry.getAllServices()) {
+            if (info.isAlive()) {
+                running.put(info.getName(), info);
+            }
+        }
+        if (running.isEmpty()) {
+            return List.of();
+        }
+        System.out.println("[Shutdown] Stopping " + running.size() + " service(s)...");
+
+        Map<String, Set<String>> dependents = dependents(running.keySet());
+        Map<String, CompletableFuture<Void>> stopped = new HashMap<>();
+        Set<String> notStopped = ConcurrentHashMap.newKeySet();
+
+        ExecutorService stopper = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (String name : running.keySet()) {
+                scheduleStop(name, running, dependents, stopped, notStopped, stopper,
+                        deadlineNanos, new HashSet<>());
+            }
+
+            try {
+                CompletableFuture.allOf(stopped.values().toArray(new CompletableFuture<?>[0]))
+                        .get(remainingMillis(deadlineNanos) + 1000, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Stops stuck past the deadline: report them and exit anyway
+                stopped.forEach((name, future) -> {
+                    if (!future.isDone()) {
+                        notStopped.add(name);
+                    }
+                });
+            } catch (ExecutionException e) {
+                // Each stop reports its own failure
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            stopper.shutdownNow();
+        }
+
+        persistentRegistry.unregisterAll(running.keySet());
+
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        List<String> failed = notStopped.stream().sorted().toList();
+        System.out.println("[Shutdown] Stopped " + (running.size() - failed.size()) + " of "
+                + running.size() + " service(s) in " + millis + " ms");
+        if (!failed.isEmpty()) {
+            System.err.println("[Shutdown] Did not stop in time: " + String.join(", ", failed));
+        }
+        return failed;
+    }
+
+    /**
+     * Create (once) the future of a service's stop: wait for the services
+     * depending on it (until the deadline), then stop it.
+     */
+    private CompletableFuture<Void> scheduleStop(String name,
+                                                 Map<String, ServiceInfo> running,
+                                                 Map<String, Set<String>> dependents,
+                                                 Map<String, CompletableFuture<Void>> stopped,
+                                                 Set<String> notStopped,
+                                                 ExecutorService stopper,
+                                                 long deadlineNanos,
+                                                 Set<String> visiting) {
+        CompletableFuture<Void> existing = stopped.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        visiting.add(name);
+
+        List<CompletableFuture<Void>> before = new ArrayList<>();
+        for (String dependent : dependents.getOrDefault(name, Set.of())) {
+            if (!visiting.contains(dependent)) { // a cycle can't order anything; ignore it
+                before.add(scheduleStop(dependent, running, dependents, stopped, notStopped,
+                        stopper, deadlineNanos, visiting));
+            }
+        }
+        visiting.remove(name);
+
+        CompletableFuture<Void> future = CompletableFuture
+                .allOf(before.toArray(new CompletableFuture<?>[0]))
+                .completeOnTimeout(null, remainingMillis(deadlineNanos), TimeUnit.MILLISECONDS)
+                .handleAsync((ignored, e) -> {
+                    try {
+                        if (!stop(running.get(name), deadlineNanos)) {
+                            notStopped.add(name);
+                        }
+                    } catch (RuntimeException failure) {
+                        System.err.println("[Shutdown] Could not stop " + name + ": " + failure.getMessage());
+                        notStopped.add(name);
+                    }
+                    return null;
+                }, stopper);
+
+        stopped.put(name, future);
+        return future;
+    }
+
+    private boolean stop(ServiceInfo info, long deadlineNanos) {
+        if (!info.isAlive()) {
+            return true;
+        }
+
+        info.setStopRequested(true);
+        if (info.getForked() != null) {
+            boolean exited = info.getForked().stop(Math.max(1, remainingMillis(deadlineNanos)));
+            info.setStatus(ServiceStatus.STOPPED);
+            System.out.println("[Fork] " + (exited ? "✓ Service stopped: " : "Killed worker of ")
+                    + info.getName());
+            return exited;
+        }
+        return serviceExecutor.stop(info, deadlineNanos);
+    }
+
+    /**
+     * Running service → running services that depend on it.
+     * Replicas ("payment-service#2") count as their service.
+     */
+    private Map<String, Set<String>> dependents(Set<String> running) {
+        Map<String, List<String>> instances = new HashMap<>();
+        for (String name : running) {
+            instances.computeIfAbsent(serviceName(name), n -> new ArrayList<>()).add(name);
+        }
+
+        Map<String, Set<String>> dependents = new HashMap<>();
+        for (String name : running) {
+            for (String dependency : dependenciesOf.apply(serviceName(name))) {
+                for (String instance : instances.getOrDefault(dependency, List.of())) {
+                    dependents.computeIfAbsent(instance, n -> new HashSet<>()).add(name);
+                }
+            }
+        }
+        return dependents;
+    }
+
+    private static String serviceName(String instanceName) {
+        int separator = instanceName.indexOf(ReplicaSet.SEPARATOR);
+        return separator == -1 ? instanceName : instanceName.substring(0, separator);
+    }
+
+    private static long remainingMillis(long deadlineNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+}
@@ -0,0 +1,159 @@
+package runtime;
+
+import cache.Digests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * StartupProfiles records which classes a service loads while starting, and
+ * preloads them on the next start.
+ *
+ * CONCEPT: Lazy Class Loading
+ * ---------------------------
+ * The JVM loads a class the first time code touches it. During startup the
+ * service thread keeps stopping to find, read, define and verify the next
+ * class - one at a time, on the critical path to "ready".
+ *
+ * But a service loads (almost) the same classes every time it starts. So:
+ *   1. First start: the ServiceClassLoader records every class it loads
+ *      during the first RECORD_WINDOW, and the list is saved as a profile.
+ *   2. Later starts: background threads load and link the profile's classes
+ *      in parallel while main() runs. When main() reaches a class, it is
+ *      usually already there.
+ *
+ * Only loading and linking happen in the background. Static initializers
+ * still run on the service's own thread, in the order the service uses the
+ * classes, so preloading never changes what the service does.
+ *
+ * KEYED BY DIGEST:
+ * ----------------
+ * Profiles are stored per SHA-256 of the service jar, under
+ * <workspace>/.mycoq/startup-profiles/<service>-<digest>.classes, one class
+ * name per line. A rebuild that changes the jar starts without a profile and
+ * records a new one; an unchanged rebuild (byte-identical jar) reuses it.
+ */
+public class StartupProfiles {
+
+    // How long after start loaded classes are recorded
+    static final Duration RECORD_WINDOW = Duration.ofSeconds(10);
+
+    // Profiles kept per service (older builds are pruned)
+    private static final int PROFILES_PER_SERVICE = 3;
+
+    private final Path dir;
+
+    public StartupProfiles(Path workspaceRoot) {
+        this.dir = workspaceRoot.resolve(".mycoq").resolve("startup-profiles");
+    }
+
+    /**
+     * Preload a service's classes if its jar has a profile, otherwise record
+     * one. Call right after creating the loader, before resolving main().
+     */
+    public void apply(String serviceName, Path serviceJar, ServiceClassLoader classLoader) {
+        Path profile = profileFile(serviceName, Digests.sha256(serviceJar));
+
+        if (Files.exists(profile)) {
+            preload(serviceName, profile, classLoader);
+        } else {
+            record(serviceName, profile, classLoader);
+        }
+    }
+
+    private void preload(String serviceName, Path profile, ServiceClassLoader classLoader) {
+        List<String> classNames;
+        try {
+            classNames = read(profile);
+        } catch (IOException e) {
+            System.err.println("[Preload] Could not read startup profile " + profile + ": " + e.getMessage());
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+        classLoader.preload(classNames, threads).thenAccept(loaded -> System.out.println(
+                "[Preload] " + serviceName + ": loaded " + loaded + "/" + classNames.size()
+                        + " classes on " + threads + " thread(s) in "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " ms"));
+    }
+
+    private void record(String serviceName, Path profile, ServiceClassLoader classLoader) {
+        classLoader.startRecording();
+
+        Thread.ofVirtual().name("profile-" + serviceName).start(() -> {
+            try {
+                Thread.sleep(RECORD_WINDOW);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            List<String> classNames = classLoader.stopRecording();
+            if (classNames.isEmpty()) {
+                return;
+            }
+
+            try {
+                write(profile, classNames);
+                prune(serviceName);
+                System.out.println("[Preload] Saved startup profile of " + serviceName
+                        + " (" + classNames.size() + " classes)");
+            } catch (IOException e) {
+                System.err.println("[Preload] Could not save startup profile " + profile + ": " + e.getMessage());
+            }
+        });
+    }
+
+    Path profileFile(String serviceName, String digest) {
+        return dir.resolve(serviceName + "-" + digest + ".classes");
+    }
+
+    static List<String> read(Path profile) throws IOException {
+        return Files.readAllLines(profile, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isBlank())
+                .toList();
+    }
+
+    static void write(Path profile, List<String> classNames) throws IOException {
+        Files.createDirectories(profile.getParent());
+        Path tmp = Files.createTempFile(profile.getParent(), "profile", ".tmp");
+        Files.write(tmp, classNames, StandardCharsets.UTF_8);
+        Files.move(tmp, profile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Keep only the newest profiles of a service.
+     */
+    private void prune(String serviceName) throws IOException {
+        String prefix = serviceName + "-";
+
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> profiles = files
+                    .filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .filter(file -> Digests.isSha256(file.getFileName().toString()
+                            .substring(prefix.length()).replace(".classes", "")))
+                    .sorted(Comparator.comparing(StartupProfiles::lastModified).reversed())
+                    .toList();
+
+            for (Path old : profiles.subList(Math.min(PROFILES_PER_SERVICE, profiles.size()), profiles.size())) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
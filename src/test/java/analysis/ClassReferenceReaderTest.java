@@ -0,0 +1,56 @@
+package analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ClassReferenceReader, run against classes compiled with the tests.
+ */
+class ClassReferenceReaderTest {
+
+    private final ClassReferenceReader reader = new ClassReferenceReader();
+
+    @Test
+    void testFindsInstantiatedAndDeclaredTypes() throws Exception {
+        Set<String> references = read(Sample.class);
+
+        assertTrue(references.contains("java/util/concurrent/atomic/LongAdder"), "instantiated in a method");
+        assertTrue(references.contains("java/util/BitSet"), "only used as a field type");
+        assertTrue(references.contains("java/lang/StringBuilder"), "only used as a parameter type");
+        assertTrue(references.contains("java/lang/Object"), "super class");
+    }
+
+    @Test
+    void testExcludesSelfAndPrimitives() throws Exception {
+        Set<String> references = read(Sample.class);
+
+        assertFalse(references.contains("analysis/ClassReferenceReaderTest$Sample"));
+        assertFalse(references.stream().anyMatch(name -> name.length() == 1), "no primitive descriptors");
+    }
+
+    private Set<String> read(Class<?> type) throws Exception {
+        String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getResourceAsStream(resource)) {
+            return reader.readReferences(in);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class Sample {
+        private BitSet flags;
+
+        long count(int times, StringBuilder log) {
+            LongAdder adder = new LongAdder();
+            for (int i = 0; i < times; i++) {
+                adder.increment();
+            }
+            return adder.sum();
+        }
+    }
+}
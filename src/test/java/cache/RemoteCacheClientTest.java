@@ -0,0 +1,76 @@
+package cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trip tests for RemoteCacheClient against the embedded CacheServer.
+ */
+class RemoteCacheClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CacheServer server;
+    private RemoteCacheClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new CacheServer(tempDir.resolve("server"), 0);
+        server.start();
+        client = new RemoteCacheClient("http://localhost:" + server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    void testMissOnEmptyCache() {
+        String key = Digests.sha256("unknown".getBytes());
+
+        assertFalse(client.fetch(key, tempDir.resolve("out.jar")).join());
+        assertFalse(Files.exists(tempDir.resolve("out.jar")));
+    }
+
+    @Test
+    void testUploadThenFetch() throws Exception {
+        Path jar = tempDir.resolve("built.jar");
+        Files.write(jar, "jar-bytes".getBytes());
+        String key = Digests.sha256("action".getBytes());
+
+        client.uploadAsync(key, "auth-core", jar);
+        client.awaitUploads(Duration.ofSeconds(10));
+
+        Path restored = tempDir.resolve("restored/auth-core.jar");
+        assertTrue(client.fetch(key, restored).join());
+        assertArrayEquals(Files.readAllBytes(jar), Files.readAllBytes(restored));
+    }
+
+    @Test
+    void testServerRejectsBlobWithWrongDigest() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + server.getPort() + "/cas/"
+                                + Digests.sha256("expected".getBytes())))
+                .PUT(HttpRequest.BodyPublishers.ofString("something else"))
+                .build();
+
+        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        assertEquals(400, response.statusCode());
+    }
+}
@@ -0,0 +1,97 @@
+package compile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for compiling on worker JVMs.
+ */
+class CompileWorkerPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CompileWorkerPool pool;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        // Workers outlive their pool on purpose; don't leave them behind
+        try (Stream<Path> files = Files.list(stateDir())) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("worker-") && name.endsWith(".sock")) {
+                    long pid = Long.parseLong(name.substring("worker-".length(), name.length() - ".sock".length()));
+                    ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCompilesOnAWorkerAndReusesIt() throws Exception {
+        pool = new CompileWorkerPool(1, "256m", 10, stateDir());
+        Path classes = tempDir.resolve("classes");
+
+        CompileWorker.Response first = pool.compile(List.of(source("A", "")), classes, List.of());
+        CompileWorker.Response second = pool.compile(List.of(source("B", "")), classes, List.of());
+
+        assertTrue(first.success);
+        assertTrue(second.success);
+        assertTrue(Files.exists(classes.resolve("demo/A.class")));
+        assertTrue(Files.exists(classes.resolve("demo/B.class")));
+        assertEquals(1, sockets().size(), "second compile went to the same worker");
+    }
+
+    @Test
+    void testWorkerSocketIsOwnerOnly() throws Exception {
+        pool = new CompileWorkerPool(1, "256m", 10, stateDir());
+        pool.compile(List.of(source("A", "")), tempDir.resolve("classes"), List.of());
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(stateDir())));
+        List<Path> sockets = sockets();
+        assertEquals(1, sockets.size());
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(sockets.get(0))));
+        try (Stream<Path> files = Files.list(stateDir())) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".port")), "no TCP port is published");
+        }
+    }
+
+    @Test
+    void testFailedCompileIsReportedAndWorkerRetiresAfterMaxRequests() throws Exception {
+        pool = new CompileWorkerPool(1, "256m", 1, stateDir());
+
+        CompileWorker.Response response = pool.compile(
+                List.of(source("Broken", "int x = ;")), tempDir.resolve("classes"), List.of());
+
+        assertFalse(response.success);
+        assertTrue(response.retiring, "worker retires after its only allowed request");
+    }
+
+    private Path stateDir() {
+        return tempDir.resolve("workers");
+    }
+
+    private List<Path> sockets() throws Exception {
+        try (Stream<Path> files = Files.list(stateDir())) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".sock")).toList();
+        }
+    }
+
+    private Path source(String className, String body) throws Exception {
+        Path file = tempDir.resolve("src/demo/" + className + ".java");
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "package demo;\npublic class " + className + " { " + body + " }\n");
+    }
+}
@@ -0,0 +1,62 @@
+package compile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import runtime.InMemoryClassLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for compiling into memory and loading the result.
+ */
+class JavaCompileServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCompileInMemoryAgainstCompiledDependency() throws Exception {
+        Path lib = write("lib/com/example/lib/Greeter.java", """
+                package com.example.lib;
+                public class Greeter {
+                    public static String greet(String name) { return "hello " + name; }
+                }
+                """);
+        Path app = write("app/com/example/app/App.java", """
+                package com.example.app;
+                import com.example.lib.Greeter;
+                public class App {
+                    public static String run() { return Greeter.greet("app"); }
+                }
+                """);
+
+        JavaCompileService compiler = new JavaCompileService();
+        Map<String, byte[]> libClasses = compiler.compileInMemory("lib", List.of(lib), Map.of());
+        Map<String, byte[]> appClasses = compiler.compileInMemory("app", List.of(app), libClasses);
+
+        assertEquals(List.of("com/example/app/App.class"), List.copyOf(appClasses.keySet()));
+        try (var files = Files.walk(tempDir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".class")), "nothing is written");
+        }
+
+        Map<String, byte[]> classes = new HashMap<>(libClasses);
+        classes.putAll(appClasses);
+        try (InMemoryClassLoader loader = new InMemoryClassLoader("app", classes, ClassLoader.getSystemClassLoader())) {
+            Class<?> type = loader.loadClass("com.example.app.App");
+            assertSame(loader, type.getClassLoader());
+            assertEquals("hello app", type.getMethod("run").invoke(null));
+        }
+    }
+
+    private Path write(String path, String source) throws Exception {
+        Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, source);
+    }
+}
@@ -0,0 +1,29 @@
+package exec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HeapPeakSampler.
+ */
+class HeapPeakSamplerTest {
+
+    @Test
+    void testPeakKeepsAllocationThatWasReleased() throws Exception {
+        try (HeapPeakSampler sampler = new HeapPeakSampler()) {
+            long before = sampler.getPeakBytes();
+
+            byte[] block = new byte[64 * 1024 * 1024];
+            Thread.sleep(100);
+            long peak = sampler.getPeakBytes();
+            assertTrue(peak >= block.length, "the held block is counted");
+
+            block = null;
+            System.gc();
+            Thread.sleep(100);
+            assertTrue(sampler.getPeakBytes() >= peak, "the peak never goes down");
+            assertTrue(peak >= before);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package exec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ResourceScheduler admission control.
+ */
+class ResourceSchedulerTest {
+
+    @Test
+    void testTasksOverHeapBudgetDoNotOverlap() {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        try (ResourceScheduler scheduler = new ResourceScheduler(4, 100)) {
+            Runnable task = () -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                sleep(50);
+                concurrent.decrementAndGet();
+            };
+
+            CompletableFuture.allOf(
+                    scheduler.submit(80, task),
+                    scheduler.submit(80, task),
+                    scheduler.submit(80, task)).join();
+        }
+
+        assertEquals(1, maxConcurrent.get(), "80 + 80 exceeds the budget of 100");
+    }
+
+    @Test
+    void testSmallTasksRunInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        try (ResourceScheduler scheduler = new ResourceScheduler(2, 100)) {
+            Runnable task = () -> {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+
+            CompletableFuture<Void> first = scheduler.submit(40, task);
+            CompletableFuture<Void> second = scheduler.submit(40, task);
+
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS), "Both tasks fit and should run together");
+            CompletableFuture.allOf(first, second).join();
+        }
+    }
+
+    @Test
+    void testOversizedTaskStillRunsAlone() {
+        try (ResourceScheduler scheduler = new ResourceScheduler(2, 100)) {
+            AtomicInteger ran = new AtomicInteger();
+            scheduler.submit(500, ran::incrementAndGet).join();
+            assertEquals(1, ran.get());
+        }
+    }
+
+    @Test
+    void testFailurePropagatesToFuture() {
+        try (ResourceScheduler scheduler = new ResourceScheduler(1, 100)) {
+            CompletableFuture<Void> future = scheduler.submit(10, () -> {
+                throw new IllegalStateException("boom");
+            });
+
+            assertThrows(Exception.class, future::join);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the build history store and its statistics.
+ */
+class BuildHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAppendedRunsLoadWithLineNumbersAsIds() throws Exception {
+        BuildHistory history = new BuildHistory(BuildHistory.fileFor(tempDir));
+        history.append(run(1000, target("core", 400, false)));
+        history.append(run(200, target("core", 5, true)));
+
+        List<BuildRecord> runs = history.loadAll();
+
+        assertEquals(2, runs.size());
+        assertEquals(1, runs.get(0).runId);
+        assertEquals(2, runs.get(1).runId);
+        assertEquals(400, runs.get(0).target("core").durationMillis);
+        assertEquals(1, runs.get(1).cacheHits());
+        assertNotNull(runs.get(1).startTime);
+    }
+
+    @Test
+    void testPercentileUsesNearestRank() {
+        List<Long> values = List.of(50L, 10L, 40L, 20L, 30L);
+
+        assertEquals(30, BuildStats.percentile(values, 50));
+        assertEquals(50, BuildStats.percentile(values, 90));
+        assertEquals(10, BuildStats.percentile(values, 0));
+        assertEquals(0, BuildStats.percentile(List.of(), 50));
+    }
+
+    @Test
+    void testCompareFlagsOnlySignificantSlowdowns() {
+        BuildRecord before = run(0,
+                target("slower", 1000, false),
+                target("tiny", 10, false),
+                target("removed", 300, false));
+        BuildRecord after = run(0,
+                target("slower", 1500, false),
+                target("tiny", 30, false));
+
+        List<BuildStats.TargetDelta> deltas = BuildStats.compare(before, after, 20);
+
+        BuildStats.TargetDelta slower = find(deltas, "slower");
+        assertTrue(slower.regressed);
+        assertEquals(50.0, slower.changePercent, 0.01);
+
+        // +200% but only 20ms: noise
+        assertFalse(find(deltas, "tiny").regressed);
+
+        BuildStats.TargetDelta removed = find(deltas, "removed");
+        assertEquals(-1, removed.afterMillis);
+        assertFalse(removed.regressed);
+    }
+
+    private static BuildRecord run(long durationMillis, BuildRecord.TargetRecord... targets) {
+        BuildRecord record = new BuildRecord();
+        record.startTime = Instant.now();
+        record.durationMillis = durationMillis;
+        record.success = true;
+        record.targets.addAll(List.of(targets));
+        return record;
+    }
+
+    private static BuildRecord.TargetRecord target(String name, long durationMillis, boolean cacheHit) {
+        BuildRecord.TargetRecord target = new BuildRecord.TargetRecord();
+        target.name = name;
+        target.durationMillis = durationMillis;
+        target.cacheHit = cacheHit;
+        return target;
+    }
+
+    private static BuildStats.TargetDelta find(List<BuildStats.TargetDelta> deltas, String name) {
+        return deltas.stream().filter(d -> d.name.equals(name)).findFirst().orElseThrow();
+    }
+}
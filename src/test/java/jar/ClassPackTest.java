@@ -0,0 +1,109 @@
+package jar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for writing a class pack and reading it back.
+ */
+class ClassPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEveryEntryRoundTrips() throws Exception {
+        // Empty, odd and even lengths, so entries start both on and off alignment
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        Random random = new Random(7);
+        int[] lengths = {0, 1, 3, 8, 9, 15, 16, 17, 4097};
+        for (int i = 0; i < lengths.length; i++) {
+            byte[] bytes = new byte[lengths[i]];
+            random.nextBytes(bytes);
+            classes.put("com/example/C" + i + ".class", bytes);
+        }
+        classes.put("Top.class", new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA});
+        classes.put("com/example/ünïcode/Name.class", new byte[] {42});
+
+        Path pack = tempDir.resolve("service" + ClassPack.EXTENSION);
+        assertEquals(classes.size(), ClassPack.write(List.of(jar("a.jar", classes)), pack));
+
+        try (ClassPack read = ClassPack.open(pack)) {
+            assertEquals(classes.size(), read.size());
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                String className = entry.getKey().substring(0, entry.getKey().length() - 6).replace('/', '.');
+                assertTrue(read.contains(className), className);
+                assertArrayEquals(entry.getValue(), bytes(read.classBytes(className)));
+            }
+            assertNull(read.classBytes("com.example.Missing"));
+        }
+    }
+
+    @Test
+    void testFirstJarWinsAndResourcesAreSkipped() throws Exception {
+        Path first = jar("first.jar", Map.of(
+                "com/example/Shared.class", new byte[] {1, 2, 3},
+                "config.properties", new byte[] {9}));
+        Path second = jar("second.jar", Map.of(
+                "com/example/Shared.class", new byte[] {4, 5},
+                "com/example/Other.class", new byte[] {6}));
+
+        Path pack = tempDir.resolve("service" + ClassPack.EXTENSION);
+        assertEquals(2, ClassPack.write(List.of(first, second), pack));
+
+        try (ClassPack read = ClassPack.open(pack)) {
+            assertArrayEquals(new byte[] {1, 2, 3}, bytes(read.classBytes("com.example.Shared")));
+            assertArrayEquals(new byte[] {6}, bytes(read.classBytes("com.example.Other")));
+            assertFalse(read.contains("config"));
+        }
+    }
+
+    @Test
+    void testEmptyPack() throws Exception {
+        Path pack = tempDir.resolve("empty" + ClassPack.EXTENSION);
+        assertEquals(0, ClassPack.write(List.of(jar("empty.jar", Map.of())), pack));
+
+        try (ClassPack read = ClassPack.open(pack)) {
+            assertEquals(0, read.size());
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws Exception {
+        Path notAPack = Files.write(tempDir.resolve("other" + ClassPack.EXTENSION), new byte[32]);
+        assertThrows(IOException.class, () -> ClassPack.open(notAPack));
+    }
+
+    private Path jar(String name, Map<String, byte[]> entries) throws Exception {
+        Path path = tempDir.resolve(name);
+        try (OutputStream file = Files.newOutputStream(path);
+             JarOutputStream out = new JarOutputStream(file)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
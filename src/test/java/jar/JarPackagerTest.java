@@ -0,0 +1,48 @@
+package jar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JarPackager.
+ */
+class JarPackagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFailedPackageLeavesNoTempFile() throws Exception {
+        Path jar = tempDir.resolve("build/app/app.jar");
+
+        assertThrows(RuntimeException.class,
+                () -> new JarPackager().createJar(tempDir.resolve("missing-classes"), jar, null));
+
+        assertFalse(Files.exists(jar));
+        try (Stream<Path> files = Files.list(jar.getParent())) {
+            assertEquals(0, files.count(), "no app.jar*.tmp is left behind");
+        }
+    }
+
+    @Test
+    void testJarReplacesThePreviousOne() throws Exception {
+        Path classes = Files.createDirectories(tempDir.resolve("classes"));
+        Files.writeString(classes.resolve("a.txt"), "v1");
+        Path jar = new JarPackager().createJar(classes, tempDir.resolve("build/app/app.jar"), null);
+        long firstSize = Files.size(jar);
+
+        Files.writeString(classes.resolve("b.txt"), "v2");
+        new JarPackager().createJar(classes, jar, null);
+
+        assertTrue(Files.size(jar) > firstSize);
+        try (Stream<Path> files = Files.list(jar.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ClassLoaderLeakDetector root finding and collection tracking.
+ */
+class ClassLoaderLeakDetectorTest {
+
+    @Test
+    void testLeftoverThreadIsReportedAsRoot() throws Exception {
+        ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector(List::of);
+        ServiceClassLoader loader = new ServiceClassLoader("leaky", List.of(), ClassLoader.getSystemClassLoader());
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread leftover = Thread.ofPlatform().name("leftover-timer").unstarted(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        leftover.setContextClassLoader(loader);
+        leftover.start();
+
+        try {
+            assertTrue(detector.findRoots(loader).stream().anyMatch(root -> root.contains("leftover-timer")));
+        } finally {
+            release.countDown();
+            leftover.join();
+            detector.close();
+        }
+    }
+
+    @Test
+    void testCollectedLoaderIsNoLongerTracked() throws Exception {
+        ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector(List::of);
+        detector.track("stopped", new ServiceClassLoader("stopped", List.of(), ClassLoader.getSystemClassLoader()));
+        assertEquals(1, detector.getPendingCount());
+
+        for (int i = 0; i < 50 && detector.getPendingCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, detector.getPendingCount(), "an unreferenced loader should be collected");
+        assertTrue(detector.getLeaks().isEmpty());
+        detector.close();
+    }
+}
@@ -0,0 +1,110 @@
+package runtime;
+
+import compile.JavaCompileService;
+import jar.JarPackager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for loading classes and resources compiled in memory.
+ */
+class InMemoryClassLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testResourcesAreServedFromMemory() throws Exception {
+        Map<String, byte[]> files = new HashMap<>(compile("lib", "com.example.lib.Greeter", Map.of()));
+        files.put("META-INF/greeting.txt", "hello".getBytes(StandardCharsets.UTF_8));
+
+        try (InMemoryClassLoader loader = new InMemoryClassLoader("lib", files, ClassLoader.getSystemClassLoader())) {
+            URL text = loader.getResource("META-INF/greeting.txt");
+            assertNotNull(text);
+            try (InputStream in = text.openStream()) {
+                assertEquals("hello", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            try (InputStream in = loader.getResourceAsStream("com/example/lib/Greeter.class")) {
+                assertNotNull(in, "class files are resources too");
+                assertArrayEquals(files.get("com/example/lib/Greeter.class"), in.readAllBytes());
+            }
+            assertEquals(1, Collections.list(loader.getResources("META-INF/greeting.txt")).size());
+            assertNull(loader.getResource("META-INF/missing.txt"));
+        }
+    }
+
+    @Test
+    void testServicesShareTheLayerOfACompiledDependency() throws Exception {
+        Map<String, byte[]> lib = compile("lib", "com.example.lib.Greeter", Map.of());
+        SharedLayers layers = new SharedLayers();
+
+        ServiceClassLoader layerA = layers.layerFor("lib", lib, List.of());
+        ServiceClassLoader layerB = layers.layerFor("lib", new HashMap<>(lib), List.of());
+        assertSame(layerA, layerB);
+
+        try (InMemoryClassLoader a = new InMemoryClassLoader("a", Map.of(), ClassLoader.getSystemClassLoader(), List.of(layerA));
+             InMemoryClassLoader b = new InMemoryClassLoader("b", Map.of(), ClassLoader.getSystemClassLoader(), List.of(layerB))) {
+            Class<?> greeter = a.loadClass("com.example.lib.Greeter");
+            assertSame(layerA, greeter.getClassLoader());
+            assertSame(greeter, b.loadClass("com.example.lib.Greeter"));
+            assertTrue(MessageBus.canCross(greeter, b), "a message of a shared type reaches the other service");
+            assertNotNull(a.getResource("com/example/lib/Greeter.class"), "resources come from the layer");
+        }
+    }
+
+    @Test
+    void testJarWrittenFromTheSameFilesSharesTheLayer() throws Exception {
+        Map<String, byte[]> lib = compile("lib", "com.example.lib.Greeter", Map.of());
+        Path jar = writeJar("lib", lib);
+        SharedLayers layers = new SharedLayers();
+
+        ServiceClassLoader compiled = layers.layerFor("lib", lib, List.of());
+        InMemoryClassLoader loader = (InMemoryClassLoader) compiled;
+        assertTrue(loader.hasSameFilesAs(jar));
+
+        layers.addJar(compiled, jar);
+        assertSame(compiled, layers.layerFor("lib", jar, List.of()));
+        assertEquals(1, layers.size());
+
+        Map<String, byte[]> changed = new HashMap<>(lib);
+        changed.put("extra.txt", new byte[] {1});
+        assertFalse(new InMemoryClassLoader("lib", changed, ClassLoader.getSystemClassLoader()).hasSameFilesAs(jar));
+
+        // Both keys go with the layer
+        layers.release(List.of(compiled, compiled));
+        assertEquals(0, layers.size());
+        assertNotSame(compiled, layers.layerFor("lib", jar, List.of()));
+    }
+
+    private Map<String, byte[]> compile(String target, String className, Map<String, byte[]> classpath) throws Exception {
+        int dot = className.lastIndexOf('.');
+        Path source = tempDir.resolve(target).resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "package " + className.substring(0, dot) + ";\n"
+                + "public class " + className.substring(dot + 1) + " {}\n");
+        return new JavaCompileService().compileInMemory(target, List.of(source), classpath);
+    }
+
+    private Path writeJar(String name, Map<String, byte[]> files) throws Exception {
+        Path classes = tempDir.resolve(name + "-classes");
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Path path = classes.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.write(path, file.getValue());
+        }
+        return new JarPackager().createJar(classes, tempDir.resolve(name + ".jar"), null);
+    }
+}
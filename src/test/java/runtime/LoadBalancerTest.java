@@ -0,0 +1,190 @@
+package runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LoadBalancer proxying, replica choice and retries, against
+ * local echo servers standing in for replicas.
+ */
+class LoadBalancerTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void testNewConnectionsGoToTheReplicaWithFewestConnections() throws Exception {
+        LoadBalancer balancer = balancer(echoServer("a"), echoServer("b"));
+
+        Socket first = connect(balancer);
+        assertEquals("ping", roundTrip(first, "ping"));
+        Socket second = connect(balancer);
+        assertEquals("pong", roundTrip(second, "pong"));
+
+        for (LoadBalancer.BackendStatus backend : balancer.getBackends()) {
+            assertEquals(1, backend.activeConnections(), backend.instanceName() + " has one client");
+        }
+
+        first.close();
+        second.close();
+        awaitNoActiveConnections(balancer);
+    }
+
+    @Test
+    void testRefusedConnectionIsRetriedOnTheNextReplica() throws Exception {
+        LoadBalancer balancer = new LoadBalancer("svc", 0);
+        resources.add(balancer);
+        balancer.addBackend("svc#1", closedPort(), runningInfo("svc#1"));
+        balancer.addBackend("svc#2", echoServer("up").getLocalPort(), runningInfo("svc#2"));
+        balancer.start();
+
+        for (int i = 0; i < 3; i++) {
+            try (Socket client = connect(balancer)) {
+                assertEquals("hello " + i, roundTrip(client, "hello " + i));
+            }
+        }
+        assertFalse(balancer.getBackends().get(0).healthy(), "refusing replica is skipped for a while");
+        assertTrue(balancer.getBackends().get(1).healthy());
+    }
+
+    @Test
+    void testLargeTransferArrivesIntactThroughSmallBuffers() throws Exception {
+        LoadBalancer balancer = balancer(echoServer("a"));
+        byte[] data = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(data);
+
+        try (Socket client = connect(balancer)) {
+            // Write on another thread: the echo only drains as fast as we read
+            Thread writer = Thread.ofPlatform().start(() -> {
+                try {
+                    client.getOutputStream().write(data);
+                    client.shutdownOutput();
+                } catch (IOException ignored) {}
+            });
+
+            byte[] received = client.getInputStream().readAllBytes();
+            writer.join();
+            assertArrayEquals(data, received);
+        }
+        awaitNoActiveConnections(balancer);
+    }
+
+    @Test
+    void testClientIsDroppedWithoutHealthyReplicas() throws Exception {
+        LoadBalancer balancer = new LoadBalancer("svc", 0);
+        resources.add(balancer);
+        ServiceInfo stopped = runningInfo("svc#1");
+        stopped.setStatus(ServiceStatus.STOPPED);
+        balancer.addBackend("svc#1", echoServer("a").getLocalPort(), stopped);
+        balancer.start();
+
+        try (Socket client = connect(balancer)) {
+            assertEquals(-1, client.getInputStream().read(), "connection is closed");
+        }
+    }
+
+    private LoadBalancer balancer(ServerSocket... servers) throws IOException {
+        LoadBalancer balancer = new LoadBalancer("svc", 0);
+        resources.add(balancer);
+        for (int i = 0; i < servers.length; i++) {
+            String name = "svc#" + (i + 1);
+            balancer.addBackend(name, servers[i].getLocalPort(), runningInfo(name));
+        }
+        balancer.start();
+        return balancer;
+    }
+
+    private Socket connect(LoadBalancer balancer) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), balancer.getPort());
+        socket.setSoTimeout(10_000);
+        resources.add(socket);
+        return socket;
+    }
+
+    private static String roundTrip(Socket socket, String line) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write((line + "\n").getBytes());
+        out.flush();
+
+        InputStream in = socket.getInputStream();
+        StringBuilder answer = new StringBuilder();
+        for (int b = in.read(); b != '\n' && b != -1; b = in.read()) {
+            answer.append((char) b);
+        }
+        return answer.toString();
+    }
+
+    private static void awaitNoActiveConnections(LoadBalancer balancer) throws InterruptedException {
+        for (int i = 0; i < 500 && !idle(balancer); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(idle(balancer), "connections are still counted: " + balancer.getBackends());
+    }
+
+    private static boolean idle(LoadBalancer balancer) {
+        return balancer.getBackends().stream().allMatch(backend -> backend.activeConnections() == 0);
+    }
+
+    /**
+     * A server that echoes every byte back, on a loopback port.
+     */
+    private ServerSocket echoServer(String name) throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        resources.add(server);
+        Thread.ofPlatform().name("echo-" + name).daemon(true).start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread.ofVirtual().start(() -> {
+                        try (socket) {
+                            socket.getInputStream().transferTo(socket.getOutputStream());
+                        } catch (IOException ignored) {}
+                    });
+                } catch (IOException e) {
+                    return; // closed
+                }
+            }
+        });
+        return server;
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * A replica that counts as running: RUNNING, with a live thread.
+     */
+    private ServiceInfo runningInfo(String name) {
+        ServiceInfo info = new ServiceInfo(name);
+        Thread thread = Thread.ofPlatform().daemon(true).start(() -> {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException ignored) {}
+        });
+        resources.add(thread::interrupt);
+        info.setThread(thread);
+        info.setStatus(ServiceStatus.RUNNING);
+        return info;
+    }
+}
@@ -0,0 +1,77 @@
+package runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ManagedExecutor concurrency limits, scheduling and lifecycle.
+ */
+class ManagedExecutorTest {
+
+    private final ScheduledExecutorService timer = ManagedExecutor.newTimer();
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void testTasksBeyondTheLimitAreQueued() throws Exception {
+        ServiceScope scope = scope("busy-service");
+        ManagedExecutor executor = new ManagedExecutor("busy-service", timer, 2);
+        executor.bind(scope);
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                    done.incrementAndGet();
+                } catch (InterruptedException ignored) {}
+            });
+        }
+
+        assertEquals(2, executor.getRunningTasks());
+        assertEquals(8, executor.getQueuedTasks());
+
+        release.countDown();
+        executor.awaitIdle();
+        assertEquals(10, done.get());
+        assertEquals(0, executor.getQueuedTasks());
+        assertEquals(10, executor.getStartedTasks());
+    }
+
+    @Test
+    void testPeriodicTaskRunsUntilTerminated() throws Exception {
+        ServiceScope scope = scope("ticker");
+        ManagedExecutor executor = new ManagedExecutor("ticker", timer, 4);
+        executor.bind(scope);
+
+        CountDownLatch ticks = new CountDownLatch(3);
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(ticks::countDown, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(ticks.await(5, TimeUnit.SECONDS), "task runs repeatedly");
+        assertEquals(1, executor.getScheduledTasks());
+
+        executor.terminate();
+        assertTrue(future.isCancelled());
+        assertEquals(0, executor.getScheduledTasks());
+        assertThrows(IllegalStateException.class, executor::shutdown);
+    }
+
+    private static ServiceScope scope(String name) {
+        ServiceScope scope = new ServiceScope(name, ExecutionMode.PLATFORM);
+        scope.setContext(new RuntimeContext(name, Path.of(name + ".jar")));
+        return scope;
+    }
+}
@@ -0,0 +1,160 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MessageBus delivery, shutdown and classloader checks.
+ */
+class MessageBusTest {
+
+    @Test
+    void testRequestReachesEndpointAndReplies() throws Exception {
+        MessageBus bus = new MessageBus();
+        ServiceScope auth = new ServiceScope("auth", ExecutionMode.PLATFORM);
+
+        auth.fork(() -> bus.bind("auth.length", 4, message -> ((String) message).length()))
+                .get(5, TimeUnit.SECONDS);
+
+        // More requests than the queue holds: senders wait for room
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), bus.call("auth.length", "x".repeat(i)));
+        }
+
+        assertEquals(0, auth.shutdown(5000), "endpoint task should stop with its service");
+        assertThrows(RuntimeException.class, () -> bus.request("auth.length", "x"));
+    }
+
+    @Test
+    void testPublishReachesEverySubscriber() throws Exception {
+        MessageBus bus = new MessageBus();
+        ServiceScope logging = new ServiceScope("logging", ExecutionMode.VIRTUAL);
+        List<Object> received = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(20);
+
+        for (int i = 0; i < 2; i++) {
+            logging.fork(() -> bus.subscribe("payments", message -> {
+                received.add(message);
+                delivered.countDown();
+            })).get(5, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, bus.publish("payments", i));
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(20, received.size());
+        logging.shutdown(5000);
+        assertEquals(0, bus.publish("payments", "late"));
+    }
+
+    @Test
+    void testPendingRequestsFailWhenEndpointStops() throws Exception {
+        MessageBus bus = new MessageBus();
+        ServiceScope auth = new ServiceScope("auth", ExecutionMode.PLATFORM);
+        CountDownLatch handling = new CountDownLatch(1);
+
+        // The handler blocks until the service stops, so requests pile up
+        auth.fork(() -> bus.bind("auth.slow", 64, message -> {
+            handling.countDown();
+            Thread.sleep(Long.MAX_VALUE);
+            return null;
+        })).get(5, TimeUnit.SECONDS);
+
+        List<CompletableFuture<Object>> replies = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            replies.add(bus.request("auth.slow", i));
+        }
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+
+        // Keep sending while the endpoint stops
+        AtomicBoolean sending = new AtomicBoolean(true);
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            senders.add(Thread.ofPlatform().start(() -> {
+                while (sending.get()) {
+                    try {
+                        replies.add(bus.request("auth.slow", "x"));
+                    } catch (RuntimeException e) {
+                        // not bound any more, or the queue is full
+                    }
+                }
+            }));
+        }
+
+        assertEquals(0, auth.shutdown(5000));
+        sending.set(false);
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, e) -> null)
+                .get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Object> reply : replies) {
+            assertTrue(reply.isCompletedExceptionally(), "no reply can come from a stopped endpoint");
+        }
+        ExecutionException queued = assertThrows(ExecutionException.class, () -> replies.get(9).get());
+        assertEquals("Endpoint closed: auth.slow", queued.getCause().getMessage());
+    }
+
+    @Test
+    void testServiceOwnClassesDoNotCross() throws Exception {
+        ClassLoader service = new IsolatingLoader(Payload.class.getName());
+        Class<?> isolated = service.loadClass(Payload.class.getName());
+
+        assertNotSame(Payload.class, isolated);
+        assertTrue(MessageBus.canCross(String.class, service), "JDK classes are shared");
+        assertTrue(MessageBus.canCross(isolated, service), "a loader sees its own classes");
+        assertTrue(MessageBus.canCross(MessageBus.class, service), "parent classes are shared");
+        assertFalse(MessageBus.canCross(isolated, getClass().getClassLoader()));
+        assertFalse(MessageBus.canCross(Payload.class, service), "the loader has its own Payload");
+    }
+
+    static class Payload {
+    }
+
+    /**
+     * Defines its own copy of one class, like a service jar would.
+     */
+    private static class IsolatingLoader extends ClassLoader {
+        private final String isolated;
+
+        IsolatingLoader(String isolated) {
+            super(MessageBusTest.class.getClassLoader());
+            this.isolated = isolated;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(isolated)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    byte[] bytes = in.readAllBytes();
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+}
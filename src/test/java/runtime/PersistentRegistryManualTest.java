@@ -69,6 +69,6 @@ public class PersistentRegistryManualTest {
         System.out.println("✓ All services unregistered\n");
 
         System.out.println("=== All Tests Passed! ===");
-        System.out.println("\nRegistry file location: ~/.mycoq/registry.json");
+        System.out.println("\nRegistry file location: ~/.mycoq/registry.dat");
     }
 }
@@ -5,16 +5,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Unit tests for PersistentRegistry.
- * Tests JSON serialization/deserialization and process tracking.
+ * Tests the record file format, in-place updates and process tracking.
  */
 class PersistentRegistryTest {
 
@@ -24,7 +27,7 @@ class PersistentRegistryTest {
     @BeforeEach
     void setUp() {
         registry = new PersistentRegistry();
-        registryFile = Paths.get(System.getProperty("user.home"), ".mycoq", "registry.json");
+        registryFile = Paths.get(System.getProperty("user.home"), ".mycoq", "registry.dat");
     }
 
     @AfterEach
@@ -121,9 +124,38 @@ class PersistentRegistryTest {
         // Verify registry file was created
         assertTrue(Files.exists(registryFile), "Registry file should be created");
 
-        // Verify it's valid JSON
-        String content = Files.readString(registryFile);
+        // Names and statuses are stored as plain text inside the records
+        String content = new String(Files.readAllBytes(registryFile), StandardCharsets.ISO_8859_1);
         assertTrue(content.contains("test-service"));
         assertTrue(content.contains("RUNNING"));
     }
+
+    @Test
+    void testReRegisterUpdatesRecordInPlace() throws IOException {
+        int currentPid = (int) ProcessHandle.current().pid();
+        registry.register("service-1", currentPid);
+        registry.register("service-2", currentPid);
+        long size = Files.size(registryFile);
+
+        // Same name reuses its slot; an unregistered slot is reused by the next service
+        registry.register("service-1", currentPid);
+        registry.unregister("service-2");
+        registry.register("service-3", currentPid);
+
+        assertEquals(size, Files.size(registryFile));
+        assertEquals(2, registry.getAllServices().size());
+    }
+
+    @Test
+    void testReusedPidIsNotMistakenForTheService() {
+        int currentPid = (int) ProcessHandle.current().pid();
+
+        // Registered by an earlier process that had our PID
+        registry.register("stale-service", currentPid, Instant.now().minus(Duration.ofDays(1)));
+        registry.register("live-service", currentPid);
+
+        Map<String, PersistentRegistry.ServiceEntry> services = registry.getAllServices();
+        assertTrue(services.containsKey("live-service"));
+        assertFalse(services.containsKey("stale-service"), "PID reused by another process");
+    }
 }
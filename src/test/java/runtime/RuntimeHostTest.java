@@ -0,0 +1,75 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RuntimeHost control socket protocol.
+ */
+class RuntimeHostTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRequestsAreAnsweredOverTheSocket() throws Exception {
+        Path socket = RuntimeHost.socketFor(tempDir);
+        RuntimeManager runtimeManager = new RuntimeManager(tempDir, tempDir.resolve("manifests"));
+
+        try (RuntimeHost host = new RuntimeHost(runtimeManager, socket)) {
+            host.start();
+            HostClient client = new HostClient(socket);
+            assertTrue(client.isHostRunning());
+
+            HostClient.Response status = client.send("status");
+            assertTrue(status.ok());
+            assertEquals("No services running.\n", status.body());
+
+            HostClient.Response stop = client.send("stop payment-service");
+            assertFalse(stop.ok());
+            assertEquals("Service not found: payment-service", stop.body());
+
+            assertFalse(client.send("restart").ok(), "unknown requests are rejected");
+        }
+
+        assertFalse(Files.exists(socket), "socket file is removed on close");
+        assertFalse(new HostClient(socket).isHostRunning());
+    }
+
+    @Test
+    void testSocketIsOwnerOnlyAndNamesCannotLeaveTheWorkspace() throws Exception {
+        Path socket = RuntimeHost.socketFor(tempDir);
+
+        try (RuntimeHost host = new RuntimeHost(new RuntimeManager(tempDir, tempDir), socket)) {
+            host.start();
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket.getParent())));
+
+            HostClient client = new HostClient(socket);
+            for (String request : List.of("run ../../etc/x", "stop a/b", "scale .. 2")) {
+                HostClient.Response response = client.send(request);
+                assertFalse(response.ok(), request);
+                assertTrue(response.body().startsWith("Invalid service name: "), response.body());
+            }
+        }
+    }
+
+    @Test
+    void testStaleSocketFileIsReplaced() throws Exception {
+        Path socket = RuntimeHost.socketFor(tempDir);
+        Files.createDirectories(socket.getParent());
+        Files.createFile(socket); // left behind by a killed host
+
+        try (RuntimeHost host = new RuntimeHost(new RuntimeManager(tempDir, tempDir), socket)) {
+            host.start();
+            assertTrue(new HostClient(socket).send("list").ok());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package runtime;
+
+import compile.JavaCompileService;
+import jar.JarPackager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for starting bundles from their manifests.
+ */
+class RuntimeManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RuntimeManager runtimeManager;
+
+    @AfterEach
+    void tearDown() {
+        if (runtimeManager != null) {
+            runtimeManager.shutdown();
+        }
+    }
+
+    @Test
+    void testBundleStartsServicesAfterTheirDependencies() throws Exception {
+        // Listed in reverse: a needs b, b needs c
+        service("a-service", "b-service");
+        service("b-service", "c-service");
+        service("c-service");
+        manifest("core-lib", """
+                name: core-lib
+                type: SHARED
+                version: 1.0.0
+                dependencies: []
+                """);
+        manifest("demo-bundle", """
+                name: demo-bundle
+                type: COMPOSITE
+                version: 1.0.0
+
+                # services first, then a library
+                includes:
+                  - a-service@1.0.0
+                  - "b-service@1.0.0"
+                  - 'c-service'
+                  - core-lib@1.0.0
+                """);
+
+        runtimeManager().runService("demo-bundle");
+
+        RuntimeRegistry registry = runtimeManager.getRegistry();
+        ServiceInfo a = registry.getService("a-service");
+        ServiceInfo b = registry.getService("b-service");
+        ServiceInfo c = registry.getService("c-service");
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNotNull(c);
+        assertNull(registry.getService("core-lib"), "libraries are not started");
+        assertTrue(c.getStartTime().isBefore(b.getStartTime()), "c before b");
+        assertTrue(b.getStartTime().isBefore(a.getStartTime()), "b before a");
+    }
+
+    @Test
+    void testBundleSharedByTwoIncludedBundlesIsStartedOnce() throws Exception {
+        // top includes left and right, which both include shared
+        service("a-service", "b-service");
+        service("b-service");
+        service("c-service");
+        bundle("shared-bundle", "b-service");
+        bundle("left-bundle", "shared-bundle", "a-service");
+        bundle("right-bundle", "shared-bundle", "c-service");
+        bundle("top-bundle", "left-bundle", "right-bundle");
+
+        runtimeManager().runService("top-bundle");
+
+        RuntimeRegistry registry = runtimeManager.getRegistry();
+        assertNotNull(registry.getService("a-service"));
+        assertNotNull(registry.getService("b-service"));
+        assertNotNull(registry.getService("c-service"));
+        assertTrue(registry.getService("b-service").getStartTime()
+                .isBefore(registry.getService("a-service").getStartTime()));
+    }
+
+    @Test
+    void testBundleIncludingItselfIsRejected() throws Exception {
+        service("a-service");
+        bundle("outer-bundle", "a-service", "inner-bundle");
+        bundle("inner-bundle", "outer-bundle");
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> runtimeManager().runService("outer-bundle"));
+        assertEquals("Bundle includes itself: outer-bundle", e.getMessage());
+    }
+
+    @Test
+    void testBundleWithoutIncludesIsRejected() throws Exception {
+        manifest("empty-bundle", """
+                name: empty-bundle
+                type: COMPOSITE
+                version: 1.0.0
+                includes:
+                """);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> runtimeManager().runService("empty-bundle"));
+        assertEquals("Bundle has no EXECUTABLE services: empty-bundle", e.getMessage());
+    }
+
+    @Test
+    void testIncludesThatAreNotAListAreRejected() throws Exception {
+        service("a-service");
+        // A flow sequence is not read as includes, so nothing gets started
+        manifest("flow-bundle", """
+                name: flow-bundle
+                type: COMPOSITE
+                version: 1.0.0
+                includes: [a-service@1.0.0]
+                """);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> runtimeManager().runService("flow-bundle"));
+        assertEquals("Bundle has no EXECUTABLE services: flow-bundle", e.getMessage());
+        assertNull(runtimeManager.getRegistry().getService("a-service"));
+    }
+
+    @Test
+    void testIncludeWithoutManifestFails() throws Exception {
+        manifest("broken-bundle", """
+                name: broken-bundle
+                type: COMPOSITE
+                version: 1.0.0
+                includes:
+                  - missing-service@1.0.0
+                """);
+
+        assertThrows(Exception.class, () -> runtimeManager().runService("broken-bundle"));
+        assertNull(runtimeManager.getRegistry().getService("missing-service"));
+    }
+
+    private RuntimeManager runtimeManager() {
+        runtimeManager = new RuntimeManager(tempDir, tempDir.resolve("manifests"));
+        runtimeManager.setPreloadClasses(false);
+        return runtimeManager;
+    }
+
+    /**
+     * Manifest and jar of a service whose main() returns at once.
+     */
+    private void service(String name, String... dependencies) throws Exception {
+        StringBuilder manifest = new StringBuilder("name: " + name + "\ntype: EXECUTABLE\nversion: 1.0.0\n");
+        if (dependencies.length == 0) {
+            manifest.append("dependencies: []\n");
+        } else {
+            manifest.append("dependencies:\n");
+            for (String dependency : dependencies) {
+                manifest.append("  - ").append(dependency).append("@1.0.0\n");
+            }
+        }
+        manifest(name, manifest.toString());
+
+        String mainClass = EntryPointResolver.getConventionalMainClass(name);
+        int dot = mainClass.lastIndexOf('.');
+        Path source = tempDir.resolve("src").resolve(name).resolve(mainClass.replace('.', '/') + ".java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "package " + mainClass.substring(0, dot) + ";\n"
+                + "public class " + mainClass.substring(dot + 1) + " {\n"
+                + "    public static void main(String[] args) {}\n"
+                + "}\n");
+
+        Path classes = tempDir.resolve("build").resolve(name).resolve("classes");
+        new JavaCompileService().compile(List.of(source), classes, List.of());
+        new JarPackager().createJar(classes, tempDir.resolve("build").resolve(name).resolve(name + ".jar"), mainClass);
+    }
+
+    private void bundle(String name, String... includes) throws Exception {
+        StringBuilder manifest = new StringBuilder("name: " + name + "\ntype: COMPOSITE\nversion: 1.0.0\nincludes:\n");
+        for (String include : includes) {
+            manifest.append("  - ").append(include).append("@1.0.0\n");
+        }
+        manifest(name, manifest.toString());
+    }
+
+    private void manifest(String name, String content) throws Exception {
+        Path file = tempDir.resolve("manifests").resolve(name + ".yaml");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,68 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SamplingProfiler sampling and the collapsed stack format.
+ */
+class SamplingProfilerTest {
+
+    private static volatile long sink;
+
+    @Test
+    void testBusyThreadIsSampledAndWaitingThreadIsNot() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread busy = Thread.ofPlatform().name("busy").start(() -> spin(running));
+        Thread waiting = Thread.ofPlatform().name("waiting").start(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+
+        try {
+            SamplingProfiler profiler = new SamplingProfiler(() -> List.of(busy, waiting), 100);
+            SamplingProfiler.Profile profile = profiler.profile(Duration.ofMillis(300));
+
+            assertTrue(profile.samples() > 0);
+            assertEquals(1, profile.threads(), "only the RUNNABLE thread is sampled");
+            for (String line : profile.toCollapsed().split("\n")) {
+                assertTrue(line.matches("\\S+ \\d+"), "collapsed line: " + line);
+                assertTrue(line.contains("runtime.SamplingProfilerTest.spin"), line);
+            }
+        } finally {
+            running.set(false);
+            release.countDown();
+            busy.join();
+            waiting.join();
+        }
+    }
+
+    @Test
+    void testCollapseWritesRootFrameFirst() {
+        StackTraceElement[] frames = {
+                new StackTraceElement("com.example.Json", "parse", null, 10),
+                new StackTraceElement("com.example.Server", "handle", null, 20),
+                new StackTraceElement("java.lang.Thread", "run", null, 30)
+        };
+
+        assertEquals("java.lang.Thread.run;com.example.Server.handle;com.example.Json.parse",
+                SamplingProfiler.collapse(frames));
+    }
+
+    private static void spin(AtomicBoolean running) {
+        long value = 0;
+        while (running.get()) {
+            value += System.nanoTime() % 7;
+        }
+        sink = value;
+    }
+}
@@ -0,0 +1,121 @@
+package runtime;
+
+import jar.ClassPack;
+import jar.JarPackager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ServiceClassLoader index lookups, shared layers, class packs
+ * and startup profiles.
+ */
+class ServiceClassLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testServicesShareClassesOfALayer() throws Exception {
+        Path layerJar = jarOf(Greeter.class, "greeter");
+        Path emptyJar = jarOf(null, "service");
+
+        ServiceClassLoader layer = new ServiceClassLoader("layer:greeter", List.of(layerJar),
+                ClassLoader.getSystemClassLoader());
+        ServiceClassLoader serviceA = new ServiceClassLoader("a", List.of(emptyJar),
+                ClassLoader.getSystemClassLoader(), List.of(layer));
+        ServiceClassLoader serviceB = new ServiceClassLoader("b", List.of(emptyJar),
+                ClassLoader.getSystemClassLoader(), List.of(layer));
+
+        Class<?> fromA = serviceA.loadClass(Greeter.class.getName());
+        Class<?> fromB = serviceB.loadClass(Greeter.class.getName());
+
+        assertSame(fromA, fromB, "both services get the layer's copy");
+        assertSame(layer, fromA.getClassLoader());
+        assertNotSame(Greeter.class, fromA, "indexed classes are defined by the layer, not the parent");
+    }
+
+    @Test
+    void testClassesOutsideTheIndexComeFromTheParent() throws Exception {
+        ServiceClassLoader loader = new ServiceClassLoader("service", List.of(jarOf(null, "service")),
+                ClassLoader.getSystemClassLoader());
+
+        assertSame(String.class, loader.loadClass("java.lang.String"));
+        assertSame(Greeter.class, loader.loadClass(Greeter.class.getName()));
+        assertThrows(ClassNotFoundException.class, () -> loader.loadClass("com.example.Missing"));
+        // Second miss is answered from the negative cache
+        assertThrows(ClassNotFoundException.class, () -> loader.loadClass("com.example.Missing"));
+    }
+
+    @Test
+    void testPackedLoaderDefinesClassesFromThePack() throws Exception {
+        Path jar = jarOf(Greeter.class, "packed");
+        Path pack = tempDir.resolve("packed" + ClassPack.EXTENSION);
+        assertEquals(1, ClassPack.write(List.of(jar), pack));
+
+        try (PackedClassLoader loader = new PackedClassLoader("packed", List.of(jar), pack,
+                ClassLoader.getSystemClassLoader())) {
+            Class<?> greeter = loader.loadClass(Greeter.class.getName());
+
+            assertSame(loader, greeter.getClassLoader());
+            assertEquals(pack.toUri().toURL(), greeter.getProtectionDomain().getCodeSource().getLocation());
+            assertEquals("hello", greeter.getMethod("greet").invoke(greeter.getConstructor().newInstance()));
+        }
+    }
+
+    @Test
+    void testRecordedClassesArePreloaded() throws Exception {
+        Path jar = jarOf(Greeter.class, "profiled");
+
+        ServiceClassLoader first = new ServiceClassLoader("profiled", List.of(jar),
+                ClassLoader.getSystemClassLoader());
+        first.startRecording();
+        first.loadClass(Greeter.class.getName());
+        List<String> profile = first.stopRecording();
+        assertTrue(profile.contains(Greeter.class.getName()));
+
+        List<String> withStaleEntry = new ArrayList<>(profile);
+        withStaleEntry.add("com.example.Removed");
+
+        ServiceClassLoader second = new ServiceClassLoader("profiled", List.of(jar),
+                ClassLoader.getSystemClassLoader());
+        assertEquals(Integer.valueOf(profile.size()), second.preload(withStaleEntry, 2).get());
+
+        // Already loaded: the service's first use doesn't load it again
+        second.startRecording();
+        Class<?> greeter = second.loadClass(Greeter.class.getName());
+        assertTrue(second.stopRecording().isEmpty(), "preloaded before first use");
+        assertSame(second, greeter.getClassLoader());
+    }
+
+    /**
+     * Package one class (or none) into a jar with a class index.
+     */
+    private Path jarOf(Class<?> type, String name) throws Exception {
+        Path classesDir = Files.createDirectories(tempDir.resolve(name + "-classes"));
+
+        if (type != null) {
+            String entry = type.getName().replace('.', '/') + ".class";
+            Path classFile = classesDir.resolve(entry);
+            Files.createDirectories(classFile.getParent());
+            try (InputStream in = type.getResourceAsStream("/" + entry)) {
+                Files.copy(in, classFile);
+            }
+        }
+
+        return new JarPackager().createJar(classesDir, tempDir.resolve(name + ".jar"), null);
+    }
+
+    public static class Greeter {
+        public String greet() {
+            return "hello";
+        }
+    }
+}
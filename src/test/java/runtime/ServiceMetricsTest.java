@@ -0,0 +1,61 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ServiceMetrics sampling and Prometheus output.
+ */
+class ServiceMetricsTest {
+
+    @Test
+    void testUsageOfEndedThreadsIsKept() throws Exception {
+        CountDownLatch sampled = new CountDownLatch(1);
+        Thread worker = Thread.ofPlatform().start(() -> {
+            busyWork();
+            try {
+                sampled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        RuntimeRegistry registry = new RuntimeRegistry();
+        ServiceInfo info = new ServiceInfo("busy-service");
+        info.setThread(worker);
+        info.setStatus(ServiceStatus.RUNNING);
+        registry.register("busy-service", info);
+
+        ServiceMetrics metrics = new ServiceMetrics(registry);
+        metrics.sample();
+        ServiceMetrics.Snapshot running = metrics.getSnapshots().get(0);
+        assertTrue(running.cpuNanos > 0, "CPU time of the service thread");
+        assertTrue(running.allocatedBytes > 0, "bytes allocated by the service thread");
+        assertEquals(1, running.threads);
+
+        sampled.countDown();
+        worker.join();
+        metrics.sample();
+        ServiceMetrics.Snapshot ended = metrics.getSnapshots().get(0);
+        assertEquals(0, ended.threads);
+        assertTrue(ended.cpuNanos >= running.cpuNanos, "usage survives the thread");
+
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE mycoq_service_cpu_seconds_total counter"));
+        assertTrue(text.contains("mycoq_service_restarts_total{service=\"busy-service\"} 0"));
+    }
+
+    private static void busyWork() {
+        long sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            sum += List.of(i, i + 1).hashCode();
+        }
+        if (sum == 42) {
+            System.out.println(sum);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ServiceOutput routing of System.out to per-service files.
+ */
+class ServiceOutputTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testServiceThreadsWriteToTheirOwnFile() throws Exception {
+        PrintStream console = System.out;
+        ServiceOutput output = ServiceOutput.install(tempDir);
+        try {
+            Thread service = Thread.ofPlatform().unstarted(() -> {
+                System.out.println("hello from payment");
+                System.err.printf("%d items%n", 3);
+            });
+            service.setContextClassLoader(
+                    new ServiceClassLoader("payment-service", List.of(), ClassLoader.getSystemClassLoader()));
+            service.start();
+            service.join();
+
+            System.out.println("runtime line"); // not a service thread: console
+        } finally {
+            output.close();
+        }
+
+        assertSame(console, System.out, "console stream is restored on close");
+        List<String> lines = Files.readAllLines(output.logFile("payment-service"));
+        assertEquals(List.of("hello from payment", "3 items"), lines);
+        assertEquals(0, output.getDroppedWrites("payment-service"));
+    }
+}
@@ -0,0 +1,66 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ServiceScope task tracking and cancellation.
+ */
+class ServiceScopeTest {
+
+    @Test
+    void testTasksAreCounted() throws Exception {
+        ServiceScope scope = new ServiceScope("counted", ExecutionMode.VIRTUAL);
+
+        CompletableFuture<Integer> ok = scope.fork(() -> 42);
+        CompletableFuture<Void> failing = scope.fork((Runnable) () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertEquals(Integer.valueOf(42), ok.get(5, TimeUnit.SECONDS));
+        assertThrows(Exception.class, () -> failing.get(5, TimeUnit.SECONDS));
+        scope.awaitTasks();
+
+        assertEquals(2, scope.getStartedTasks());
+        assertEquals(1, scope.getCompletedTasks());
+        assertEquals(1, scope.getFailedTasks());
+        assertEquals(0, scope.getActiveTasks());
+    }
+
+    @Test
+    void testShutdownInterruptsAllTasks() throws Exception {
+        ServiceScope scope = new ServiceScope("stopped", ExecutionMode.VIRTUAL);
+        CountDownLatch started = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            scope.fork(() -> {
+                started.countDown();
+                Thread.sleep(60_000);
+                return null;
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(100, scope.getActiveTasks());
+
+        assertEquals(0, scope.shutdown(5000), "every task should stop when interrupted");
+        assertEquals(0, scope.getFailedTasks(), "cancelled tasks are not failures");
+        assertThrows(IllegalStateException.class, () -> scope.fork(() -> null));
+    }
+
+    @Test
+    void testTasksInheritScope() throws Exception {
+        ServiceScope scope = new ServiceScope("nested", ExecutionMode.PLATFORM);
+
+        ServiceScope seen = scope.fork(ServiceScope::current).get(5, TimeUnit.SECONDS);
+
+        assertSame(scope, seen);
+        // The test thread itself is not in a service
+        assertThrows(IllegalStateException.class, ServiceScope::current);
+    }
+}
@@ -0,0 +1,102 @@
+package runtime;
+
+import jar.JarPackager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for sharing layers by jar digest and dropping unused ones.
+ */
+class SharedLayersTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<ServiceClassLoader> dropped = new ArrayList<>();
+    private final SharedLayers layers = new SharedLayers(dropped::add);
+
+    @Test
+    void testSameBytesShareALayer() throws Exception {
+        Path jar = jar("core", "v1");
+        Path copy = Files.copy(jar, tempDir.resolve("core-copy.jar"));
+
+        ServiceClassLoader first = layers.layerFor("core", jar, List.of());
+        ServiceClassLoader second = layers.layerFor("core", copy, List.of());
+        ServiceClassLoader rebuilt = layers.layerFor("core", jar("core", "v2"), List.of());
+
+        assertSame(first, second);
+        assertNotSame(first, rebuilt);
+        assertEquals(2, layers.size());
+        assertEquals(2, layers.getUsers(first));
+    }
+
+    @Test
+    void testLayerIsDroppedWithItsLastUser() throws Exception {
+        Path jar = jar("core", "v1");
+        ServiceClassLoader layer = layers.layerFor("core", jar, List.of());
+        layers.layerFor("core", jar, List.of());
+
+        layers.release(List.of(layer));
+        assertEquals(1, layers.getUsers(layer));
+        assertTrue(dropped.isEmpty());
+
+        layers.release(List.of(layer));
+        assertEquals(0, layers.size());
+        assertEquals(List.of(layer), dropped);
+
+        ServiceClassLoader again = layers.layerFor("core", jar, List.of());
+        assertNotSame(layer, again, "a dropped layer is rebuilt on next use");
+    }
+
+    @Test
+    void testDependencyLayerLivesAsLongAsTheLayersOnTopOfIt() throws Exception {
+        Path coreJar = jar("core", "v1");
+        Path apiJar = jar("api", "v1");
+
+        // Two services using api, acquired like RuntimeManager.sharedLayer does
+        ServiceClassLoader core = layers.layerFor("core", coreJar, List.of());
+        ServiceClassLoader api = layers.layerFor("api", apiJar, List.of(core));
+        ServiceClassLoader coreAgain = layers.layerFor("core", coreJar, List.of());
+        ServiceClassLoader apiAgain = layers.layerFor("api", apiJar, List.of(coreAgain));
+
+        assertSame(api, apiAgain);
+        assertEquals(List.of(core), api.getLayers());
+        assertEquals(1, layers.getUsers(core), "only the api layer holds core");
+        assertEquals(2, layers.getUsers(api));
+
+        layers.release(List.of(api));
+        assertEquals(2, layers.size());
+
+        layers.release(List.of(api));
+        assertEquals(0, layers.size());
+        assertEquals(List.of(api, core), dropped);
+    }
+
+    @Test
+    void testRebuiltDependencyIsDroppedWhenTheExistingLayerKeepsTheOldOne() throws Exception {
+        Path apiJar = jar("api", "v1");
+        ServiceClassLoader core = layers.layerFor("core", jar("core", "v1"), List.of());
+        ServiceClassLoader api = layers.layerFor("api", apiJar, List.of(core));
+
+        // core was rebuilt, api was not: the existing api layer still uses the old core
+        ServiceClassLoader newCore = layers.layerFor("core", jar("core", "v2"), List.of());
+        assertSame(api, layers.layerFor("api", apiJar, List.of(newCore)));
+
+        assertEquals(List.of(newCore), dropped);
+        assertEquals(List.of(core), api.getLayers());
+    }
+
+    private Path jar(String name, String content) throws Exception {
+        Path classes = tempDir.resolve(name + "-" + content);
+        Files.createDirectories(classes);
+        Files.writeString(classes.resolve(name + ".txt"), content);
+        return new JarPackager().createJar(classes, tempDir.resolve(name + "-" + content + ".jar"), null);
+    }
+}
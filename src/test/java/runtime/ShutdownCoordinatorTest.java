@@ -0,0 +1,83 @@
+package runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ShutdownCoordinator ordering, deadline and registry cleanup.
+ */
+class ShutdownCoordinatorTest {
+
+    private final RuntimeRegistry registry = new RuntimeRegistry();
+    private final PersistentRegistry persistentRegistry = new PersistentRegistry();
+    private final ServiceExecutor executor = new ServiceExecutor();
+
+    @Test
+    void testDependentsStopFirst() throws Exception {
+        List<String> drained = new CopyOnWriteArrayList<>();
+        for (String name : List.of("shutdown-logging", "shutdown-auth", "shutdown-payment", "shutdown-metrics")) {
+            start(name, "waitForStop").onDrain(() -> drained.add(name));
+        }
+        Map<String, Set<String>> dependencies = Map.of(
+                "shutdown-payment", Set.of("shutdown-auth", "shutdown-logging"),
+                "shutdown-auth", Set.of("shutdown-logging"));
+
+        List<String> notStopped = new ShutdownCoordinator(registry, persistentRegistry, executor,
+                name -> dependencies.getOrDefault(name, Set.of())).shutdown(Duration.ofSeconds(10));
+
+        assertTrue(notStopped.isEmpty());
+        assertEquals(4, drained.size());
+        assertTrue(drained.indexOf("shutdown-payment") < drained.indexOf("shutdown-auth"));
+        assertTrue(drained.indexOf("shutdown-auth") < drained.indexOf("shutdown-logging"));
+        assertEquals(0, registry.getRunningCount());
+        assertFalse(persistentRegistry.getAllServices().containsKey("shutdown-payment"),
+                "entries are cleared in one batch");
+    }
+
+    @Test
+    void testDeadlineBoundsShutdown() throws Exception {
+        start("shutdown-stubborn", "ignoreInterrupts");
+        start("shutdown-polite", "waitForStop");
+
+        long startNanos = System.nanoTime();
+        List<String> notStopped = new ShutdownCoordinator(registry, persistentRegistry, executor,
+                name -> Set.of()).shutdown(Duration.ofMillis(500));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertEquals(List.of("shutdown-stubborn"), notStopped);
+        assertTrue(millis < 3000, "shutdown took " + millis + " ms");
+        assertFalse(persistentRegistry.getAllServices().containsKey("shutdown-stubborn"));
+        stubborn = false;
+    }
+
+    private RuntimeContext start(String name, String main) throws Exception {
+        RuntimeContext context = new RuntimeContext(name, Path.of(name + ".jar"));
+        context.setClassLoader(getClass().getClassLoader());
+        Method method = ShutdownCoordinatorTest.class.getDeclaredMethod(main, String[].class);
+        executor.execute(context, method, registry, persistentRegistry);
+        registry.getService(name).whenRunning().get(5, TimeUnit.SECONDS);
+        return context;
+    }
+
+    static void waitForStop(String[] args) throws InterruptedException {
+        Thread.sleep(60_000);
+    }
+
+    private static volatile boolean stubborn = true;
+
+    static void ignoreInterrupts(String[] args) {
+        while (stubborn) {
+            Thread.onSpinWait();
+        }
+    }
+}